@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Provides a text for benchmarks. It is either a content of a given file (a
+ * large russian corpus is expected) or the bundled sample of Russian Wikipedia
+ * articles.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class BenchmarkCorpus {
+
+	/**
+	 * Benchmark parameter name. Its value is a path to a corpus file in UTF-8.
+	 * The bundled sample is used if the value is empty.
+	 */
+	public static final String PARAM_CORPUS_FILE = "corpusFile";
+
+	private static final String SAMPLE_RESOURCE = "corpus-sample.txt";
+
+	/**
+	 * @param corpusFilePath
+	 *            path to a corpus file, may be empty
+	 * @param minLength
+	 *            the bundled sample is repeated until the result reaches this
+	 *            length. It is ignored if a corpus file is given.
+	 * @return corpus text
+	 */
+	public static String load(String corpusFilePath, int minLength) throws IOException {
+		if (corpusFilePath != null && !corpusFilePath.isEmpty()) {
+			return FileUtils.readFileToString(new File(corpusFilePath), "utf-8");
+		}
+		String sample;
+		InputStream in = BenchmarkCorpus.class.getResourceAsStream(SAMPLE_RESOURCE);
+		if (in == null) {
+			throw new IllegalStateException(String.format(
+					"Can't find the corpus sample %s in classpath", SAMPLE_RESOURCE));
+		}
+		try {
+			sample = IOUtils.toString(in, "utf-8");
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		StringBuilder sb = new StringBuilder(minLength + sample.length());
+		do {
+			sb.append(sample).append('\n');
+		} while (sb.length() < minLength);
+		return sb.toString();
+	}
+
+	/**
+	 * Split a text without a tokenizer, so the result does not depend on the
+	 * code being benchmarked.
+	 *
+	 * @return sentences of the text as lists of words. A word is a maximal
+	 *         sequence of letters and digits, a sentence ends at '.', '!', '?'
+	 *         or a line break.
+	 */
+	public static List<List<String>> sentences(String text) {
+		List<List<String>> result = Lists.newArrayList();
+		List<String> sent = Lists.newArrayList();
+		int wordBegin = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : '\n';
+			if (Character.isLetterOrDigit(c)) {
+				if (wordBegin < 0) {
+					wordBegin = i;
+				}
+				continue;
+			}
+			if (wordBegin >= 0) {
+				sent.add(text.substring(wordBegin, i));
+				wordBegin = -1;
+			}
+			if ((c == '.' || c == '!' || c == '?' || c == '\n') && !sent.isEmpty()) {
+				result.add(sent);
+				sent = Lists.newArrayList();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return words of the text as defined in {@link #sentences(String)}
+	 */
+	public static List<String> words(String text) {
+		List<String> result = Lists.newArrayList();
+		for (List<String> sent : sentences(text)) {
+			result.addAll(sent);
+		}
+		return result;
+	}
+
+	private BenchmarkCorpus() {
+	}
+}
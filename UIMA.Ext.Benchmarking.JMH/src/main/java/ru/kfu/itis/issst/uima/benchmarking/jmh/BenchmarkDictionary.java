@@ -0,0 +1,66 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.xml.sax.SAXException;
+
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.DummyWordformPredictor;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MorphDictionaryImpl;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.XmlDictionaryParser;
+
+/**
+ * Provides a morphological dictionary for benchmarks. It is either parsed from
+ * a given OpenCorpora XML file or from the bundled sample. The sample has a
+ * few dozen lemmas, so most of lookups of corpus words miss it. Use the full
+ * OpenCorpora dictionary to get representative numbers.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class BenchmarkDictionary {
+
+	/**
+	 * Benchmark parameter name. Its value is a path to an OpenCorpora XML
+	 * dictionary. The bundled sample is used if the value is empty.
+	 */
+	public static final String PARAM_DICTIONARY_XML_FILE = "dictionaryXmlFile";
+
+	private static final String SAMPLE_RESOURCE = "dict-sample.xml";
+
+	/**
+	 * @param dictXmlFilePath
+	 *            path to an OpenCorpora XML dictionary, may be empty
+	 * @return dictionary with {@link DummyWordformPredictor}
+	 */
+	public static MorphDictionaryImpl load(String dictXmlFilePath)
+			throws IOException, SAXException {
+		InputStream in;
+		if (dictXmlFilePath != null && !dictXmlFilePath.isEmpty()) {
+			in = FileUtils.openInputStream(new File(dictXmlFilePath));
+		} else {
+			in = BenchmarkDictionary.class.getResourceAsStream(SAMPLE_RESOURCE);
+			if (in == null) {
+				throw new IllegalStateException(String.format(
+						"Can't find the dictionary sample %s in classpath", SAMPLE_RESOURCE));
+			}
+		}
+		try {
+			MorphDictionaryImpl dict = XmlDictionaryParser.parse(new BufferedInputStream(in));
+			dict.setWfPredictor(new DummyWordformPredictor(dict));
+			return dict;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private BenchmarkDictionary() {
+	}
+}
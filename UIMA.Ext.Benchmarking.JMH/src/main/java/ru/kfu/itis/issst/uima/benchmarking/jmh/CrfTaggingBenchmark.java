@@ -0,0 +1,189 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.cleartk.ml.Feature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kfu.itis.issst.cleartk.StringEncoder;
+import ru.kfu.itis.issst.cleartk.crfsuite.CRFSuiteJavaStringOutcomeClassifier;
+import ru.kfu.itis.issst.cleartk.crfsuite.CrfSuiteModel;
+import ru.kfu.itis.issst.cleartk.crfsuite.CrfSuiteModelWriter;
+import ru.kfu.itis.issst.cleartk.crfsuite.NameNumberFeaturesEncoder2;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Measures CRF tagging of corpus sentences. Each word is described by its
+ * lower-cased form and its suffix. If a model file is not given, a model with
+ * random weights over these attributes is generated. An invocation tags all
+ * sentences, a result is a checksum of the labels.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CrfTaggingBenchmark {
+
+	private static final String WORD_FEATURE = "w";
+	private static final String SUFFIX_FEATURE = "sfx";
+	private static final int SUFFIX_LENGTH = 3;
+
+	@Param("")
+	public String corpusFile;
+
+	@Param("200000")
+	public int minCorpusLength;
+
+	/**
+	 * A CRFsuite model file with attributes named as
+	 * {@link NameNumberFeaturesEncoder2} does for {@value #WORD_FEATURE} and
+	 * {@value #SUFFIX_FEATURE} features. A synthetic model is used if the
+	 * value is empty.
+	 */
+	@Param("")
+	public String modelFile;
+
+	/**
+	 * The number of labels of a synthetic model.
+	 */
+	@Param("40")
+	public int labelsNum;
+
+	private List<List<List<Feature>>> sentFeatures;
+	private List<int[][]> sentItems;
+	private CrfSuiteModel model;
+	private CRFSuiteJavaStringOutcomeClassifier classifier;
+
+	@Setup
+	public void setup() throws Exception {
+		List<List<String>> sentences = BenchmarkCorpus.sentences(
+				BenchmarkCorpus.load(corpusFile, minCorpusLength));
+		sentFeatures = Lists.newArrayListWithExpectedSize(sentences.size());
+		for (List<String> sent : sentences) {
+			List<List<Feature>> seq = Lists.newArrayListWithExpectedSize(sent.size());
+			for (String w : sent) {
+				String lw = w.toLowerCase();
+				seq.add(Lists.newArrayList(
+						new Feature(WORD_FEATURE, lw),
+						new Feature(SUFFIX_FEATURE,
+								lw.substring(Math.max(0, lw.length() - SUFFIX_LENGTH)))));
+			}
+			sentFeatures.add(seq);
+		}
+		NameNumberFeaturesEncoder2 encoder = new NameNumberFeaturesEncoder2(null);
+		encoder.addEncoder(new StringEncoder());
+		if (modelFile.isEmpty()) {
+			model = createSyntheticModel(encoder);
+		} else {
+			model = CrfSuiteModel.read(new File(modelFile));
+		}
+		classifier = new CRFSuiteJavaStringOutcomeClassifier(model, encoder, null);
+		sentItems = Lists.newArrayListWithExpectedSize(sentFeatures.size());
+		for (List<List<Feature>> seq : sentFeatures) {
+			int[][] items = new int[seq.size()][];
+			for (int t = 0; t < items.length; t++) {
+				List<Feature> itemFeatures = seq.get(t);
+				items[t] = new int[itemFeatures.size()];
+				for (int i = 0; i < items[t].length; i++) {
+					items[t][i] = model.getAttributeId(
+							encoder.encodeAll(itemFeatures.subList(i, i + 1)).get(0).name);
+				}
+			}
+			sentItems.add(items);
+		}
+	}
+
+	/**
+	 * Viterbi decoding of already encoded sentences.
+	 */
+	@Benchmark
+	public int tag() {
+		int result = 0;
+		for (int[][] items : sentItems) {
+			for (int label : model.tag(items)) {
+				result += label;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Feature encoding, attribute lookup and decoding.
+	 */
+	@Benchmark
+	public int classify() throws Exception {
+		int result = 0;
+		for (List<List<Feature>> seq : sentFeatures) {
+			for (String label : classifier.classify(seq)) {
+				result += label.length();
+			}
+		}
+		return result;
+	}
+
+	private CrfSuiteModel createSyntheticModel(NameNumberFeaturesEncoder2 encoder)
+			throws Exception {
+		Map<String, Integer> attrIds = Maps.newLinkedHashMap();
+		for (List<List<Feature>> seq : sentFeatures) {
+			for (List<Feature> itemFeatures : seq) {
+				for (Feature f : itemFeatures) {
+					String attr = encoder.encodeAll(Lists.newArrayList(f)).get(0).name;
+					if (!attrIds.containsKey(attr)) {
+						attrIds.put(attr, attrIds.size());
+					}
+				}
+			}
+		}
+		String[] labels = new String[labelsNum];
+		for (int l = 0; l < labelsNum; l++) {
+			labels[l] = "L" + l;
+		}
+		Random rnd = new Random(42);
+		// each attribute has non-zero weights for a few labels as in trained models
+		double[][] state = new double[attrIds.size()][labelsNum];
+		for (double[] attrWeights : state) {
+			for (int i = 0; i < 3; i++) {
+				attrWeights[rnd.nextInt(labelsNum)] = rnd.nextGaussian();
+			}
+		}
+		double[][] trans = new double[labelsNum][labelsNum];
+		for (double[] fromWeights : trans) {
+			for (int l = 0; l < labelsNum; l++) {
+				fromWeights[l] = rnd.nextGaussian();
+			}
+		}
+		File tempModelFile = File.createTempFile("benchmark-crf", ".model");
+		try {
+			FileUtils.writeByteArrayToFile(tempModelFile, CrfSuiteModelWriter.write(labels,
+					attrIds.keySet().toArray(new String[attrIds.size()]), state, trans));
+			return CrfSuiteModel.read(tempModelFile);
+		} finally {
+			FileUtils.deleteQuietly(tempModelFile);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.CachingMorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.DummyWordformPredictor;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MappedDictionaryWriter;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MappedMorphDictionary;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MorphDictionaryImpl;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Looks up each word of the corpus in the heap-based, memory-mapped and caching
+ * dictionaries. An invocation looks up all words, a result is the number of
+ * found entries.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DictionaryLookupBenchmark {
+
+	@Param("")
+	public String corpusFile;
+
+	@Param("1000000")
+	public int minCorpusLength;
+
+	@Param("")
+	public String dictionaryXmlFile;
+
+	@Param("100000")
+	public int cacheSize;
+
+	private List<String> words;
+	private List<String> normalizedWords;
+	private MorphDictionaryImpl dict;
+	private File mappedDictFile;
+	private MappedMorphDictionary mappedDict;
+	private CachingMorphDictionary cachingDict;
+	private WordformBuffer buffer;
+
+	@Setup
+	public void setup() throws Exception {
+		words = BenchmarkCorpus.words(BenchmarkCorpus.load(corpusFile, minCorpusLength));
+		normalizedWords = Lists.newArrayListWithExpectedSize(words.size());
+		for (String w : words) {
+			normalizedWords.add(WordUtils.normalizeToDictionaryForm(w));
+		}
+		dict = BenchmarkDictionary.load(dictionaryXmlFile);
+		mappedDictFile = File.createTempFile("benchmark-dict", ".mapped");
+		new MappedDictionaryWriter(dict).write(mappedDictFile);
+		mappedDict = MappedMorphDictionary.from(mappedDictFile);
+		mappedDict.setWfPredictor(new DummyWordformPredictor(mappedDict));
+		cachingDict = new CachingMorphDictionary(mappedDict, cacheSize);
+		buffer = new WordformBuffer();
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileUtils.deleteQuietly(mappedDictFile);
+	}
+
+	@Benchmark
+	public int heapDictionaryEntries() {
+		int result = 0;
+		for (String w : normalizedWords) {
+			result += dict.getEntries(w).size();
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int heapDictionaryBuffer() {
+		int result = 0;
+		for (String w : normalizedWords) {
+			dict.getEntries(w, buffer);
+			result += buffer.size();
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int mappedDictionaryBuffer() {
+		int result = 0;
+		for (String w : normalizedWords) {
+			mappedDict.getEntries(w, buffer);
+			result += buffer.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Takes original words as the cache key is a token.
+	 */
+	@Benchmark
+	public int cachingDictionaryLookup() {
+		int result = 0;
+		for (String w : words) {
+			cachingDict.lookupToken(w, buffer);
+			result += buffer.size();
+		}
+		return result;
+	}
+}
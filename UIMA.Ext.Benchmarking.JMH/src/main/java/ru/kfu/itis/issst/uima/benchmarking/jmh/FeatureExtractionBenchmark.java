@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kfu.itis.issst.uima.ml.DictionaryPossibleTagFeatureExtractor;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Measures {@link DictionaryPossibleTagFeatureExtractor} that is invoked for
+ * each word and each tier by the tiered POS-tagger. An invocation extracts
+ * features of all words of the corpus, a result is the number of features.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FeatureExtractionBenchmark {
+
+	@Param("")
+	public String corpusFile;
+
+	@Param("1000000")
+	public int minCorpusLength;
+
+	@Param("")
+	public String dictionaryXmlFile;
+
+	/**
+	 * Comma-separated target tag categories, i.e., categories of a tier.
+	 */
+	@Param({ "POST", "NMbr,CAse" })
+	public String tagCategories;
+
+	private List<String> words;
+	private DictionaryPossibleTagFeatureExtractor featureExtractor;
+	private final Collection<String> tokenGrams = Collections.emptySet();
+
+	@Setup
+	public void setup() throws Exception {
+		words = BenchmarkCorpus.words(BenchmarkCorpus.load(corpusFile, minCorpusLength));
+		featureExtractor = new DictionaryPossibleTagFeatureExtractor(
+				Splitter.on(',').split(tagCategories), null,
+				BenchmarkDictionary.load(dictionaryXmlFile));
+	}
+
+	@Benchmark
+	public int extractPossibleTags() throws Exception {
+		int result = 0;
+		for (String w : words) {
+			result += featureExtractor.extract(w, tokenGrams).size();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import opennlp.maxent.GIS;
+import opennlp.model.Event;
+import opennlp.model.ListEventStream;
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.BeamSearch;
+import opennlp.tools.util.Sequence;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCreationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.cll.uima.tokenizer.fstype.NUM;
+import ru.kfu.cll.uima.tokenizer.fstype.Token;
+import ru.kfu.cll.uima.tokenizer.fstype.W;
+import ru.kfu.itis.issst.uima.morph.commons.PunctuationUtils;
+import ru.kfu.itis.issst.uima.postagger.opennlp.DefaultFeatureExtractors;
+import ru.kfu.itis.issst.uima.postagger.opennlp.FeatureExtractorsBasedContextGenerator;
+import ru.kfu.itis.issst.uima.postagger.opennlp.POSTokenEventStream;
+import ru.kfu.itis.issst.uima.postagger.opennlp.PosBeamSearch;
+import ru.kfu.itis.issst.uima.postagger.opennlp.PunctuationTokenSequenceValidator;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Compares the generic OpenNLP {@link BeamSearch} with {@link PosBeamSearch}
+ * on sentences of a tokenized corpus. Both decoders use the same context
+ * generator with the default feature extractors and a MaxEnt model trained in
+ * the setup on the first {@link #trainSentences} sentences. Training tags are
+ * synthetic: a word gets one of a few tags chosen by its suffix. An invocation
+ * tags all sentences, a result is a checksum of the tags.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OpenNLPPosTaggingBenchmark {
+
+	private static final String[] WORD_TAGS = {
+			"NOUN&masc&sing&nomn", "NOUN&femn&sing&nomn", "NOUN&neut&plur&gent",
+			"ADJF&masc&sing&nomn", "ADJF&femn&sing&accs", "VERB&masc&sing",
+			"VERB&plur", "INFN", "ADVB", "PREP", "CONJ", "PRCL" };
+	private static final String NUM_TAG = "NUMR";
+	private static final int SUFFIX_LENGTH = 2;
+
+	@Param("")
+	public String corpusFile;
+
+	@Param("200000")
+	public int minCorpusLength;
+
+	@Param("")
+	public String dictionaryXmlFile;
+
+	@Param("1000")
+	public int trainSentences;
+
+	@Param({ "1", "3", "5" })
+	public int beamSize;
+
+	private List<Token[]> sentTokens;
+	private List<Object[]> sentContexts;
+	private BeamSearch<Token> beam;
+	private PosBeamSearch posBeam;
+
+	@Setup
+	public void setup() throws Exception {
+		String text = BenchmarkCorpus.load(corpusFile, minCorpusLength);
+		AnalysisEngine segmenter = createEngine(createEngineDescription(
+				TokenizerAPI.getAEDescription(), SentenceSplitterAPI.getAEDescription()));
+		CAS cas = CasCreationUtils.createCas(segmenter.getAnalysisEngineMetaData());
+		// make the CAS produce JCas cover classes before the tokens are created
+		JCas jCas = cas.getJCas();
+		cas.setDocumentText(text);
+		segmenter.process(cas);
+		segmenter.destroy();
+		sentTokens = Lists.newArrayList();
+		sentContexts = Lists.newArrayList();
+		for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+			List<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
+			sentTokens.add(tokens.toArray(new Token[tokens.size()]));
+			sentContexts.add(new Object[] { sent });
+		}
+		FeatureExtractorsBasedContextGenerator cg = new DefaultFeatureExtractors(2, 2, 2,
+				Arrays.asList("POST", "NMbr", "GNdr", "CAse"),
+				BenchmarkDictionary.load(dictionaryXmlFile));
+		List<Event> events = Lists.newArrayList();
+		for (int s = 0; s < Math.min(trainSentences, sentTokens.size()); s++) {
+			Token[] tokens = sentTokens.get(s);
+			String[] tags = new String[tokens.length];
+			for (int i = 0; i < tokens.length; i++) {
+				tags[i] = syntheticTag(tokens[i]);
+			}
+			events.addAll(Arrays.asList(POSTokenEventStream.generateEvents(
+					(Sentence) sentContexts.get(s)[0], tokens, tags, cg)));
+		}
+		MaxentModel model = GIS.trainModel(new ListEventStream(events), 20, 1);
+		PunctuationTokenSequenceValidator validator = new PunctuationTokenSequenceValidator();
+		beam = new BeamSearch<Token>(beamSize, cg, model, validator, 0);
+		posBeam = new PosBeamSearch(beamSize, cg, model, validator);
+	}
+
+	@Benchmark
+	public int beamSearch() {
+		int result = 0;
+		for (int s = 0; s < sentTokens.size(); s++) {
+			Sequence seq = beam.bestSequence(sentTokens.get(s), sentContexts.get(s));
+			if (seq != null) {
+				for (String tag : seq.getOutcomes()) {
+					result += tag.length();
+				}
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int posBeamSearch() {
+		int result = 0;
+		for (int s = 0; s < sentTokens.size(); s++) {
+			String[] tags = posBeam.bestSequence(sentTokens.get(s), sentContexts.get(s));
+			if (tags != null) {
+				for (String tag : tags) {
+					result += tag.length();
+				}
+			}
+		}
+		return result;
+	}
+
+	private static String syntheticTag(Token token) {
+		if (token instanceof W) {
+			String lw = token.getCoveredText().toLowerCase();
+			String suffix = lw.substring(Math.max(0, lw.length() - SUFFIX_LENGTH));
+			return WORD_TAGS[(suffix.hashCode() & Integer.MAX_VALUE) % WORD_TAGS.length];
+		} else if (token instanceof NUM) {
+			return NUM_TAG;
+		} else {
+			return PunctuationUtils.getPunctuationTag(token.getCoveredText());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.util.CasCreationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.itis.issst.uima.segmentation.ArrayBasedSentenceSplitter;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitter;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+/**
+ * Compares throughput of {@link SentenceSplitter} and
+ * {@link ArrayBasedSentenceSplitter}. The text is tokenized once, sentences
+ * are removed from the CAS before each invocation.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SentenceSplitterBenchmark {
+
+	@Param("")
+	public String corpusFile;
+
+	@Param("1000000")
+	public int minCorpusLength;
+
+	private AnalysisEngine sentenceSplitter;
+	private AnalysisEngine arrayBasedSentenceSplitter;
+	private CAS cas;
+	private Type sentenceType;
+
+	@Setup
+	public void setup() throws Exception {
+		String text = BenchmarkCorpus.load(corpusFile, minCorpusLength);
+		AnalysisEngine tokenizer = createEngine(createEngineDescription(
+				TokenizerAPI.getAEDescription()));
+		sentenceSplitter = createEngine(SentenceSplitter.createDescription());
+		arrayBasedSentenceSplitter = createEngine(ArrayBasedSentenceSplitter.createDescription());
+		cas = CasCreationUtils.createCas(createEngineDescription(
+				TokenizerAPI.getAEDescription(), SentenceSplitterAPI.getAEDescription()));
+		// make the CAS produce JCas cover classes before the tokens are created
+		cas.getJCas();
+		cas.setDocumentText(text);
+		tokenizer.process(cas);
+		tokenizer.destroy();
+		sentenceType = cas.getTypeSystem().getType(Sentence.class.getName());
+	}
+
+	@Setup(Level.Invocation)
+	public void removeSentences() {
+		cas.getIndexRepository().removeAllIncludingSubtypes(sentenceType);
+	}
+
+	@TearDown
+	public void tearDown() {
+		sentenceSplitter.destroy();
+		arrayBasedSentenceSplitter.destroy();
+	}
+
+	@Benchmark
+	public CAS sentenceSplitter() throws Exception {
+		sentenceSplitter.process(cas);
+		return cas;
+	}
+
+	@Benchmark
+	public CAS arrayBasedSentenceSplitter() throws Exception {
+		arrayBasedSentenceSplitter.process(cas);
+		return cas;
+	}
+}
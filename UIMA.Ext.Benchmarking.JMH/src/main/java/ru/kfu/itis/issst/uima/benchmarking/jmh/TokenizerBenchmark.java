@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.benchmarking.jmh;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.util.CasCreationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kfu.itis.issst.uima.tokenizer.InitialTokenizer;
+import ru.kfu.itis.issst.uima.tokenizer.TableDrivenInitialTokenizer;
+
+/**
+ * Compares {@link InitialTokenizer} and {@link TableDrivenInitialTokenizer} on
+ * the same text. Each invocation tokenizes the whole text in a fresh CAS.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TokenizerBenchmark {
+
+	@Param("")
+	public String corpusFile;
+
+	@Param("1000000")
+	public int minCorpusLength;
+
+	private String text;
+	private AnalysisEngine initialTokenizer;
+	private AnalysisEngine tableDrivenTokenizer;
+	private CAS cas;
+
+	@Setup
+	public void setup() throws Exception {
+		text = BenchmarkCorpus.load(corpusFile, minCorpusLength);
+		initialTokenizer = createEngine(InitialTokenizer.createDescription());
+		tableDrivenTokenizer = createEngine(TableDrivenInitialTokenizer.createDescription());
+		cas = CasCreationUtils.createCas(initialTokenizer.getAnalysisEngineMetaData());
+	}
+
+	@TearDown
+	public void tearDown() {
+		initialTokenizer.destroy();
+		tableDrivenTokenizer.destroy();
+	}
+
+	@Benchmark
+	public CAS initialTokenizer() throws Exception {
+		return tokenize(initialTokenizer);
+	}
+
+	@Benchmark
+	public CAS tableDrivenInitialTokenizer() throws Exception {
+		return tokenize(tableDrivenTokenizer);
+	}
+
+	private CAS tokenize(AnalysisEngine tokenizer) throws Exception {
+		cas.reset();
+		cas.setDocumentText(text);
+		tokenizer.process(cas);
+		return cas;
+	}
+}
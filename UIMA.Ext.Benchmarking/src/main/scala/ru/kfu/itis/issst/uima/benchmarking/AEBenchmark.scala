@@ -8,6 +8,8 @@ import org.apache.uima.analysis_engine.AnalysisEngineDescription
 import org.apache.uima.collection.CollectionReaderDescription
 import scopt.OptionParser
 import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.Locale
 import org.apache.uima.fit.factory.ResourceCreationSpecifierFactory
 import com.typesafe.config.ConfigFactory
 import ru.kfu.itis.cll.uima.cpe.StatusCallbackListenerAdapter
@@ -16,6 +18,7 @@ import org.apache.uima.collection.EntityProcessStatus
 import com.typesafe.scalalogging.StrictLogging
 import org.apache.uima.util.ProcessTrace
 import scala.collection.JavaConversions._
+import scala.collection.mutable
 import org.apache.uima.util.ProcessTraceEvent
 import ru.kfu.itis.cll.uima.util.DocumentUtils
 import com.github.tototoshi.csv.CSVWriter
@@ -27,52 +30,116 @@ import scala.concurrent.{ promise, Await }
 import scala.concurrent.duration.Duration
 
 /**
+ * Runs a collection through an analysis engine in a CPE with the given number
+ * of processing threads. The collection is processed `warmupRuns` times
+ * before the measured run, and only the measured run is recorded.
+ *
+ * Per-document analyzer timings are written into the output CSV as before.
+ * Besides, a summary CSV is written with a row per analyzer and a
+ * [[AEBenchmark.PipelineRowName]] row for the whole run. Analyzer rows contain
+ * throughput relative to the analyzer time and latency percentiles. The
+ * pipeline row contains wall-clock throughput, allocation rate of processing
+ * threads (if the JVM can measure it) and GC activity. Summaries of different
+ * builds can be compared row by row.
+ *
  * @author Rinat Gareev (Kazan Federal University)
  *
  */
 class AEBenchmark(args: ArgConfig) extends StrictLogging {
-  private val cpeRunPromise = promise[Boolean]
-  private val outLock = new AnyRef()
-  private val csvWriter = CSVWriter.open(args.outputFile)
-  writeHeader()
 
   def run() {
+    for (i <- 1 to args.warmupRuns) {
+      logger.info(s"Warmup run $i of ${args.warmupRuns}...")
+      runCpe(new BenchmarkListener(None))
+    }
+    logger.info(s"Measured run with ${args.threads} processing thread(s)...")
+    val csvWriter = CSVWriter.open(args.outputFile)
+    val recorder = new Recorder(csvWriter)
+    val listener = new BenchmarkListener(Some(recorder))
+    val completed = try {
+      recorder.writeHeader()
+      runCpe(listener)
+    } finally {
+      csvWriter.close()
+    }
+    if (completed) {
+      val summaryFile = args.summaryFile.getOrElse(defaultSummaryFile(args.outputFile))
+      writeSummary(summaryFile, recorder.summarize(args.threads, listener.wallTimeMs, listener.gcDelta))
+      logger.info(s"Summary is written into $summaryFile")
+    } else {
+      logger.error("Processing was aborted, summary is not written")
+    }
+  }
+
+  /**
+   * @return true if the collection has been processed completely
+   */
+  private def runCpe(listener: BenchmarkListener): Boolean = {
     val cpeBuilder = new CpeBuilder()
-    cpeBuilder.setMaxProcessingUnitThreatCount(1)
+    cpeBuilder.setMaxProcessingUnitThreatCount(args.threads)
     cpeBuilder.setReader(args.dataDesc)
     cpeBuilder.addAnalysisEngine(args.aeDesc)
     val cpe = cpeBuilder.createCpe()
     // listeners
-    cpe.addStatusCallbackListener(recordingStatusCallbackListener)
+    cpe.addStatusCallbackListener(listener)
     // run
+    listener.onStart()
     cpe.process()
     //
-    Await.ready(cpeRunPromise.future, Duration.Inf)
+    Await.result(listener.completion.future, Duration.Inf)
   }
 
-  private val recordingStatusCallbackListener = new StatusCallbackListenerAdapter {
+  private class BenchmarkListener(recorder: Option[Recorder]) extends StatusCallbackListenerAdapter {
+    val completion = promise[Boolean]
+    @volatile private var startNanos = 0L
+    @volatile private var gcBefore = GcStats(0, 0)
+    @volatile var wallTimeMs = 0L
+    @volatile var gcDelta = GcStats(0, 0)
+
+    def onStart() {
+      gcBefore = GcStats.current()
+      startNanos = System.nanoTime()
+    }
+
     override def entityProcessComplete(cas: CAS, epStatus: EntityProcessStatus) {
       if (epStatus.isException())
         logger.error("AE processing exception(s) is detected:\n{}", epStatus.getExceptions())
       else if (epStatus.isEntitySkipped())
         logger.warn("AE skipped a document!")
       else {
-        entityProcessComplete(cas, epStatus.getProcessTrace())
+        recorder.foreach(_.entityProcessComplete(cas, epStatus.getProcessTrace()))
       }
     }
 
     override def collectionProcessComplete() {
-      csvWriter.close()
-      logger.info("Finished.")
-      cpeRunPromise.success(true)
+      wallTimeMs = (System.nanoTime() - startNanos) / 1000000
+      gcDelta = GcStats.current() - gcBefore
+      logger.info(s"Finished in $wallTimeMs ms.")
+      completion.success(true)
     }
 
     override def aborted() {
       logger.info("Aborted.")
-      cpeRunPromise.success(false)
+      completion.trySuccess(false)
     }
+  }
+
+  /**
+   * Writes per-document records and accumulates statistics. Callbacks come
+   * from processing threads, so access is synchronized.
+   */
+  private class Recorder(csvWriter: CSVWriter) {
+    private val outLock = new AnyRef()
+    private val analyzerStats = mutable.LinkedHashMap.empty[String, AnalyzerStats]
+    private var docs = 0
+    private var chars = 0L
+    // allocation is measured between two consecutive documents of a thread
+    private val lastAllocatedBytes = mutable.Map.empty[Long, Long]
+    private var allocatedBytes = 0L
+    private var allocationMeasuredDocs = 0
 
-    private def entityProcessComplete(cas: CAS, trace: ProcessTrace) {
+    def entityProcessComplete(cas: CAS, trace: ProcessTrace) {
+      val threadAllocatedBytes = AllocationMeter.currentThreadAllocatedBytes()
       def processEvent(ev: ProcessTraceEvent) {
         logger.debug("ProcessTraceEvent with type {}", ev.getType())
         ev.getSubEvents().foreach(processEvent)
@@ -84,26 +151,80 @@ class AEBenchmark(args: ArgConfig) extends StrictLogging {
           case _ =>
         }
       }
-      trace.getEvents().foreach(processEvent)
+      outLock.synchronized {
+        trace.getEvents().foreach(processEvent)
+        docs += 1
+        chars += cas.getDocumentText().length()
+        threadAllocatedBytes.foreach { allocated =>
+          val threadId = Thread.currentThread().getId()
+          lastAllocatedBytes.get(threadId).foreach { prev =>
+            allocatedBytes += allocated - prev
+            allocationMeasuredDocs += 1
+          }
+          lastAllocatedBytes(threadId) = allocated
+        }
+      }
     }
 
     private def writeEvent(cas: CAS, pte: ProcessTraceEvent) {
-      write(AnalysisRecord(
+      val rec = AnalysisRecord(
         docURI = DocumentUtils.getDocumentUri(cas),
         docSize = cas.getDocumentText().length(),
         analyzerName = pte.getComponentName(),
         durationMS = pte.getDuration(),
-        casSizeKb = cas.size()))
+        casSizeKb = cas.size())
+      import rec._
+      csvWriter.writeRow(List(docURI, docSize, analyzerName, durationMS, casSizeKb))
+      analyzerStats.getOrElseUpdate(analyzerName, new AnalyzerStats).add(docSize, durationMS)
+    }
+
+    def writeHeader() = outLock.synchronized {
+      csvWriter.writeRow(List("DocURI", "DocSize", "Analyzer", "DurationMs", "CasSizeKb"))
     }
-  }
 
-  private def write(rec: AnalysisRecord) = outLock.synchronized {
-    import rec._
-    csvWriter.writeRow(List(docURI, docSize, analyzerName, durationMS, casSizeKb))
+    def summarize(threads: Int, wallTimeMs: Long, gc: GcStats): Seq[SummaryRecord] = outLock.synchronized {
+      val analyzerRecords = for ((name, stats) <- analyzerStats.toSeq)
+        yield stats.toRecord(name, threads)
+      val allocKbPerDoc =
+        if (allocationMeasuredDocs > 0) Some(allocatedBytes / 1024.0 / allocationMeasuredDocs)
+        else None
+      val pipelineRecord = SummaryRecord(
+        analyzer = PipelineRowName, threads = threads,
+        docs = docs, chars = chars, timeMs = wallTimeMs,
+        latencies = IndexedSeq.empty,
+        allocKbPerDoc = allocKbPerDoc,
+        // scale the measured allocation to all documents
+        allocMbPerSec = allocKbPerDoc.map(kb => perSecond(kb * docs / 1024, wallTimeMs)),
+        gcCount = Some(gc.count), gcTimeMs = Some(gc.timeMs))
+      analyzerRecords :+ pipelineRecord
+    }
   }
 
-  private def writeHeader() = outLock.synchronized {
-    csvWriter.writeRow(List("DocURI", "DocSize", "Analyzer", "DurationMs", "CasSizeKb"))
+  private def writeSummary(summaryFile: File, records: Seq[SummaryRecord]) {
+    val writer = CSVWriter.open(summaryFile)
+    try {
+      writer.writeRow(List("Analyzer", "Threads", "Docs", "Chars", "TimeMs",
+        "DocsPerSec", "KCharsPerSec", "LatencyP50Ms", "LatencyP90Ms", "LatencyP99Ms", "LatencyMaxMs",
+        "AllocKbPerDoc", "AllocMbPerSec", "GcCount", "GcTimeMs"))
+      for (rec <- records) {
+        import rec._
+        val sortedLatencies = latencies.sorted
+        def latencyCol(p: Double) =
+          if (sortedLatencies.isEmpty) "" else percentile(sortedLatencies, p).toString
+        writer.writeRow(List(analyzer, threads, docs, chars, timeMs,
+          format(perSecond(docs, timeMs)), format(perSecond(chars / 1000.0, timeMs)),
+          latencyCol(50), latencyCol(90), latencyCol(99), latencyCol(100),
+          allocKbPerDoc.map(format).getOrElse(""), allocMbPerSec.map(format).getOrElse(""),
+          gcCount.getOrElse(""), gcTimeMs.getOrElse("")))
+        logger.info(s"$analyzer: $docs docs in $timeMs ms, ${format(perSecond(docs, timeMs))} docs/s" +
+          (if (sortedLatencies.isEmpty) ""
+          else s", latency p50/p90/p99/max ${latencyCol(50)}/${latencyCol(90)}/${latencyCol(99)}/${latencyCol(100)} ms") +
+          allocMbPerSec.map(r => s", allocation ${format(r)} MB/s").getOrElse("") +
+          gcCount.map(c => s", $c GCs in ${gcTimeMs.getOrElse(0L)} ms").getOrElse(""))
+      }
+    } finally {
+      writer.close()
+    }
   }
 }
 
@@ -111,14 +232,74 @@ private[benchmarking] case class AnalysisRecord(
   docURI: String, docSize: Int,
   analyzerName: String, durationMS: Int, casSizeKb: Int)
 
+/**
+ * Summary of an analyzer or of the whole pipeline. `timeMs` is the total
+ * analyzer time for an analyzer and the wall-clock time for the pipeline.
+ */
+private[benchmarking] case class SummaryRecord(
+  analyzer: String, threads: Int,
+  docs: Int, chars: Long, timeMs: Long,
+  latencies: IndexedSeq[Int],
+  allocKbPerDoc: Option[Double], allocMbPerSec: Option[Double],
+  gcCount: Option[Long], gcTimeMs: Option[Long])
+
+private[benchmarking] class AnalyzerStats {
+  private val durations = mutable.ArrayBuffer.empty[Int]
+  private var chars = 0L
+
+  def add(docSize: Int, durationMs: Int) {
+    durations += durationMs
+    chars += docSize
+  }
+
+  def toRecord(name: String, threads: Int) = SummaryRecord(
+    analyzer = name, threads = threads,
+    docs = durations.size, chars = chars, timeMs = durations.map(_.toLong).sum,
+    latencies = durations.toIndexedSeq,
+    allocKbPerDoc = None, allocMbPerSec = None, gcCount = None, gcTimeMs = None)
+}
+
+private[benchmarking] case class GcStats(count: Long, timeMs: Long) {
+  def -(other: GcStats) = GcStats(count - other.count, timeMs - other.timeMs)
+}
+
+private[benchmarking] object GcStats {
+  def current(): GcStats = ManagementFactory.getGarbageCollectorMXBeans().foldLeft(GcStats(0, 0)) {
+    // -1 means that a value is undefined
+    (acc, gc) => GcStats(acc.count + math.max(0, gc.getCollectionCount()),
+      acc.timeMs + math.max(0, gc.getCollectionTime()))
+  }
+}
+
+private[benchmarking] object AllocationMeter {
+  private val threadBean = ManagementFactory.getThreadMXBean() match {
+    case bean: com.sun.management.ThreadMXBean if bean.isThreadAllocatedMemorySupported() =>
+      bean.setThreadAllocatedMemoryEnabled(true)
+      Some(bean)
+    case _ => None
+  }
+
+  /**
+   * @return bytes allocated by the current thread since its start, or None if
+   * the JVM does not support it
+   */
+  def currentThreadAllocatedBytes(): Option[Long] =
+    threadBean.map(_.getThreadAllocatedBytes(Thread.currentThread().getId()))
+}
+
 object AEBenchmark {
 
   case class ArgConfig(aeDesc: AnalysisEngineDescription = null,
     dataDesc: CollectionReaderDescription = null,
-    outputFile: File = null)
+    outputFile: File = null,
+    threads: Int = 1,
+    warmupRuns: Int = 0,
+    summaryFile: Option[File] = None)
 
   private val RootAEName = "RootAE";
 
+  val PipelineRowName = "<pipeline>"
+
   private val cmdParser = new OptionParser[ArgConfig]("Analysis Engine Benchmark") {
     opt[File]("ae-path") valueName ("<analysis-engine-desc-xml>") validate (validateFileExistence) action {
       (descFile, cfg) => cfg.copy(aeDesc = createAEDesc(Right(descFile)))
@@ -132,6 +313,17 @@ object AEBenchmark {
     opt[File]('o', "out") required () valueName ("<output-file>") action {
       (outFile, cfg) => cfg.copy(outputFile = outFile)
     }
+    opt[Int]("threads") valueName ("<number>") validate (validatePositive("threads")) action {
+      (threads, cfg) => cfg.copy(threads = threads)
+    } text ("number of CPE processing threads, 1 by default")
+    opt[Int]("warmup-runs") valueName ("<number>") validate { n =>
+      if (n >= 0) Right() else Left("warmup-runs must not be negative")
+    } action {
+      (runs, cfg) => cfg.copy(warmupRuns = runs)
+    } text ("number of unrecorded runs over the collection before the measured one, 0 by default")
+    opt[File]("summary") valueName ("<summary-file>") action {
+      (summaryFile, cfg) => cfg.copy(summaryFile = Some(summaryFile))
+    } text ("summary CSV, '<output-file-base-name>-summary.csv' by default")
   }
 
   def main(args: Array[String]) {
@@ -156,7 +348,27 @@ object AEBenchmark {
     ResourceCreationSpecifierFactory.createResourceCreationSpecifier(f.getPath(), null).
       asInstanceOf[CollectionReaderDescription]
 
+  private[benchmarking] def defaultSummaryFile(outputFile: File) = {
+    val baseName = outputFile.getName().replaceFirst("\\.[^.]*$", "")
+    new File(outputFile.getAbsoluteFile().getParentFile(), baseName + "-summary.csv")
+  }
+
+  /**
+   * Nearest-rank percentile.
+   */
+  private[benchmarking] def percentile(sorted: IndexedSeq[Int], p: Double): Int =
+    sorted(math.max(0, math.ceil(p / 100 * sorted.size).toInt - 1))
+
+  private[benchmarking] def perSecond(value: Double, timeMs: Long): Double =
+    if (timeMs > 0) value * 1000 / timeMs else 0
+
+  private def format(value: Double) = "%.2f".formatLocal(Locale.ROOT, value)
+
   def validateFileExistence(f: File): Either[String, Unit] =
     if (f.isFile()) Right()
     else Left(s"$f is not an existing file")
-}
\ No newline at end of file
+
+  def validatePositive(name: String)(n: Int): Either[String, Unit] =
+    if (n > 0) Right()
+    else Left(s"$name must be positive")
+}
@@ -6,6 +6,7 @@ package ru.kfu.itis.issst.uima.benchmarking
 import org.scalatest.FlatSpecLike
 import AEBenchmark._
 import java.io.File
+import com.github.tototoshi.csv.CSVReader
 
 /**
  * @author Rinat Gareev (Kazan Federal University)
@@ -20,4 +21,34 @@ class AEBenchmarkSpec extends FlatSpecLike {
       "-o", "target/ae-benchmark-test-output.csv"))
   }
 
-}
\ No newline at end of file
+  it should "write summary of a multi-threaded run" in {
+    val outFile = new File("target/ae-benchmark-mt-test-output.csv")
+    val summaryFile = defaultSummaryFile(outFile)
+    summaryFile.delete()
+    AEBenchmark.main(Array(
+      "--ae-name", "ru.kfu.itis.issst.uima.tokenizer.tokenizer-ae",
+      "--data", "test-data/col-reader-desc.xml",
+      "--threads", "2",
+      "--warmup-runs", "1",
+      "-o", outFile.getPath()))
+    val reader = CSVReader.open(summaryFile)
+    val rows = try reader.all() finally reader.close()
+    assert(rows.head.head == "Analyzer")
+    // header, analyzers and the pipeline
+    assert(rows.size >= 3)
+    val pipelineRow = rows.last
+    assert(pipelineRow.head == PipelineRowName)
+    assert(pipelineRow(1) == "2")
+    // both test documents
+    assert(pipelineRow(2) == "2")
+  }
+
+  "percentile" should "use the nearest rank" in {
+    val values = (1 to 100).toIndexedSeq
+    assert(percentile(values, 50) == 50)
+    assert(percentile(values, 99) == 99)
+    assert(percentile(values, 100) == 100)
+    assert(percentile(IndexedSeq(7), 90) == 7)
+  }
+
+}
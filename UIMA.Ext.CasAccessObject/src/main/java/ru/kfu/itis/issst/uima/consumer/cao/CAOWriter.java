@@ -195,6 +195,12 @@ public class CAOWriter extends CasAnnotator_ImplBase {
 				docURI, timeElapsed, timeTaken / casSuccessfullyProcessed);
 	}
 
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		dao.flush();
+		super.collectionProcessComplete();
+	}
+
 	private Annotation getDocumentMeta(JCas cas) {
 		AnnotationIndex<Annotation> metaIndex = cas
 				.getAnnotationIndex(docMetaType);
@@ -209,10 +215,10 @@ public class CAOWriter extends CasAnnotator_ImplBase {
 
 	private long getPersistedEnclosingSpan(long docId, Annotation anno) {
 		Annotation span = getEnclosingSpan(anno);
-		Long spanId = persistenceContext.getId(span);
+		Long spanId = persistenceContext.getSpanId(span);
 		if (spanId == null) {
 			spanId = dao.persistSpan(docId, span.getCoveredText());
-			persistenceContext.persisted(span, spanId);
+			persistenceContext.spanPersisted(span, spanId);
 		}
 		return spanId;
 	}
@@ -367,6 +373,16 @@ public class CAOWriter extends CasAnnotator_ImplBase {
 
 	private class PersistenceContext {
 		private Map<Annotation, Long> persistedAnnotations = new HashMap<Annotation, Long>();
+		// span annotation can be persisted as annotation too, so keep their ids separately
+		private Map<Annotation, Long> persistedSpans = new HashMap<Annotation, Long>();
+
+		void spanPersisted(Annotation span, long spanId) {
+			persistedSpans.put(span, spanId);
+		}
+
+		Long getSpanId(Annotation span) {
+			return persistedSpans.get(span);
+		}
 
 		void startPersisting(Annotation anno) {
 			// null means that the persisting for given anno will be started immediately after calling this method
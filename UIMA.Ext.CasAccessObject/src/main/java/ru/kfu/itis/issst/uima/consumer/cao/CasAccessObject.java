@@ -30,6 +30,11 @@ public interface CasAccessObject extends SharedResourceObject {
 
 	long persistSpan(long docId, String coveredText);
 
+	/**
+	 * Make sure that all data passed to this object has been stored.
+	 */
+	void flush();
+
 	List<AnnotationDTO> getTopAnnotationsByLaunch(Set<Integer> launchIds,
 			Set<String> topAnnoTypes);
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.consumer.cao.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Collects SPAN, ANNOTATION and FEATURE rows into batches and inserts them by
+ * JDBC batch updates in a background thread. Filled batches are handed over
+ * through a bounded queue, so callers are blocked when the database can not
+ * keep up. Rows of a batch are inserted in the order spans, annotations,
+ * features, and batches are inserted in the order they have been filled. So a
+ * row is never inserted before rows it references, provided that the
+ * referenced rows have been added earlier.
+ * <p>
+ * If the background thread fails, the next invocation of any method of this
+ * class throws {@link IllegalStateException}.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class BatchingJdbcWriter {
+
+	private static final String INSERT_SPAN =
+			"INSERT INTO SPAN (id, doc_id, txt) VALUES (?, ?, ?)";
+	private static final String INSERT_ANNOTATION =
+			"INSERT INTO ANNOTATION (id, anno_type, span_id, txt, start_offset, end_offset) " +
+					"VALUES (?, ?, ?, ?, ?, ?)";
+	private static final String INSERT_FEATURE =
+			"INSERT INTO FEATURE (owner_anno_id, value_anno_id, feature_name) " +
+					"VALUES (?, ?, ?)";
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final JdbcTemplate jdbcTemplate;
+	private final int batchSize;
+	private final BlockingQueue<Batch> queue;
+	private final Thread writerThread;
+	private volatile Throwable failure;
+	private volatile boolean closed;
+	// state
+	private Batch currentBatch = new Batch();
+
+	BatchingJdbcWriter(DataSource ds, int batchSize, int queueCapacity) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Illegal batch size: %s", batchSize));
+		}
+		this.jdbcTemplate = new JdbcTemplate(ds);
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<Batch>(queueCapacity);
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeBatches();
+			}
+		}, "CAO-batch-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	synchronized void addSpan(long id, long docId, String txt) {
+		checkState();
+		currentBatch.spans.add(new Object[] { id, docId, txt });
+		onRowAdded();
+	}
+
+	synchronized void addAnnotation(long id, String type, long spanId, String txt,
+			int startOffset, int endOffset) {
+		checkState();
+		currentBatch.annotations.add(new Object[] {
+				id, type, spanId, txt, startOffset, endOffset });
+		onRowAdded();
+	}
+
+	synchronized void addFeature(long ownerAnnoId, long valueAnnoId, String featureName) {
+		checkState();
+		currentBatch.features.add(new Object[] { ownerAnnoId, valueAnnoId, featureName });
+		onRowAdded();
+	}
+
+	/**
+	 * Hand over the current batch and wait until all batches are inserted.
+	 */
+	void flush() {
+		CountDownLatch latch = new CountDownLatch(1);
+		synchronized (this) {
+			checkState();
+			currentBatch.flushLatch = latch;
+			handOver();
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		checkState();
+	}
+
+	/**
+	 * Flush and stop the background thread.
+	 */
+	void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			writerThread.interrupt();
+		}
+	}
+
+	private void onRowAdded() {
+		if (currentBatch.size() >= batchSize) {
+			handOver();
+		}
+	}
+
+	private void handOver() {
+		try {
+			queue.put(currentBatch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		currentBatch = new Batch();
+	}
+
+	private void checkState() {
+		if (failure != null) {
+			throw new IllegalStateException("Background CAO writer has failed", failure);
+		}
+		if (closed) {
+			throw new IllegalStateException("CAO writer is closed");
+		}
+	}
+
+	private void writeBatches() {
+		while (true) {
+			Batch batch;
+			try {
+				batch = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			// after a failure the rest batches are discarded
+			// but the queue is still drained to release waiting threads
+			if (failure == null) {
+				try {
+					write(batch);
+				} catch (Throwable e) {
+					log.error("Batch insert failed", e);
+					failure = e;
+				}
+			}
+			if (batch.flushLatch != null) {
+				batch.flushLatch.countDown();
+			}
+		}
+	}
+
+	private void write(Batch batch) {
+		if (!batch.spans.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_SPAN, batch.spans);
+		}
+		if (!batch.annotations.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_ANNOTATION, batch.annotations);
+		}
+		if (!batch.features.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_FEATURE, batch.features);
+		}
+	}
+
+	private static class Batch {
+		private final List<Object[]> spans = new ArrayList<Object[]>();
+		private final List<Object[]> annotations = new ArrayList<Object[]>();
+		private final List<Object[]> features = new ArrayList<Object[]>();
+		private CountDownLatch flushLatch;
+
+		int size() {
+			return spans.size() + annotations.size() + features.size();
+		}
+	}
+}
@@ -124,6 +124,11 @@ public class FilePrinterCasAccessObject implements CasAccessObject {
 		return idCounter;
 	}
 
+	@Override
+	public void flush() {
+		printer.flush();
+	}
+
 	@Override
 	public List<AnnotationDTO> getTopAnnotationsByLaunch(Set<Integer> pastLaunchIds,
 			Set<String> topAnnoTypes) {
@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.consumer.cao.impl;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hands out ids of rows of a table from ranges that are reserved in table
+ * {@value #ID_RANGE_TABLE}. So ids of rows are known before the rows are
+ * inserted. A range is reserved in a transaction, so several processes can
+ * allocate ids for the same table. But rows inserted with auto-generated ids
+ * into the same table at the same time may clash with allocated ids.
+ * <p>
+ * The row of a table in {@value #ID_RANGE_TABLE} is seeded on the first
+ * reservation, apart from the reservation transaction. If several processes
+ * seed it at the same time, all but one get a duplicate key error, which is
+ * ignored.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class IdRangeAllocator {
+
+	static final String ID_RANGE_TABLE = "ID_RANGE";
+
+	private static final String UPDATE_RANGE =
+			"UPDATE " + ID_RANGE_TABLE + " SET next_id = next_id + ? WHERE table_name = ?";
+	private static final String INSERT_RANGE =
+			"INSERT INTO " + ID_RANGE_TABLE + " (table_name, next_id) VALUES (?, ?)";
+	private static final String SELECT_RANGE =
+			"SELECT next_id FROM " + ID_RANGE_TABLE + " WHERE table_name = ?";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate txTemplate;
+	private final String tableName;
+	private final int rangeSize;
+	// state
+	private long nextId;
+	private long limit;
+
+	IdRangeAllocator(DataSource ds, String tableName, int rangeSize) {
+		if (rangeSize <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Illegal id range size: %s", rangeSize));
+		}
+		this.jdbcTemplate = new JdbcTemplate(ds);
+		this.txTemplate = new TransactionTemplate(new DataSourceTransactionManager(ds));
+		this.tableName = tableName;
+		this.rangeSize = rangeSize;
+	}
+
+	synchronized long nextId() {
+		if (nextId >= limit) {
+			reserveRange();
+		}
+		return nextId++;
+	}
+
+	private void reserveRange() {
+		if (!tryReserveRange()) {
+			seedRange();
+			if (!tryReserveRange()) {
+				throw new IllegalStateException(String.format(
+						"No row for table %s in %s after it has been seeded",
+						tableName, ID_RANGE_TABLE));
+			}
+		}
+	}
+
+	/**
+	 * @return false if there is no row for the table in {@value #ID_RANGE_TABLE}
+	 */
+	private boolean tryReserveRange() {
+		return txTemplate.execute(new TransactionCallback<Boolean>() {
+			@Override
+			public Boolean doInTransaction(TransactionStatus status) {
+				int updated = jdbcTemplate.update(UPDATE_RANGE, rangeSize, tableName);
+				if (updated == 0) {
+					return false;
+				}
+				long newLimit = jdbcTemplate.queryForObject(SELECT_RANGE, Long.class, tableName);
+				limit = newLimit;
+				nextId = newLimit - rangeSize;
+				return true;
+			}
+		});
+	}
+
+	private void seedRange() {
+		// the first range for the table starts after existing rows
+		Long maxId = jdbcTemplate.queryForObject(
+				"SELECT MAX(id) FROM " + tableName, Long.class);
+		long firstId = maxId == null ? 1 : maxId + 1;
+		try {
+			jdbcTemplate.update(INSERT_RANGE, tableName, firstId);
+		} catch (DuplicateKeyException e) {
+			// another process has seeded the row concurrently
+		}
+	}
+}
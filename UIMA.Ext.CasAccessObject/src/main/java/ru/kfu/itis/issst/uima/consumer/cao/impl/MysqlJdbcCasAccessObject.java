@@ -26,6 +26,20 @@ import org.springframework.jdbc.support.KeyHolder;
 import ru.kfu.itis.issst.uima.consumer.cao.CasAccessObject;
 
 /**
+ * {@link CasAccessObject} that stores data through JDBC. Configuration
+ * properties are passed to {@link BasicDataSourceFactory}.
+ * <p>
+ * By default each span, annotation and feature is inserted by a separate
+ * statement, and its id is fetched as a generated key. If property
+ * {@value #PROP_BULK_ENABLED} is 'true', ids of spans and annotations are
+ * allocated from ranges reserved in table ID_RANGE (see cas-access-db.sql),
+ * and rows are inserted by JDBC batches (see {@value #PROP_BULK_BATCH_SIZE})
+ * in a background thread. Such rows are guaranteed to be stored only after
+ * {@link #flush()}. Bulk mode should not be mixed with the default one on the
+ * same database at the same time. Setting 'rewriteBatchedStatements=true' in a
+ * MySQL connection URL makes the driver send a batch as a multi-row INSERT.
+ * </p>
+ * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
@@ -45,6 +59,15 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 	private static final String INSERT_LAUNCH =
 			"INSERT INTO LAUNCH (started) VALUES (:started)";
 
+	// bulk mode configuration
+	public static final String PROP_BULK_ENABLED = "cao.bulk.enabled";
+	public static final String PROP_BULK_BATCH_SIZE = "cao.bulk.batchSize";
+	public static final String PROP_BULK_QUEUE_CAPACITY = "cao.bulk.queueCapacity";
+	public static final String PROP_BULK_ID_RANGE_SIZE = "cao.bulk.idRangeSize";
+	public static final int DEFAULT_BULK_BATCH_SIZE = 1000;
+	public static final int DEFAULT_BULK_QUEUE_CAPACITY = 4;
+	public static final int DEFAULT_BULK_ID_RANGE_SIZE = 10000;
+
 	// SELECTS
 	private static final String GET_TOP_ANNOS_BY_LAUNCH_AND_TYPE =
 			"SELECT an.id AS annoId, an.anno_type AS annoType, " +
@@ -56,6 +79,11 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 					"AND doc.launch_id IN (:launchIds)" +
 					"ORDER BY an.id";
 
+	// bulk mode state
+	private BatchingJdbcWriter batchWriter;
+	private IdRangeAllocator spanIdAllocator;
+	private IdRangeAllocator annoIdAllocator;
+
 	@Override
 	public void load(DataResource data) throws ResourceInitializationException {
 		Properties dataSourceConfig = new Properties();
@@ -81,11 +109,25 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 		} catch (Exception e) {
 			throw new IllegalStateException(e);
 		}
+		if (Boolean.parseBoolean(configProps.getProperty(PROP_BULK_ENABLED))) {
+			int batchSize = getIntProperty(configProps, PROP_BULK_BATCH_SIZE,
+					DEFAULT_BULK_BATCH_SIZE);
+			int queueCapacity = getIntProperty(configProps, PROP_BULK_QUEUE_CAPACITY,
+					DEFAULT_BULK_QUEUE_CAPACITY);
+			int idRangeSize = getIntProperty(configProps, PROP_BULK_ID_RANGE_SIZE,
+					DEFAULT_BULK_ID_RANGE_SIZE);
+			batchWriter = new BatchingJdbcWriter(ds, batchSize, queueCapacity);
+			spanIdAllocator = new IdRangeAllocator(ds, "SPAN", idRangeSize);
+			annoIdAllocator = new IdRangeAllocator(ds, "ANNOTATION", idRangeSize);
+		}
 		// add shutdown hook
 		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
 			@Override
 			public void run() {
 				System.out.println("Closing MysqlJdbcCasAccessObject...");
+				if (batchWriter != null) {
+					batchWriter.close();
+				}
 				try {
 					ds.close();
 				} catch (SQLException e) {
@@ -101,6 +143,12 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 
 	public long persistAnnotation(String type, long spanId, String coveredText, int startOffset,
 			int endOffset) {
+		if (batchWriter != null) {
+			long id = annoIdAllocator.nextId();
+			batchWriter.addAnnotation(id, type, spanId, truncateString(coveredText, 512),
+					startOffset, endOffset);
+			return id;
+		}
 		KeyHolder genIdHolder = new GeneratedKeyHolder();
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("type", type);
@@ -117,6 +165,10 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 	 */
 
 	public void persistFeature(long ownerAnnoId, String featureName, long valueAnnoId) {
+		if (batchWriter != null) {
+			batchWriter.addFeature(ownerAnnoId, valueAnnoId, featureName);
+			return;
+		}
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("ownerAnnoId", ownerAnnoId);
 		params.put("valueAnnoId", valueAnnoId);
@@ -152,6 +204,11 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 	 */
 
 	public long persistSpan(long docId, String coveredText) {
+		if (batchWriter != null) {
+			long id = spanIdAllocator.nextId();
+			batchWriter.addSpan(id, docId, truncateString(coveredText, 512));
+			return id;
+		}
 		KeyHolder genIdHolder = new GeneratedKeyHolder();
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("docId", docId);
@@ -161,6 +218,13 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 		return genIdHolder.getKey().longValue();
 	}
 
+	@Override
+	public void flush() {
+		if (batchWriter != null) {
+			batchWriter.flush();
+		}
+	}
+
 	@Override
 	public List<AnnotationDTO> getTopAnnotationsByLaunch(Set<Integer> launchIds,
 			Set<String> topAnnoTypes) {
@@ -171,6 +235,11 @@ public class MysqlJdbcCasAccessObject extends NamedParameterJdbcDaoSupport
 				params, new AnnotationDTORowMapper());
 	}
 
+	private static int getIntProperty(Properties props, String key, int defaultValue) {
+		String val = props.getProperty(key);
+		return val == null ? defaultValue : Integer.parseInt(val);
+	}
+
 	private MapSqlParameterSource mapSource(Map<String, Object> paramsMap) {
 		return new MapSqlParameterSource(paramsMap);
 	}
@@ -36,4 +36,10 @@ feature_name VARCHAR(32) NOT NULL,
 CONSTRAINT feature2annotation_owner FOREIGN KEY (owner_anno_id) REFERENCES ANNOTATION(id) ON DELETE CASCADE ON UPDATE RESTRICT,
 CONSTRAINT feature2annotation_value FOREIGN KEY (value_anno_id) REFERENCES ANNOTATION(id) ON DELETE CASCADE ON UPDATE RESTRICT,
 INDEX idx_owner_feature (owner_anno_id, feature_name)
-) ENGINE = MYISAM;
\ No newline at end of file
+) ENGINE = MYISAM;
+
+-- used to allocate ids in the bulk mode of MysqlJdbcCasAccessObject
+CREATE TABLE ID_RANGE (
+table_name VARCHAR(64) PRIMARY KEY,
+next_id BIGINT NOT NULL
+) ENGINE = INNODB;
@@ -0,0 +1,176 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.consumer.cao;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.createExternalResourceDescription;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import ru.kfu.itis.cll.uima.commons.DocumentMetadata;
+import ru.kfu.itis.issst.uima.consumer.cao.impl.MysqlJdbcCasAccessObject;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class CAOWriterTest {
+
+	private static final List<String> TEXTS = ImmutableList.of(
+			"Мама мыла раму. Папа читал газету!",
+			"В 1812 г. армия Наполеона вошла в Россию. А кто? Никто...",
+			"Одно предложение без точки",
+			"Первая строка.\nвторая строка\n\nтретья. и четвертая.");
+
+	private static final String[] SCHEMA = {
+			"CREATE TABLE LAUNCH (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+					"started TIMESTAMP NOT NULL)",
+			"CREATE TABLE DOCUMENT (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+					"uri VARCHAR(256) NOT NULL, size INT, processing_time BIGINT, " +
+					"launch_id INT NOT NULL REFERENCES LAUNCH (id))",
+			"CREATE TABLE SPAN (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+					"doc_id INT NOT NULL REFERENCES DOCUMENT (id), txt VARCHAR(512) NOT NULL)",
+			"CREATE TABLE ANNOTATION (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+					"anno_type VARCHAR(64) NOT NULL, span_id INT NOT NULL REFERENCES SPAN (id), " +
+					"txt VARCHAR(512), start_offset INT NOT NULL, end_offset INT NOT NULL)",
+			"CREATE TABLE FEATURE (owner_anno_id INT NOT NULL REFERENCES ANNOTATION (id), " +
+					"value_anno_id INT REFERENCES ANNOTATION (id), " +
+					"feature_name VARCHAR(32) NOT NULL)",
+			"CREATE TABLE ID_RANGE (table_name VARCHAR(64) PRIMARY KEY, next_id BIGINT NOT NULL)" };
+
+	private static final String SELECT_SPANS =
+			"SELECT d.uri AS doc_uri, s.txt AS span_txt " +
+					"FROM SPAN s JOIN DOCUMENT d ON s.doc_id = d.id " +
+					"ORDER BY d.uri, s.txt";
+	private static final String SELECT_ANNOTATIONS =
+			"SELECT d.uri AS doc_uri, s.txt AS span_txt, a.anno_type, a.txt, " +
+					"a.start_offset, a.end_offset " +
+					"FROM ANNOTATION a JOIN SPAN s ON a.span_id = s.id " +
+					"JOIN DOCUMENT d ON s.doc_id = d.id " +
+					"ORDER BY d.uri, a.start_offset, a.end_offset, a.anno_type";
+	private static final String SELECT_FEATURES =
+			"SELECT d.uri AS doc_uri, f.feature_name, " +
+					"o.anno_type AS owner_type, o.start_offset AS owner_start, " +
+					"o.end_offset AS owner_end, " +
+					"v.anno_type AS value_type, v.start_offset AS value_start, " +
+					"v.end_offset AS value_end " +
+					"FROM FEATURE f JOIN ANNOTATION o ON f.owner_anno_id = o.id " +
+					"JOIN ANNOTATION v ON f.value_anno_id = v.id " +
+					"JOIN SPAN s ON o.span_id = s.id JOIN DOCUMENT d ON s.doc_id = d.id " +
+					"ORDER BY d.uri, o.start_offset, o.end_offset, o.anno_type, f.feature_name";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testBulkModeStoresSameRows() throws Exception {
+		JdbcTemplate perRowDb = createDatabase("cao-per-row");
+		JdbcTemplate bulkDb = createDatabase("cao-bulk");
+		Properties perRowProps = dataSourceProps("cao-per-row");
+		Properties bulkProps = dataSourceProps("cao-bulk");
+		bulkProps.setProperty(MysqlJdbcCasAccessObject.PROP_BULK_ENABLED, "true");
+		bulkProps.setProperty(MysqlJdbcCasAccessObject.PROP_BULK_BATCH_SIZE, "7");
+		bulkProps.setProperty(MysqlJdbcCasAccessObject.PROP_BULK_QUEUE_CAPACITY, "2");
+		bulkProps.setProperty(MysqlJdbcCasAccessObject.PROP_BULK_ID_RANGE_SIZE, "5");
+		runPipeline(perRowProps);
+		runPipeline(bulkProps);
+
+		List<Map<String, Object>> spans = perRowDb.queryForList(SELECT_SPANS);
+		List<Map<String, Object>> annotations = perRowDb.queryForList(SELECT_ANNOTATIONS);
+		List<Map<String, Object>> features = perRowDb.queryForList(SELECT_FEATURES);
+		assertTrue(spans.size() > TEXTS.size());
+		assertTrue(annotations.size() > spans.size());
+		assertTrue(features.size() > 0);
+		assertEquals(spans, bulkDb.queryForList(SELECT_SPANS));
+		assertEquals(annotations, bulkDb.queryForList(SELECT_ANNOTATIONS));
+		assertEquals(features, bulkDb.queryForList(SELECT_FEATURES));
+		// ids are allocated by ranges
+		assertEquals(2, bulkDb.queryForObject("SELECT count(*) FROM ID_RANGE", Integer.class)
+				.intValue());
+	}
+
+	private void runPipeline(Properties daoProps) throws Exception {
+		File daoConfigFile = tempFolder.newFile();
+		FileUtils.writeStringToFile(daoConfigFile, toString(daoProps), "utf-8");
+		ExternalResourceDescription daoDesc = createExternalResourceDescription(
+				MysqlJdbcCasAccessObject.class, daoConfigFile);
+		TypeSystemDescription tsDesc = TypeSystemDescriptionFactory.createTypeSystemDescription(
+				"ru.kfu.itis.cll.uima.commons.Commons-TypeSystem");
+		AnalysisEngineDescription caoWriterDesc = createEngineDescription(CAOWriter.class,
+				tsDesc,
+				CAOWriter.PARAM_SPAN_TYPE, "ru.kfu.cll.uima.segmentation.fstype.Sentence",
+				CAOWriter.PARAM_TYPES_TO_PERSIST, new String[] {
+						"ru.kfu.cll.uima.segmentation.fstype.Sentence",
+						"ru.kfu.cll.uima.tokenizer.fstype.W" },
+				CAOWriter.RESOURCE_DAO, daoDesc);
+		AnalysisEngine ae = createEngine(createEngineDescription(
+				TokenizerAPI.getAEDescription(), SentenceSplitterAPI.getAEDescription(),
+				caoWriterDesc));
+		try {
+			for (int i = 0; i < TEXTS.size(); i++) {
+				JCas jCas = CasCreationUtils.createCas(ae.getAnalysisEngineMetaData()).getJCas();
+				jCas.setDocumentText(TEXTS.get(i));
+				DocumentMetadata docMeta = new DocumentMetadata(jCas, 0, 0);
+				docMeta.setSourceUri("file:/doc" + i + ".txt");
+				docMeta.addToIndexes();
+				ae.process(jCas);
+			}
+			ae.collectionProcessComplete();
+		} finally {
+			ae.destroy();
+		}
+	}
+
+	private static JdbcTemplate createDatabase(String name) {
+		DriverManagerDataSource ds = new DriverManagerDataSource(
+				"jdbc:hsqldb:mem:" + name, "SA", "");
+		ds.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(ds);
+		for (String ddl : SCHEMA) {
+			jdbcTemplate.execute(ddl);
+		}
+		return jdbcTemplate;
+	}
+
+	private static Properties dataSourceProps(String dbName) {
+		Properties props = new Properties();
+		props.setProperty("driverClassName", "org.hsqldb.jdbc.JDBCDriver");
+		props.setProperty("url", "jdbc:hsqldb:mem:" + dbName + ";ifexists=true");
+		props.setProperty("username", "SA");
+		props.setProperty("password", "");
+		return props;
+	}
+
+	private static String toString(Properties props) {
+		StringBuilder sb = new StringBuilder();
+		for (String key : props.stringPropertyNames()) {
+			sb.append(key).append('=').append(props.getProperty(key)).append('\n');
+		}
+		return sb.toString();
+	}
+}
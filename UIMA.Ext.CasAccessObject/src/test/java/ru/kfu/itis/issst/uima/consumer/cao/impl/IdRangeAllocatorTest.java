@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.consumer.cao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class IdRangeAllocatorTest {
+
+	private static final int ALLOCATORS = 6;
+	private static final int IDS_PER_ALLOCATOR = 12;
+	private static final int RANGE_SIZE = 5;
+
+	private DriverManagerDataSource ds;
+	private JdbcTemplate jdbcTemplate;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		// row-level locking like InnoDB, table locks of the default mode hide the seeding race
+		ds = new DriverManagerDataSource("jdbc:hsqldb:mem:id-range-allocator;hsqldb.tx=mvcc",
+				"SA", "");
+		ds.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+		jdbcTemplate = new JdbcTemplate(ds);
+		jdbcTemplate.execute("CREATE TABLE ID_RANGE (table_name VARCHAR(64) PRIMARY KEY, "
+				+ "next_id BIGINT NOT NULL)");
+		executor = Executors.newFixedThreadPool(ALLOCATORS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		jdbcTemplate.execute("SHUTDOWN");
+	}
+
+	@Test
+	public void testFirstRangeAfterExistingRows() {
+		jdbcTemplate.execute("CREATE TABLE T (id INT PRIMARY KEY)");
+		jdbcTemplate.update("INSERT INTO T (id) VALUES (41)");
+		IdRangeAllocator allocator = new IdRangeAllocator(ds, "T", RANGE_SIZE);
+		for (int i = 0; i < 2 * RANGE_SIZE; i++) {
+			assertEquals(42 + i, allocator.nextId());
+		}
+	}
+
+	@Test
+	public void testConcurrentFirstReservation() throws Exception {
+		for (int round = 0; round < 10; round++) {
+			final String tableName = "T" + round;
+			jdbcTemplate.execute("CREATE TABLE " + tableName + " (id INT PRIMARY KEY)");
+			final CountDownLatch startLatch = new CountDownLatch(1);
+			List<Future<List<Long>>> futures = Lists.newArrayList();
+			for (int a = 0; a < ALLOCATORS; a++) {
+				futures.add(executor.submit(new Callable<List<Long>>() {
+					@Override
+					public List<Long> call() throws Exception {
+						// each allocator stands for a separate writer process
+						IdRangeAllocator allocator = new IdRangeAllocator(ds, tableName, RANGE_SIZE);
+						startLatch.await();
+						List<Long> ids = Lists.newArrayList();
+						for (int i = 0; i < IDS_PER_ALLOCATOR; i++) {
+							ids.add(allocator.nextId());
+						}
+						return ids;
+					}
+				}));
+			}
+			startLatch.countDown();
+			Set<Long> allIds = Sets.newHashSet();
+			for (Future<List<Long>> f : futures) {
+				for (Long id : f.get()) {
+					assertTrue(tableName + ": duplicate id " + id, allIds.add(id));
+				}
+			}
+			assertEquals(ALLOCATORS * IDS_PER_ALLOCATOR, allIds.size());
+		}
+	}
+}
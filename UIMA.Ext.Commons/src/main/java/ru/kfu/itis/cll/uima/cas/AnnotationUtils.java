@@ -268,7 +268,7 @@ public class AnnotationUtils {
 	}
 
 	public static <A extends AnnotationFS> OverlapIndex<A> createOverlapIndex(Iterator<A> srcIter) {
-		return TreeMapOverlapIndex.from(srcIter);
+		return ArrayOverlapIndex.from(srcIter);
 	}
 
     /**
@@ -0,0 +1,195 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.cas;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.uima.cas.text.AnnotationFS;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Immutable overlap index backed by arrays. Annotations are sorted by offsets
+ * (and by source iterator ordering if offsets are equal), their begins and ends
+ * are kept in parallel int arrays. An implicit binary tree over array positions
+ * keeps the maximal end of each subtree, so annotations that begin before a
+ * given offset and end after it are found without visiting the others.
+ * <p>
+ * Let n be the number of annotations and k be the result size. Then
+ * {@link #getCovering(int, int, Collection)} takes O(log n + k).
+ * {@link #getOverlapping(int, int, Collection)} takes O(log n + k + c) where c
+ * is the number of annotations that strictly cover the given interval, since
+ * they are visited but not included. {@link #getCovered(int, int, Collection)}
+ * takes O(log n + m) where m is the number of annotations that begin within
+ * the given interval. Queries do not allocate anything except the result
+ * collection, an instance can be shared by several threads.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class ArrayOverlapIndex<A extends AnnotationFS> implements OverlapIndex<A> {
+	// factory methods
+	static <A extends AnnotationFS> ArrayOverlapIndex<A> from(Iterator<A> srcIter) {
+		return new ArrayOverlapIndex<A>(srcIter);
+	}
+
+	// IMPL START
+	private final int size;
+	// sorted by offsets
+	private final Object[] annos;
+	private final int[] begins;
+	private final int[] ends;
+	// maxEnd[node] is the maximal end in the subtree, the root is 1,
+	// children of a node are 2*node and 2*node+1
+	private final int[] maxEnd;
+
+	private ArrayOverlapIndex(Iterator<A> srcIter) {
+		List<A> annoList = Lists.newArrayList();
+		// an annotation can be indexed only once
+		Set<A> seen = Sets.newHashSet();
+		while (srcIter.hasNext()) {
+			A sa = srcIter.next();
+			if (seen.add(sa)) {
+				annoList.add(sa);
+			}
+		}
+		// the sort is stable so source iterator ordering is preserved
+		Collections.sort(annoList, AnnotationOffsetComparator.instance(AnnotationFS.class));
+		size = annoList.size();
+		annos = annoList.toArray();
+		begins = new int[size];
+		ends = new int[size];
+		for (int i = 0; i < size; i++) {
+			begins[i] = annoList.get(i).getBegin();
+			ends[i] = annoList.get(i).getEnd();
+		}
+		maxEnd = new int[size == 0 ? 0 : 4 * size];
+		if (size > 0) {
+			buildMaxEnd(1, 0, size);
+		}
+	}
+
+	private int buildMaxEnd(int node, int lo, int hi) {
+		if (hi - lo == 1) {
+			maxEnd[node] = ends[lo];
+		} else {
+			int mid = (lo + hi) >>> 1;
+			maxEnd[node] = Math.max(buildMaxEnd(2 * node, lo, mid), buildMaxEnd(2 * node + 1, mid, hi));
+		}
+		return maxEnd[node];
+	}
+
+	@Override
+	public Set<A> getOverlapping(int begin, int end) {
+		Set<A> result = Sets.newLinkedHashSet();
+		getOverlapping(begin, end, result);
+		return result;
+	}
+
+	@Override
+	public void getOverlapping(int begin, int end, Collection<? super A> target) {
+		// annotations that begin before the interval and end within (begin, end]
+		int beginFrom = lowerBound(begin);
+		if (beginFrom > 0) {
+			addEndingWithin(1, 0, size, beginFrom, begin, end, target);
+		}
+		// annotations that begin within [begin, end)
+		int beginTo = lowerBound(end);
+		for (int i = beginFrom; i < beginTo; i++) {
+			target.add(get(i));
+		}
+		// empty annotations at the end as they end within (begin, end]
+		if (begin < end) {
+			int i = upperBound(end);
+			while (i > beginTo && ends[i - 1] == end) {
+				i--;
+			}
+			for (int upTo = upperBound(end); i < upTo; i++) {
+				target.add(get(i));
+			}
+		}
+	}
+
+	@Override
+	public void getCovering(int begin, int end, Collection<? super A> target) {
+		int beginTo = upperBound(begin);
+		if (beginTo > 0 && end > Integer.MIN_VALUE) {
+			addEndingWithin(1, 0, size, beginTo, end - 1, Integer.MAX_VALUE, target);
+		}
+	}
+
+	@Override
+	public void getCovered(int begin, int end, Collection<? super A> target) {
+		for (int i = lowerBound(begin), beginTo = upperBound(end); i < beginTo; i++) {
+			if (ends[i] <= end) {
+				target.add(get(i));
+			}
+		}
+	}
+
+	/**
+	 * Add annotations at positions [0, limit) that end within (endAfter,
+	 * endNotAfter] in ascending order of positions.
+	 */
+	private void addEndingWithin(int node, int lo, int hi, int limit,
+			int endAfter, int endNotAfter, Collection<? super A> target) {
+		if (lo >= limit || maxEnd[node] <= endAfter) {
+			return;
+		}
+		if (hi - lo == 1) {
+			if (ends[lo] <= endNotAfter) {
+				target.add(get(lo));
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		addEndingWithin(2 * node, lo, mid, limit, endAfter, endNotAfter, target);
+		addEndingWithin(2 * node + 1, mid, hi, limit, endAfter, endNotAfter, target);
+	}
+
+	/**
+	 * @return the first position whose begin is &gt;= the given offset
+	 */
+	private int lowerBound(int offset) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] < offset) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return the first position whose begin is &gt; the given offset
+	 */
+	private int upperBound(int offset) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] <= offset) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	@SuppressWarnings("unchecked")
+	private A get(int i) {
+		return (A) annos[i];
+	}
+}
@@ -3,6 +3,7 @@
  */
 package ru.kfu.itis.cll.uima.cas;
 
+import java.util.Collection;
 import java.util.Set;
 
 import org.apache.uima.cas.text.AnnotationFS;
@@ -23,10 +24,35 @@ public interface OverlapIndex<A extends AnnotationFS> {
 	 * @param begin
 	 * @param end
 	 * @return set of annotations that overlap with annotation whose offsets are
-	 *         given by parameters. Result ordering is defined by offsets
-	 *         (according to {@link AnnotationIndex}. If offsets are equals then
-	 *         source iterator ordering is used.
+	 *         given by parameters, i.e., annotations that begin within [begin,
+	 *         end) or end within (begin, end]. Note that annotations that
+	 *         strictly cover the given interval are not included, see
+	 *         {@link #getCovering(int, int, Collection)}. Result ordering is
+	 *         defined by offsets (according to {@link AnnotationIndex}. If
+	 *         offsets are equals then source iterator ordering is used. The
+	 *         result is a new modifiable set.
 	 */
 	Set<A> getOverlapping(int begin, int end);
 
+	/**
+	 * Allocation-free counterpart of {@link #getOverlapping(int, int)}.
+	 * 
+	 * @param target
+	 *            collection to add the result into in the same order
+	 */
+	void getOverlapping(int begin, int end, Collection<? super A> target);
+
+	/**
+	 * Add annotations that cover the given interval, i.e., their begin &lt;=
+	 * the given begin and their end &gt;= the given end. The ordering is the
+	 * same as in {@link #getOverlapping(int, int)}.
+	 */
+	void getCovering(int begin, int end, Collection<? super A> target);
+
+	/**
+	 * Add annotations that are covered by the given interval, i.e., their
+	 * begin &gt;= the given begin and their end &lt;= the given end. The
+	 * ordering is the same as in {@link #getOverlapping(int, int)}.
+	 */
+	void getCovered(int begin, int end, Collection<? super A> target);
 }
\ No newline at end of file
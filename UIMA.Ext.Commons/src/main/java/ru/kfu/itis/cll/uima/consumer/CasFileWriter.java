@@ -0,0 +1,306 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.consumer;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.descriptor.OperationalProperties;
+import org.apache.uima.fit.descriptor.TypeCapability;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.initializable.InitializableFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.XMLSerializer;
+import org.xml.sax.SAXException;
+import ru.kfu.itis.cll.uima.commons.DocumentMetadata;
+import ru.kfu.itis.cll.uima.io.BinaryCasFormat;
+import ru.kfu.itis.cll.uima.io.IoUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+import static ru.kfu.itis.cll.uima.util.AnnotatorUtils.requireParam;
+
+/**
+ * Writes CASes into files in one of {@link Format}s. A CAS is serialized in the
+ * processing thread, while files are compressed and written by a background
+ * thread. At most {@value #PARAM_WRITE_QUEUE_SIZE} serialized CASes wait to be
+ * written, so the processing thread is blocked when the disk can not keep up.
+ * <p>
+ * In {@link Format#BINARY} CASes are stored in UIMA compressed binary form (see
+ * {@link BinaryCasFormat}), and many CASes can be grouped into one archive file
+ * by {@value #PARAM_DOCS_PER_ARCHIVE}. Otherwise each CAS is written into a
+ * separate file which path is determined by
+ * {@value #PARAM_OUTPUT_PATH_FUNCTION} as in {@link XmiFileWriter}. An
+ * absolute path is taken as relative to {@value #PARAM_OUTPUT_BASE_PATH}.
+ * </p>
+ * Use {@link ru.kfu.itis.cll.uima.cpe.CasFileCollectionReader} to read the
+ * output.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+@TypeCapability(inputs = "ru.kfu.itis.cll.uima.commons.DocumentMetadata")
+@OperationalProperties(modifiesCas = false, multipleDeploymentAllowed = false)
+public class CasFileWriter extends JCasAnnotator_ImplBase {
+
+    public enum Format {
+        BINARY(BinaryCasFormat.FILE_EXTENSION), XMI("xmi"), XMI_GZIP("xmi.gz");
+
+        private final String fileExtension;
+
+        Format(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    public static AnalysisEngineDescription createDescription(File outputDir, Format format)
+            throws ResourceInitializationException {
+        return AnalysisEngineFactory.createEngineDescription(CasFileWriter.class,
+                PARAM_OUTPUT_BASE_PATH, outputDir.getPath(),
+                PARAM_FORMAT, format.name());
+    }
+
+    public static final String PARAM_OUTPUT_BASE_PATH = "outputBasePath";
+    public static final String PARAM_OUTPUT_PATH_FUNCTION = "outputPathFunction";
+    public static final String PARAM_FORMAT = "format";
+    public static final String PARAM_XML_FORMATTED = "XmlFormatted";
+    /**
+     * The number of CASes in an archive file. If it is greater than 1, archive
+     * files are named 'part-NNNNN.bcas' and {@value #PARAM_OUTPUT_PATH_FUNCTION}
+     * is not used. Applicable only to {@link Format#BINARY}.
+     */
+    public static final String PARAM_DOCS_PER_ARCHIVE = "docsPerArchive";
+    public static final String PARAM_WRITE_QUEUE_SIZE = "writeQueueSize";
+
+    // config fields
+    @ConfigurationParameter(name = PARAM_OUTPUT_BASE_PATH, mandatory = true)
+    private String outBasePathStr;
+    @ConfigurationParameter(name = PARAM_OUTPUT_PATH_FUNCTION, mandatory = false,
+            defaultValue = "ru.kfu.itis.cll.uima.consumer.DefaultSourceURI2OutputFilePathFunction")
+    private Class<? extends Function> outPathFuncClass;
+    @ConfigurationParameter(name = PARAM_FORMAT, mandatory = false, defaultValue = "BINARY")
+    private Format format;
+    @ConfigurationParameter(name = PARAM_XML_FORMATTED, mandatory = false, defaultValue = "false")
+    private boolean xmlFormatted;
+    @ConfigurationParameter(name = PARAM_DOCS_PER_ARCHIVE, mandatory = false, defaultValue = "1")
+    private int docsPerArchive;
+    @ConfigurationParameter(name = PARAM_WRITE_QUEUE_SIZE, mandatory = false, defaultValue = "16")
+    private int writeQueueSize;
+    // state fields
+    private Path outBasePath;
+    private Function<DocumentMetadata, Path> outPathFunc;
+    private boolean typeSystemWritten;
+    private ExecutorService writeExecutor;
+    private Semaphore writeSlots;
+    private volatile Throwable writeFailure;
+    // accessed by the write thread only
+    private DataOutputStream archiveOut;
+    private int archiveEntries;
+    private int archivesNum;
+
+    @Override
+    public void initialize(UimaContext ctx) throws ResourceInitializationException {
+        super.initialize(ctx);
+        requireParam(docsPerArchive > 0, PARAM_DOCS_PER_ARCHIVE, docsPerArchive);
+        requireParam(docsPerArchive == 1 || format == Format.BINARY,
+                PARAM_DOCS_PER_ARCHIVE, docsPerArchive);
+        requireParam(writeQueueSize > 0, PARAM_WRITE_QUEUE_SIZE, writeQueueSize);
+        outBasePath = Paths.get(outBasePathStr);
+        //noinspection unchecked
+        outPathFunc = InitializableFactory.create(ctx, outPathFuncClass);
+        writeSlots = new Semaphore(writeQueueSize);
+        writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat(getClass().getSimpleName() + "-%d").build());
+    }
+
+    @Override
+    public void process(JCas jCas) throws AnalysisEngineProcessException {
+        checkWriteFailure();
+        CAS cas = jCas.getCas();
+        final byte[] serialized;
+        try {
+            if (format == Format.BINARY && !typeSystemWritten) {
+                BinaryCasFormat.writeTypeSystem(cas.getTypeSystem(), outBasePath.toFile());
+                typeSystemWritten = true;
+            }
+            serialized = serialize(cas);
+        } catch (IOException | SAXException | ResourceInitializationException e) {
+            throw new AnalysisEngineProcessException(e);
+        }
+        final File outFile;
+        if (docsPerArchive > 1) {
+            outFile = null;
+        } else {
+            DocumentMetadata meta = JCasUtil.selectSingle(jCas, DocumentMetadata.class);
+            Path relPath = outPathFunc.apply(meta);
+            if (relPath.isAbsolute()) {
+                // keep the output inside the base directory
+                relPath = relPath.getRoot().relativize(relPath);
+            }
+            Path outPath = outBasePath.resolve(relPath);
+            outFile = IoUtils.addExtension(outPath, format.getFileExtension()).toFile();
+        }
+        try {
+            writeSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisEngineProcessException(e);
+        }
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (writeFailure == null) {
+                        write(serialized, outFile);
+                    }
+                } catch (Throwable e) {
+                    getLogger().error("Can't write " + (outFile == null ? "an archive" : outFile), e);
+                    writeFailure = e;
+                } finally {
+                    writeSlots.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void collectionProcessComplete() throws AnalysisEngineProcessException {
+        // wait for pending writes and close the current archive
+        try {
+            writeExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    closeArchive();
+                    return null;
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisEngineProcessException(e);
+        } catch (ExecutionException e) {
+            throw new AnalysisEngineProcessException(e.getCause());
+        }
+        checkWriteFailure();
+        super.collectionProcessComplete();
+    }
+
+    @Override
+    public void destroy() {
+        if (writeExecutor != null) {
+            writeExecutor.shutdownNow();
+        }
+        super.destroy();
+    }
+
+    private void checkWriteFailure() throws AnalysisEngineProcessException {
+        if (writeFailure != null) {
+            throw new AnalysisEngineProcessException(writeFailure);
+        }
+    }
+
+    private byte[] serialize(CAS cas)
+            throws IOException, SAXException, ResourceInitializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                cas.getDocumentText() == null ? 1024 : cas.getDocumentText().length());
+        switch (format) {
+            case BINARY:
+                // form 6, i.e., with a type system
+                Serialization.serializeWithCompression(cas, out, cas.getTypeSystem());
+                break;
+            case XMI:
+            case XMI_GZIP:
+                XmiCasSerializer ser = new XmiCasSerializer(cas.getTypeSystem());
+                XMLSerializer xmlSer = new XMLSerializer(out, xmlFormatted);
+                ser.serialize(cas, xmlSer.getContentHandler());
+                break;
+            default:
+                throw new UnsupportedOperationException(format.name());
+        }
+        return out.toByteArray();
+    }
+
+    private void write(byte[] serialized, File outFile) throws IOException {
+        if (outFile == null) {
+            if (archiveOut == null) {
+                File archiveFile = new File(outBasePath.toFile(), String.format("part-%05d.%s",
+                        archivesNum++, BinaryCasFormat.FILE_EXTENSION));
+                archiveOut = new DataOutputStream(new BufferedOutputStream(
+                        FileUtils.openOutputStream(archiveFile)));
+                BinaryCasFormat.writeHeader(archiveOut);
+            }
+            BinaryCasFormat.writeEntry(archiveOut, serialized, serialized.length);
+            archiveEntries++;
+            if (archiveEntries >= docsPerArchive) {
+                closeArchive();
+            }
+            return;
+        }
+        OutputStream out = new BufferedOutputStream(FileUtils.openOutputStream(outFile));
+        boolean written = false;
+        try {
+            switch (format) {
+                case BINARY:
+                    DataOutputStream dataOut = new DataOutputStream(out);
+                    BinaryCasFormat.writeHeader(dataOut);
+                    BinaryCasFormat.writeEntry(dataOut, serialized, serialized.length);
+                    dataOut.flush();
+                    break;
+                case XMI:
+                    out.write(serialized);
+                    break;
+                case XMI_GZIP:
+                    GZIPOutputStream gzOut = new GZIPOutputStream(out);
+                    gzOut.write(serialized);
+                    gzOut.finish();
+                    break;
+                default:
+                    throw new UnsupportedOperationException(format.name());
+            }
+            out.close();
+            written = true;
+        } finally {
+            if (!written) {
+                IOUtils.closeQuietly(out);
+            }
+        }
+    }
+
+    private void closeArchive() throws IOException {
+        if (archiveOut != null) {
+            try {
+                archiveOut.close();
+            } finally {
+                archiveOut = null;
+                archiveEntries = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.cpe;
+
+import static org.apache.commons.io.filefilter.FileFilterUtils.trueFileFilter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.uima.UimaContext;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.fit.component.CasCollectionReader_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.resource.ResourceConfigurationException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+import org.xml.sax.SAXException;
+
+import ru.kfu.itis.cll.uima.consumer.CasFileWriter;
+import ru.kfu.itis.cll.uima.io.BinaryCasFormat;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads CASes written by {@link CasFileWriter} in any of its formats from a
+ * directory and its subdirectories. Files are read in the order of their
+ * paths, and CASes of an archive file are read in the order they were written.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class CasFileCollectionReader extends CasCollectionReader_ImplBase {
+
+	public static CollectionReaderDescription createDescription(
+			File inputDir, TypeSystemDescription inputTSD) throws ResourceInitializationException {
+		return CollectionReaderFactory.createReaderDescription(CasFileCollectionReader.class,
+				inputTSD,
+				PARAM_INPUTDIR, inputDir);
+	}
+
+	public static final String PARAM_INPUTDIR = XmiCollectionReader.PARAM_INPUTDIR;
+	/**
+	 * Applicable only to XMI files. CASes in binary form are always
+	 * deserialized leniently, i.e., instances of types unknown to a CAS of
+	 * this reader are skipped.
+	 */
+	public static final String PARAM_FAILUNKNOWN = XmiCollectionReaderBase.PARAM_FAILUNKNOWN;
+
+	@ConfigurationParameter(name = PARAM_INPUTDIR, mandatory = true)
+	private File inputDir;
+	@ConfigurationParameter(name = PARAM_FAILUNKNOWN, defaultValue = "true", mandatory = false)
+	private boolean failOnUnknownType;
+
+	// derived
+	private List<File> files;
+	private TypeSystem writerTypeSystem;
+	private int casesNum;
+	// state fields
+	private int filesOpened;
+	private int casesRead;
+	// an archive that is being read
+	private DataInputStream binIn;
+	private File binFile;
+	// the next CAS to read is either in binary form or in an XMI file
+	private byte[] nextBinCas;
+	private File nextXmiFile;
+
+	@Override
+	public void initialize(UimaContext ctx) throws ResourceInitializationException {
+		super.initialize(ctx);
+		if (!inputDir.isDirectory()) {
+			throw new ResourceInitializationException(
+					ResourceConfigurationException.DIRECTORY_NOT_FOUND,
+					new Object[] { PARAM_INPUTDIR, this.getMetaData().getName(),
+							inputDir.getPath() });
+		}
+		files = Lists.newArrayList(FileUtils.listFiles(inputDir,
+				new SuffixFileFilter(new String[] {
+						"." + CasFileWriter.Format.BINARY.getFileExtension(),
+						"." + CasFileWriter.Format.XMI.getFileExtension(),
+						"." + CasFileWriter.Format.XMI_GZIP.getFileExtension() }),
+				trueFileFilter()));
+		Collections.sort(files);
+		try {
+			// if it is null a CAS is deserialized against its own type system
+			writerTypeSystem = BinaryCasFormat.readTypeSystem(inputDir);
+			for (File f : files) {
+				if (isBinary(f)) {
+					DataInputStream in = openBinary(f);
+					try {
+						casesNum += BinaryCasFormat.countEntries(in);
+					} finally {
+						IOUtils.closeQuietly(in);
+					}
+				} else {
+					casesNum++;
+				}
+			}
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() throws IOException, CollectionException {
+		while (nextBinCas == null && nextXmiFile == null) {
+			if (binIn != null) {
+				nextBinCas = BinaryCasFormat.readEntry(binIn);
+				if (nextBinCas == null) {
+					closeBinary();
+				}
+			} else if (filesOpened < files.size()) {
+				File f = files.get(filesOpened++);
+				if (isBinary(f)) {
+					binIn = openBinary(f);
+					binFile = f;
+				} else {
+					nextXmiFile = f;
+				}
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void getNext(CAS aCAS) throws IOException, CollectionException {
+		if (!hasNext()) {
+			throw new CollectionException(new IllegalStateException("No more CASes"));
+		}
+		if (nextBinCas != null) {
+			byte[] casBytes = nextBinCas;
+			nextBinCas = null;
+			try {
+				Serialization.deserializeCAS(aCAS, new ByteArrayInputStream(casBytes),
+						writerTypeSystem, null);
+			} catch (ResourceInitializationException e) {
+				throw new CollectionException(e);
+			} catch (RuntimeException e) {
+				throw new IOException("Can't deserialize a CAS from " + binFile, e);
+			}
+		} else {
+			File xmiFile = nextXmiFile;
+			nextXmiFile = null;
+			InputStream in = new BufferedInputStream(new FileInputStream(xmiFile));
+			try {
+				if (xmiFile.getName().endsWith(
+						"." + CasFileWriter.Format.XMI_GZIP.getFileExtension())) {
+					in = new GZIPInputStream(in);
+				}
+				XmiCasDeserializer.deserialize(in, aCAS, !failOnUnknownType);
+			} catch (SAXException e) {
+				throw new CollectionException(e);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		}
+		casesRead++;
+	}
+
+	@Override
+	public Progress[] getProgress() {
+		return new Progress[] { new ProgressImpl(casesRead, casesNum, Progress.ENTITIES) };
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeBinary();
+		super.close();
+	}
+
+	private void closeBinary() {
+		IOUtils.closeQuietly(binIn);
+		binIn = null;
+		binFile = null;
+	}
+
+	private static boolean isBinary(File f) {
+		return f.getName().endsWith("." + CasFileWriter.Format.BINARY.getFileExtension());
+	}
+
+	private static DataInputStream openBinary(File f) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try {
+			BinaryCasFormat.readHeader(in, f);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw e;
+		}
+		return in;
+	}
+}
@@ -3,7 +3,7 @@
  */
 package ru.kfu.itis.cll.uima.cpe;
 
-import static com.google.common.collect.Lists.newLinkedList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static ru.kfu.itis.cll.uima.util.AnnotatorUtils.requireParam;
 import static ru.kfu.itis.cll.uima.util.AnnotatorUtils.requireParams;
 
@@ -16,9 +16,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.uima.UimaContext;
@@ -34,9 +35,33 @@ import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import ru.kfu.itis.cll.uima.commons.DocumentMetadata;
 
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
 
 /**
+ * Reads documents from a database table by the given query. There are three
+ * ways to page through the query result:
+ * <ul>
+ * <li>offset pagination (parameters {@value #PARAM_OFFSET_PARAM_INDEX} and
+ * {@value #PARAM_LIMIT_PARAM_INDEX}), e.g.,
+ * <code>SELECT url, txt FROM doc ORDER BY id OFFSET ? LIMIT ?</code>. Simple,
+ * but a database has to skip all preceding rows for each batch, so it slows
+ * down on large tables;</li>
+ * <li>keyset pagination (parameters {@value #PARAM_KEY_COLUMN},
+ * {@value #PARAM_KEY_PARAM_INDEX} and {@value #PARAM_LIMIT_PARAM_INDEX}),
+ * e.g.,
+ * <code>SELECT id, url, txt FROM doc WHERE id > ? ORDER BY id LIMIT ?</code>.
+ * The key column must have unique integer values, the query must be ordered
+ * by them, and the key of the last read row is bound to the key parameter.
+ * Before the first batch it is {@link Integer#MIN_VALUE}, so that it fits
+ * both INT and BIGINT key columns;</li>
+ * <li>streaming, when none of the above parameters is set. The query is
+ * executed once, and rows are fetched from the database by
+ * {@value #PARAM_FETCH_SIZE} rows.</li>
+ * </ul>
+ * If {@value #PARAM_PREFETCH_SIZE} is positive, rows are read and their texts
+ * are materialized in a background thread that fills a bounded queue of ready
+ * documents, so {@link #getNext(CAS)} does not wait for the database as long
+ * as the database keeps up with a pipeline.
+ * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
@@ -50,10 +75,22 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 	public static final String PARAM_QUERY = "query";
 	public static final String PARAM_OFFSET_PARAM_INDEX = "offsetParamIndex";
 	public static final String PARAM_LIMIT_PARAM_INDEX = "limitParamIndex";
+	public static final String PARAM_KEY_COLUMN = "keyColumn";
+	public static final String PARAM_KEY_PARAM_INDEX = "keyParamIndex";
 	public static final String PARAM_TEXT_COLUMN = "textColumn";
 	public static final String PARAM_DOCUMENT_URL_COLUMN = "documentUrlColumn";
 	
 	public static final String PARAM_BATCH_SIZE = "batchSize";
+	/**
+	 * Passed to {@link PreparedStatement#setFetchSize(int)}. Note that some
+	 * drivers need a special value to stream rows, e.g., MySQL Connector/J
+	 * streams only with {@link Integer#MIN_VALUE}.
+	 */
+	public static final String PARAM_FETCH_SIZE = "fetchSize";
+	/**
+	 * Capacity of the queue of prefetched documents. 0 disables prefetching.
+	 */
+	public static final String PARAM_PREFETCH_SIZE = "prefetchSize";
 	
 	public static final String PARAM_COUNT_QUERY = "countQuery";
 	
@@ -69,20 +106,30 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 	private String query;
 	@ConfigurationParameter(name = PARAM_COUNT_QUERY, mandatory = false)
 	private String countQuery;
-	@ConfigurationParameter(name = PARAM_LIMIT_PARAM_INDEX, mandatory = true)
+	@ConfigurationParameter(name = PARAM_LIMIT_PARAM_INDEX, mandatory = false)
 	private Integer limitParamIndex;
-	@ConfigurationParameter(name = PARAM_OFFSET_PARAM_INDEX, mandatory = true)
+	@ConfigurationParameter(name = PARAM_OFFSET_PARAM_INDEX, mandatory = false)
 	private Integer offsetParamIndex;
+	@ConfigurationParameter(name = PARAM_KEY_COLUMN, mandatory = false)
+	private String keyColumn;
+	@ConfigurationParameter(name = PARAM_KEY_PARAM_INDEX, mandatory = false)
+	private Integer keyParamIndex;
 	@ConfigurationParameter(name = PARAM_DOCUMENT_URL_COLUMN, mandatory = false)
 	private String documentUrlColumn;
 	@ConfigurationParameter(name = PARAM_TEXT_COLUMN, mandatory = true)
 	private String textColumn;
 	@ConfigurationParameter(name = PARAM_BATCH_SIZE, defaultValue = "20", mandatory = false)
 	private Integer batchSize;
+	@ConfigurationParameter(name = PARAM_FETCH_SIZE, mandatory = false)
+	private Integer fetchSize;
+	@ConfigurationParameter(name = PARAM_PREFETCH_SIZE, defaultValue = "0", mandatory = false)
+	private Integer prefetchSize;
 
 	// state fields
 	private Connection dbConnection;
 	private PreparedStatement queryStatement;
+	private Iterator<DbTuple> dbIterator;
+	private PrefetchingIterator prefetchingIterator;
 
 	private Integer expectedTotalCount;
 	private int consumedCount = 0;
@@ -92,26 +139,57 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 		super.initialize(ctx);
 		// check parameters
 		requireParam(batchSize > 0, PARAM_BATCH_SIZE, batchSize);
-		requireParams(limitParamIndex != offsetParamIndex
-				&& limitParamIndex > 0 && limitParamIndex < 3
-				&& offsetParamIndex > 0 && offsetParamIndex < 3,
-				new String[] { PARAM_LIMIT_PARAM_INDEX, PARAM_OFFSET_PARAM_INDEX },
-				new Object[] { limitParamIndex, offsetParamIndex });
+		requireParam(prefetchSize >= 0, PARAM_PREFETCH_SIZE, prefetchSize);
+		if (offsetParamIndex != null) {
+			requireParams(keyParamIndex == null && limitParamIndex != null
+					&& !limitParamIndex.equals(offsetParamIndex)
+					&& limitParamIndex > 0 && limitParamIndex < 3
+					&& offsetParamIndex > 0 && offsetParamIndex < 3,
+					new String[] { PARAM_LIMIT_PARAM_INDEX, PARAM_OFFSET_PARAM_INDEX,
+							PARAM_KEY_PARAM_INDEX },
+					new Object[] { limitParamIndex, offsetParamIndex, keyParamIndex });
+		} else if (keyParamIndex != null) {
+			requireParams(keyColumn != null && limitParamIndex != null
+					&& !limitParamIndex.equals(keyParamIndex)
+					&& limitParamIndex > 0 && limitParamIndex < 3
+					&& keyParamIndex > 0 && keyParamIndex < 3,
+					new String[] { PARAM_LIMIT_PARAM_INDEX, PARAM_KEY_PARAM_INDEX,
+							PARAM_KEY_COLUMN },
+					new Object[] { limitParamIndex, keyParamIndex, keyColumn });
+		} else {
+			requireParam(limitParamIndex == null, PARAM_LIMIT_PARAM_INDEX, limitParamIndex);
+		}
 
 		// initialize db connection && prepare statement
 		try {
 			Class.forName(dbDriverClassName);
 			dbConnection = DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
-			queryStatement = dbConnection.prepareStatement(query);
+			queryStatement = dbConnection.prepareStatement(query,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if (fetchSize != null) {
+				queryStatement.setFetchSize(fetchSize);
+			}
 			initTotalCount();
 		} catch (Exception e) {
 			closeQuietly(dbConnection);
 			throw new ResourceInitializationException(e);
 		}
+		if (offsetParamIndex == null && keyParamIndex == null) {
+			dbIterator = new StreamingIterator();
+		} else {
+			dbIterator = new PagingIterator();
+		}
+		if (prefetchSize > 0) {
+			prefetchingIterator = new PrefetchingIterator(dbIterator, prefetchSize);
+			dbIterator = prefetchingIterator;
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
+		if (prefetchingIterator != null) {
+			prefetchingIterator.stop();
+		}
 		try {
 			queryStatement.close();
 		} catch (SQLException e) {
@@ -121,8 +199,9 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 		super.close();
 	}
 
-	private Iterator<DbTuple> dbIterator = new AbstractIterator<DbTuple>() {
+	private class PagingIterator extends AbstractIterator<DbTuple> {
 		private int curOffset;
+		private long lastKey = Integer.MIN_VALUE;
 		private boolean lastBatchFetched = false;
 		private Iterator<DbTuple> batchIterator;
 
@@ -143,10 +222,18 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 
 		private void makeNextBatchIterator() {
 			try {
-				List<DbTuple> batchList = queryBatch(curOffset, batchSize);
+				List<DbTuple> batchList;
+				if (offsetParamIndex != null) {
+					queryStatement.setInt(offsetParamIndex, curOffset);
+				} else {
+					queryStatement.setLong(keyParamIndex, lastKey);
+				}
+				batchList = queryBatch(batchSize);
 				curOffset += batchSize;
 				if (batchList.isEmpty()) {
 					lastBatchFetched = true;
+				} else {
+					lastKey = batchList.get(batchList.size() - 1).key;
 				}
 				batchIterator = batchList.iterator();
 			} catch (Exception e) {
@@ -157,24 +244,113 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 				throw new IllegalStateException();
 			}
 		}
-	};
+	}
+
+	/**
+	 * Executes the query once and reads rows as they are fetched.
+	 */
+	private class StreamingIterator extends AbstractIterator<DbTuple> {
+		private ResultSet rs;
+
+		@Override
+		protected DbTuple computeNext() {
+			try {
+				if (rs == null) {
+					rs = queryStatement.executeQuery();
+				}
+				if (rs.next()) {
+					return toTuple(rs);
+				}
+				rs.close();
+				return endOfData();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Reads tuples from the source iterator in a background thread into a
+	 * bounded queue. A failure of the source iterator is rethrown by
+	 * {@link #hasNext()} after the tuples read before it have been consumed.
+	 */
+	private static class PrefetchingIterator extends AbstractIterator<DbTuple> {
+		private static final DbTuple END_OF_DATA = new DbTuple(null, null, 0);
+
+		private final Iterator<DbTuple> source;
+		private final BlockingQueue<DbTuple> queue;
+		private final Thread thread;
+		private volatile Throwable failure;
+
+		PrefetchingIterator(Iterator<DbTuple> source, int capacity) {
+			this.source = source;
+			this.queue = new ArrayBlockingQueue<DbTuple>(capacity);
+			thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					prefetch();
+				}
+			}, "JdbcCollectionReader-prefetch");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void prefetch() {
+			try {
+				try {
+					while (source.hasNext()) {
+						queue.put(source.next());
+					}
+				} catch (InterruptedException e) {
+					return;
+				} catch (Throwable e) {
+					failure = e;
+				}
+				queue.put(END_OF_DATA);
+			} catch (InterruptedException e) {
+				// the reader is being closed
+			}
+		}
+
+		@Override
+		protected DbTuple computeNext() {
+			DbTuple tuple;
+			try {
+				tuple = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			if (tuple == END_OF_DATA) {
+				if (failure != null) {
+					throw new IllegalStateException("Prefetching has failed", failure);
+				}
+				return endOfData();
+			}
+			return tuple;
+		}
+
+		void stop() {
+			thread.interrupt();
+		}
+	}
 
-	private List<DbTuple> queryBatch(int offset, int limit) throws SQLException, IOException {
-		queryStatement.setInt(offsetParamIndex, offset);
+	private List<DbTuple> queryBatch(int limit) throws SQLException, IOException {
 		queryStatement.setInt(limitParamIndex, limit);
 		ResultSet rs = queryStatement.executeQuery();
 		try {
-			LinkedList<DbTuple> result = newLinkedList();
+			List<DbTuple> result = newArrayListWithCapacity(limit);
 			while (rs.next()) {
 				result.add(toTuple(rs));
 			}
-			return ImmutableList.copyOf(result);
+			return result;
 		} finally {
 			rs.close();
 		}
 	}
 
 	private DbTuple toTuple(ResultSet rs) throws SQLException, IOException {
+		long key = keyColumn == null ? 0 : rs.getLong(keyColumn);
 		String url = rs.getString(documentUrlColumn);
 		String text = null;
 		Clob textClob = rs.getClob(textColumn);
@@ -188,7 +364,7 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 				textClob.free();
 			}
 		}
-		return new DbTuple(url, text);
+		return new DbTuple(url, text, key);
 	}
 
 	/**
@@ -242,14 +418,16 @@ public class JdbcCollectionReader extends CasCollectionReader_ImplBase {
 		}
 	}
 
-	private class DbTuple {
-		DbTuple(String url, String text) {
+	private static class DbTuple {
+		DbTuple(String url, String text, long key) {
 			this.url = url;
 			this.text = text;
+			this.key = key;
 		}
 
 		private final String url;
 		private final String text;
+		private final long key;
 	}
 
 	private static void closeQuietly(Connection con) {
@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.InvalidXMLException;
+import org.apache.uima.util.TypeSystemUtil;
+import org.apache.uima.util.XMLInputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Layout of a directory of CASes in UIMA compressed binary form (form 6):
+ * <ul>
+ * <li>{@value #TYPE_SYSTEM_FILE_NAME} - the type system description shared by
+ * all CAS files of the directory and its subdirectories. CASes are deserialized
+ * against it, so a reader may use a different type system;</li>
+ * <li>files with extension {@value #FILE_EXTENSION}. Each starts with
+ * {@link #MAGIC} followed by one or more entries. An entry is the length of a
+ * serialized CAS (int) followed by the serialized CAS.</li>
+ * </ul>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class BinaryCasFormat {
+
+    public static final String FILE_EXTENSION = "bcas";
+    public static final String TYPE_SYSTEM_FILE_NAME = "typesystem.xml";
+    /**
+     * "UBC1" - UIMA.Ext binary CAS container, version 1.
+     */
+    public static final int MAGIC = 0x55424331;
+
+    public static void writeTypeSystem(TypeSystem ts, File dir) throws IOException {
+        TypeSystemDescription tsDesc = TypeSystemUtil.typeSystem2TypeSystemDescription(ts);
+        OutputStream out = FileUtils.openOutputStream(new File(dir, TYPE_SYSTEM_FILE_NAME));
+        try {
+            tsDesc.toXML(out);
+        } catch (SAXException e) {
+            throw new IOException(e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * @return the type system stored in the given directory or null if there
+     * is no type system file.
+     */
+    public static TypeSystem readTypeSystem(File dir)
+            throws IOException, ResourceInitializationException {
+        File tsFile = new File(dir, TYPE_SYSTEM_FILE_NAME);
+        if (!tsFile.isFile()) {
+            return null;
+        }
+        TypeSystemDescription tsDesc;
+        try {
+            tsDesc = UIMAFramework.getXMLParser().parseTypeSystemDescription(
+                    new XMLInputSource(tsFile));
+        } catch (InvalidXMLException e) {
+            throw new ResourceInitializationException(e);
+        }
+        return CasCreationUtils.createCas(tsDesc, null, null).getTypeSystem();
+    }
+
+    public static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+    }
+
+    public static void readHeader(DataInputStream in, File file) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException(String.format(
+                    "%s is not a binary CAS file, unexpected header %08x", file, magic));
+        }
+    }
+
+    public static void writeEntry(DataOutputStream out, byte[] bytes, int length)
+            throws IOException {
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * @return the next entry or null at the end of the stream.
+     */
+    public static byte[] readEntry(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte[] result = new byte[length];
+        in.readFully(result);
+        return result;
+    }
+
+    /**
+     * @return the number of entries in the stream positioned after the header.
+     */
+    public static int countEntries(DataInputStream in) throws IOException {
+        int count = 0;
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return count;
+            }
+            IOUtils.skipFully(in, length);
+            count++;
+        }
+    }
+
+    private BinaryCasFormat() {
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.cas;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Checks {@link ArrayOverlapIndex} against {@link TreeMapOverlapIndex} and
+ * against brute-force scans over random annotations.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class ArrayOverlapIndexTest {
+
+	private static final int DOC_LENGTH = 200;
+
+	@Test
+	public void testEmpty() throws Exception {
+		List<AnnotationFS> annos = Lists.newArrayList();
+		ArrayOverlapIndex<AnnotationFS> idx = ArrayOverlapIndex.from(annos.iterator());
+		assertEquals(0, idx.getOverlapping(0, 10).size());
+		List<AnnotationFS> target = Lists.newArrayList();
+		idx.getCovering(0, 10, target);
+		idx.getCovered(0, 10, target);
+		assertEquals(0, target.size());
+	}
+
+	@Test
+	public void testRandom() throws Exception {
+		Random rnd = new Random(17);
+		for (int run = 0; run < 20; run++) {
+			JCas jCas = JCasFactory.createJCas();
+			jCas.setDocumentText(Strings.repeat("x", DOC_LENGTH));
+			List<AnnotationFS> annos = Lists.newArrayList();
+			int annoNum = rnd.nextInt(300);
+			for (int i = 0; i < annoNum; i++) {
+				int begin = rnd.nextInt(DOC_LENGTH + 1);
+				// zero-length annotations are frequent enough
+				int end = Math.min(DOC_LENGTH, begin + rnd.nextInt(run % 2 == 0 ? 5 : 50));
+				annos.add(new Annotation(jCas, begin, end));
+				if (rnd.nextInt(10) == 0) {
+					// the same offsets
+					annos.add(new Annotation(jCas, begin, end));
+				}
+				if (rnd.nextInt(10) == 0) {
+					// the same annotation twice
+					annos.add(annos.get(rnd.nextInt(annos.size())));
+				}
+			}
+			annos.add(new Annotation(jCas, 0, DOC_LENGTH));
+			TreeMapOverlapIndex<AnnotationFS> refIdx = TreeMapOverlapIndex.from(annos.iterator());
+			ArrayOverlapIndex<AnnotationFS> idx = ArrayOverlapIndex.from(annos.iterator());
+			for (int q = 0; q < 500; q++) {
+				int begin = rnd.nextInt(DOC_LENGTH + 3) - 1;
+				int end = begin + rnd.nextInt(q % 2 == 0 ? 4 : 60);
+				String msg = String.format("run %s, query [%s,%s)", run, begin, end);
+				// overlapping
+				assertEquals(msg, Lists.newArrayList(refIdx.getOverlapping(begin, end)),
+						Lists.newArrayList(idx.getOverlapping(begin, end)));
+				// covering
+				List<AnnotationFS> actual = Lists.newArrayList();
+				idx.getCovering(begin, end, actual);
+				assertEquals(msg, filter(annos, begin, end, true), Sets.newHashSet(actual));
+				assertEquals(msg, actual.size(), Sets.newHashSet(actual).size());
+				// covered
+				actual.clear();
+				idx.getCovered(begin, end, actual);
+				assertEquals(msg, filter(annos, begin, end, false), Sets.newHashSet(actual));
+				assertEquals(msg, actual.size(), Sets.newHashSet(actual).size());
+			}
+		}
+	}
+
+	private static Set<AnnotationFS> filter(List<AnnotationFS> annos, int begin, int end,
+			boolean covering) {
+		Set<AnnotationFS> result = Sets.newHashSet();
+		for (AnnotationFS a : annos) {
+			if (covering ? a.getBegin() <= begin && a.getEnd() >= end
+					: a.getBegin() >= begin && a.getEnd() <= end) {
+				result.add(a);
+			}
+		}
+		return result;
+	}
+}
@@ -15,12 +15,13 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
- * TODO test
+ * The former default overlap index implementation. It is kept as the reference
+ * for {@link ArrayOverlapIndexTest}.
  * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
-class TreeMapOverlapIndex<A extends AnnotationFS> implements OverlapIndex<A> {
+class TreeMapOverlapIndex<A extends AnnotationFS> {
 	// factory methods
 	static <A extends AnnotationFS> TreeMapOverlapIndex<A> from(Iterator<A> srcIter) {
 		return new TreeMapOverlapIndex<A>(srcIter);
@@ -68,7 +69,6 @@ class TreeMapOverlapIndex<A extends AnnotationFS> implements OverlapIndex<A> {
 		}
 	}
 
-	@Override
 	public Set<A> getOverlapping(int begin, int end) {
 		Set<A> result = Sets.newTreeSet(innerComparator);
 		// annotations whose begin in [begin, end) interval
@@ -0,0 +1,172 @@
+package ru.kfu.itis.cll.uima.consumer;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.fit.util.CasUtil;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.kfu.itis.cll.uima.commons.DocumentMetadata;
+import ru.kfu.itis.cll.uima.cpe.CasFileCollectionReader;
+import ru.kfu.itis.cll.uima.io.BinaryCasFormat;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class CasFileWriterTest {
+
+    private static final int DOCS_NUM = 7;
+    private static final String TOKEN_TYPE = "test.Token";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+    private TypeSystemDescription tsd;
+
+    @Before
+    public void init() {
+        tsd = TypeSystemDescriptionFactory.createTypeSystemDescription(
+                "ru.kfu.itis.cll.uima.commons.Commons-TypeSystem");
+        TypeDescription tokenType = tsd.addType(TOKEN_TYPE, null, CAS.TYPE_NAME_ANNOTATION);
+        tokenType.addFeature("pos", null, CAS.TYPE_NAME_STRING);
+        tokenType.addFeature("idx", null, CAS.TYPE_NAME_INTEGER);
+        tokenType.addFeature("score", null, CAS.TYPE_NAME_DOUBLE);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, String> expected = write(tempFolder.newFolder("xmi"),
+                CasFileWriter.Format.XMI, 1);
+        assertEquals(DOCS_NUM, expected.size());
+        assertEquals(expected, read(tempFolder.getRoot(), "xmi"));
+
+        File binDir = tempFolder.newFolder("bin");
+        assertEquals(expected, write(binDir, CasFileWriter.Format.BINARY, 1));
+        assertEquals(expected, read(tempFolder.getRoot(), "bin"));
+        assertTrue(new File(binDir, BinaryCasFormat.TYPE_SYSTEM_FILE_NAME).isFile());
+        assertTrue(new File(binDir, "docs/doc0.txt.bcas").isFile());
+        assertTrue(FileUtils.sizeOfDirectory(binDir) - new File(binDir,
+                BinaryCasFormat.TYPE_SYSTEM_FILE_NAME).length()
+                < FileUtils.sizeOfDirectory(new File(tempFolder.getRoot(), "xmi")));
+
+        File archiveDir = tempFolder.newFolder("archives");
+        write(archiveDir, CasFileWriter.Format.BINARY, 3);
+        assertEquals(expected, read(tempFolder.getRoot(), "archives"));
+        // 7 documents in 3 archives
+        assertEquals(3, FileUtils.listFiles(archiveDir, new String[]{"bcas"}, false).size());
+
+        write(tempFolder.newFolder("gz"), CasFileWriter.Format.XMI_GZIP, 1);
+        assertEquals(expected, read(tempFolder.getRoot(), "gz"));
+    }
+
+    /**
+     * @return dumps of written CASes by their URI
+     */
+    private Map<String, String> write(File outDir, CasFileWriter.Format format, int docsPerArchive)
+            throws Exception {
+        AnalysisEngine writer = AnalysisEngineFactory.createEngine(CasFileWriter.class, tsd,
+                CasFileWriter.PARAM_OUTPUT_BASE_PATH, outDir.getPath(),
+                CasFileWriter.PARAM_FORMAT, format.name(),
+                CasFileWriter.PARAM_DOCS_PER_ARCHIVE, docsPerArchive,
+                CasFileWriter.PARAM_WRITE_QUEUE_SIZE, 2);
+        Map<String, String> dumps = Maps.newHashMap();
+        JCas jCas = writer.newJCas();
+        for (int d = 0; d < DOCS_NUM; d++) {
+            jCas.reset();
+            fill(jCas, d);
+            writer.process(jCas);
+            dumps.put(uri(d), dump(jCas.getCas()));
+        }
+        writer.collectionProcessComplete();
+        writer.destroy();
+        return dumps;
+    }
+
+    private Map<String, String> read(File parentDir, String dirName) throws Exception {
+        CollectionReader reader = CollectionReaderFactory.createReader(
+                CasFileCollectionReader.createDescription(new File(parentDir, dirName), tsd));
+        CAS cas = CasCreationUtils.createCas(tsd, null, null);
+        Map<String, String> dumps = Maps.newHashMap();
+        while (reader.hasNext()) {
+            cas.reset();
+            reader.getNext(cas);
+            String uri = JCasUtil.selectSingle(cas.getJCas(), DocumentMetadata.class)
+                    .getSourceUri();
+            dumps.put(uri, dump(cas));
+        }
+        assertEquals(DOCS_NUM, reader.getProgress()[0].getCompleted());
+        assertEquals(DOCS_NUM, reader.getProgress()[0].getTotal());
+        reader.close();
+        reader.destroy();
+        return dumps;
+    }
+
+    private static String uri(int docIdx) {
+        return "file:/docs/doc" + docIdx + ".txt";
+    }
+
+    private static void fill(JCas jCas, int docIdx) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i <= docIdx * 5; i++) {
+            text.append("слово").append(i).append(' ');
+        }
+        jCas.setDocumentText(text.toString());
+        DocumentMetadata meta = new DocumentMetadata(jCas, 0, 0);
+        meta.setSourceUri(uri(docIdx));
+        meta.setDocumentSize(text.length());
+        meta.addToIndexes();
+        CAS cas = jCas.getCas();
+        Feature posFeat = cas.getTypeSystem().getFeatureByFullName(TOKEN_TYPE + ":pos");
+        Feature idxFeat = cas.getTypeSystem().getFeatureByFullName(TOKEN_TYPE + ":idx");
+        Feature scoreFeat = cas.getTypeSystem().getFeatureByFullName(TOKEN_TYPE + ":score");
+        int begin = 0;
+        for (int i = 0; i <= docIdx * 5; i++) {
+            int end = text.indexOf(" ", begin);
+            AnnotationFS token = cas.createAnnotation(CasUtil.getType(cas, TOKEN_TYPE), begin, end);
+            if (i % 3 != 0) {
+                token.setStringValue(posFeat, i % 2 == 0 ? "NOUN" : "VERB");
+            }
+            token.setIntValue(idxFeat, i);
+            token.setDoubleValue(scoreFeat, i / 7.0);
+            cas.addFsToIndexes(token);
+            begin = end + 1;
+        }
+    }
+
+    private static String dump(CAS cas) {
+        StringBuilder sb = new StringBuilder(cas.getDocumentText()).append('\n');
+        for (AnnotationFS anno : cas.getAnnotationIndex()) {
+            sb.append(anno.getType().getName()).append('[')
+                    .append(anno.getBegin()).append(',').append(anno.getEnd()).append(']');
+            for (Feature f : anno.getType().getFeatures()) {
+                if (f.getRange().isPrimitive() && !f.getShortName().equals("begin")
+                        && !f.getShortName().equals("end")) {
+                    sb.append(' ').append(f.getShortName()).append('=')
+                            .append(((FeatureStructure) anno).getFeatureValueAsString(f));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
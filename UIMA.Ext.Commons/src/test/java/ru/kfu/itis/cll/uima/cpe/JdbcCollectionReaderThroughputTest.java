@@ -0,0 +1,182 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.cpe;
+
+import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.junit.Assert.assertEquals;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_BATCH_SIZE;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_COUNT_QUERY;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_DATABASE_URL;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_DOCUMENT_URL_COLUMN;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_DRIVER_CLASS;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_FETCH_SIZE;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_KEY_COLUMN;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_KEY_PARAM_INDEX;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_LIMIT_PARAM_INDEX;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_OFFSET_PARAM_INDEX;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_PASSWORD;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_PREFETCH_SIZE;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_QUERY;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_TEXT_COLUMN;
+import static ru.kfu.itis.cll.uima.cpe.JdbcCollectionReader.PARAM_USERNAME;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.cll.uima.commons.DocumentMetadata;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.ObjectArrays;
+
+/**
+ * Reads the same table in each mode of {@link JdbcCollectionReader}, checks
+ * that the modes give the same documents (URLs and texts) in the same order,
+ * and logs throughput of each mode.
+ * <p>
+ * By default the table is small. Set system property
+ * {@value #SYSPROP_THROUGHPUT} to true to compare throughput on a table of
+ * {@value #THROUGHPUT_ROWS} rows, e.g.:
+ * 
+ * <pre>
+ * mvn test -Dtest=JdbcCollectionReaderThroughputTest -Djdbc-reader.test.throughput=true
+ * </pre>
+ * 
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class JdbcCollectionReaderThroughputTest {
+
+	public static final String SYSPROP_THROUGHPUT = "jdbc-reader.test.throughput";
+	private static final int THROUGHPUT_ROWS = 200000;
+	private static final int EQUIVALENCE_ROWS = 1000;
+
+	private static final Logger log = LoggerFactory.getLogger(JdbcCollectionReaderThroughputTest.class);
+	private static final String DB_URL = "jdbc:hsqldb:mem:jdbc-collection-reader-throughput-test";
+	private static final boolean THROUGHPUT = Boolean.getBoolean(SYSPROP_THROUGHPUT);
+	private static final int ROWS = THROUGHPUT ? THROUGHPUT_ROWS : EQUIVALENCE_ROWS;
+	// the small table still spans many pages, and the last one is partial
+	private static final int BATCH_SIZE = THROUGHPUT ? 1000 : 64;
+
+	@BeforeClass
+	public static void initDB() throws Exception {
+		Class.forName("org.hsqldb.jdbc.JDBCDriver");
+		Connection con = DriverManager.getConnection(DB_URL, "SA", "");
+		try {
+			Statement createTable = con.createStatement();
+			// 1 KB LOB blocks instead of the default 32 KB, texts are shorter
+			createTable.execute("SET FILES LOB SCALE 1");
+			createTable.execute("CREATE TABLE doc (" +
+					"id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, " +
+					"url VARCHAR(256) NOT NULL, " +
+					"txt CLOB)");
+			createTable.close();
+
+			con.setAutoCommit(false);
+			PreparedStatement insert = con.prepareStatement(
+					"INSERT INTO doc(url, txt) VALUES (?,?)");
+			for (int i = 0; i < ROWS; i++) {
+				insert.setString(1, "http://example.com/" + i);
+				insert.setString(2, docText(i));
+				insert.addBatch();
+				if (i % BATCH_SIZE == BATCH_SIZE - 1) {
+					insert.executeBatch();
+				}
+			}
+			if (ROWS % BATCH_SIZE != 0) {
+				insert.executeBatch();
+			}
+			con.commit();
+			insert.close();
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void compareModes() throws Exception {
+		List<List<String>> offsetDocs = read("offset",
+				PARAM_QUERY, "SELECT url, txt FROM doc ORDER BY id OFFSET ? LIMIT ?",
+				PARAM_OFFSET_PARAM_INDEX, 1,
+				PARAM_LIMIT_PARAM_INDEX, 2);
+		assertEquals(ROWS, offsetDocs.size());
+		assertEquals(ImmutableList.of("http://example.com/0", docText(0)), offsetDocs.get(0));
+		assertEquals(ImmutableList.of("http://example.com/" + (ROWS - 1), docText(ROWS - 1)),
+				offsetDocs.get(ROWS - 1));
+
+		Object[] keysetParams = {
+				PARAM_QUERY, "SELECT id, url, txt FROM doc WHERE id > ? ORDER BY id LIMIT ?",
+				PARAM_KEY_COLUMN, "id",
+				PARAM_KEY_PARAM_INDEX, 1,
+				PARAM_LIMIT_PARAM_INDEX, 2 };
+		assertEquals(offsetDocs, read("keyset", keysetParams));
+		assertEquals(offsetDocs, read("keyset + prefetch", ObjectArrays.concat(keysetParams,
+				new Object[] { PARAM_PREFETCH_SIZE, BATCH_SIZE }, Object.class)));
+		assertEquals(offsetDocs, read("streaming + prefetch",
+				PARAM_QUERY, "SELECT url, txt FROM doc ORDER BY id",
+				PARAM_FETCH_SIZE, BATCH_SIZE,
+				PARAM_PREFETCH_SIZE, BATCH_SIZE));
+	}
+
+	private static String docText(int i) {
+		// some texts are longer than a typical VARCHAR
+		return "Document text number " + i + "." + Strings.repeat(" Lorem ipsum.", i % 50);
+	}
+
+	/**
+	 * @return list of (URL, text) pairs
+	 */
+	private static List<List<String>> read(String mode, Object... modeParams) throws Exception {
+		TypeSystemDescription tsDesc = createTypeSystemDescription(
+				"ru.kfu.itis.cll.uima.commons.Commons-TypeSystem");
+		Object[] params = ObjectArrays.concat(new Object[] {
+				PARAM_DATABASE_URL, DB_URL + ";ifexists=true",
+				PARAM_USERNAME, "SA",
+				PARAM_PASSWORD, "",
+				PARAM_DRIVER_CLASS, "org.hsqldb.jdbc.JDBCDriver",
+				PARAM_DOCUMENT_URL_COLUMN, "url",
+				PARAM_TEXT_COLUMN, "txt",
+				PARAM_BATCH_SIZE, BATCH_SIZE,
+				PARAM_COUNT_QUERY, "SELECT count(*) FROM doc"
+		}, modeParams, Object.class);
+		CollectionReader reader = createReader(JdbcCollectionReader.class, tsDesc, params);
+		CAS cas = CasCreationUtils.createCas(reader.getProcessingResourceMetaData());
+		List<List<String>> docs = Lists.newArrayListWithExpectedSize(ROWS);
+		long startTime = System.currentTimeMillis();
+		try {
+			while (reader.hasNext()) {
+				cas.reset();
+				reader.getNext(cas);
+				JCas jCas = cas.getJCas();
+				DocumentMetadata docMeta = (DocumentMetadata) jCas.getAnnotationIndex(
+						DocumentMetadata.type).iterator().next();
+				docs.add(ImmutableList.of(docMeta.getSourceUri(), jCas.getDocumentText()));
+			}
+		} finally {
+			reader.close();
+			reader.destroy();
+		}
+		long time = System.currentTimeMillis() - startTime;
+		log.info("{}: {} documents in {} ms, {} docs/s", new Object[] {
+				mode, docs.size(), time, docs.size() * 1000L / Math.max(time, 1) });
+		return docs;
+	}
+}
@@ -3,6 +3,9 @@ package ru.kfu.itis.issst.uima.depparser.mst;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -35,6 +38,54 @@ public class MSTFormat {
 				Lists.newArrayList(ArrayUtils.toObject(instance.heads)));
 	}
 
+	/**
+	 * Make an unparsed instance as {@link mstparser.io.MSTReader} would read it
+	 * from an input written by
+	 * {@link #writeInstance(Writer, Iterable, Iterable, Iterable)} with dummy
+	 * heads. This includes the artificial root token and derived features.
+	 */
+	public static DependencyInstance createInstance(List<String> forms, List<String> tags) {
+		if (forms.size() != tags.size()) {
+			throw new IllegalArgumentException(String.format(
+					"Forms size %s != tags size %s", forms.size(), tags.size()));
+		}
+		int length = forms.size() + 1;
+		String[] instForms = new String[length];
+		String[] instTags = new String[length];
+		String[] instDeprels = new String[length];
+		int[] instHeads = new int[length];
+		instForms[0] = "<root>";
+		instTags[0] = "<root-POS>";
+		instDeprels[0] = "<no-type>";
+		instHeads[0] = -1;
+		Iterator<String> tagIter = tags.iterator();
+		int i = 1;
+		for (String form : forms) {
+			instForms[i] = NUMBER_PATTERN.matcher(form).matches() ? "<num>" : form;
+			String tag = tagIter.next();
+			instTags[i] = tag == null ? "null" : tag;
+			instDeprels[i] = "<no-type>";
+			i++;
+		}
+		DependencyInstance result = new DependencyInstance(
+				instForms, instTags, instDeprels, instHeads, null);
+		String[] cpostags = new String[length];
+		// MSTReader puts the root lemma here instead of lemmas
+		cpostags[0] = "<root-LEMMA>";
+		String[] lemmas = new String[length];
+		for (i = 1; i < length; i++) {
+			cpostags[i] = instTags[i].substring(0, 1);
+			lemmas[i] = instForms[i].length() > 5 ? instForms[i].substring(0, 5) : instForms[i];
+		}
+		result.cpostags = cpostags;
+		result.lemmas = lemmas;
+		result.feats = new String[0][0];
+		return result;
+	}
+
+	private static final Pattern NUMBER_PATTERN = Pattern.compile(
+			"[0-9]+|[0-9]+\\.[0-9]+|[0-9]+[0-9,]+");
+
 	private MSTFormat() {
 	}
 }
@@ -1,7 +1,6 @@
 package ru.kfu.itis.issst.uima.depparser.mst;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Lists.newArrayListWithExpectedSize;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
 import static org.apache.uima.fit.factory.ExternalResourceFactory.bindResource;
 import static org.apache.uima.fit.factory.ExternalResourceFactory.createDependency;
@@ -10,7 +9,6 @@ import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTyp
 import static ru.kfu.itis.cll.uima.cas.AnnotationUtils.coveredTextFunction;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -18,6 +16,11 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import mstparser.DependencyInstance;
 import mstparser.DependencyParser;
@@ -38,6 +41,7 @@ import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.util.InvalidXMLException;
 import org.opencorpora.cas.Word;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 
 import ru.kfu.cll.uima.segmentation.fstype.Sentence;
@@ -48,7 +52,14 @@ import ru.kfu.itis.issst.uima.morph.commons.TagUtils;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Parses sentences of a CAS with the MST parser. Parser input is made
+ * directly from words and their tags, and sentences are decoded independently.
+ * If {@value #PARAM_THREADS} is greater than 1, sentences of a CAS are decoded
+ * concurrently by threads that share the loaded model.
+ */
 public class MSTParsingAnnotator extends JCasAnnotator_ImplBase {
 
 	public static AnalysisEngineDescription createDescription(URL modelUrl)
@@ -69,14 +80,20 @@ public class MSTParsingAnnotator extends JCasAnnotator_ImplBase {
 	public static final String RESOURCE_MODEL_FILE = "modelFile";
 	public static final String MODEL_PROPERTIES_FILE_EXTENSION = ".props";
 	public static final String MODEL_PROP_ORDER = "order";
+	public static final String PARAM_THREADS = "threads";
 
+	// config fields
+	@ConfigurationParameter(name = PARAM_THREADS, defaultValue = "1")
+	private int threads;
 	// state fields
-	private DependencyParser parser;
+	private SentenceParser parser;
 	private Function<Word, String> tagFunction;
+	private ExecutorService decodingExecutor;
 
 	@Override
 	public void initialize(UimaContext ctx) throws ResourceInitializationException {
 		super.initialize(ctx);
+		AnnotatorUtils.requireParam(threads > 0, PARAM_THREADS, threads);
 		//
 		tagFunction = TagUtils.tagFunction();
 		// TODO:LOW make it works with URL instead of files 
@@ -108,7 +125,7 @@ public class MSTParsingAnnotator extends JCasAnnotator_ImplBase {
 					? new DependencyPipe2O(options)
 					: new DependencyPipe(options);
 			// make Parser intance
-			parser = new DependencyParser(pipe, options);
+			parser = new SentenceParser(pipe, options);
 			// load model
 			modelStream = new BufferedInputStream(new FileInputStream(modelFile));
 			parser.loadModel(modelStream);
@@ -117,39 +134,44 @@ public class MSTParsingAnnotator extends JCasAnnotator_ImplBase {
 		} finally {
 			IOUtils.closeQuietly(modelStream);
 		}
+		if (threads > 1) {
+			decodingExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+					.setDaemon(true).setNameFormat("mst-decoder-%d").build());
+		}
 	}
 
 	@Override
 	public void process(JCas cas) throws AnalysisEngineProcessException {
-		if (!JCasUtil.exists(cas, Sentence.class) || !JCasUtil.exists(cas, Word.class)) {
-			return;
-		}
-		try {
-			parser.options.testfile = generateTempInputFile(cas);
-		} catch (IOException e) {
-			throw new AnalysisEngineProcessException(e);
+		List<List<Word>> sentWords = newArrayList();
+		List<DependencyInstance> instances = newArrayList();
+		for (Sentence sentence : JCasUtil.select(cas, Sentence.class)) {
+			List<Word> words = JCasUtil.selectCovered(cas, Word.class, sentence);
+			if (words.isEmpty()) {
+				continue;
+			}
+			sentWords.add(words);
+			instances.add(MSTFormat.createInstance(
+					Lists.transform(words, coveredTextFunction()),
+					Lists.transform(words, tagFunction)));
 		}
 		// run parsing
-		List<DependencyInstance> parsedInstances;
+		List<int[]> parsedHeads;
 		try {
-			parsedInstances = parser.getParses();
-		} catch (IOException e) {
+			parsedHeads = parse(instances);
+		} catch (ExecutionException e) {
+			throw new AnalysisEngineProcessException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new AnalysisEngineProcessException(e);
-		} finally {
-			new File(parser.options.testfile).delete();
-			parser.options.testfile = null;
 		}
 		// add to CAS
-		List<Sentence> sentences = newArrayList(JCasUtil.select(cas, Sentence.class));
-		for (int instanceIndex = 0; instanceIndex < parsedInstances.size(); instanceIndex++) {
-			DependencyInstance instance = parsedInstances.get(instanceIndex);
-			Sentence sentence = sentences.get(instanceIndex);
-
-			List<Word> words = newArrayList(JCasUtil.selectCovered(cas, Word.class, sentence));
-			for (int wIndex = 0; wIndex < instance.forms.length; wIndex++) {
+		for (int instanceIndex = 0; instanceIndex < parsedHeads.size(); instanceIndex++) {
+			int[] heads = parsedHeads.get(instanceIndex);
+			List<Word> words = sentWords.get(instanceIndex);
+			for (int wIndex = 0; wIndex < heads.length; wIndex++) {
 				Word w = words.get(wIndex);
 				// get dependency relation and head information for token
-				int head = instance.heads[wIndex];
+				int head = heads[wIndex];
 
 				// write dependency information as annotation to JCas
 				Dependency dep = new Dependency(cas, w.getBegin(), w.getEnd());
@@ -166,6 +188,45 @@ public class MSTParsingAnnotator extends JCasAnnotator_ImplBase {
 		}
 	}
 
+	@Override
+	public void destroy() {
+		if (decodingExecutor != null) {
+			decodingExecutor.shutdownNow();
+			decodingExecutor = null;
+		}
+		super.destroy();
+	}
+
+	private List<int[]> parse(List<DependencyInstance> instances)
+			throws InterruptedException, ExecutionException {
+		List<int[]> result = Lists.newArrayListWithExpectedSize(instances.size());
+		if (decodingExecutor == null || instances.size() < 2) {
+			for (DependencyInstance inst : instances) {
+				result.add(parser.parse(inst));
+			}
+			return result;
+		}
+		List<Future<int[]>> futures = Lists.newArrayListWithExpectedSize(instances.size());
+		for (final DependencyInstance inst : instances) {
+			futures.add(decodingExecutor.submit(new Callable<int[]>() {
+				@Override
+				public int[] call() throws Exception {
+					return parser.parse(inst);
+				}
+			}));
+		}
+		try {
+			for (Future<int[]> f : futures) {
+				result.add(f.get());
+			}
+		} finally {
+			for (Future<int[]> f : futures) {
+				f.cancel(true);
+			}
+		}
+		return result;
+	}
+
 	private Properties readModelProperties(File modelFile) throws IOException {
 		File modelDir = modelFile.getParentFile();
 		String propsFileName = modelFile.getName() + MODEL_PROPERTIES_FILE_EXTENSION;
@@ -174,30 +235,24 @@ public class MSTParsingAnnotator extends JCasAnnotator_ImplBase {
 	}
 
 	/**
-	 * Generates a temporary file from a jcas. This is needed as input to the
-	 * MST parser.
+	 * Exposes decoding of a single instance. Decoding does not change the
+	 * state of the parser as alphabets of the pipe are closed when a model is
+	 * loaded, so concurrent invocations are safe.
 	 */
-	private String generateTempInputFile(JCas jcas) throws IOException {
-		File tempfile = File.createTempFile("MSTinput", "txt");
-		BufferedWriter out = IoUtils.openBufferedWriter(tempfile);
+	private static class SentenceParser extends DependencyParser {
 
-		// write sentences to temporary file in MST input format
-		try {
-			for (Sentence sentence : JCasUtil.select(jcas, Sentence.class)) {
-				List<Word> words = JCasUtil.selectCovered(jcas, Word.class, sentence);
-				List<String> forms = Lists.transform(words, coveredTextFunction());
-				List<String> tags = Lists.transform(words, tagFunction);
-				// Dummy values for heads
-				List<Integer> dummyHeads = newArrayListWithExpectedSize(words.size());
-				for (int i = 0; i < words.size(); i++) {
-					dummyHeads.add(0);
-				}
-				MSTFormat.writeInstance(out, forms, tags, dummyHeads);
-			}
-		} finally {
-			IOUtils.closeQuietly(out);
+		SentenceParser(DependencyPipe pipe, ParserOptions options) {
+			super(pipe, options);
+		}
+
+		/**
+		 * @return head indices of words of the given instance (excluding its
+		 *         root) where 0 means the root
+		 */
+		int[] parse(DependencyInstance inst) {
+			int[] heads = new int[inst.length() - 1];
+			decode(inst, options.testK, params, heads);
+			return heads;
 		}
-		tempfile.deleteOnExit();
-		return tempfile.getPath();
 	}
 }
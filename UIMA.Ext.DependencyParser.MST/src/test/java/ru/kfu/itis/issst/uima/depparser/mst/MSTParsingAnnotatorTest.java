@@ -0,0 +1,264 @@
+package ru.kfu.itis.issst.uima.depparser.mst;
+
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import gnu.trove.TObjectIntHashMap;
+import mstparser.Alphabet;
+import mstparser.DependencyInstance;
+import mstparser.DependencyParser;
+import mstparser.DependencyPipe;
+import mstparser.DependencyPipe2O;
+import mstparser.ParserOptions;
+import mstparser.io.DependencyReader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencorpora.cas.Word;
+import org.opencorpora.cas.Wordform;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.itis.cll.uima.cas.FSUtils;
+import ru.kfu.itis.cll.uima.io.IoUtils;
+import ru.kfu.itis.issst.uima.depparser.Dependency;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+/**
+ * Checks that the annotator gives the same instances and parses as the
+ * file-based MST parser API.
+ */
+public class MSTParsingAnnotatorTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testInstancesSameAsRead() throws Exception {
+		List<List<String>> sentForms = Lists.newArrayList();
+		List<List<String>> sentTags = Lists.newArrayList();
+		makeSentences(sentForms, sentTags);
+		DependencyReader reader = DependencyReader.createDependencyReader("MST", false);
+		reader.startReading(writeInput(sentForms, sentTags).getPath());
+		for (int i = 0; i < sentForms.size(); i++) {
+			DependencyInstance expected = reader.getNext();
+			DependencyInstance actual = MSTFormat.createInstance(sentForms.get(i), sentTags.get(i));
+			String msg = "Sentence " + i;
+			Assert.assertArrayEquals(msg, expected.forms, actual.forms);
+			Assert.assertArrayEquals(msg, expected.lemmas, actual.lemmas);
+			Assert.assertArrayEquals(msg, expected.cpostags, actual.cpostags);
+			Assert.assertArrayEquals(msg, expected.postags, actual.postags);
+			Assert.assertArrayEquals(msg, expected.feats, actual.feats);
+			Assert.assertArrayEquals(msg, expected.deprels, actual.deprels);
+			Assert.assertArrayEquals(msg, expected.heads, actual.heads);
+			Assert.assertEquals(msg, expected.relFeats, actual.relFeats);
+		}
+		Assert.assertNull(reader.getNext());
+	}
+
+	@Test
+	public void testFirstOrderModel() throws Exception {
+		testSameAsFileBasedParsing(false);
+	}
+
+	@Test
+	public void testSecondOrderModel() throws Exception {
+		testSameAsFileBasedParsing(true);
+	}
+
+	private void testSameAsFileBasedParsing(boolean secondOrder) throws Exception {
+		File modelFile = writeModel(secondOrder);
+		List<List<String>> sentForms = Lists.newArrayList();
+		List<List<String>> sentTags = Lists.newArrayList();
+		makeSentences(sentForms, sentTags);
+		// parse via a file
+		List<int[]> expectedHeads = Lists.newArrayList();
+		for (DependencyInstance inst : parseFile(modelFile, secondOrder, sentForms, sentTags)) {
+			// parsed instances do not contain the root
+			expectedHeads.add(inst.heads);
+		}
+		Assert.assertEquals(sentForms.size(), expectedHeads.size());
+		// parse via the annotator
+		for (int threads : new int[] { 1, 3 }) {
+			AnalysisEngineDescription desc = MSTParsingAnnotator.createDescription(
+					modelFile.toURI().toURL());
+			desc.getAnalysisEngineMetaData().getConfigurationParameterSettings()
+					.setParameterValue(MSTParsingAnnotator.PARAM_THREADS, threads);
+			AnalysisEngine parserAE = AnalysisEngineFactory.createEngine(desc);
+			JCas jCas = CasCreationUtils.createCas(createTypeSystem(), null, null).getJCas();
+			fillCas(jCas, sentForms, sentTags);
+			parserAE.process(jCas);
+			List<int[]> actualHeads = Lists.newArrayList();
+			for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+				List<Word> words = JCasUtil.selectCovered(jCas, Word.class, sent);
+				List<Dependency> deps = JCasUtil.selectCovered(jCas, Dependency.class, sent);
+				Assert.assertEquals(words.size(), deps.size());
+				int[] heads = new int[deps.size()];
+				for (int i = 0; i < deps.size(); i++) {
+					Assert.assertEquals(words.get(i), deps.get(i).getDependent());
+					heads[i] = words.indexOf(deps.get(i).getHead()) + 1;
+				}
+				actualHeads.add(heads);
+			}
+			parserAE.destroy();
+			Assert.assertEquals(expectedHeads.size(), actualHeads.size());
+			for (int i = 0; i < expectedHeads.size(); i++) {
+				Assert.assertArrayEquals("Sentence " + i, expectedHeads.get(i), actualHeads.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Write a model with a single weight. The model can not be trained here as
+	 * the trove version required by mstparser returns 0 for missing keys, so
+	 * its alphabets never grow. Due to the same reason every feature is mapped
+	 * to the single weight, i.e., an edge score is the number of its features,
+	 * that still gives non-trivial parses.
+	 */
+	private File writeModel(boolean secondOrder) throws Exception {
+		File modelFile = tempFolder.newFile("test.model");
+		Alphabet typeAlphabet = new Alphabet();
+		// the file-based API resolves labels of parsed edges by the type alphabet
+		Field mapField = Alphabet.class.getDeclaredField("map");
+		mapField.setAccessible(true);
+		((TObjectIntHashMap) mapField.get(typeAlphabet)).put("<no-type>", 0);
+		Field numEntriesField = Alphabet.class.getDeclaredField("numEntries");
+		numEntriesField.setAccessible(true);
+		numEntriesField.setInt(typeAlphabet, 1);
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(modelFile));
+		try {
+			out.writeObject(new double[] { 1.0 });
+			out.writeObject(new Alphabet());
+			out.writeObject(typeAlphabet);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		Properties modelProps = new Properties();
+		modelProps.setProperty(MSTParsingAnnotator.MODEL_PROP_ORDER, secondOrder ? "2" : "1");
+		BufferedWriter propsWriter = IoUtils.openBufferedWriter(new File(modelFile.getPath()
+				+ MSTParsingAnnotator.MODEL_PROPERTIES_FILE_EXTENSION));
+		try {
+			modelProps.store(propsWriter, null);
+		} finally {
+			IOUtils.closeQuietly(propsWriter);
+		}
+		return modelFile;
+	}
+
+	private File writeInput(List<List<String>> sentForms, List<List<String>> sentTags)
+			throws Exception {
+		File inputFile = tempFolder.newFile("input.txt");
+		BufferedWriter out = IoUtils.openBufferedWriter(inputFile);
+		try {
+			for (int i = 0; i < sentForms.size(); i++) {
+				MSTFormat.writeInstance(out, sentForms.get(i), sentTags.get(i),
+						Collections.nCopies(sentForms.get(i).size(), 0));
+			}
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		return inputFile;
+	}
+
+	private List<DependencyInstance> parseFile(File modelFile, boolean secondOrder,
+			List<List<String>> sentForms, List<List<String>> sentTags) throws Exception {
+		File inputFile = writeInput(sentForms, sentTags);
+		ParserOptions options = new ParserOptions(new String[0]);
+		options.test = true;
+		options.format = "MST";
+		options.secondOrder = secondOrder;
+		options.testfile = inputFile.getPath();
+		options.outfile = tempFolder.newFile("output.txt").getPath();
+		DependencyPipe pipe = secondOrder
+				? new DependencyPipe2O(options)
+				: new DependencyPipe(options);
+		DependencyParser parser = new DependencyParser(pipe, options);
+		parser.loadModel(modelFile.getPath());
+		return parser.getParses();
+	}
+
+	/**
+	 * Make sentences from the training data: original ones, shuffled ones and
+	 * ones with a number and a missing tag.
+	 */
+	private static void makeSentences(List<List<String>> sentForms, List<List<String>> sentTags)
+			throws Exception {
+		List<String> lines = FileUtils.readLines(
+				new File("src/test/resources/mst-example.txt"), "UTF-8");
+		Splitter tabSplitter = Splitter.on('\t');
+		for (int variant = 0; variant < 4; variant++) {
+			for (int l = 0; l + 2 < lines.size(); l += 4) {
+				List<String> forms = Lists.newArrayList(tabSplitter.split(lines.get(l)));
+				List<String> tags = Lists.newArrayList(tabSplitter.split(lines.get(l + 1)));
+				if (variant > 0) {
+					Collections.rotate(forms, variant);
+					Collections.rotate(tags, variant);
+				}
+				if (variant == 3) {
+					forms.set(0, "12");
+					tags.set(tags.size() - 1, null);
+				}
+				sentForms.add(forms);
+				sentTags.add(tags);
+			}
+		}
+	}
+
+	private static void fillCas(JCas jCas, List<List<String>> sentForms,
+			List<List<String>> sentTags) {
+		StringBuilder text = new StringBuilder();
+		List<int[]> offsets = Lists.newArrayList();
+		for (List<String> forms : sentForms) {
+			for (String form : forms) {
+				offsets.add(new int[] { text.length(), text.length() + form.length() });
+				text.append(form).append(' ');
+			}
+			text.append('\n');
+		}
+		jCas.setDocumentText(text.toString());
+		int tokenIndex = 0;
+		for (int s = 0; s < sentForms.size(); s++) {
+			int sentBegin = offsets.get(tokenIndex)[0];
+			List<String> tags = sentTags.get(s);
+			for (String tag : tags) {
+				int[] tokenOffsets = offsets.get(tokenIndex++);
+				Word w = new Word(jCas, tokenOffsets[0], tokenOffsets[1]);
+				Wordform wf = new Wordform(jCas);
+				wf.setWord(w);
+				wf.setPos(tag);
+				w.setWordforms(FSUtils.toFSArray(jCas, wf));
+				w.addToIndexes();
+			}
+			new Sentence(jCas, sentBegin, offsets.get(tokenIndex - 1)[1]).addToIndexes();
+		}
+	}
+
+	private static TypeSystemDescription createTypeSystem() {
+		return createTypeSystemDescription(
+				TokenizerAPI.TYPESYSTEM_TOKENIZER,
+				SentenceSplitterAPI.TYPESYSTEM_SENTENCES,
+				"ru.kfu.itis.issst.uima.depparser.dependency-ts");
+	}
+}
@@ -1,149 +1,352 @@
-/**
- * 
- */
-package ru.kfu.itis.cll.uima.eval;
-
-import static com.google.common.collect.Maps.newLinkedHashMap;
-import static com.google.common.collect.Sets.newHashSet;
-import static com.google.common.collect.Sets.newLinkedHashSet;
-import static java.lang.System.currentTimeMillis;
-
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Set;
-
-import javax.annotation.Resource;
-
-import org.apache.uima.cas.CAS;
-import org.apache.uima.cas.FSIterator;
-import org.apache.uima.cas.text.AnnotationFS;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-
-import ru.kfu.itis.cll.uima.eval.anno.AnnotationExtractor;
-import ru.kfu.itis.cll.uima.eval.anno.DocumentMetaExtractor;
-import ru.kfu.itis.cll.uima.eval.anno.MatchingStrategy;
-import ru.kfu.itis.cll.uima.eval.cas.CasDirectory;
-
-/**
- * TODO Complete annotation duplicates (by offsets & type) are ignored. Check
- * consistency.
- * 
- * @author Rinat Gareev (Kazan Federal University)
- * 
- */
-public class GoldStandardBasedEvaluation {
-
-	private final Logger log = LoggerFactory.getLogger(getClass());
-
-	@Resource(name = "systemCasDirectory")
-	private CasDirectory systemOutputDir;
-	@Resource(name = "goldCasDirectory")
-	private CasDirectory goldStandardDir;
-	@Autowired
-	private AnnotationExtractor annotationExtractor;
-	@Autowired
-	private DocumentMetaExtractor docMetaExtractor;
-	@Autowired
-	private MatchingStrategy matchingStrategy;
-	@Autowired
-	private EvaluationContext evalCtx;
-
-	public void run() throws Exception {
-		Iterator<CAS> iter = goldStandardDir.iterator();
-		int processedCasCounter = 0;
-		final int casDirSize = goldStandardDir.size();
-		while (iter.hasNext()) {
-			CAS goldCas = iter.next();
-			final String docUri = docMetaExtractor.getDocumentUri(goldCas);
-			CAS sysCas = systemOutputDir.getCas(docUri);
-			if (sysCas == null) {
-				throw new IllegalStateException("No CAS from system output for doc uri: " + docUri);
-			}
-			matchingStrategy.changeCas(sysCas);
-			evalCtx.setCurrentDocUri(docUri);
-			final long timeBeforeCas = currentTimeMillis();
-			try {
-				evaluate(goldCas, sysCas);
-			} finally {
-				// reset uri
-				evalCtx.setCurrentDocUri(null);
-				matchingStrategy.changeCas(null);
-				processedCasCounter++;
-				log.info("[{}/{}] {} has been processed in {}ms", new Object[] {
-						processedCasCounter, casDirSize, docUri,
-						currentTimeMillis() - timeBeforeCas });
-			}
-		}
-		evalCtx.reportEvaluationComplete();
-	}
-
-	private void evaluate(CAS goldCas, CAS sysCas) {
-		FSIterator<AnnotationFS> goldAnnoIter = annotationExtractor.extract(goldCas);
-		Set<AnnotationFS> goldProcessed = new HashSet<AnnotationFS>();
-		// system annotations that exactly match a gold one
-		Set<AnnotationFS> sysMatched = newHashSet();
-		// matches
-		LinkedHashMap<AnnotationFS, MatchInfo> matchesMap = newLinkedHashMap();
-		while (goldAnnoIter.hasNext()) {
-			AnnotationFS goldAnno = goldAnnoIter.next();
-			if (goldProcessed.contains(goldAnno)) {
-				continue;
-			}
-			MatchInfo mi = new MatchInfo();
-			matchesMap.put(goldAnno, mi);
-
-			Set<AnnotationFS> candidates = newLinkedHashSet(
-					matchingStrategy.searchCandidates(goldAnno));
-
-			candidates.removeAll(sysMatched);
-			AnnotationFS exactSys = matchingStrategy.searchExactMatch(goldAnno, candidates);
-			if (exactSys != null) {
-				// sanity check
-				assert candidates.contains(exactSys);
-				mi.exact = exactSys;
-				sysMatched.add(exactSys);
-			}
-			mi.partialSet.addAll(candidates);
-
-			goldProcessed.add(goldAnno);
-		}
-
-		// filter partials that match a next gold
-		for (MatchInfo mi : matchesMap.values()) {
-			mi.partialSet.removeAll(sysMatched);
-		}
-
-		// report for each gold anno
-		for (AnnotationFS goldAnno : matchesMap.keySet()) {
-			// assert order declared in EvaluationListener javadoc
-			MatchInfo mi = matchesMap.get(goldAnno);
-			boolean matchedExactly = mi.exact != null;
-			if (matchedExactly) {
-				evalCtx.reportExactMatch(goldAnno, mi.exact);
-			}
-			for (AnnotationFS partialSys : mi.partialSet) {
-				evalCtx.reportPartialMatch(goldAnno, partialSys);
-			}
-			if (!matchedExactly) {
-				evalCtx.reportMissing(goldAnno);
-			}
-		}
-
-		// report spurious (false positives)
-		FSIterator<AnnotationFS> sysAnnoIter = annotationExtractor.extract(sysCas);
-		while (sysAnnoIter.hasNext()) {
-			AnnotationFS sysAnno = sysAnnoIter.next();
-			if (!sysMatched.contains(sysAnno)) {
-				evalCtx.reportSpurious(sysAnno);
-			}
-		}
-	}
-}
-
-class MatchInfo {
-	AnnotationFS exact;
-	Set<AnnotationFS> partialSet = newLinkedHashSet();
+/**
+ * 
+ */
+package ru.kfu.itis.cll.uima.eval;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static com.google.common.collect.Sets.newHashSet;
+import static com.google.common.collect.Sets.newLinkedHashSet;
+import static java.lang.System.currentTimeMillis;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Resource;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import ru.kfu.itis.cll.uima.eval.anno.AnnotationExtractor;
+import ru.kfu.itis.cll.uima.eval.anno.DocumentMetaExtractor;
+import ru.kfu.itis.cll.uima.eval.anno.MatchingStrategy;
+import ru.kfu.itis.cll.uima.eval.cas.CasDirectory;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * TODO Complete annotation duplicates (by offsets & type) are ignored. Check
+ * consistency.
+ * <p>
+ * If {@link #setThreads(int)} is greater than 1, document pairs are matched
+ * by a pool of worker threads, each with its own {@link MatchingStrategy}
+ * instance. Events of a document are collected by a worker and then reported
+ * to {@link EvaluationContext} by the calling thread in the order of gold
+ * documents. So listeners see exactly the same sequence of events as in the
+ * sequential mode and need not be thread-safe.
+ * </p>
+ * 
+ * @author Rinat Gareev (Kazan Federal University)
+ * 
+ */
+public class GoldStandardBasedEvaluation {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	@Resource(name = "systemCasDirectory")
+	private CasDirectory systemOutputDir;
+	@Resource(name = "goldCasDirectory")
+	private CasDirectory goldStandardDir;
+	@Autowired
+	private AnnotationExtractor annotationExtractor;
+	@Autowired
+	private DocumentMetaExtractor docMetaExtractor;
+	@Autowired
+	private ObjectFactory<MatchingStrategy> matchingStrategyFactory;
+	@Autowired
+	private EvaluationContext evalCtx;
+	// config fields
+	private int threads = 1;
+	// state fields
+	private int processedCasCounter;
+	private int casDirSize;
+
+	public void setThreads(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Illegal threads number: " + threads);
+		}
+		this.threads = threads;
+	}
+
+	public void run() throws Exception {
+		processedCasCounter = 0;
+		casDirSize = goldStandardDir.size();
+		if (threads == 1) {
+			runSequentially();
+		} else {
+			runInParallel();
+		}
+		evalCtx.reportEvaluationComplete();
+	}
+
+	private void runSequentially() throws Exception {
+		MatchingStrategy matchingStrategy = matchingStrategyFactory.getObject();
+		Iterator<CAS> iter = goldStandardDir.iterator();
+		// the next pair of CASes is loaded while the current one is evaluated
+		ExecutorService loader = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("eval-cas-loader").build());
+		try {
+			Future<CasPair> nextPair = loadNextPair(loader, iter);
+			while (nextPair != null) {
+				CasPair pair = getResult(nextPair);
+				nextPair = loadNextPair(loader, iter);
+				report(evaluate(pair.docUri, pair.goldCas, pair.sysCas, matchingStrategy));
+			}
+		} finally {
+			loader.shutdownNow();
+		}
+	}
+
+	private void runInParallel() throws Exception {
+		final BlockingQueue<MatchingStrategy> matchingStrategies =
+				new ArrayBlockingQueue<MatchingStrategy>(threads);
+		for (int i = 0; i < threads; i++) {
+			matchingStrategies.add(matchingStrategyFactory.getObject());
+		}
+		ExecutorService workers = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("eval-worker-%d").build());
+		// results are reported in the order of submission
+		Queue<Future<DocumentResult>> pending = new ArrayDeque<Future<DocumentResult>>();
+		try {
+			Iterator<CAS> iter = goldStandardDir.iterator();
+			while (iter.hasNext()) {
+				final CAS goldCas = iter.next();
+				final String docUri = docMetaExtractor.getDocumentUri(goldCas);
+				pending.add(workers.submit(new Callable<DocumentResult>() {
+					@Override
+					public DocumentResult call() throws Exception {
+						CAS sysCas = getSystemCas(docUri);
+						MatchingStrategy matchingStrategy = matchingStrategies.take();
+						try {
+							return evaluate(docUri, goldCas, sysCas, matchingStrategy);
+						} finally {
+							matchingStrategies.put(matchingStrategy);
+						}
+					}
+				}));
+				// bound the number of CASes held by pending results
+				if (pending.size() >= 2 * threads) {
+					report(getResult(pending.remove()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				report(getResult(pending.remove()));
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	private Future<CasPair> loadNextPair(ExecutorService loader, final Iterator<CAS> goldIter) {
+		if (!goldIter.hasNext()) {
+			return null;
+		}
+		return loader.submit(new Callable<CasPair>() {
+			@Override
+			public CasPair call() throws Exception {
+				CAS goldCas = goldIter.next();
+				final String docUri = docMetaExtractor.getDocumentUri(goldCas);
+				return new CasPair(docUri, goldCas, getSystemCas(docUri));
+			}
+		});
+	}
+
+	private CAS getSystemCas(String docUri) throws Exception {
+		CAS sysCas = systemOutputDir.getCas(docUri);
+		if (sysCas == null) {
+			throw new IllegalStateException("No CAS from system output for doc uri: " + docUri);
+		}
+		return sysCas;
+	}
+
+	private static <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause(), Exception.class);
+			throw e;
+		}
+	}
+
+	private void report(DocumentResult result) {
+		evalCtx.setCurrentDocUri(result.docUri);
+		try {
+			for (Event e : result.events) {
+				switch (e.type) {
+				case EXACT_MATCH:
+					evalCtx.reportExactMatch(e.goldAnno, e.sysAnno);
+					break;
+				case PARTIAL_MATCH:
+					evalCtx.reportPartialMatch(e.goldAnno, e.sysAnno);
+					break;
+				case MISSING:
+					evalCtx.reportMissing(e.goldAnno);
+					break;
+				case SPURIOUS:
+					evalCtx.reportSpurious(e.sysAnno);
+					break;
+				default:
+					throw new UnsupportedOperationException(String.valueOf(e.type));
+				}
+			}
+		} finally {
+			// reset uri
+			evalCtx.setCurrentDocUri(null);
+			goldStandardDir.release(result.goldCas);
+			systemOutputDir.release(result.sysCas);
+			processedCasCounter++;
+			log.info("[{}/{}] {} has been processed in {}ms", new Object[] {
+					processedCasCounter, casDirSize, result.docUri,
+					result.evaluationTime });
+		}
+	}
+
+	private DocumentResult evaluate(String docUri, CAS goldCas, CAS sysCas,
+			MatchingStrategy matchingStrategy) {
+		DocumentResult result = new DocumentResult(docUri, goldCas, sysCas);
+		final long timeBeforeCas = currentTimeMillis();
+		matchingStrategy.changeCas(sysCas);
+		try {
+			evaluate(goldCas, sysCas, matchingStrategy, result);
+		} finally {
+			matchingStrategy.changeCas(null);
+		}
+		result.evaluationTime = currentTimeMillis() - timeBeforeCas;
+		return result;
+	}
+
+	private void evaluate(CAS goldCas, CAS sysCas, MatchingStrategy matchingStrategy,
+			DocumentResult result) {
+		FSIterator<AnnotationFS> goldAnnoIter = annotationExtractor.extract(goldCas);
+		Set<AnnotationFS> goldProcessed = new HashSet<AnnotationFS>();
+		// system annotations that exactly match a gold one
+		Set<AnnotationFS> sysMatched = newHashSet();
+		// matches
+		LinkedHashMap<AnnotationFS, MatchInfo> matchesMap = newLinkedHashMap();
+		while (goldAnnoIter.hasNext()) {
+			AnnotationFS goldAnno = goldAnnoIter.next();
+			if (goldProcessed.contains(goldAnno)) {
+				continue;
+			}
+			MatchInfo mi = new MatchInfo();
+			matchesMap.put(goldAnno, mi);
+
+			Set<AnnotationFS> candidates = newLinkedHashSet(
+					matchingStrategy.searchCandidates(goldAnno));
+
+			candidates.removeAll(sysMatched);
+			AnnotationFS exactSys = matchingStrategy.searchExactMatch(goldAnno, candidates);
+			if (exactSys != null) {
+				// sanity check
+				assert candidates.contains(exactSys);
+				mi.exact = exactSys;
+				sysMatched.add(exactSys);
+			}
+			mi.partialSet.addAll(candidates);
+
+			goldProcessed.add(goldAnno);
+		}
+
+		// filter partials that match a next gold
+		for (MatchInfo mi : matchesMap.values()) {
+			mi.partialSet.removeAll(sysMatched);
+		}
+
+		// report for each gold anno
+		for (AnnotationFS goldAnno : matchesMap.keySet()) {
+			// assert order declared in EvaluationListener javadoc
+			MatchInfo mi = matchesMap.get(goldAnno);
+			boolean matchedExactly = mi.exact != null;
+			if (matchedExactly) {
+				result.add(EventType.EXACT_MATCH, goldAnno, mi.exact);
+			}
+			for (AnnotationFS partialSys : mi.partialSet) {
+				result.add(EventType.PARTIAL_MATCH, goldAnno, partialSys);
+			}
+			if (!matchedExactly) {
+				result.add(EventType.MISSING, goldAnno, null);
+			}
+		}
+
+		// report spurious (false positives)
+		FSIterator<AnnotationFS> sysAnnoIter = annotationExtractor.extract(sysCas);
+		while (sysAnnoIter.hasNext()) {
+			AnnotationFS sysAnno = sysAnnoIter.next();
+			if (!sysMatched.contains(sysAnno)) {
+				result.add(EventType.SPURIOUS, null, sysAnno);
+			}
+		}
+	}
+}
+
+class CasPair {
+	final String docUri;
+	final CAS goldCas;
+	final CAS sysCas;
+
+	CasPair(String docUri, CAS goldCas, CAS sysCas) {
+		this.docUri = docUri;
+		this.goldCas = goldCas;
+		this.sysCas = sysCas;
+	}
+}
+
+enum EventType {
+	EXACT_MATCH, PARTIAL_MATCH, MISSING, SPURIOUS
+}
+
+class Event {
+	final EventType type;
+	final AnnotationFS goldAnno;
+	final AnnotationFS sysAnno;
+
+	Event(EventType type, AnnotationFS goldAnno, AnnotationFS sysAnno) {
+		this.type = type;
+		this.goldAnno = goldAnno;
+		this.sysAnno = sysAnno;
+	}
+}
+
+/**
+ * Events of a document in the order they must be reported.
+ */
+class DocumentResult {
+	final String docUri;
+	final CAS goldCas;
+	final CAS sysCas;
+	final List<Event> events = newArrayList();
+	long evaluationTime;
+
+	DocumentResult(String docUri, CAS goldCas, CAS sysCas) {
+		this.docUri = docUri;
+		this.goldCas = goldCas;
+		this.sysCas = sysCas;
+	}
+
+	void add(EventType type, AnnotationFS goldAnno, AnnotationFS sysAnno) {
+		events.add(new Event(type, goldAnno, sysAnno));
+	}
+}
+
+class MatchInfo {
+	AnnotationFS exact;
+	Set<AnnotationFS> partialSet = newLinkedHashSet();
 }
\ No newline at end of file
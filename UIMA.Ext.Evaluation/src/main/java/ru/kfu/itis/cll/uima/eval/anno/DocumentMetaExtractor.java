@@ -53,4 +53,11 @@ public class DocumentMetaExtractor {
 		return uri;
 	}
 
+	public String getDocUriAnnotationType() {
+		return docUriAnnotationType;
+	}
+
+	public String getDocUriFeatureName() {
+		return docUriFeatureName;
+	}
 }
\ No newline at end of file
@@ -22,6 +22,13 @@ public interface CasDirectory {
 	 */
 	int size();
 
+	/**
+	 * Return a CAS obtained from this directory so that it may be reused. The
+	 * CAS must not be used by a caller afterwards. Callers are not obliged to
+	 * release CASes.
+	 */
+	void release(CAS cas);
+
 	void setTypeSystem(TypeSystem ts);
 
 	void init();
@@ -11,11 +11,23 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -36,10 +48,23 @@ import org.xml.sax.SAXException;
 import ru.kfu.itis.cll.uima.eval.anno.DocumentMetaExtractor;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
+ * A directory of XMI files. Besides 'dir' the following properties are read
+ * from the environment (prefixed by the bean name):
+ * <ul>
+ * <li>'uriIndex' - whether to keep the sidecar index of document URIs in the
+ * directory, true by default. The index spares reading of unchanged files
+ * when a document URI is resolved to a file;</li>
+ * <li>'loadingThreads' - how many threads deserialize CASes for
+ * {@link #iterator()}, the number of available processors by default.</li>
+ * </ul>
+ * CASes released by {@link #release(CAS)} are reused.
+ * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
@@ -54,6 +79,11 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 	@Autowired
 	protected DocumentMetaExtractor docMetaExtractor;
 	private final Logger log = LoggerFactory.getLogger(getClass());
+	private boolean uriIndexEnabled = true;
+	private int loadingThreads = Runtime.getRuntime().availableProcessors();
+	// state fields
+	private final Queue<CAS> casPool = new ConcurrentLinkedQueue<CAS>();
+	private final AtomicInteger casPoolSize = new AtomicInteger();
 
 	@Override
 	public void setTypeSystem(TypeSystem ts) {
@@ -80,6 +110,13 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 			throw new IllegalStateException(String.format(
 					"'dir' value is not specified for %s", beanName));
 		}
+		uriIndexEnabled = env.getProperty(beanName + ".uriIndex", Boolean.class, true);
+		loadingThreads = env.getProperty(beanName + ".loadingThreads", Integer.class,
+				loadingThreads);
+		if (loadingThreads <= 0) {
+			throw new IllegalStateException(String.format(
+					"Illegal 'loadingThreads' value for %s: %s", beanName, loadingThreads));
+		}
 	}
 
 	/**
@@ -105,7 +142,23 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 	@Override
 	public Iterator<CAS> iterator() {
 		Iterator<File> xmiFileIter = getXmiFiles().iterator();
-		return Iterators.transform(xmiFileIter, deserializeFunc());
+		if (loadingThreads == 1) {
+			return Iterators.transform(xmiFileIter, deserializeFunc());
+		}
+		return new ParallelLoadingIterator(xmiFileIter);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release(CAS cas) {
+		// keep enough CASes for the files being loaded and the ones being used
+		if (casPoolSize.get() < 2 * loadingThreads + 2) {
+			cas.reset();
+			casPoolSize.incrementAndGet();
+			casPool.add(cas);
+		}
 	}
 
 	/**
@@ -147,15 +200,33 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 
 	private Map<String, File> uriToXmiFileMap;
 
-	private Map<String, File> getUriToXmiFileMap()
-			throws ResourceInitializationException, IOException, SAXException {
+	private synchronized Map<String, File> getUriToXmiFileMap()
+			throws ResourceInitializationException, IOException, SAXException, XMLStreamException {
 		if (uriToXmiFileMap == null) {
 			log.info("Scanning {} XMIs for document URIs...", dir);
 			uriToXmiFileMap = Maps.newHashMap();
-			CAS wrkCas = createCas();
+			XmiUriIndex uriIndex = uriIndexEnabled ? XmiUriIndex.read(dir) : null;
+			XmiDocumentUriReader uriReader = new XmiDocumentUriReader(
+					docMetaExtractor.getDocUriAnnotationType(),
+					docMetaExtractor.getDocUriFeatureName());
+			CAS wrkCas = null;
 			for (final File xmiFile : getXmiFiles()) {
-				deserialize(xmiFile, wrkCas);
-				String docURI = docMetaExtractor.getDocumentUri(wrkCas);
+				String docURI = uriIndex == null ? null : uriIndex.getUri(xmiFile);
+				if (docURI == null) {
+					docURI = uriReader.read(xmiFile);
+					if (docURI == null) {
+						// e.g., the metadata annotation is in another view
+						if (wrkCas == null) {
+							wrkCas = createCas();
+						}
+						deserialize(xmiFile, wrkCas);
+						docURI = docMetaExtractor.getDocumentUri(wrkCas);
+						wrkCas.reset();
+					}
+					if (uriIndex != null) {
+						uriIndex.put(xmiFile, docURI);
+					}
+				}
 				final File prevFile;
 				if ((prevFile = uriToXmiFileMap.put(docURI, xmiFile)) != null) {
 					throw new IllegalStateException(
@@ -163,7 +234,9 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 									"There are at least 2 files which metadata has the same URI '%s':\n%s\n%s",
 									docURI, prevFile, xmiFile));
 				}
-				wrkCas.reset();
+			}
+			if (uriIndex != null) {
+				uriIndex.writeIfChanged();
 			}
 			log.info("Scanning {} XMIs for document URIs is finished", dir);
 		}
@@ -184,7 +257,12 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 	}
 
 	private CAS deserialize(File xmiFile) throws UIMAException, SAXException, IOException {
-		CAS cas = createCas();
+		CAS cas = casPool.poll();
+		if (cas == null) {
+			cas = createCas();
+		} else {
+			casPoolSize.decrementAndGet();
+		}
 		deserialize(xmiFile, cas);
 		postProcessCAS(cas);
 		return cas;
@@ -207,4 +285,68 @@ public class FSCasDirectory implements CasDirectory, BeanNameAware {
 		FileInputStream fis = new FileInputStream(file);
 		return new BufferedInputStream(fis);
 	}
+
+	/**
+	 * Deserializes files in the background keeping up to two files per thread
+	 * ahead of a consumer. CASes are returned in the order of files.
+	 */
+	private class ParallelLoadingIterator implements Iterator<CAS> {
+		private final Iterator<File> fileIter;
+		private final ThreadPoolExecutor executor;
+		private final Queue<Future<CAS>> loading = new ArrayDeque<Future<CAS>>();
+
+		ParallelLoadingIterator(Iterator<File> fileIter) {
+			this.fileIter = fileIter;
+			executor = new ThreadPoolExecutor(loadingThreads, loadingThreads,
+					10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactoryBuilder().setDaemon(true)
+							.setNameFormat(beanName + "-loader-%d").build());
+			// let threads die if a consumer abandons the iterator
+			executor.allowCoreThreadTimeOut(true);
+			fillQueue();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !loading.isEmpty();
+		}
+
+		@Override
+		public CAS next() {
+			Future<CAS> casFuture = loading.poll();
+			if (casFuture == null) {
+				throw new NoSuchElementException();
+			}
+			fillQueue();
+			try {
+				return casFuture.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void fillQueue() {
+			final Function<File, CAS> deserializeFunc = deserializeFunc();
+			while (loading.size() < 2 * loadingThreads && fileIter.hasNext()) {
+				final File xmiFile = fileIter.next();
+				loading.add(executor.submit(new Callable<CAS>() {
+					@Override
+					public CAS call() throws Exception {
+						return deserializeFunc.apply(xmiFile);
+					}
+				}));
+			}
+			if (!fileIter.hasNext()) {
+				executor.shutdown();
+			}
+		}
+	}
 }
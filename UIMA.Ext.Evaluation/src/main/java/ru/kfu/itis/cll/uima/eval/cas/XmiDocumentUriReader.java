@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.eval.cas;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads a document URI from an XMI file by StAX without deserializing the
+ * whole CAS. The element that represents a document metadata annotation is
+ * found by the namespace and the local name that XMI serializer assigns to
+ * the annotation type, and the URI is read from the attribute named by the
+ * feature.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class XmiDocumentUriReader {
+
+	private final String typeNamespace;
+	private final String typeLocalName;
+	private final String featureName;
+	private final XMLInputFactory xmlInputFactory;
+
+	XmiDocumentUriReader(String typeName, String featureName) {
+		int lastDot = typeName.lastIndexOf('.');
+		if (lastDot < 0) {
+			typeNamespace = "http:///uima/noNamespace.ecore";
+		} else {
+			typeNamespace = "http:///" + typeName.substring(0, lastDot).replace('.', '/')
+					+ ".ecore";
+		}
+		typeLocalName = typeName.substring(lastDot + 1);
+		this.featureName = featureName;
+		xmlInputFactory = XMLInputFactory.newInstance();
+	}
+
+	/**
+	 * @param xmiFile
+	 * @return the URI or null if the file does not contain an element of the
+	 *         metadata type with the URI attribute.
+	 */
+	String read(File xmiFile) throws IOException, XMLStreamException {
+		InputStream is = new BufferedInputStream(new FileInputStream(xmiFile));
+		try {
+			XMLStreamReader xmlReader;
+			synchronized (xmlInputFactory) {
+				xmlReader = xmlInputFactory.createXMLStreamReader(is);
+			}
+			try {
+				while (xmlReader.hasNext()) {
+					if (xmlReader.next() == XMLStreamConstants.START_ELEMENT
+							&& typeLocalName.equals(xmlReader.getLocalName())
+							&& typeNamespace.equals(xmlReader.getNamespaceURI())) {
+						return xmlReader.getAttributeValue(null, featureName);
+					}
+				}
+				return null;
+			} finally {
+				xmlReader.close();
+			}
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+}
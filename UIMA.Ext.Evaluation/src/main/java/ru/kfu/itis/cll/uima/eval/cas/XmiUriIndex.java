@@ -0,0 +1,150 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.eval.cas;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Sidecar index of XMI files of a directory. It maps a file path relative to
+ * the directory to the document URI of the file. An entry also holds the
+ * modification time and the size of the file, so a changed file is detected
+ * without reading it. The index is stored in the directory as a UTF-8 text
+ * file where each line is
+ *
+ * <pre>
+ * relative-path TAB modification-time TAB size TAB document-URI
+ * </pre>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class XmiUriIndex {
+
+	static final String INDEX_FILE_NAME = ".xmi-uri-index";
+
+	private static final Logger log = LoggerFactory.getLogger(XmiUriIndex.class);
+
+	private final File dir;
+	private final File indexFile;
+	private final Map<String, Entry> entries = Maps.newHashMap();
+	private boolean changed;
+
+	private XmiUriIndex(File dir) {
+		this.dir = dir;
+		this.indexFile = new File(dir, INDEX_FILE_NAME);
+	}
+
+	/**
+	 * @param dir
+	 *            a directory of XMI files
+	 * @return the index of the directory. It is empty if there is no index
+	 *         file or the file is malformed.
+	 */
+	static XmiUriIndex read(File dir) {
+		XmiUriIndex index = new XmiUriIndex(dir);
+		if (!index.indexFile.isFile()) {
+			return index;
+		}
+		try {
+			for (String line : FileUtils.readLines(index.indexFile, "utf-8")) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] fields = StringUtils.splitPreserveAllTokens(line, "\t", 4);
+				if (fields.length != 4) {
+					throw new IllegalStateException("Malformed line: " + line);
+				}
+				index.entries.put(fields[0], new Entry(fields[3],
+						Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+			}
+		} catch (Exception e) {
+			log.warn("Can't read {}, it will be rebuilt: {}", index.indexFile, e.toString());
+			index.entries.clear();
+			index.changed = true;
+		}
+		return index;
+	}
+
+	/**
+	 * @return the indexed URI of the file or null if the file is not indexed
+	 *         or it has been changed since it was indexed.
+	 */
+	String getUri(File xmiFile) {
+		Entry e = entries.get(relativePath(xmiFile));
+		if (e == null || e.lastModified != xmiFile.lastModified()
+				|| e.length != xmiFile.length()) {
+			return null;
+		}
+		return e.uri;
+	}
+
+	void put(File xmiFile, String uri) {
+		if (StringUtils.containsAny(uri, "\r\n")) {
+			// such a URI can not be stored in a line
+			return;
+		}
+		String path = relativePath(xmiFile);
+		if (StringUtils.containsAny(path, "\t\r\n")) {
+			return;
+		}
+		entries.put(path, new Entry(uri, xmiFile.lastModified(), xmiFile.length()));
+		changed = true;
+	}
+
+	/**
+	 * Write the index file if the index has been changed. Entries of deleted
+	 * files are dropped. A failure to write is logged but not propagated as
+	 * the index is just an optimization.
+	 */
+	void writeIfChanged() {
+		for (Iterator<String> pathIter = entries.keySet().iterator(); pathIter.hasNext();) {
+			if (!new File(dir, pathIter.next()).isFile()) {
+				pathIter.remove();
+				changed = true;
+			}
+		}
+		if (!changed) {
+			return;
+		}
+		List<String> lines = Lists.newArrayListWithCapacity(entries.size());
+		for (Map.Entry<String, Entry> me : entries.entrySet()) {
+			Entry e = me.getValue();
+			lines.add(me.getKey() + "\t" + e.lastModified + "\t" + e.length + "\t" + e.uri);
+		}
+		try {
+			FileUtils.writeLines(indexFile, "utf-8", lines, "\n");
+			changed = false;
+		} catch (IOException e) {
+			log.warn("Can't write {}: {}", indexFile, e.toString());
+		}
+	}
+
+	private String relativePath(File file) {
+		return dir.toURI().relativize(file.toURI()).getPath();
+	}
+
+	private static class Entry {
+		private final String uri;
+		private final long lastModified;
+		private final long length;
+
+		Entry(String uri, long lastModified, long length) {
+			this.uri = uri;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
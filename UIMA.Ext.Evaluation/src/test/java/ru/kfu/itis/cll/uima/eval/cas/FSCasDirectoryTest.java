@@ -0,0 +1,139 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.eval.cas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.beans.factory.support.BeanDefinitionBuilder.genericBeanDefinition;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.cas.CAS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.PropertiesPropertySource;
+
+import ru.kfu.itis.cll.uima.eval.TypeSystemInitializer;
+import ru.kfu.itis.cll.uima.eval.anno.DocumentMetaExtractor;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class FSCasDirectoryTest {
+
+	private static final String URI_1 =
+			"file:/D:/projects/uima-ext/UIMA.Ext.Evaluation/data/test-src/test1.txt";
+	private static final String URI_2 =
+			"file:/D:/projects/uima-ext/UIMA.Ext.Evaluation/data/test-src/test2.txt";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	private List<GenericApplicationContext> contexts = Lists.newLinkedList();
+
+	@Before
+	public void copyData() throws Exception {
+		FileUtils.copyDirectory(new File("data/test-gold"), tempFolder.newFolder("gold"));
+		FileUtils.copyDirectory(new File("data/test-sysout"), tempFolder.newFolder("sysout"));
+	}
+
+	@After
+	public void closeContexts() {
+		for (GenericApplicationContext ctx : contexts) {
+			ctx.close();
+		}
+	}
+
+	@Test
+	public void testUriIndex() throws Exception {
+		File goldDir = new File(tempFolder.getRoot(), "gold");
+		File indexFile = new File(goldDir, XmiUriIndex.INDEX_FILE_NAME);
+		CasDirectory casDir = createDirectory(goldDir, 1);
+		assertNotNull(casDir.getCas(URI_1).getDocumentText());
+		assertTrue(indexFile.isFile());
+		assertEquals(2, FileUtils.readLines(indexFile, "utf-8").size());
+		// an unchanged file is not read again
+		String index = FileUtils.readFileToString(indexFile, "utf-8");
+		FileUtils.writeStringToFile(indexFile, index.replace(URI_1, "test:changed"), "utf-8");
+		casDir = createDirectory(goldDir, 1);
+		assertNotNull(casDir.getCas("test:changed"));
+		assertNotNull(casDir.getCas(URI_2));
+		// a changed file is read again
+		File xmiFile = new File(goldDir, "test1.txt.xmi");
+		assertTrue(xmiFile.setLastModified(xmiFile.lastModified() + 10000));
+		casDir = createDirectory(goldDir, 1);
+		assertNotNull(casDir.getCas(URI_1));
+		try {
+			casDir.getCas("test:changed");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertFalse(FileUtils.readFileToString(indexFile, "utf-8").contains("test:changed"));
+	}
+
+	@Test
+	public void testParallelLoading() throws Exception {
+		File rootDir = tempFolder.getRoot();
+		List<String> expectedTexts = readTexts(createDirectory(rootDir, 1));
+		assertEquals(4, expectedTexts.size());
+		CasDirectory casDir = createDirectory(rootDir, 3);
+		assertEquals(expectedTexts, readTexts(casDir));
+		// again with released CASes
+		assertEquals(expectedTexts, readTexts(casDir));
+	}
+
+	private static List<String> readTexts(CasDirectory casDir) {
+		List<String> texts = Lists.newArrayList();
+		Iterator<CAS> casIter = casDir.iterator();
+		while (casIter.hasNext()) {
+			CAS cas = casIter.next();
+			texts.add(cas.getDocumentText());
+			casDir.release(cas);
+		}
+		return texts;
+	}
+
+	private CasDirectory createDirectory(File dir, int loadingThreads) {
+		Properties props = new Properties();
+		props.setProperty("typeSystem.description.paths", "desc/types/aggregate-4Runtime-TS.xml");
+		props.setProperty("typeSystem.description.names", "");
+		props.setProperty("document.meta.annotationType",
+				"ru.kfu.itis.cll.uima.commons.DocumentMetadata");
+		props.setProperty("document.meta.uriFeatureName", "sourceUri");
+		props.setProperty("casDirectory.dir", dir.getPath());
+		props.setProperty("casDirectory.loadingThreads", String.valueOf(loadingThreads));
+		GenericApplicationContext ctx = new GenericApplicationContext();
+		contexts.add(ctx);
+		ctx.getEnvironment().getPropertySources().addLast(
+				new PropertiesPropertySource("test", props));
+		AnnotationConfigUtils.registerAnnotationConfigProcessors(ctx);
+		ctx.registerBeanDefinition("placeholderConfigurer",
+				genericBeanDefinition(PropertySourcesPlaceholderConfigurer.class)
+						.getBeanDefinition());
+		ctx.registerBeanDefinition("typeSystem",
+				genericBeanDefinition(TypeSystemInitializer.class).getBeanDefinition());
+		ctx.registerBeanDefinition("docMetaExtractor",
+				genericBeanDefinition(DocumentMetaExtractor.class).getBeanDefinition());
+		ctx.registerBeanDefinition("casDirectory",
+				genericBeanDefinition(FSCasDirectory.class).getBeanDefinition());
+		ctx.refresh();
+		return ctx.getBean(CasDirectory.class);
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ *
+ */
+package ru.kfu.itis.cll.uima.eval.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.kfu.itis.cll.uima.eval.ConfigurationKeys;
+import ru.kfu.itis.cll.uima.eval.EvaluationLauncher;
+
+/**
+ * Checks that listeners get the same output in the parallel mode as in the
+ * sequential one.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class GSBasedParallelEvalTest {
+
+	private static final int COPIES = 10;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testParallelEvaluationGivesSameOutput() throws Exception {
+		File goldDir = tempFolder.newFolder("gold");
+		File sysDir = tempFolder.newFolder("sysout");
+		// make a corpus of several documents from test ones
+		for (int i = 0; i < COPIES; i++) {
+			copyWithNewUris(new File("data/test-gold"), goldDir, i);
+			copyWithNewUris(new File("data/test-sysout"), sysDir, i);
+		}
+		File seqOutputDir = tempFolder.newFolder("seq");
+		File parOutputDir = tempFolder.newFolder("par");
+		EvaluationLauncher.runUsingProperties(config(goldDir, sysDir, seqOutputDir, 1));
+		EvaluationLauncher.runUsingProperties(config(goldDir, sysDir, parOutputDir, 4));
+		for (String outputFileName : new String[] { "soft.txt", "strict.txt", "logging.txt" }) {
+			String seqOutput = FileUtils.readFileToString(
+					new File(seqOutputDir, outputFileName), "utf-8");
+			String parOutput = FileUtils.readFileToString(
+					new File(parOutputDir, outputFileName), "utf-8");
+			assertTrue(outputFileName, seqOutput.length() > 0);
+			assertEquals(outputFileName, seqOutput, parOutput);
+		}
+	}
+
+	private static void copyWithNewUris(File srcDir, File targetDir, int copyIdx)
+			throws Exception {
+		for (String name : new String[] { "test1.txt.xmi", "test2.txt.xmi" }) {
+			String xmi = FileUtils.readFileToString(new File(srcDir, name), "utf-8");
+			String origName = name.substring(0, name.length() - ".xmi".length());
+			xmi = xmi.replace(origName + "\"", copyIdx + "-" + origName + "\"");
+			FileUtils.writeStringToFile(new File(targetDir, copyIdx + "-" + name), xmi, "utf-8");
+		}
+	}
+
+	private static Properties config(File goldDir, File sysDir, File outputDir, int threads)
+			throws Exception {
+		Properties props = new Properties();
+		InputStream is = new FileInputStream("src/test/resources/eval-launch.properties");
+		try {
+			props.load(is);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		props.setProperty("goldCasDirectory.dir", goldDir.getPath());
+		props.setProperty("systemCasDirectory.dir", sysDir.getPath());
+		props.setProperty(ConfigurationKeys.KEY_EVALUATION_THREADS, String.valueOf(threads));
+		for (String listenerId : new String[] { "soft", "strict", "logging" }) {
+			props.setProperty(ConfigurationKeys.PREFIX_LISTENER_PROPERTY + listenerId
+					+ ".outputFile", new File(outputDir, listenerId + ".txt").getPath());
+		}
+		return props;
+	}
+}
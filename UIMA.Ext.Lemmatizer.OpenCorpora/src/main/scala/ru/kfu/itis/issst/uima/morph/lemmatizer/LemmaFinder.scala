@@ -0,0 +1,92 @@
+package ru.kfu.itis.issst.uima.morph.lemmatizer
+
+import java.util.BitSet
+import java.{ util => ju }
+
+import scala.collection.JavaConversions._
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary
+import ru.kfu.itis.issst.uima.morph.model.{ Wordform => DictWordform }
+
+/**
+ * Chooses a lemma for a wordform text and its grammemes. It is the lemma of the dictionary entry
+ * whose wordform grammemes have the maximal Jaccard coefficient with the given ones (the first
+ * entry wins a tie). Grammemes are compared as bit sets of the dictionary gram model, grammemes
+ * that the model does not define count in the union only. Results are cached by
+ * (wordform text, grammemes) in a LRU map of the given size.
+ *
+ * Instances are not thread-safe.
+ */
+class LemmaFinder(dict: MorphDictionary, cacheSize: Int) {
+  import LemmaFinder._
+
+  private val gramModel = dict.getGramModel
+
+  private val cache: ju.Map[CacheKey, String] = new ju.LinkedHashMap[CacheKey, String](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: ju.Map.Entry[CacheKey, String]): Boolean =
+      size > cacheSize
+  }
+
+  /**
+   * @param wordText normalized wordform text
+   * @param grammems grammemes of the wordform, duplicates are ignored
+   * @return the lemma string, or wordText if the dictionary does not have entries for it
+   */
+  def findLemma(wordText: String, grammems: Array[String]): String = {
+    val targetBits = new BitSet
+    var unknownGrams: ju.Set[String] = null
+    for (gr <- grammems) {
+      val gram = gramModel.getGrammem(gr)
+      if (gram != null) {
+        targetBits.set(gram.getNumId)
+      } else {
+        if (unknownGrams == null) unknownGrams = new ju.HashSet[String]
+        unknownGrams.add(gr)
+      }
+    }
+    val unknownGramsNum = if (unknownGrams == null) 0 else unknownGrams.size
+    if (cacheSize <= 0) {
+      lookupLemma(wordText, targetBits, unknownGramsNum)
+    } else {
+      val key = CacheKey(wordText, targetBits, unknownGramsNum)
+      val cached = cache.get(key)
+      if (cached != null) cached
+      else {
+        val lemma = lookupLemma(wordText, targetBits, unknownGramsNum)
+        cache.put(key, lemma)
+        lemma
+      }
+    }
+  }
+
+  private def lookupLemma(wordText: String, targetBits: BitSet, unknownGramsNum: Int): String = {
+    val entries = dict.getEntries(wordText)
+    if (entries.isEmpty) wordText
+    else {
+      val targetSize = targetBits.cardinality + unknownGramsNum
+      val lemmaId = entries.maxBy((dictWf: DictWordform) =>
+        // getGrammems returns a copy
+        jaccardCoef(targetBits, targetSize, dictWf.getGrammems)).getLemmaId
+      dict.getLemma(lemmaId).getString
+    }
+  }
+}
+
+object LemmaFinder {
+
+  // the grammeme bits must not be modified after a key is created
+  private case class CacheKey(wordText: String, grammems: BitSet, unknownGramsNum: Int)
+
+  /**
+   * @param targetBits known target grammemes
+   * @param targetSize the number of target grammemes including unknown ones
+   * @param wfBits grammemes of a dictionary wordform, it is modified by this method
+   * @return the Jaccard coefficient of the target and the wordform grammeme sets
+   */
+  private[lemmatizer] def jaccardCoef(targetBits: BitSet, targetSize: Int, wfBits: BitSet): Double = {
+    val wfSize = wfBits.cardinality
+    wfBits.and(targetBits)
+    val intersectionSize = wfBits.cardinality
+    intersectionSize.toDouble / (targetSize + wfSize - intersectionSize)
+  }
+}
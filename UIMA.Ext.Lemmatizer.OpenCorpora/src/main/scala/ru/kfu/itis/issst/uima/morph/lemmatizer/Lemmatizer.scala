@@ -6,12 +6,12 @@ import scala.collection.JavaConversions._
 import org.apache.uima.jcas.JCas
 import org.apache.uima.fit.util.JCasUtil.select
 import org.opencorpora.cas.{ Word, Wordform }
-import ru.kfu.itis.issst.uima.morph.model.{ Wordform => DictWordform }
 import org.apache.uima.cas.FeatureStructure
 import org.apache.uima.fit.descriptor.ExternalResource
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryHolder
 import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils
 import org.apache.uima.fit.factory.AnalysisEngineFactory
+import org.apache.uima.UimaContext
 
 /**
  * Created by fsqcds on 07/05/14.
@@ -21,23 +21,18 @@ class Lemmatizer extends JCasAnnotator_ImplBase {
   @ExternalResource(key = "morphDictionary", mandatory = true)
   private var dictHolder: MorphDictionaryHolder = null
 
-  def jaccardCoef(first: Set[String], second: Set[String]) = {
-    (first & second).size.toDouble / (first | second).size
+  private var lemmaFinder: LemmaFinder = null
+
+  override def initialize(ctx: UimaContext) {
+    super.initialize(ctx)
+    lemmaFinder = new LemmaFinder(dictHolder.getDictionary, Lemmatizer.LemmaCacheSize)
   }
 
   def findLemma(wordform: Wordform): String = {
-    val dict = dictHolder.getDictionary
     val wordText = WordUtils.normalizeToDictionaryForm(wordform.getWord.getCoveredText)
-    val entries = dict.getEntries(wordText)
     val targetGrammems = wordform.getGrammems
-
-    if (entries.size > 0 && targetGrammems != null) {
-      val lemmaId = dict.getEntries(wordText).maxBy((dictWf: DictWordform) => {
-        val wfGrammems: Set[String] = dict.getGramModel().toGramSet(dictWf.getGrammems).toSet
-        jaccardCoef(targetGrammems.toArray.toSet, wfGrammems)
-      }).getLemmaId
-
-      dictHolder.getDictionary.getLemma(lemmaId).getString
+    if (targetGrammems != null) {
+      lemmaFinder.findLemma(wordText, targetGrammems.toArray)
     } else {
       wordText
     }
@@ -60,6 +55,8 @@ class Lemmatizer extends JCasAnnotator_ImplBase {
 
 object Lemmatizer {
   val ResourceKeyDictionary = "morphDictionary"
+  // the number of cached lemmas per annotator instance
+  val LemmaCacheSize = 100000
   def createDescription() = AnalysisEngineFactory.createEngineDescription(classOf[Lemmatizer],
     LemmatizerAPI.getTypeSystemDescription)
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package ru.kfu.itis.issst.uima.morph.lemmatizer
+
+import java.io.BufferedInputStream
+
+import scala.collection.JavaConversions._
+import scala.io.Source
+import scala.util.Random
+
+import org.scalatest._
+
+import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary
+import ru.kfu.itis.issst.uima.morph.model.{ Wordform => DictWordform }
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.XmlDictionaryParser
+
+/**
+ * Checks that [[LemmaFinder]] makes the same choices as the former string-set based
+ * implementation of the lemmatizer.
+ */
+class LemmaFinderSpec extends FlatSpec with Matchers {
+
+  private val dict: MorphDictionary = {
+    val in = new BufferedInputStream(getClass.getResourceAsStream("/dict.opcorpora.test.xml"))
+    try XmlDictionaryParser.parse(in) finally in.close()
+  }
+
+  // (normalized word, grammemes)
+  private val taggedSample: List[(String, Array[String])] = {
+    val src = Source.fromInputStream(getClass.getResourceAsStream("/tagged-sample.txt"), "UTF-8")
+    try {
+      src.getLines().filterNot(_.startsWith("#")).map(line => {
+        val fields = line.split("\t", -1)
+        val grams = if (fields(1).isEmpty) Array.empty[String] else fields(1).split(",")
+        (WordUtils.normalizeToDictionaryForm(fields(0)), grams)
+      }).toList
+    } finally src.close()
+  }
+
+  private val allGrams: IndexedSeq[String] = {
+    val gm = dict.getGramModel
+    (0 to gm.getGrammemMaxNumId).flatMap(i => Option(gm.getGrammem(i))).map(_.getId) :+ "PNCT"
+  }
+
+  // the former implementation of Lemmatizer.findLemma
+  private def referenceLemma(wordText: String, grammems: Array[String]): String = {
+    def jaccardCoef(first: Set[String], second: Set[String]) = {
+      (first & second).size.toDouble / (first | second).size
+    }
+    val entries = dict.getEntries(wordText)
+    if (entries.size > 0) {
+      val lemmaId = entries.maxBy((dictWf: DictWordform) => {
+        val wfGrammems: Set[String] = dict.getGramModel().toGramSet(dictWf.getGrammems).toSet
+        jaccardCoef(grammems.toSet, wfGrammems)
+      }).getLemmaId
+      dict.getLemma(lemmaId).getString
+    } else {
+      wordText
+    }
+  }
+
+  "LemmaFinder" should "choose lemmas by grammemes" in {
+    val finder = new LemmaFinder(dict, 1000)
+    finder.findLemma("села", Array("NOUN", "inan", "neut", "sing", "gent")) should be("село")
+    finder.findLemma("села", Array("VERB", "perf", "intr", "femn", "sing", "past", "indc")) should be("сел")
+    finder.findLemma("oracle", Array("LATN")) should be("oracle")
+  }
+
+  it should "choose the same lemmas as the string-set implementation on the tagged sample" in {
+    val cachingFinder = new LemmaFinder(dict, 1000)
+    val finder = new LemmaFinder(dict, 0)
+    // the second pass hits the cache
+    for (pass <- 1 to 2; (wordText, grams) <- taggedSample) {
+      val expected = referenceLemma(wordText, grams)
+      withClue(wordText + " " + grams.mkString(",")) {
+        finder.findLemma(wordText, grams) should be(expected)
+        cachingFinder.findLemma(wordText, grams) should be(expected)
+      }
+    }
+  }
+
+  it should "choose the same lemmas as the string-set implementation on random grammemes" in {
+    val rnd = new Random(7)
+    val finder = new LemmaFinder(dict, 3)
+    for ((wordText, _) <- taggedSample; i <- 1 to 30) {
+      val grams = Array.fill(rnd.nextInt(8))(allGrams(rnd.nextInt(allGrams.size)))
+      withClue(wordText + " " + grams.mkString(",")) {
+        finder.findLemma(wordText, grams) should be(referenceLemma(wordText, grams))
+      }
+    }
+  }
+}
@@ -17,12 +17,18 @@ import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI
 import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI
 import ru.kfu.itis.issst.uima.postagger.PosTaggerAPI
 import org.apache.uima.fit.factory.ExternalResourceFactory
+import org.apache.uima.UIMAFramework
+import ru.ksu.niimm.cll.uima.morph.opencorpora.OpencorporaMorphDictionaryAPI
 
 /**
  * Created by fsqcds on 07/05/14.
  */
 class LemmatizerSpec extends FlatSpec with Matchers {
   "Lemmatizer" should "generate correct lemmas" in {
+    // the serialized dictionary and PoS-tagger models are not shipped with sources
+    assume(UIMAFramework.newDefaultResourceManager.resolveRelativePath(
+      OpencorporaMorphDictionaryAPI.DEFAULT_SERIALIZED_DICT_RELATIVE_PATH) != null,
+      "the serialized dictionary is not found in UIMA datapath")
     val lemmatizerDesc = Lemmatizer.createDescription()
     val aggregateDesc = PipelineDescriptorUtils.createAggregateDescription(
       // descriptions
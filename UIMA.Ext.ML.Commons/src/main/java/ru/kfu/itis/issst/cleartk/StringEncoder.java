@@ -11,20 +11,20 @@ import java.util.List;
  */
 public class StringEncoder implements FeatureEncoder<SerializableNameNumber> {
     public List<SerializableNameNumber> encode(Feature feature) {
-        StringBuilder buffer = new StringBuilder();
         String name = feature.getName();
         Object value = feature.getValue();
-        if (name != null) {
-            buffer.append(name);
-        }
-        if (value != null) {
-            if (name != null) {
-                buffer.append("_");
-            }
-            buffer.append(value.toString());
+        String result;
+        if (value == null) {
+            result = name == null ? "" : name;
+        } else if (name == null) {
+            result = value.toString();
+        } else {
+            String valueStr = value.toString();
+            result = new StringBuilder(name.length() + 1 + valueStr.length())
+                    .append(name).append('_').append(valueStr).toString();
         }
 
-        SerializableNameNumber fve = new SerializableNameNumber(buffer.toString(), 1.0d);
+        SerializableNameNumber fve = new SerializableNameNumber(result, 1.0d);
         return Collections.singletonList(fve);
     }
 
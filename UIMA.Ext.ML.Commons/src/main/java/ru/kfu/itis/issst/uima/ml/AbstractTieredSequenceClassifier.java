@@ -2,6 +2,7 @@ package ru.kfu.itis.issst.uima.ml;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.IOUtils;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.jcas.JCas;
@@ -13,6 +14,9 @@ import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.google.common.collect.Lists.transform;
@@ -26,6 +30,22 @@ import static java.lang.String.format;
  * <li>initialize underlying classifiers for each tier,</li>
  * <li>initialize a feature extractor.</li>
  * </ul>
+ * <p>
+ * If {@link #pipelined} is set then {@link #classifyAll(JCas, List, List)} processes sequences
+ * through the tiers as a pipeline: each tier has a single worker thread, and tier k classifies
+ * a sequence after tier k-1 has done it, while tier k-1 proceeds with the next sequence.
+ * So a tier classifier and the tier-specific part of the feature extractor are confined to the
+ * tier thread, and the feature extractor must only support concurrent invocations for different
+ * tiers and sequences. The CAS is accessed by the caller thread only: common features and
+ * {@link TieredFeatureExtractor#getTokenTexts token texts} of a sequence are resolved before it is
+ * passed to the first tier. Labels are the same as in the sequential mode.
+ * </p>
+ * <p>
+ * Tier threads belong to a classifier instance. If the instance is shared, e.g., as an external
+ * resource of several annotator copies in a multi-threaded CPE, all CAS threads go through the same
+ * single thread of each tier, so the throughput may be lower than with the sequential mode, where
+ * each CAS thread runs all tiers itself.
+ * </p>
  *
  * @author Rinat Gareev
  */
@@ -35,6 +55,10 @@ public abstract class AbstractTieredSequenceClassifier<I extends AnnotationFS>
     protected List<String> tierIds;
     protected List<org.cleartk.ml.SequenceClassifier<String>> classifiers;
     protected TieredFeatureExtractor<I, String> featureExtractor;
+    protected boolean pipelined;
+    // state fields
+    // a single-thread executor for each tier, created lazily in the pipelined mode
+    private ExecutorService[] tierExecutors;
 
     @Override
     public List<String[]> classify(JCas jCas, Annotation spanAnno, List<? extends I> seq)
@@ -42,31 +66,96 @@ public abstract class AbstractTieredSequenceClassifier<I extends AnnotationFS>
         final int tierNum = classifiers.size();
         // create a feature set for each token
         List<FeatureSet> featSets = featureExtractor.extractCommonFeatures(jCas, spanAnno, seq);
-        List<List<String>> resultLabels = newArrayListWithCapacity(seq.size());
-        for (I ignored : seq) {
-            resultLabels.add(Lists.<String>newArrayListWithExpectedSize(tierNum));
-        }
+        List<String> tokenTexts = featureExtractor.getTokenTexts(jCas, spanAnno, seq);
+        List<List<String>> resultLabels = newResultLabels(seq.size(), tierNum);
         //
         for (int tier = 0; tier < tierNum; tier++) {
-            featureExtractor.onBeforeTier(featSets, resultLabels, tier, jCas, spanAnno, seq);
-            // invoke a classifier of the current tier
-            List<List<Feature>> featValues = Lists.transform(featSets, FeatureSets.LIST_FUNCTION);
-            List<String> labelSeq = getClassifier(tier).classify(featValues);
-            if (labelSeq.size() != resultLabels.size())
-                throw new IllegalStateException(format(
-                        "Expected outcomes: %s, actual: %s", resultLabels.size(), labelSeq.size()));
-            Iterator<String> labelSeqIter = labelSeq.iterator();
-            Iterator<List<String>> resultIter = resultLabels.iterator();
-            while (labelSeqIter.hasNext()) {
-                String tierLabel = labelSeqIter.next();
-                List<String> resultLabel = resultIter.next();
-                resultLabel.add(MLPackageUtils.isNullLabel(tierLabel) ? null : tierLabel);
+            classifyTier(tier, featSets, resultLabels, tokenTexts);
+        }
+        return toLabelArrays(resultLabels);
+    }
+
+    @Override
+    public List<List<String[]>> classifyAll(JCas jCas, List<? extends Annotation> spanAnnos,
+                                            List<? extends List<? extends I>> seqs)
+            throws CleartkProcessingException {
+        if (spanAnnos.size() != seqs.size()) {
+            throw new IllegalArgumentException(format(
+                    "Span annotations: %s, sequences: %s", spanAnnos.size(), seqs.size()));
+        }
+        if (!pipelined) {
+            List<List<String[]>> result = newArrayListWithCapacity(seqs.size());
+            for (int i = 0; i < seqs.size(); i++) {
+                result.add(classify(jCas, spanAnnos.get(i), seqs.get(i)));
+            }
+            return result;
+        }
+        ExecutorService[] executors = getTierExecutors();
+        List<PipelinedSequence> pSeqs = newArrayListWithCapacity(seqs.size());
+        try {
+            for (int i = 0; i < seqs.size(); i++) {
+                // the CAS data of the next sequence is resolved while tiers process previous ones
+                Annotation spanAnno = spanAnnos.get(i);
+                List<? extends I> seq = seqs.get(i);
+                PipelinedSequence ps = new PipelinedSequence(
+                        featureExtractor.extractCommonFeatures(jCas, spanAnno, seq),
+                        featureExtractor.getTokenTexts(jCas, spanAnno, seq),
+                        newResultLabels(seq.size(), classifiers.size()));
+                ps.submit(executors);
+                pSeqs.add(ps);
             }
-            // if not the last tier
-            if (tier != tierNum - 1) {
-                featureExtractor.onAfterTier(featSets, resultLabels, tier, jCas, spanAnno, seq);
+        } finally {
+            // do not leave submitted sequences running if the extraction has failed
+            awaitAll(pSeqs);
+        }
+        List<List<String[]>> result = newArrayListWithCapacity(pSeqs.size());
+        for (PipelinedSequence ps : pSeqs) {
+            if (ps.error != null) {
+                if (ps.error instanceof CleartkProcessingException) {
+                    throw (CleartkProcessingException) ps.error;
+                }
+                if (ps.error instanceof RuntimeException) {
+                    throw (RuntimeException) ps.error;
+                }
+                throw new IllegalStateException(ps.error);
             }
+            result.add(toLabelArrays(ps.resultLabels));
+        }
+        return result;
+    }
+
+    private void classifyTier(int tier, List<FeatureSet> featSets, List<List<String>> resultLabels,
+                              List<String> tokenTexts)
+            throws CleartkProcessingException {
+        featureExtractor.onBeforeTier(featSets, resultLabels, tier, tokenTexts);
+        // invoke a classifier of the current tier
+        List<List<Feature>> featValues = Lists.transform(featSets, FeatureSets.LIST_FUNCTION);
+        List<String> labelSeq = getClassifier(tier).classify(featValues);
+        if (labelSeq.size() != resultLabels.size())
+            throw new IllegalStateException(format(
+                    "Expected outcomes: %s, actual: %s", resultLabels.size(), labelSeq.size()));
+        Iterator<String> labelSeqIter = labelSeq.iterator();
+        Iterator<List<String>> resultIter = resultLabels.iterator();
+        while (labelSeqIter.hasNext()) {
+            String tierLabel = labelSeqIter.next();
+            List<String> resultLabel = resultIter.next();
+            resultLabel.add(MLPackageUtils.isNullLabel(tierLabel) ? null : tierLabel);
+        }
+        // if not the last tier
+        if (tier != classifiers.size() - 1) {
+            featureExtractor.onAfterTier(featSets, resultLabels, tier, tokenTexts);
+        }
+    }
+
+    private static List<List<String>> newResultLabels(int seqSize, int tierNum) {
+        List<List<String>> resultLabels = newArrayListWithCapacity(seqSize);
+        for (int i = 0; i < seqSize; i++) {
+            resultLabels.add(Lists.<String>newArrayListWithExpectedSize(tierNum));
         }
+        return resultLabels;
+    }
+
+    private static List<String[]> toLabelArrays(List<List<String>> resultLabels) {
         return new ArrayList<>(transform(resultLabels, new Function<List<String>, String[]>() {
             @Override
             public String[] apply(List<String> list) {
@@ -75,6 +164,38 @@ public abstract class AbstractTieredSequenceClassifier<I extends AnnotationFS>
         }));
     }
 
+    private void awaitAll(List<PipelinedSequence> pSeqs) {
+        boolean interrupted = false;
+        for (PipelinedSequence ps : pSeqs) {
+            while (true) {
+                try {
+                    ps.done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // a sequence can not be cancelled in the middle of a tier, wait for it anyway
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized ExecutorService[] getTierExecutors() {
+        if (tierExecutors == null) {
+            ExecutorService[] executors = new ExecutorService[classifiers.size()];
+            for (int tier = 0; tier < executors.length; tier++) {
+                executors[tier] = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("tiered-classifier-tier" + tier + "-%d")
+                        .build());
+            }
+            tierExecutors = executors;
+        }
+        return tierExecutors;
+    }
+
     @Override
     public void onCASChange(JCas cas) {
         // propagate this event into the feature extractor
@@ -86,15 +207,82 @@ public abstract class AbstractTieredSequenceClassifier<I extends AnnotationFS>
         return tierIds;
     }
 
+    @Override
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
     @Override
     public void close() {
+        synchronized (this) {
+            if (tierExecutors != null) {
+                for (ExecutorService exec : tierExecutors) {
+                    exec.shutdown();
+                }
+                tierExecutors = null;
+            }
+        }
         for (org.cleartk.ml.SequenceClassifier<String> cl : classifiers)
             if (cl instanceof Closeable) {
                 IOUtils.closeQuietly((Closeable) cl);
             }
+        if (featureExtractor instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) featureExtractor);
+        }
     }
 
     private org.cleartk.ml.SequenceClassifier<String> getClassifier(int tier) {
         return classifiers.get(tier);
     }
+
+    /**
+     * The per-sequence state that is passed from a tier thread to the next one.
+     * It must not refer to the CAS.
+     */
+    private class PipelinedSequence implements Runnable {
+        private final List<FeatureSet> featSets;
+        private final List<String> tokenTexts;
+        private final List<List<String>> resultLabels;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private ExecutorService[] executors;
+        private int tier;
+        // visible to the caller after 'done' is counted down
+        private Throwable error;
+
+        PipelinedSequence(List<FeatureSet> featSets, List<String> tokenTexts,
+                          List<List<String>> resultLabels) {
+            this.featSets = featSets;
+            this.tokenTexts = tokenTexts;
+            this.resultLabels = resultLabels;
+        }
+
+        void submit(ExecutorService[] executors) {
+            this.executors = executors;
+            this.tier = 0;
+            executors[0].execute(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                classifyTier(tier, featSets, resultLabels, tokenTexts);
+            } catch (Throwable e) {
+                error = e;
+                done.countDown();
+                return;
+            }
+            tier++;
+            if (tier < executors.length) {
+                try {
+                    executors[tier].execute(this);
+                } catch (RuntimeException e) {
+                    // e.g., the classifier has been closed concurrently
+                    error = e;
+                    done.countDown();
+                }
+            } else {
+                done.countDown();
+            }
+        }
+    }
 }
@@ -9,6 +9,7 @@ import org.cleartk.ml.CleartkProcessingException;
 import org.cleartk.ml.Feature;
 import org.cleartk.ml.Instances;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 
@@ -34,13 +35,14 @@ public abstract class AbstractTieredSequenceDataWriter<I extends AnnotationFS>
         @SuppressWarnings("unchecked") List<I> tokens = (List<I>) seq;
         //
         List<FeatureSet> featSets = featureExtractor.extractCommonFeatures(jCas, spanAnno, tokens);
+        List<String> tokenTexts = featureExtractor.getTokenTexts(jCas, spanAnno, tokens);
         // accumulate tier labels
         List<List<String>> labelBuilders = newArrayListWithExpectedSize(tokens.size());
         for (I ignored : tokens) {
             labelBuilders.add(Lists.<String>newArrayListWithExpectedSize(dataWriters.size()));
         }
         for (int tier = 0; tier < dataWriters.size(); tier++) {
-            featureExtractor.onBeforeTier(featSets, labelBuilders, tier, jCas, spanAnno, tokens);
+            featureExtractor.onBeforeTier(featSets, labelBuilders, tier, tokenTexts);
             //
             List<List<Feature>> seqFeatures = Lists.transform(featSets, FeatureSets.LIST_FUNCTION);
             List<String> tierLabels = Lists.transform(seqCompositeLabels, getTierLabel(tier));
@@ -57,7 +59,7 @@ public abstract class AbstractTieredSequenceDataWriter<I extends AnnotationFS>
                     String[] tokCompositeLabel = seqCompositeLabels.get(token);
                     tokLabelBuilder.add(tokCompositeLabel[tier]);
                 }
-                featureExtractor.onAfterTier(featSets, labelBuilders, tier, jCas, spanAnno, tokens);
+                featureExtractor.onAfterTier(featSets, labelBuilders, tier, tokenTexts);
             }
         }
     }
@@ -81,6 +83,9 @@ public abstract class AbstractTieredSequenceDataWriter<I extends AnnotationFS>
             } catch (CleartkProcessingException e) {
                 throw new IllegalStateException(e);
             }
+        if (featureExtractor instanceof Closeable) {
+            ((Closeable) featureExtractor).close();
+        }
     }
 
     private static Function<String[], String> getTierLabel(final int tier) {
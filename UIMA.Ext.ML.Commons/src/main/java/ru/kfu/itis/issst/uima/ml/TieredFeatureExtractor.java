@@ -25,29 +25,40 @@ public interface TieredFeatureExtractor<ITEM extends AnnotationFS, OUT> extends
     void initialize(Properties cfg) throws ResourceInitializationException;
 
     /**
-     * @param featSets
-     * @param labels   output labels (one for each token) from each tier before the given one
-     * @param tier
+     * Resolve the data of the given tokens that {@link #onBeforeTier} and {@link #onAfterTier}
+     * need. This is invoked on a thread that owns the CAS, while tier methods may be invoked on
+     * other threads (see {@link AbstractTieredSequenceClassifier}), so they must not access the CAS
+     * and get the result of this method instead of the tokens.
+     *
      * @param jCas
      * @param spanAnno
      * @param tokens
+     * @return a text for each token, or null if a token does not get tier-specific features
+     * @throws CleartkExtractorException
+     */
+    List<String> getTokenTexts(JCas jCas, Annotation spanAnno, List<? extends ITEM> tokens)
+            throws CleartkExtractorException;
+
+    /**
+     * @param featSets
+     * @param labels     output labels (one for each token) from each tier before the given one
+     * @param tier
+     * @param tokenTexts the result of {@link #getTokenTexts(JCas, Annotation, List)}
      * @throws CleartkExtractorException
      */
     void onBeforeTier(List<FeatureSet> featSets, List<List<OUT>> labels, int tier,
-                      JCas jCas, Annotation spanAnno, List<? extends ITEM> tokens)
+                      List<String> tokenTexts)
             throws CleartkExtractorException;
 
     /**
      * @param featSets
-     * @param labels   output labels (one for each token) from each tier including the given one
+     * @param labels     output labels (one for each token) from each tier including the given one
      * @param tier
-     * @param jCas
-     * @param spanAnno
-     * @param tokens
+     * @param tokenTexts the result of {@link #getTokenTexts(JCas, Annotation, List)}
      * @throws CleartkExtractorException
      */
     void onAfterTier(List<FeatureSet> featSets, List<List<OUT>> labels, int tier,
-                     JCas jCas, Annotation spanAnno, List<? extends ITEM> tokens)
+                     List<String> tokenTexts)
             throws CleartkExtractorException;
 
     List<FeatureSet> extractCommonFeatures(JCas jCas, Annotation spanAnno, List<? extends ITEM> tokens)
@@ -21,6 +21,11 @@ public class TieredFeatureExtractors {
     public static final String FILENAME_FEATURE_EXTRACTION_CONFIG = "fec.properties";
     public static final String CFG_FEATURE_EXTRACTOR_CLASSNAME = "class";
     public static final String CFG_TIERS = "tiers";
+    /**
+     * A directory of the configuration file. It is set by
+     * {@link #parseConfig(File)} unless the file defines it.
+     */
+    public static final String CFG_BASE_DIR = "baseDir";
     // split tier definitions in a single line definition string
     public static final char tierSplitterChar = '|';
     public static final Splitter tierSplitter = Splitter.on(tierSplitterChar).trimResults();
@@ -47,7 +52,11 @@ public class TieredFeatureExtractors {
 
     public static Properties parseConfig(File modelDir) throws IOException {
         File feCfgFile = new File(modelDir, FILENAME_FEATURE_EXTRACTION_CONFIG);
-        return IoUtils.readProperties(feCfgFile);
+        Properties cfg = IoUtils.readProperties(feCfgFile);
+        if (!cfg.containsKey(CFG_BASE_DIR)) {
+            cfg.setProperty(CFG_BASE_DIR, modelDir.getPath());
+        }
+        return cfg;
     }
 
     private TieredFeatureExtractors() {
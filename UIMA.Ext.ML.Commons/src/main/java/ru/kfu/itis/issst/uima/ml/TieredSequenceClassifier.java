@@ -1,6 +1,9 @@
 package ru.kfu.itis.issst.uima.ml;
 
 import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.cleartk.ml.CleartkProcessingException;
 
 import java.util.List;
 
@@ -11,4 +14,22 @@ import java.util.List;
  */
 public interface TieredSequenceClassifier<I extends AnnotationFS, TOUT> extends SequenceClassifier<I, TOUT[]> {
     List<String> getTierIds();
+
+    /**
+     * @return true if {@link #classifyAll(JCas, List, List)} processes sequences concurrently
+     */
+    boolean isPipelined();
+
+    /**
+     * Classify several sequences of the same CAS, e.g., all sentences of a document.
+     * The result is equal to the results of {@link #classify(JCas, Annotation, List)} for each sequence,
+     * but an implementation may process different sequences concurrently.
+     *
+     * @param jCas      a CAS
+     * @param spanAnnos a span annotation for each sequence
+     * @param seqs      sequences
+     * @return a list of outcomes for each sequence
+     */
+    List<List<TOUT[]>> classifyAll(JCas jCas, List<? extends Annotation> spanAnnos, List<? extends List<? extends I>> seqs)
+            throws CleartkProcessingException;
 }
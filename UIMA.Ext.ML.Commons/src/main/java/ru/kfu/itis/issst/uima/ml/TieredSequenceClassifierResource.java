@@ -44,11 +44,23 @@ public class TieredSequenceClassifierResource<I extends AnnotationFS> extends Re
 
     public static final String PARAM_MODEL_BASE_PATH = "modelBasePath";
     public static final String PARAM_MODEL_BASE_DIR = "modelBaseDir";
+    /**
+     * If true then sequences passed to {@link #classifyAll(JCas, List, List)} are processed
+     * through the tiers as a pipeline. See {@link AbstractTieredSequenceClassifier}.
+     * <p>
+     * An annotator that uses this resource must have the same mode, e.g.,
+     * {@code SeqClassifierResourceBasedPosTagger} fails to initialize otherwise. Tier threads
+     * belong to this resource, so all annotator copies of a multi-threaded CPE share them.
+     * </p>
+     */
+    public static final String PARAM_PIPELINED_TIERS = "pipelinedTiers";
     // config
     @ConfigurationParameter(name = PARAM_MODEL_BASE_DIR, mandatory = false)
     private File modelBaseDir;
     @ConfigurationParameter(name = PARAM_MODEL_BASE_PATH, mandatory = false)
     private String modelBasePath;
+    @ConfigurationParameter(name = PARAM_PIPELINED_TIERS, defaultValue = "false")
+    private boolean pipelinedTiers;
     // aggregate
     private TieredSequenceClassifier<I, String> delegate;
 
@@ -72,7 +84,7 @@ public class TieredSequenceClassifierResource<I extends AnnotationFS> extends Re
                     "%s is not a directory", modelBaseDir));
         }
         //noinspection unchecked
-        delegate = TieredSequenceClassifiers.fromModelBaseDir(modelBaseDir);
+        delegate = TieredSequenceClassifiers.fromModelBaseDir(modelBaseDir, pipelinedTiers);
         return true;
     }
 
@@ -82,6 +94,13 @@ public class TieredSequenceClassifierResource<I extends AnnotationFS> extends Re
         return delegate.classify(jCas, spanAnno, seq);
     }
 
+    @Override
+    public List<List<String[]>> classifyAll(JCas jCas, List<? extends Annotation> spanAnnos,
+                                            List<? extends List<? extends I>> seqs)
+            throws CleartkProcessingException {
+        return delegate.classifyAll(jCas, spanAnnos, seqs);
+    }
+
     @Override
     public void close() throws IOException {
         delegate.close();
@@ -96,4 +115,9 @@ public class TieredSequenceClassifierResource<I extends AnnotationFS> extends Re
     public List<String> getTierIds() {
         return delegate.getTierIds();
     }
+
+    @Override
+    public boolean isPipelined() {
+        return delegate.isPipelined();
+    }
 }
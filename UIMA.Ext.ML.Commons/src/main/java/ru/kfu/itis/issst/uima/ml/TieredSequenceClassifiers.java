@@ -28,6 +28,18 @@ public class TieredSequenceClassifiers {
 
     public static <I extends AnnotationFS> TieredSequenceClassifier<I, String> fromModelBaseDir(File modelBaseDir)
             throws ResourceInitializationException {
+        return fromModelBaseDir(modelBaseDir, false);
+    }
+
+    /**
+     * @param modelBaseDir a directory with the feature extraction config and tier model directories
+     * @param pipelined    if true then the result classifies sequences passed to
+     *                     {@link TieredSequenceClassifier#classifyAll} as a pipeline of tiers
+     * @return a new classifier instance
+     */
+    public static <I extends AnnotationFS> TieredSequenceClassifier<I, String> fromModelBaseDir(
+            File modelBaseDir, final boolean pipelined)
+            throws ResourceInitializationException {
         final TieredFeatureExtractor<I, String> lFeatureExtractor;
         final List<SequenceClassifier<String>> lClassifiers;
         final List<String> tiers;
@@ -45,6 +57,7 @@ public class TieredSequenceClassifiers {
                 this.tierIds = ImmutableList.copyOf(tiers);
                 this.classifiers = lClassifiers;
                 this.featureExtractor = lFeatureExtractor;
+                this.pipelined = pipelined;
                 Preconditions.checkState(tierIds.size() == classifiers.size());
             }
         };
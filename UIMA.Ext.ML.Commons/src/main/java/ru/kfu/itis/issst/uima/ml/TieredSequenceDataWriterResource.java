@@ -16,7 +16,6 @@ import org.apache.uima.resource.ResourceSpecifier;
 import org.cleartk.ml.CleartkProcessingException;
 import org.cleartk.ml.SequenceDataWriterFactory;
 import org.cleartk.ml.jar.DirectoryDataWriterFactory;
-import ru.kfu.itis.cll.uima.io.IoUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -66,9 +65,8 @@ public class TieredSequenceDataWriterResource<I extends AnnotationFS> extends Re
         if (outputBaseDir.exists() && !outputBaseDir.isDirectory()) {
             throw new IllegalStateException(format("%s exists but it is not a directory", outputBaseDir));
         }
-        File feCfgFile = new File(outputBaseDir, TieredFeatureExtractors.FILENAME_FEATURE_EXTRACTION_CONFIG);
         try {
-            featureExtractionCfg = IoUtils.readProperties(feCfgFile);
+            featureExtractionCfg = TieredFeatureExtractors.parseConfig(outputBaseDir);
         } catch (IOException e) {
             throw new ResourceInitializationException(e);
         }
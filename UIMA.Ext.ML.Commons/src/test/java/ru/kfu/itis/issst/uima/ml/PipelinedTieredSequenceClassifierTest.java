@@ -0,0 +1,262 @@
+package ru.kfu.itis.issst.uima.ml;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the pipelined mode of {@link AbstractTieredSequenceClassifier} yields the same labels
+ * as the sequential one, that each tier classifier is invoked from a single thread, and that the
+ * feature extractor accesses the CAS from the caller thread only.
+ *
+ * @author Rinat Gareev
+ */
+public class PipelinedTieredSequenceClassifierTest {
+
+    private static final String[] WORDS = {"a", "b", "c", "d", "e"};
+    private static final int TIER_NUM = 3;
+
+    @Test
+    public void testSameLabels() throws Exception {
+        JCas jCas = JCasFactory.createJCas();
+        List<Annotation> sents = Lists.newArrayList();
+        List<List<Annotation>> seqs = Lists.newArrayList();
+        createDocument(jCas, new Random(17), 200, sents, seqs);
+        // sequential
+        TestClassifier seqCl = new TestClassifier(false);
+        List<List<String[]>> expected = Lists.newArrayList();
+        for (int i = 0; i < seqs.size(); i++) {
+            expected.add(seqCl.classify(jCas, sents.get(i), seqs.get(i)));
+        }
+        assertEquals(expected.size(), seqCl.classifyAll(jCas, sents, seqs).size());
+        // pipelined
+        TestClassifier pipelinedCl = new TestClassifier(true);
+        try {
+            for (int run = 0; run < 3; run++) {
+                List<List<String[]>> actual = pipelinedCl.classifyAll(jCas, sents, seqs);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    List<String[]> expectedSeq = expected.get(i);
+                    List<String[]> actualSeq = actual.get(i);
+                    assertEquals(expectedSeq.size(), actualSeq.size());
+                    for (int t = 0; t < expectedSeq.size(); t++) {
+                        assertArrayEquals(expectedSeq.get(t), actualSeq.get(t));
+                    }
+                }
+            }
+        } finally {
+            pipelinedCl.close();
+        }
+        for (TestTierClassifier tcl : pipelinedCl.tierClassifiers) {
+            assertEquals(1, tcl.threads.size());
+            assertFalse(tcl.threads.contains(Thread.currentThread()));
+        }
+        assertEquals(Collections.singleton(Thread.currentThread()),
+                pipelinedCl.featureExtractor().casThreads);
+    }
+
+    @Test
+    public void testErrorPropagation() throws Exception {
+        JCas jCas = JCasFactory.createJCas();
+        List<Annotation> sents = Lists.newArrayList();
+        List<List<Annotation>> seqs = Lists.newArrayList();
+        createDocument(jCas, new Random(3), 20, sents, seqs);
+        TestClassifier cl = new TestClassifier(true);
+        try {
+            cl.tierClassifiers.get(1).failOn = seqs.get(7).size();
+            try {
+                cl.classifyAll(jCas, sents, seqs);
+                fail("Expected CleartkProcessingException");
+            } catch (CleartkProcessingException e) {
+                // expected
+            }
+            // the pipeline is still usable
+            cl.tierClassifiers.get(1).failOn = -1;
+            assertEquals(seqs.size(), cl.classifyAll(jCas, sents, seqs).size());
+        } finally {
+            cl.close();
+        }
+    }
+
+    private static void createDocument(JCas jCas, Random rnd, int sentNum,
+                                       List<Annotation> sents, List<List<Annotation>> seqs) {
+        StringBuilder text = new StringBuilder();
+        List<int[]> sentSpans = Lists.newArrayList();
+        List<List<int[]>> tokenSpans = Lists.newArrayList();
+        for (int s = 0; s < sentNum; s++) {
+            int sentBegin = text.length();
+            List<int[]> sentTokenSpans = Lists.newArrayList();
+            int length = 1 + rnd.nextInt(12);
+            for (int t = 0; t < length; t++) {
+                String w = WORDS[rnd.nextInt(WORDS.length)];
+                sentTokenSpans.add(new int[]{text.length(), text.length() + w.length()});
+                text.append(w).append(' ');
+            }
+            sentSpans.add(new int[]{sentBegin, text.length()});
+            tokenSpans.add(sentTokenSpans);
+        }
+        jCas.setDocumentText(text.toString());
+        for (int s = 0; s < sentNum; s++) {
+            int[] sentSpan = sentSpans.get(s);
+            sents.add(new Annotation(jCas, sentSpan[0], sentSpan[1]));
+            List<Annotation> seq = Lists.newArrayList();
+            for (int[] span : tokenSpans.get(s)) {
+                seq.add(new Annotation(jCas, span[0], span[1]));
+            }
+            seqs.add(seq);
+        }
+    }
+
+    private static class TestClassifier extends AbstractTieredSequenceClassifier<Annotation> {
+        private final List<TestTierClassifier> tierClassifiers = Lists.newArrayList();
+
+        TestClassifier(boolean pipelined) {
+            for (int tier = 0; tier < TIER_NUM; tier++) {
+                tierClassifiers.add(new TestTierClassifier(tier));
+            }
+            this.tierIds = ImmutableList.of("T0", "T1", "T2");
+            this.classifiers = ImmutableList.<org.cleartk.ml.SequenceClassifier<String>>copyOf(tierClassifiers);
+            this.featureExtractor = new TestFeatureExtractor();
+            this.pipelined = pipelined;
+        }
+
+        TestFeatureExtractor featureExtractor() {
+            return (TestFeatureExtractor) featureExtractor;
+        }
+    }
+
+    /**
+     * A label of a token is derived from its features, so it depends on the token text and
+     * the labels of the previous tier for the token and its neighbours.
+     */
+    private static class TestTierClassifier implements org.cleartk.ml.SequenceClassifier<String> {
+        private final int tier;
+        private final Set<Thread> threads = Collections.synchronizedSet(Sets.<Thread>newHashSet());
+        private volatile int failOn = -1;
+
+        TestTierClassifier(int tier) {
+            this.tier = tier;
+        }
+
+        @Override
+        public List<String> classify(List<List<Feature>> features) throws CleartkProcessingException {
+            threads.add(Thread.currentThread());
+            if (features.size() == failOn) {
+                throw new CleartkProcessingException(new IllegalStateException("Test failure"));
+            }
+            List<String> result = Lists.newArrayList();
+            for (List<Feature> tokFeatures : features) {
+                List<String> vals = Lists.newArrayList();
+                for (Feature f : tokFeatures) {
+                    vals.add(f.getName() + ":" + f.getValue());
+                }
+                Collections.sort(vals);
+                // keep labels short
+                String label = "L" + tier + "_" + (Joiner.on(',').join(vals).hashCode() & 7);
+                // exercise null labels
+                result.add(label.endsWith("_0") ? "null" : label);
+            }
+            return result;
+        }
+
+        @Override
+        public List<Map<String, Double>> score(List<List<Feature>> features) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class TestFeatureExtractor implements TieredFeatureExtractor<Annotation, String> {
+        private final FeatureExtractor1 commonSrc = new DummyExtractor();
+        private final FeatureExtractor1 textSrc = new DummyExtractor();
+        private final FeatureExtractor1 labelSrc = new DummyExtractor();
+        // threads that have passed a CAS to this extractor
+        private final Set<Thread> casThreads = Collections.synchronizedSet(Sets.<Thread>newHashSet());
+
+        @Override
+        public void initialize(Properties cfg) {
+        }
+
+        @Override
+        public void onCASChange(JCas cas) {
+        }
+
+        @Override
+        public List<String> getTokenTexts(JCas jCas, Annotation spanAnno,
+                                          List<? extends Annotation> tokens) {
+            casThreads.add(Thread.currentThread());
+            List<String> result = Lists.newArrayList();
+            for (Annotation tok : tokens) {
+                result.add(tok.getCoveredText());
+            }
+            return result;
+        }
+
+        @Override
+        public void onBeforeTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
+                                 List<String> tokenTexts) {
+            assertTrue(labels.get(0).size() == tier);
+            // a text feature that depends on the previous tier, like dictionary features do
+            for (int pos = 0; pos < featSets.size(); pos++) {
+                FeatureSet fs = featSets.get(pos);
+                fs.removeFeaturesBySource(textSrc);
+                String prevLabel = tier == 0 ? "" : labels.get(pos).get(tier - 1);
+                fs.add(ImmutableList.of(new Feature("wl", tokenTexts.get(pos) + prevLabel)), textSrc);
+            }
+        }
+
+        @Override
+        public void onAfterTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
+                                List<String> tokenTexts) {
+            for (int pos = 0; pos < featSets.size(); pos++) {
+                FeatureSet fs = featSets.get(pos);
+                fs.removeFeaturesBySource(labelSrc);
+                List<Feature> labelFeatures = Lists.newArrayList();
+                for (int ctxPos = Math.max(0, pos - 1); ctxPos <= Math.min(featSets.size() - 1, pos + 1); ctxPos++) {
+                    labelFeatures.add(new Feature("Label_at_" + (pos - ctxPos), labels.get(ctxPos).get(tier)));
+                }
+                fs.add(labelFeatures, labelSrc);
+            }
+        }
+
+        @Override
+        public List<FeatureSet> extractCommonFeatures(JCas jCas, Annotation spanAnno,
+                                                      List<? extends Annotation> tokens) {
+            casThreads.add(Thread.currentThread());
+            List<FeatureSet> result = Lists.newArrayList();
+            for (Annotation tok : tokens) {
+                FeatureSet fs = FeatureSets.empty();
+                fs.add(ImmutableList.of(new Feature("w", tok.getCoveredText())), commonSrc);
+                result.add(fs);
+            }
+            return result;
+        }
+    }
+
+    private static class DummyExtractor implements FeatureExtractor1 {
+        @Override
+        public List<Feature> extract(JCas view, Annotation focusAnnotation) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
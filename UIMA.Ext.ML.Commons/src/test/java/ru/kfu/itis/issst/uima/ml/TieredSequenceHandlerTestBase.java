@@ -80,10 +80,21 @@ public class TieredSequenceHandlerTestBase {
         }
 
         @Override
-        public void onBeforeTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
-                                 JCas jCas, Annotation spanAnno, List<? extends Annotation> tokens) {
+        public List<String> getTokenTexts(JCas jCas, Annotation spanAnno,
+                                          List<? extends Annotation> tokens) {
             assertEquals(jCas, this.jCas);
+            List<String> result = Lists.newArrayList();
             for (int tokPos = 0; tokPos < tokens.size(); tokPos++) {
+                result.add("token-" + tokPos);
+            }
+            return result;
+        }
+
+        @Override
+        public void onBeforeTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
+                                 List<String> tokenTexts) {
+            assertEquals(featSets.size(), tokenTexts.size());
+            for (int tokPos = 0; tokPos < tokenTexts.size(); tokPos++) {
                 FeatureSet tokFeatSet = featSets.get(tokPos);
                 tokFeatSet.add(of(new Feature(format("tier%s-%s", tier, tokPos))),
                         getTierSpecificFeatureExtractor(tier));
@@ -92,8 +103,8 @@ public class TieredSequenceHandlerTestBase {
 
         @Override
         public void onAfterTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
-                                JCas jCas, Annotation spanAnno, List<? extends Annotation> tokens) {
-            assertEquals(jCas, this.jCas);
+                                List<String> tokenTexts) {
+            assertEquals(featSets.size(), tokenTexts.size());
             for (FeatureSet tokFeatSet : featSets) {
                 tokFeatSet.removeFeaturesBySource(ImmutableSet.of(getTierSpecificFeatureExtractor(tier)));
             }
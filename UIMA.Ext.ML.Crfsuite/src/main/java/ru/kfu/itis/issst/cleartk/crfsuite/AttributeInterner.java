@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.cleartk.crfsuite;
+
+import com.google.common.collect.Maps;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.encoder.CleartkEncoderException;
+import org.cleartk.ml.encoder.features.FeaturesEncoder;
+import ru.kfu.itis.issst.cleartk.SerializableNameNumber;
+import ru.kfu.itis.issst.crfsuite4j.Attribute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves ClearTK features into CRFsuite attributes and keeps the resolved
+ * attributes keyed by feature name and value. So a feature that has been seen
+ * before is resolved without encoding, string concatenation and escaping.
+ * <p>
+ * The number of interned features is bounded by the given size. When the
+ * bound is reached, features that have not been seen before are encoded on
+ * each call. This class is not thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class AttributeInterner {
+
+    private static final Attribute[] NO_ATTRIBUTES = new Attribute[0];
+
+    private final FeaturesEncoder<ArrayList<SerializableNameNumber>> featuresEncoder;
+    private final int maxSize;
+    // feature name -> feature value -> attributes
+    private final Map<String, Map<Object, Attribute[]>> attributes = Maps.newHashMap();
+    private int size;
+
+    public AttributeInterner(FeaturesEncoder<ArrayList<SerializableNameNumber>> featuresEncoder,
+                             int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(String.format("maxSize = %s", maxSize));
+        }
+        this.featuresEncoder = featuresEncoder;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Append attributes of the given feature to the target list.
+     *
+     * @param feature a feature
+     * @param target  a list to add attributes to
+     * @throws CleartkEncoderException if the features encoder fails
+     */
+    public void appendAttributes(Feature feature, List<Attribute> target)
+            throws CleartkEncoderException {
+        String name = feature.getName();
+        Object value = feature.getValue();
+        Map<Object, Attribute[]> valueMap = attributes.get(name);
+        Attribute[] attrs = valueMap == null ? null : valueMap.get(value);
+        if (attrs == null) {
+            attrs = encode(feature);
+            if (size < maxSize) {
+                if (valueMap == null) {
+                    valueMap = Maps.newHashMap();
+                    attributes.put(name, valueMap);
+                }
+                valueMap.put(value, attrs);
+                size++;
+            }
+        }
+        for (Attribute attr : attrs) {
+            target.add(attr);
+        }
+    }
+
+    /**
+     * @return the number of interned features
+     */
+    public int size() {
+        return size;
+    }
+
+    private Attribute[] encode(Feature feature) throws CleartkEncoderException {
+        List<SerializableNameNumber> encoded = featuresEncoder.encodeAll(
+                Collections.singletonList(feature));
+        if (encoded.isEmpty()) {
+            return NO_ATTRIBUTES;
+        }
+        Attribute[] result = new Attribute[encoded.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new Attribute(encoded.get(i).name);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.cleartk.crfsuite;
+
+import com.google.common.collect.Lists;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.encoder.features.FeaturesEncoder;
+import org.cleartk.ml.encoder.outcome.OutcomeEncoder;
+import org.cleartk.ml.jar.SequenceClassifier_ImplBase;
+import ru.kfu.itis.issst.cleartk.SerializableNameNumber;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An alternative to {@link CRFSuiteStringOutcomeClassifier} that decodes
+ * sequences by {@link CrfSuiteModel} instead of the native CRFsuite tagger.
+ * So it does not need crfsuite-jni at runtime, and an instance can be shared
+ * by several threads.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class CRFSuiteJavaStringOutcomeClassifier extends
+        SequenceClassifier_ImplBase<ArrayList<SerializableNameNumber>, String, String> {
+
+    private final CrfSuiteModel model;
+
+    public CRFSuiteJavaStringOutcomeClassifier(CrfSuiteModel model,
+                                               FeaturesEncoder<ArrayList<SerializableNameNumber>> featuresEncoder,
+                                               OutcomeEncoder<String, String> outcomeEncoder) {
+        super(featuresEncoder, outcomeEncoder);
+        this.model = model;
+    }
+
+    public CrfSuiteModel getModel() {
+        return model;
+    }
+
+    @Override
+    public List<String> classify(List<List<Feature>> srcItemSeq) throws CleartkProcessingException {
+        int[][] items = new int[srcItemSeq.size()][];
+        int itemIdx = 0;
+        for (List<Feature> srcItem : srcItemSeq) {
+            List<SerializableNameNumber> encodedSrcItem = featuresEncoder.encodeAll(srcItem);
+            int[] item = new int[encodedSrcItem.size()];
+            for (int i = 0; i < item.length; i++) {
+                // attributes that are unknown to the model get -1 and are skipped
+                item[i] = model.getAttributeId(encodedSrcItem.get(i).name);
+            }
+            items[itemIdx++] = item;
+        }
+        if (itemIdx != items.length) {
+            throw new IllegalStateException();
+        }
+        // invoke
+        int[] labelIds = model.tag(items);
+        List<String> modelLabels = model.getLabels();
+        List<String> labels = Lists.newArrayListWithCapacity(labelIds.length);
+        for (int labelId : labelIds) {
+            labels.add(modelLabels.get(labelId));
+        }
+        return labels;
+    }
+}
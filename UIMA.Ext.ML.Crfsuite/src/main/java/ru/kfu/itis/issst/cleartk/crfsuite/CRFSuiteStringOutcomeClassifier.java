@@ -3,7 +3,6 @@
  */
 package ru.kfu.itis.issst.cleartk.crfsuite;
 
-import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import org.cleartk.ml.CleartkProcessingException;
 import org.cleartk.ml.Feature;
@@ -21,36 +20,61 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Attributes of items are interned by {@link AttributeInterner}, and the item
+ * sequence buffer is reused between calls. So instances of this class are not
+ * thread-safe.
+ *
  * @author Rinat Gareev (Kazan Federal University)
  */
 public class CRFSuiteStringOutcomeClassifier extends
         SequenceClassifier_ImplBase<ArrayList<SerializableNameNumber>, String, String>
         implements Disposable, Closeable {
 
+    /**
+     * the default maximum number of distinct features whose attributes are
+     * interned. It applies to each instance, e.g., a tiered tagger holds an
+     * interner per tier.
+     */
+    public static final int DEFAULT_MAX_INTERNED_FEATURES = 100000;
+
     // config fields
     @SuppressWarnings("unused")
     private File modelFile;
     // derived
     private CrfSuiteTagger tagger;
+    private AttributeInterner attributeInterner;
+    // per-sequence buffer, items are reused between calls
+    private final List<List<Attribute>> itemSeqBuffer = Lists.newArrayList();
 
     public CRFSuiteStringOutcomeClassifier(File modelFile,
                                            FeaturesEncoder<ArrayList<SerializableNameNumber>> featuresEncoder,
                                            OutcomeEncoder<String, String> outcomeEncoder) {
+        this(modelFile, featuresEncoder, outcomeEncoder, DEFAULT_MAX_INTERNED_FEATURES);
+    }
+
+    /**
+     * @param maxInternedFeatures the maximum number of distinct features whose
+     *                            attributes are interned, 0 disables interning
+     */
+    public CRFSuiteStringOutcomeClassifier(File modelFile,
+                                           FeaturesEncoder<ArrayList<SerializableNameNumber>> featuresEncoder,
+                                           OutcomeEncoder<String, String> outcomeEncoder,
+                                           int maxInternedFeatures) {
         super(featuresEncoder, outcomeEncoder);
         this.modelFile = modelFile;
         tagger = new CrfSuiteTagger(modelFile);
+        attributeInterner = new AttributeInterner(featuresEncoder, maxInternedFeatures);
     }
 
     @Override
     public List<String> classify(List<List<Feature>> srcItemSeq) throws CleartkProcessingException {
-        List<List<Attribute>> itemSeq = Lists.newLinkedList();
+        List<List<Attribute>> itemSeq = prepareItemSeq(srcItemSeq.size());
+        int itemIdx = 0;
         for (List<Feature> srcItem : srcItemSeq) {
-            List<SerializableNameNumber> encodedSrcItem = featuresEncoder.encodeAll(srcItem);
-            List<Attribute> item = Lists.transform(encodedSrcItem, nameNumber2attributeFunc);
-            itemSeq.add(item);
-        }
-        if (itemSeq.size() != srcItemSeq.size()) {
-            throw new IllegalStateException();
+            List<Attribute> item = itemSeq.get(itemIdx++);
+            for (Feature feature : srcItem) {
+                attributeInterner.appendAttributes(feature, item);
+            }
         }
         // invoke
         List<String> labels = tagger.tag(itemSeq);
@@ -66,6 +90,17 @@ public class CRFSuiteStringOutcomeClassifier extends
         return labels;
     }
 
+    private List<List<Attribute>> prepareItemSeq(int size) {
+        while (itemSeqBuffer.size() < size) {
+            itemSeqBuffer.add(new ArrayList<Attribute>());
+        }
+        List<List<Attribute>> result = itemSeqBuffer.subList(0, size);
+        for (List<Attribute> item : result) {
+            item.clear();
+        }
+        return result;
+    }
+
     @Override
     protected void finalize() throws Throwable {
         if (tagger != null) {
@@ -88,11 +123,4 @@ public class CRFSuiteStringOutcomeClassifier extends
         dispose();
     }
 
-    private static final Function<SerializableNameNumber, Attribute> nameNumber2attributeFunc
-            = new Function<SerializableNameNumber, Attribute>() {
-        @Override
-        public Attribute apply(SerializableNameNumber arg) {
-            return new Attribute(arg.name);
-        }
-    };
 }
@@ -10,6 +10,7 @@ import org.apache.uima.util.Level;
 import org.apache.uima.util.Logger;
 import org.cleartk.ml.jar.JarStreams;
 import org.cleartk.ml.jar.SequenceClassifierBuilder_ImplBase;
+import org.cleartk.ml.jar.SequenceClassifier_ImplBase;
 import ru.kfu.itis.issst.cleartk.SerializableNameNumber;
 import ru.kfu.itis.issst.cleartk.crfsuite2.SerializedNNBasedCrfSuiteTraining;
 import ru.kfu.itis.issst.crfsuite4j.CrfSuiteTraining;
@@ -28,11 +29,28 @@ import static org.apache.commons.io.FileUtils.copyFile;
  *         {@link org.cleartk.classifier.crfsuite.CRFSuiteStringOutcomeClassifierBuilder}
  *         implementation.
  *         </p>
+ *         <p>
+ *         By default a model is applied by the native CRFsuite tagger, see
+ *         {@link CRFSuiteStringOutcomeClassifier}. If system property
+ *         {@value #SYSPROP_TAGGER} is set to {@value #TAGGER_JAVA} the
+ *         {@link CRFSuiteJavaStringOutcomeClassifier} is created instead.
+ *         </p>
+ *         <p>
+ *         System property {@value #SYSPROP_MAX_INTERNED_FEATURES} sets the
+ *         maximum number of interned features of each native tagger
+ *         classifier, see
+ *         {@link CRFSuiteStringOutcomeClassifier#DEFAULT_MAX_INTERNED_FEATURES}.
+ *         </p>
  */
 @SuppressWarnings("JavadocReference")
 public class CRFSuiteStringOutcomeClassifierBuilder
 		extends
-		SequenceClassifierBuilder_ImplBase<CRFSuiteStringOutcomeClassifier, ArrayList<SerializableNameNumber>, String, String> {
+		SequenceClassifierBuilder_ImplBase<SequenceClassifier_ImplBase<ArrayList<SerializableNameNumber>, String, String>, ArrayList<SerializableNameNumber>, String, String> {
+
+	public static final String SYSPROP_TAGGER = "crfsuite.tagger";
+	public static final String TAGGER_JNI = "jni";
+	public static final String TAGGER_JAVA = "java";
+	public static final String SYSPROP_MAX_INTERNED_FEATURES = "crfsuite.maxInternedFeatures";
 
 	// config fields
 	// TODO
@@ -171,11 +189,43 @@ public class CRFSuiteStringOutcomeClassifierBuilder
 	}
 
 	@Override
-	protected CRFSuiteStringOutcomeClassifier newClassifier() {
-		return new CRFSuiteStringOutcomeClassifier(
-				this.modelFile,
-				this.featuresEncoder,
-				this.outcomeEncoder);
+	protected SequenceClassifier_ImplBase<ArrayList<SerializableNameNumber>, String, String> newClassifier() {
+		String tagger = System.getProperty(SYSPROP_TAGGER, TAGGER_JNI);
+		if (TAGGER_JAVA.equals(tagger)) {
+			CrfSuiteModel model;
+			try {
+				model = CrfSuiteModel.read(modelFile);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return new CRFSuiteJavaStringOutcomeClassifier(
+					model,
+					this.featuresEncoder,
+					this.outcomeEncoder);
+		} else if (TAGGER_JNI.equals(tagger)) {
+			return new CRFSuiteStringOutcomeClassifier(
+					this.modelFile,
+					this.featuresEncoder,
+					this.outcomeEncoder,
+					getMaxInternedFeatures());
+		} else {
+			throw new IllegalStateException(String.format(
+					"Unknown value of system property %s: %s", SYSPROP_TAGGER, tagger));
+		}
+	}
+
+	private static int getMaxInternedFeatures() {
+		String valStr = System.getProperty(SYSPROP_MAX_INTERNED_FEATURES);
+		if (valStr == null) {
+			return CRFSuiteStringOutcomeClassifier.DEFAULT_MAX_INTERNED_FEATURES;
+		}
+		try {
+			return Integer.parseInt(valStr.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalStateException(String.format(
+					"Illegal value of system property %s: %s",
+					SYSPROP_MAX_INTERNED_FEATURES, valStr));
+		}
 	}
 
 	private static final String TRAINING_DATA_FILE_EXTENSION = ".training";
@@ -0,0 +1,297 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.cleartk.crfsuite;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * First-order linear-chain CRF model read from a file written by CRFsuite
+ * (model type 'FOMC'). Feature weights are kept in primitive arrays, and
+ * {@link #tag(int[][])} runs Viterbi decoding in the same way as the CRFsuite
+ * tagger does, including tie-breaking.
+ * <p>
+ * Instances are immutable and can be shared by several threads. Each thread
+ * uses its own decoding scratch buffers.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class CrfSuiteModel {
+
+    public static CrfSuiteModel read(File modelFile) throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(modelFile);
+        try {
+            return read(ByteBuffer.wrap(bytes));
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Can't read CRFsuite model from %s", modelFile), e);
+        }
+    }
+
+    static CrfSuiteModel read(ByteBuffer buf) {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        checkMagic(buf, 0, "lCRF");
+        checkMagic(buf, 8, "FOMC");
+        int numFeatures = buf.getInt(16);
+        int numLabels = buf.getInt(20);
+        int numAttrs = buf.getInt(24);
+        int offFeatures = buf.getInt(28);
+        int offLabels = buf.getInt(32);
+        int offAttrs = buf.getInt(36);
+        String[] labels = readCQDB(buf, offLabels, numLabels);
+        String[] attrs = readCQDB(buf, offAttrs, numAttrs);
+        // read features
+        checkMagic(buf, offFeatures, "FEAT");
+        if (buf.getInt(offFeatures + 8) != numFeatures) {
+            throw new IllegalStateException("Inconsistent number of features");
+        }
+        int[] featureType = new int[numFeatures];
+        int[] featureSrc = new int[numFeatures];
+        int[] featureDst = new int[numFeatures];
+        double[] featureWeight = new double[numFeatures];
+        int[] attrFeatureNum = new int[numAttrs];
+        for (int f = 0; f < numFeatures; f++) {
+            int p = offFeatures + FEATURE_HEADER_SIZE + FEATURE_SIZE * f;
+            featureType[f] = buf.getInt(p);
+            featureSrc[f] = buf.getInt(p + 4);
+            featureDst[f] = buf.getInt(p + 8);
+            featureWeight[f] = buf.getDouble(p + 12);
+            checkIndex(featureDst[f], numLabels);
+            if (featureType[f] == FT_STATE) {
+                checkIndex(featureSrc[f], numAttrs);
+                attrFeatureNum[featureSrc[f]]++;
+            } else if (featureType[f] == FT_TRANS) {
+                checkIndex(featureSrc[f], numLabels);
+            } else {
+                throw new IllegalStateException(String.format(
+                        "Unknown feature type: %s", featureType[f]));
+            }
+        }
+        // lay out state features by attribute
+        int[] attrFeatureStart = new int[numAttrs + 1];
+        for (int a = 0; a < numAttrs; a++) {
+            attrFeatureStart[a + 1] = attrFeatureStart[a] + attrFeatureNum[a];
+        }
+        int[] stateLabel = new int[attrFeatureStart[numAttrs]];
+        double[] stateWeight = new double[stateLabel.length];
+        double[] transWeight = new double[numLabels * numLabels];
+        int[] attrFeatureCur = Arrays.copyOf(attrFeatureStart, numAttrs);
+        for (int f = 0; f < numFeatures; f++) {
+            if (featureType[f] == FT_STATE) {
+                int i = attrFeatureCur[featureSrc[f]]++;
+                stateLabel[i] = featureDst[f];
+                stateWeight[i] = featureWeight[f];
+            } else {
+                transWeight[featureSrc[f] * numLabels + featureDst[f]] = featureWeight[f];
+            }
+        }
+        return new CrfSuiteModel(labels, attrs,
+                attrFeatureStart, stateLabel, stateWeight, transWeight);
+    }
+
+    // feature types
+    private static final int FT_STATE = 0;
+    private static final int FT_TRANS = 1;
+    private static final int FEATURE_HEADER_SIZE = 12;
+    private static final int FEATURE_SIZE = 20;
+    // CQDB layout
+    private static final int CQDB_HEADER_SIZE = 24;
+    private static final int CQDB_NUM_TABLES = 256;
+    private static final int CQDB_BYTEORDER_CHECK = 0x62445371;
+
+    private final List<String> labels;
+    private final Map<String, Integer> attr2Id;
+    private final int numLabels;
+    // state features of attribute a are in [attrFeatureStart[a], attrFeatureStart[a+1])
+    private final int[] attrFeatureStart;
+    private final int[] stateLabel;
+    private final double[] stateWeight;
+    // transition weight from label i to label j is at [i * numLabels + j]
+    private final double[] transWeight;
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private CrfSuiteModel(String[] labels, String[] attrs,
+                          int[] attrFeatureStart, int[] stateLabel, double[] stateWeight,
+                          double[] transWeight) {
+        this.labels = ImmutableList.copyOf(labels);
+        this.numLabels = labels.length;
+        this.attr2Id = Maps.newHashMapWithExpectedSize(attrs.length);
+        for (int a = 0; a < attrs.length; a++) {
+            attr2Id.put(attrs[a], a);
+        }
+        this.attrFeatureStart = attrFeatureStart;
+        this.stateLabel = stateLabel;
+        this.stateWeight = stateWeight;
+        this.transWeight = transWeight;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    public int getLabelsNum() {
+        return numLabels;
+    }
+
+    public int getAttributesNum() {
+        return attrFeatureStart.length - 1;
+    }
+
+    /**
+     * @param attr an attribute name
+     * @return id of the given attribute or -1 if the model does not know it.
+     */
+    public int getAttributeId(String attr) {
+        Integer id = attr2Id.get(attr);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Find the most probable label sequence.
+     *
+     * @param items attribute ids of each item, negative ids are skipped.
+     * @return label ids, one for each item
+     */
+    public int[] tag(int[][] items) {
+        int seqLength = items.length;
+        int[] result = new int[seqLength];
+        if (seqLength == 0) {
+            return result;
+        }
+        Scratch s = scratch.get();
+        s.ensureCapacity(seqLength, numLabels);
+        double[] score = s.score;
+        int[] backEdge = s.backEdge;
+        // the first item
+        computeStateScores(items[0], score, 0);
+        for (int t = 1; t < seqLength; t++) {
+            int prevBase = (t - 1) * numLabels;
+            int curBase = t * numLabels;
+            for (int j = 0; j < numLabels; j++) {
+                double maxScore = Double.NEGATIVE_INFINITY;
+                int argMax = -1;
+                for (int i = 0; i < numLabels; i++) {
+                    double sc = score[prevBase + i] + transWeight[i * numLabels + j];
+                    if (maxScore < sc) {
+                        maxScore = sc;
+                        argMax = i;
+                    }
+                }
+                score[curBase + j] = maxScore;
+                backEdge[curBase + j] = argMax;
+            }
+            addStateScores(items[t], score, curBase);
+        }
+        // find the best last label
+        int lastBase = (seqLength - 1) * numLabels;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        int argMax = -1;
+        for (int j = 0; j < numLabels; j++) {
+            if (maxScore < score[lastBase + j]) {
+                maxScore = score[lastBase + j];
+                argMax = j;
+            }
+        }
+        result[seqLength - 1] = argMax;
+        // trace back
+        for (int t = seqLength - 1; t > 0; t--) {
+            result[t - 1] = backEdge[t * numLabels + result[t]];
+        }
+        return result;
+    }
+
+    private void computeStateScores(int[] attrs, double[] score, int base) {
+        Arrays.fill(score, base, base + numLabels, 0);
+        addStateScores(attrs, score, base);
+    }
+
+    private void addStateScores(int[] attrs, double[] score, int base) {
+        for (int a : attrs) {
+            if (a < 0) {
+                continue;
+            }
+            for (int f = attrFeatureStart[a]; f < attrFeatureStart[a + 1]; f++) {
+                score[base + stateLabel[f]] += stateWeight[f];
+            }
+        }
+    }
+
+    private static class Scratch {
+        private double[] score = new double[0];
+        private int[] backEdge = new int[0];
+
+        void ensureCapacity(int seqLength, int numLabels) {
+            int size = seqLength * numLabels;
+            if (score.length < size) {
+                score = new double[size];
+                backEdge = new int[size];
+            }
+        }
+    }
+
+    /**
+     * Read strings of a CQDB chunk by their ids using the backward array.
+     */
+    private static String[] readCQDB(ByteBuffer buf, int begin, int num) {
+        checkMagic(buf, begin, "CQDB");
+        if (buf.getInt(begin + 12) != CQDB_BYTEORDER_CHECK) {
+            throw new IllegalStateException("Unsupported CQDB byte order");
+        }
+        int bwdSize = buf.getInt(begin + 16);
+        int bwdOffset = buf.getInt(begin + 20);
+        if (bwdOffset == 0) {
+            throw new IllegalStateException("CQDB without the backward array is not supported");
+        }
+        if (bwdSize < num) {
+            throw new IllegalStateException(String.format(
+                    "CQDB backward array size %s < %s", bwdSize, num));
+        }
+        String[] result = new String[num];
+        for (int id = 0; id < num; id++) {
+            int p = begin + buf.getInt(begin + bwdOffset + 4 * id);
+            if (p < begin + CQDB_HEADER_SIZE + 8 * CQDB_NUM_TABLES) {
+                throw new IllegalStateException(String.format("No CQDB record for id %s", id));
+            }
+            if (buf.getInt(p) != id) {
+                throw new IllegalStateException(String.format(
+                        "CQDB record id %s != %s", buf.getInt(p), id));
+            }
+            int keySize = buf.getInt(p + 4);
+            // the key is null-terminated
+            result[id] = new String(buf.array(), buf.arrayOffset() + p + 8, keySize - 1, Charsets.UTF_8);
+        }
+        return result;
+    }
+
+    private static void checkMagic(ByteBuffer buf, int offset, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (buf.get(offset + i) != expected.charAt(i)) {
+                throw new IllegalStateException(String.format(
+                        "Expected '%s' chunk at %s", expected, offset));
+            }
+        }
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IllegalStateException(String.format(
+                    "Index %s is out of range [0,%s)", index, size));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.cleartk.crfsuite;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes first-order linear-chain CRF models in the CRFsuite format from
+ * weight matrices. Feature references and CQDB hash tables are not written as
+ * neither {@link CrfSuiteModel} nor the CRFsuite tagger use them. It is
+ * intended to make synthetic models for tests and benchmarks.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class CrfSuiteModelWriter {
+
+    /**
+     * @param labels
+     *            labels in the order of their ids
+     * @param attrs
+     *            attributes in the order of their ids
+     * @param state
+     *            state feature weights indexed by attribute and label ids
+     * @param trans
+     *            transition feature weights indexed by source and destination
+     *            label ids
+     * @return model bytes that can be read by {@link CrfSuiteModel} and the
+     *         CRFsuite tagger. A state feature is written for each non-zero
+     *         state weight, a transition feature - for each non-zero
+     *         transition weight.
+     */
+    public static byte[] write(String[] labels, String[] attrs, double[][] state, double[][] trans) {
+        byte[] labelsChunk = writeCQDB(labels);
+        byte[] attrsChunk = writeCQDB(attrs);
+        ByteArrayOutputStream features = new ByteArrayOutputStream();
+        int numFeatures = 0;
+        for (int a = 0; a < attrs.length; a++) {
+            for (int l = 0; l < labels.length; l++) {
+                if (state[a][l] != 0) {
+                    writeFeature(features, 0, a, l, state[a][l]);
+                    numFeatures++;
+                }
+            }
+        }
+        for (int i = 0; i < labels.length; i++) {
+            for (int j = 0; j < labels.length; j++) {
+                if (trans[i][j] != 0) {
+                    writeFeature(features, 1, i, j, trans[i][j]);
+                    numFeatures++;
+                }
+            }
+        }
+        int headerSize = 48;
+        int offFeatures = headerSize;
+        int featuresChunkSize = 12 + features.size();
+        int offLabels = offFeatures + featuresChunkSize;
+        int offAttrs = offLabels + labelsChunk.length;
+        int size = offAttrs + attrsChunk.length;
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put("lCRF".getBytes(Charsets.US_ASCII)).putInt(size)
+                .put("FOMC".getBytes(Charsets.US_ASCII)).putInt(100)
+                .putInt(numFeatures).putInt(labels.length).putInt(attrs.length)
+                .putInt(offFeatures).putInt(offLabels).putInt(offAttrs)
+                // no feature references
+                .putInt(0).putInt(0);
+        buf.put("FEAT".getBytes(Charsets.US_ASCII)).putInt(featuresChunkSize).putInt(numFeatures)
+                .put(features.toByteArray());
+        buf.put(labelsChunk);
+        buf.put(attrsChunk);
+        return buf.array();
+    }
+
+    private static void writeFeature(ByteArrayOutputStream out, int type, int src, int dst,
+                                     double weight) {
+        ByteBuffer buf = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(type).putInt(src).putInt(dst).putDouble(weight);
+        out.write(buf.array(), 0, 20);
+    }
+
+    private static byte[] writeCQDB(String[] keys) {
+        int headerSize = 24 + 256 * 8;
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] bwd = new int[keys.length];
+        for (int id = 0; id < keys.length; id++) {
+            bwd[id] = headerSize + records.size();
+            byte[] key = keys[id].getBytes(Charsets.UTF_8);
+            ByteBuffer rec = ByteBuffer.allocate(8 + key.length + 1).order(ByteOrder.LITTLE_ENDIAN);
+            rec.putInt(id).putInt(key.length + 1).put(key).put((byte) 0);
+            records.write(rec.array(), 0, rec.capacity());
+        }
+        int bwdOffset = headerSize + records.size();
+        int size = bwdOffset + 4 * keys.length;
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put("CQDB".getBytes(Charsets.US_ASCII)).putInt(size).putInt(0)
+                .putInt(0x62445371).putInt(keys.length).putInt(bwdOffset);
+        // empty hash tables
+        buf.position(headerSize);
+        buf.put(records.toByteArray());
+        for (int offset : bwd) {
+            buf.putInt(offset);
+        }
+        return buf.array();
+    }
+
+    private CrfSuiteModelWriter() {
+    }
+}
@@ -0,0 +1,71 @@
+package ru.kfu.itis.issst.cleartk.crfsuite;
+
+import com.google.common.collect.Lists;
+import org.cleartk.ml.Feature;
+import org.junit.Test;
+import ru.kfu.itis.issst.cleartk.StringEncoder;
+import ru.kfu.itis.issst.crfsuite4j.Attribute;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class AttributeInternerTest {
+
+    @Test
+    public void testSameNamesAsEncoder() throws Exception {
+        NameNumberFeaturesEncoder2 encoder = createEncoder();
+        AttributeInterner interner = new AttributeInterner(encoder, 100);
+        List<Feature> features = Lists.newArrayList(
+                new Feature("w", "мама"),
+                new Feature("w", "a:1"),
+                new Feature("len", 4),
+                new Feature("len", "4"),
+                new Feature(null, "x"),
+                new Feature("flag", null),
+                new Feature("w", "мама"));
+        List<Attribute> attrs = Lists.newArrayList();
+        for (Feature f : features) {
+            interner.appendAttributes(f, attrs);
+        }
+        List<String> expected = Lists.newArrayList();
+        for (Feature f : features) {
+            expected.add(createEncoder().encodeAll(Lists.newArrayList(f)).get(0).name);
+        }
+        List<String> actual = Lists.newArrayList();
+        for (Attribute attr : attrs) {
+            actual.add(attr.getName());
+            assertEquals(1.0, attr.getValue(), 0);
+        }
+        assertEquals(expected, actual);
+        assertEquals("w_a%U003A1", actual.get(1));
+        // the same feature is resolved into the same attribute
+        assertSame(attrs.get(0), attrs.get(6));
+        assertEquals(6, interner.size());
+    }
+
+    @Test
+    public void testBoundedSize() throws Exception {
+        AttributeInterner interner = new AttributeInterner(createEncoder(), 1);
+        List<Attribute> attrs = Lists.newArrayList();
+        interner.appendAttributes(new Feature("w", "a"), attrs);
+        interner.appendAttributes(new Feature("w", "b"), attrs);
+        interner.appendAttributes(new Feature("w", "b"), attrs);
+        interner.appendAttributes(new Feature("w", "a"), attrs);
+        assertEquals(1, interner.size());
+        assertEquals("w_b", attrs.get(2).getName());
+        assertNotSame(attrs.get(1), attrs.get(2));
+        assertSame(attrs.get(0), attrs.get(3));
+    }
+
+    private static NameNumberFeaturesEncoder2 createEncoder() {
+        NameNumberFeaturesEncoder2 encoder = new NameNumberFeaturesEncoder2(":");
+        encoder.addEncoder(new StringEncoder());
+        return encoder;
+    }
+}
@@ -0,0 +1,203 @@
+package ru.kfu.itis.issst.cleartk.crfsuite;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.cleartk.ml.Feature;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.kfu.itis.issst.cleartk.StringEncoder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class CrfSuiteModelTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadModel() throws Exception {
+        File modelFile = tempFolder.newFile("test.model");
+        FileUtils.writeByteArrayToFile(modelFile, CrfSuiteModelWriter.write(
+                new String[]{"NOUN", "VERB", "ПУНКТ"},
+                new String[]{"w_мама", "w_мыла", "sfx_а"},
+                new double[][]{{1.5, 0, 0}, {0, 2, 0}, {0.5, 0.5, 0}},
+                new double[][]{{0, 1, 0}, {0, 0, 1}, {0, 0, 0}}));
+        CrfSuiteModel model = CrfSuiteModel.read(modelFile);
+        assertEquals(ImmutableList.of("NOUN", "VERB", "ПУНКТ"), model.getLabels());
+        assertEquals(3, model.getAttributesNum());
+        assertEquals(0, model.getAttributeId("w_мама"));
+        assertEquals(2, model.getAttributeId("sfx_а"));
+        assertEquals(-1, model.getAttributeId("w_папа"));
+        assertArrayEquals(new int[]{0, 1}, model.tag(new int[][]{{0, 2}, {1, -1}}));
+        assertArrayEquals(new int[0], model.tag(new int[0][]));
+        // via classifier
+        NameNumberFeaturesEncoder2 encoder = new NameNumberFeaturesEncoder2(null);
+        encoder.addEncoder(new StringEncoder());
+        CRFSuiteJavaStringOutcomeClassifier classifier = new CRFSuiteJavaStringOutcomeClassifier(
+                model, encoder, null);
+        List<List<Feature>> seq = Lists.newArrayList();
+        seq.add(Lists.newArrayList(new Feature("w", "мыла"), new Feature("w", "unknown")));
+        seq.add(Lists.newArrayList(new Feature("w", "мама")));
+        assertEquals(ImmutableList.of("VERB", "NOUN"), classifier.classify(seq));
+    }
+
+    @Test
+    public void testViterbi() throws Exception {
+        Random rnd = new Random(42);
+        for (int m = 0; m < 50; m++) {
+            int numLabels = 1 + rnd.nextInt(4);
+            int numAttrs = 1 + rnd.nextInt(6);
+            String[] labels = new String[numLabels];
+            for (int l = 0; l < numLabels; l++) {
+                labels[l] = "L" + l;
+            }
+            String[] attrs = new String[numAttrs];
+            for (int a = 0; a < numAttrs; a++) {
+                attrs[a] = "a" + a;
+            }
+            double[][] state = new double[numAttrs][numLabels];
+            for (int a = 0; a < numAttrs; a++) {
+                for (int l = 0; l < numLabels; l++) {
+                    state[a][l] = rnd.nextBoolean() ? 0 : rnd.nextGaussian();
+                }
+            }
+            double[][] trans = new double[numLabels][numLabels];
+            for (int i = 0; i < numLabels; i++) {
+                for (int j = 0; j < numLabels; j++) {
+                    trans[i][j] = rnd.nextBoolean() ? 0 : rnd.nextGaussian();
+                }
+            }
+            CrfSuiteModel model = CrfSuiteModel.read(ByteBuffer.wrap(
+                    CrfSuiteModelWriter.write(labels, attrs, state, trans)));
+            for (int s = 0; s < 20; s++) {
+                int[][] items = new int[1 + rnd.nextInt(5)][];
+                for (int t = 0; t < items.length; t++) {
+                    items[t] = new int[rnd.nextInt(4)];
+                    for (int i = 0; i < items[t].length; i++) {
+                        items[t][i] = rnd.nextInt(numAttrs + 1) - 1;
+                    }
+                }
+                // compare scores as ties may be broken differently
+                int[] expected = bruteForce(items, state, trans, numLabels);
+                int[] actual = model.tag(items);
+                assertEquals(score(items, expected, state, trans),
+                        score(items, actual, state, trans), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentTagging() throws Exception {
+        Random rnd = new Random(7);
+        final int numLabels = 5;
+        final int numAttrs = 20;
+        String[] labels = new String[numLabels];
+        for (int l = 0; l < numLabels; l++) {
+            labels[l] = "L" + l;
+        }
+        String[] attrs = new String[numAttrs];
+        for (int a = 0; a < numAttrs; a++) {
+            attrs[a] = "a" + a;
+        }
+        double[][] state = new double[numAttrs][numLabels];
+        for (int a = 0; a < numAttrs; a++) {
+            for (int l = 0; l < numLabels; l++) {
+                state[a][l] = rnd.nextGaussian();
+            }
+        }
+        double[][] trans = new double[numLabels][numLabels];
+        for (int i = 0; i < numLabels; i++) {
+            for (int j = 0; j < numLabels; j++) {
+                trans[i][j] = rnd.nextGaussian();
+            }
+        }
+        final CrfSuiteModel model = CrfSuiteModel.read(ByteBuffer.wrap(
+                CrfSuiteModelWriter.write(labels, attrs, state, trans)));
+        final List<int[][]> seqs = Lists.newArrayList();
+        final List<int[]> expected = Lists.newArrayList();
+        for (int s = 0; s < 200; s++) {
+            int[][] items = new int[1 + rnd.nextInt(40)][];
+            for (int t = 0; t < items.length; t++) {
+                items[t] = new int[]{rnd.nextInt(numAttrs), rnd.nextInt(numAttrs)};
+            }
+            seqs.add(items);
+            expected.add(model.tag(items));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = Lists.newArrayList();
+            for (int th = 0; th < 4; th++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int r = 0; r < 20; r++) {
+                            for (int s = 0; s < seqs.size(); s++) {
+                                assertArrayEquals(expected.get(s), model.tag(seqs.get(s)));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int[] bruteForce(int[][] items, double[][] state, double[][] trans, int numLabels) {
+        int seqLength = items.length;
+        int[] cur = new int[seqLength];
+        int[] best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        while (true) {
+            double score = score(items, cur, state, trans);
+            if (bestScore < score) {
+                bestScore = score;
+                best = cur.clone();
+            }
+            // next label sequence
+            int t = seqLength - 1;
+            while (t >= 0 && cur[t] == numLabels - 1) {
+                cur[t] = 0;
+                t--;
+            }
+            if (t < 0) {
+                return best;
+            }
+            cur[t]++;
+        }
+    }
+
+    private static double score(int[][] items, int[] labels, double[][] state, double[][] trans) {
+        double score = 0;
+        for (int t = 0; t < items.length; t++) {
+            for (int a : items[t]) {
+                if (a >= 0) {
+                    score += state[a][labels[t]];
+                }
+            }
+            if (t > 0) {
+                score += trans[labels[t - 1]][labels[t]];
+            }
+        }
+        return score;
+    }
+}
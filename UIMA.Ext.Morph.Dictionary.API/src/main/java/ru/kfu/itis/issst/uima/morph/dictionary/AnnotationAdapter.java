@@ -10,6 +10,7 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
 import ru.kfu.itis.issst.uima.morph.model.Wordform;
 
 /**
@@ -22,6 +23,18 @@ public interface AnnotationAdapter {
 
 	void apply(JCas jcas, Annotation token, Collection<Wordform> wordforms);
 
+	/**
+	 * The same as {@link #apply(JCas, Annotation, Collection)} but takes
+	 * results of {@link MorphDictionary#getEntries(String, WordformBuffer)}.
+	 * 
+	 * @param jcas
+	 * @param token
+	 * @param wordforms
+	 *            buffer that is reused by a caller, an implementation must not
+	 *            keep a reference to it
+	 */
+	void apply(JCas jcas, Annotation token, WordformBuffer wordforms);
+
 	/**
 	 * @param jcas
 	 * @param token
@@ -3,7 +3,17 @@
  */
 package ru.kfu.itis.issst.uima.morph.dictionary;
 
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.Lists;
 
 /**
  * @author Rinat Gareev (Kazan Federal University)
@@ -18,4 +28,18 @@ public abstract class AnnotationAdapterBase implements AnnotationAdapter {
 		this.dict = dict;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Converts the buffer content into {@link Wordform} instances and
+	 * delegates to {@link #apply(JCas, Annotation, java.util.Collection)}.
+	 * Subclasses are encouraged to override this.
+	 */
+	@Override
+	public void apply(JCas jcas, Annotation token, WordformBuffer wfBuffer) {
+		List<Wordform> wfs = Lists.newArrayListWithExpectedSize(wfBuffer.size());
+		for (int i = 0; i < wfBuffer.size(); i++) {
+			BitSet tag = dict.getTag(wfBuffer.getTagId(i));
+			wfs.add(new Wordform(wfBuffer.getLemmaId(i), (BitSet) tag.clone()));
+		}
+		apply(jcas, token, wfs);
+	}
+}
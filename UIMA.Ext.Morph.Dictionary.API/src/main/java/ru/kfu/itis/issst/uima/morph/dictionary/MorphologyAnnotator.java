@@ -5,8 +5,7 @@ package ru.kfu.itis.issst.uima.morph.dictionary;
 
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
 import static ru.kfu.itis.cll.uima.util.AnnotatorUtils.annotationTypeExist;
-
-import java.util.List;
+import static ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryUtils.lookupToken;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
@@ -24,9 +23,10 @@ import org.apache.uima.fit.component.CasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.descriptor.ExternalResource;
 
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.CachingMorphDictionary;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryHolder;
-import ru.kfu.itis.issst.uima.morph.model.Wordform;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
 
 /**
  * @author Rinat Gareev (Kazan Federal University)
@@ -73,6 +73,8 @@ public class MorphologyAnnotator extends CasAnnotator_ImplBase {
 	private Type tokenType;
 	private AnnotationAdapter annoAdapter;
 	private MorphDictionary dict;
+	// per-instance lookup buffer, annotator instances are not shared between threads
+	private final WordformBuffer wfBuffer = new WordformBuffer();
 
 	@Override
 	public void typeSystemInit(TypeSystem ts) throws AnalysisEngineProcessException {
@@ -118,21 +120,23 @@ public class MorphologyAnnotator extends CasAnnotator_ImplBase {
 		AnnotationIndex<Annotation> tokenIdx = cas.getAnnotationIndex(tokenType);
 		for (Annotation token : tokenIdx) {
 			String tokenStr = token.getCoveredText();
-			if (proceed(tokenStr)) {
-				// TODO configuration point
-				// tokenizer should care about normalization 
-				tokenStr = WordUtils.normalizeToDictionaryForm(tokenStr);
-				List<Wordform> wfDictEntries = dict.getEntries(tokenStr);
-				if (wfDictEntries != null && !wfDictEntries.isEmpty()) {
-					// invoke adapter
-					annoAdapter.apply(cas, token, wfDictEntries);
-				}
+			// TODO configuration point
+			// tokenizer should care about normalization
+			// only russian words are looked up
+			if (lookupToken(dict, tokenStr, wfBuffer) != null && !wfBuffer.isEmpty()) {
+				// invoke adapter
+				annoAdapter.apply(cas, token, wfBuffer);
 			}
 		}
 	}
 
-	// TODO configuration point
-	private boolean proceed(String tokenStr) {
-		return WordUtils.isRussianWord(tokenStr);
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		if (dict instanceof CachingMorphDictionary) {
+			CachingMorphDictionary cachingDict = (CachingMorphDictionary) dict;
+			getLogger().info(String.format("Token analysis cache: size=%s, %s",
+					cachingDict.getCacheSize(), cachingDict.getCacheStats()));
+		}
+		super.collectionProcessComplete();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.dictionary.resource;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils;
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
+import ru.kfu.itis.issst.uima.morph.model.LemmaLinkType;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * {@link MorphDictionary} decorator that caches results of token analysis, see
+ * {@link #lookupToken(String, WordformBuffer)}. Cache keys are raw token
+ * strings, values are normalized forms with dictionary entries. Token
+ * frequencies follow Zipf's law so a bounded cache of moderate size serves
+ * most of lookups.
+ * <p>
+ * Instances are thread-safe given that the decorated dictionary is
+ * thread-safe. They are supposed to be shared through a
+ * {@link MorphDictionaryHolder}.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class CachingMorphDictionary implements MorphDictionary {
+
+	private static final int[] EMPTY = new int[0];
+
+	private static class TokenAnalysis {
+		// null if a token is not a russian word
+		private final String normalizedForm;
+		private final int[] lemmaIds;
+		private final int[] tagIds;
+
+		TokenAnalysis(String normalizedForm, int[] lemmaIds, int[] tagIds) {
+			this.normalizedForm = normalizedForm;
+			this.lemmaIds = lemmaIds;
+			this.tagIds = tagIds;
+		}
+	}
+
+	private static final TokenAnalysis NOT_RUSSIAN_WORD = new TokenAnalysis(null, EMPTY, EMPTY);
+
+	private final MorphDictionary delegate;
+	private final LoadingCache<String, TokenAnalysis> cache;
+
+	/**
+	 * @param delegate
+	 *            decorated dictionary
+	 * @param maximumSize
+	 *            maximum number of tokens in the cache
+	 */
+	public CachingMorphDictionary(MorphDictionary delegate, long maximumSize) {
+		this.delegate = delegate;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build(new CacheLoader<String, TokenAnalysis>() {
+					@Override
+					public TokenAnalysis load(String token) {
+						return analyze(token);
+					}
+				});
+	}
+
+	/**
+	 * @param token
+	 *            raw token string
+	 * @param buffer
+	 *            buffer to fill with dictionary entries of the normalized token
+	 *            string
+	 * @return normalized token string if the token is a russian word, null
+	 *         otherwise (the buffer is cleared in this case)
+	 * @see MorphDictionaryUtils#lookupToken(MorphDictionary, String,
+	 *      WordformBuffer)
+	 */
+	public String lookupToken(String token, WordformBuffer buffer) {
+		TokenAnalysis ta = cache.getUnchecked(token);
+		buffer.clear();
+		for (int i = 0; i < ta.lemmaIds.length; i++) {
+			buffer.add(ta.lemmaIds[i], ta.tagIds[i]);
+		}
+		return ta.normalizedForm;
+	}
+
+	/**
+	 * @return hit rate and other statistics of the token cache
+	 */
+	public CacheStats getCacheStats() {
+		return cache.stats();
+	}
+
+	public long getCacheSize() {
+		return cache.size();
+	}
+
+	public MorphDictionary getDelegate() {
+		return delegate;
+	}
+
+	private TokenAnalysis analyze(String token) {
+		if (!WordUtils.isRussianWord(token)) {
+			return NOT_RUSSIAN_WORD;
+		}
+		String form = WordUtils.normalizeToDictionaryForm(token);
+		WordformBuffer entries = new WordformBuffer(4);
+		if (!delegate.getEntries(form, entries)) {
+			return new TokenAnalysis(form, EMPTY, EMPTY);
+		}
+		int[] lemmaIds = new int[entries.size()];
+		int[] tagIds = new int[entries.size()];
+		for (int i = 0; i < lemmaIds.length; i++) {
+			lemmaIds[i] = entries.getLemmaId(i);
+			tagIds[i] = entries.getTagId(i);
+		}
+		return new TokenAnalysis(form, lemmaIds, tagIds);
+	}
+
+	@Override
+	public String getVersion() {
+		return delegate.getVersion();
+	}
+
+	@Override
+	public String getRevision() {
+		return delegate.getRevision();
+	}
+
+	@Override
+	public GramModel getGramModel() {
+		return delegate.getGramModel();
+	}
+
+	@Override
+	public List<Wordform> getEntries(String str) {
+		return delegate.getEntries(str);
+	}
+
+	@Override
+	public boolean getEntries(String str, WordformBuffer buffer) {
+		return delegate.getEntries(str, buffer);
+	}
+
+	@Override
+	public BitSet getTag(int tagId) {
+		return delegate.getTag(tagId);
+	}
+
+	@Override
+	public LemmaLinkType getLemmaLinkType(short id) {
+		return delegate.getLemmaLinkType(id);
+	}
+
+	@Override
+	public Lemma getLemma(int lemmaId) {
+		return delegate.getLemma(lemmaId);
+	}
+
+	@Override
+	public void addLemma(Lemma lemma) {
+		delegate.addLemma(lemma);
+	}
+
+	@Override
+	public int getLemmaMaxId() {
+		return delegate.getLemmaMaxId();
+	}
+
+	@Override
+	public Map<Integer, LemmaLinkType> getLemmaOutlinks(int lemmaId) {
+		return delegate.getLemmaOutlinks(lemmaId);
+	}
+
+	@Override
+	public Map<Integer, LemmaLinkType> getLemmaInlinks(int lemmaId) {
+		return delegate.getLemmaInlinks(lemmaId);
+	}
+
+	@Override
+	public boolean containsGramSet(BitSet tag) {
+		return delegate.containsGramSet(tag);
+	}
+}
@@ -25,6 +25,25 @@ public interface MorphDictionary {
 
 	List<Wordform> getEntries(String str);
 
+	/**
+	 * Allocation-free counterpart of {@link #getEntries(String)}.
+	 * 
+	 * @param str
+	 *            normalized wordform string
+	 * @param buffer
+	 *            reusable buffer; it is cleared before the lookup
+	 * @return true if any entries have been added into the buffer
+	 */
+	boolean getEntries(String str, WordformBuffer buffer);
+
+	/**
+	 * @param tagId
+	 *            tag id from a {@link WordformBuffer} filled by this dictionary
+	 * @return complete (lexeme + wordform) grammeme bits of the tag. The
+	 *         returned instance is shared, it MUST NOT be modified.
+	 */
+	BitSet getTag(int tagId);
+
 	LemmaLinkType getLemmaLinkType(short id);
 
 	/**
@@ -5,6 +5,8 @@ package ru.kfu.itis.issst.uima.morph.dictionary.resource;
 
 import java.util.BitSet;
 
+import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils;
+
 /**
  * Operations extending MorphDictionary interface
  * 
@@ -21,6 +23,32 @@ public class MorphDictionaryUtils {
 		return result;
 	}
 
+	/**
+	 * Check that the given token is a russian word, normalize it and fill the
+	 * buffer with dictionary entries of the normalized string. Results are
+	 * taken from the cache if the given dictionary is a
+	 * {@link CachingMorphDictionary}.
+	 * 
+	 * @param dict
+	 * @param token
+	 *            raw token string
+	 * @param buffer
+	 * @return normalized token string if the token is a russian word, null
+	 *         otherwise (the buffer is cleared in this case)
+	 */
+	public static String lookupToken(MorphDictionary dict, String token, WordformBuffer buffer) {
+		if (dict instanceof CachingMorphDictionary) {
+			return ((CachingMorphDictionary) dict).lookupToken(token, buffer);
+		}
+		if (!WordUtils.isRussianWord(token)) {
+			buffer.clear();
+			return null;
+		}
+		String form = WordUtils.normalizeToDictionaryForm(token);
+		dict.getEntries(form, buffer);
+		return form;
+	}
+
 	private MorphDictionaryUtils() {
 	}
 
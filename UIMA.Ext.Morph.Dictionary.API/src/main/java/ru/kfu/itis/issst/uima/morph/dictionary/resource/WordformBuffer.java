@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.dictionary.resource;
+
+import java.util.Arrays;
+
+/**
+ * Reusable container of dictionary lookup results, see
+ * {@link MorphDictionary#getEntries(String, WordformBuffer)}. Each entry is a
+ * pair of a lemma id and a tag id. The latter can be resolved into the
+ * complete (lexeme + wordform) grammeme bits by {@link MorphDictionary#getTag(int)}.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class WordformBuffer {
+
+	private int size;
+	private int[] lemmaIds;
+	private int[] tagIds;
+
+	public WordformBuffer() {
+		this(16);
+	}
+
+	public WordformBuffer(int initialCapacity) {
+		lemmaIds = new int[initialCapacity];
+		tagIds = new int[initialCapacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getLemmaId(int i) {
+		checkIndex(i);
+		return lemmaIds[i];
+	}
+
+	public int getTagId(int i) {
+		checkIndex(i);
+		return tagIds[i];
+	}
+
+	public void add(int lemmaId, int tagId) {
+		if (size == lemmaIds.length) {
+			int newCapacity = Math.max(size * 2, 4);
+			lemmaIds = Arrays.copyOf(lemmaIds, newCapacity);
+			tagIds = Arrays.copyOf(tagIds, newCapacity);
+		}
+		lemmaIds[size] = lemmaId;
+		tagIds[size] = tagId;
+		size++;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index: %s, size: %s", i, size));
+		}
+	}
+}
@@ -22,9 +22,20 @@ public class Grammeme implements Serializable {
 	private int numId;
 
 	public Grammeme(String id, String parentId, String alias, String description) {
+		this(id, parentId, alias, description, nextNumId());
+	}
+
+	/**
+	 * @param numId
+	 *            explicit numeric id. Instances created afterwards by
+	 *            {@link #Grammeme(String, String, String, String)} get greater
+	 *            ids.
+	 */
+	public Grammeme(String id, String parentId, String alias, String description, int numId) {
 		this.id = id;
 		this.parentId = parentId;
-		this.numId = idCounter++;
+		this.numId = numId;
+		reserveNumId(numId);
 
 		this.alias = alias;
 		this.description = description;
@@ -50,6 +61,16 @@ public class Grammeme implements Serializable {
 		return description;
 	}
 
+	private static synchronized int nextNumId() {
+		return idCounter++;
+	}
+
+	private static synchronized void reserveNumId(int numId) {
+		if (numId >= idCounter) {
+			idCounter = numId + 1;
+		}
+	}
+
 	private static final Comparator<Grammeme> numIdComparator = new Comparator<Grammeme>() {
 		@Override
 		public int compare(Grammeme first, Grammeme second) {
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.CachingMorphDictionary;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModelHolder;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
@@ -26,12 +27,20 @@ public class ConfigurableSerializedDictionaryResource implements MorphDictionary
 		GramModelHolder, SharedResourceObject {
 
 	public static final String PARAM_PREDICTOR_CLASS_NAME = "predictorClassName";
+	/**
+	 * Maximum number of tokens in the analysis cache, see
+	 * {@link CachingMorphDictionary}. The cache is disabled if the value is
+	 * not positive.
+	 */
+	public static final String PARAM_ANALYSIS_CACHE_SIZE = "analysisCacheSize";
 	private static final Logger log = LoggerFactory
 			.getLogger(ConfigurableSerializedDictionaryResource.class);
 
 	// config fields
 	@ConfigurationParameter(name = PARAM_PREDICTOR_CLASS_NAME, mandatory = false)
 	private String wfPredictorClassName;
+	@ConfigurationParameter(name = PARAM_ANALYSIS_CACHE_SIZE, mandatory = false, defaultValue = "0")
+	private int analysisCacheSize;
 	// state fields
 	private MorphDictionary dict;
 
@@ -47,13 +56,17 @@ public class ConfigurableSerializedDictionaryResource implements MorphDictionary
 				@SuppressWarnings("unchecked")
 				Class<? extends WordformPredictor> wfPredictorClass = (Class<? extends WordformPredictor>)
 						Class.forName(wfPredictorClassName);
-				WordformPredictor wfPredictor = makePredictor(wfPredictorClass);
+				WordformPredictor wfPredictor = makePredictor(wfPredictorClass, dict);
 				((MorphDictionaryImpl) dict).setWfPredictor(wfPredictor);
 				log.info("{} was set in deserialized MorphDictionary",
 						wfPredictor.getClass().getSimpleName());
 			} else {
 				log.info("A wordform predictor has not been set in deserialized MorphDictionary");
 			}
+			if (analysisCacheSize > 0) {
+				dict = new CachingMorphDictionary(dict, analysisCacheSize);
+				log.info("Token analysis cache of size {} is enabled", analysisCacheSize);
+			}
 		} catch (Exception e) {
 			throw new ResourceInitializationException(e);
 		}
@@ -69,8 +82,8 @@ public class ConfigurableSerializedDictionaryResource implements MorphDictionary
 		return dict.getGramModel();
 	}
 
-	private WordformPredictor makePredictor(Class<? extends WordformPredictor> predictorClass)
-			throws Exception {
+	static WordformPredictor makePredictor(Class<? extends WordformPredictor> predictorClass,
+			MorphDictionary dict) throws Exception {
 		Constructor<? extends WordformPredictor> constr = null;
 		// check constructor with the single parameter typed by MorphDictionary
 		try {
@@ -26,7 +26,6 @@ import ru.kfu.itis.issst.uima.morph.model.Wordform;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
@@ -276,6 +275,8 @@ class DictionaryXmlHandler extends DefaultHandler {
 
 	private class GrammemsHandler extends NoOpHandler {
 		private ImmutableGramModel.Builder gmBuilder;
+		// grammemes are numbered in the document order
+		private int lastGramNumId;
 
 		GrammemsHandler() {
 			super(ELEM_GRAMMEMS);
@@ -289,6 +290,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 		@Override
 		protected void startSelf(Attributes attrs) {
 			gmBuilder = ImmutableGramModel.builder();
+			lastGramNumId = 0;
 		}
 
 		@Override
@@ -311,6 +313,11 @@ class DictionaryXmlHandler extends DefaultHandler {
 		protected Map<String, ElementHandler> declareChildren() {
 			return toMap(newHashSet(new LemmaHandler()));
 		}
+
+		@Override
+		protected void endSelf() {
+			lemmataParsed();
+		}
 	}
 
 	private class LinkTypesHandler extends NoOpHandler {
@@ -359,8 +366,10 @@ class DictionaryXmlHandler extends DefaultHandler {
 			}
 			String alias = aliasHandler.getContent();
 			String description = descHandler.getContent();
-			Grammeme gram = new Grammeme(id, parentId, alias, description);
-			getParent(GrammemsHandler.class).gmBuilder.addGrammeme(gram);
+			GrammemsHandler grammemsHandler = getParent(GrammemsHandler.class);
+			Grammeme gram = new Grammeme(id, parentId, alias, description,
+					++grammemsHandler.lastGramNumId);
+			grammemsHandler.gmBuilder.addGrammeme(gram);
 			id = null;
 			parentId = null;
 			// child handlers are cleared by super class
@@ -381,9 +390,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 	}
 
 	private class LemmaHandler extends ElementHandlerBase {
-		private Lemma.Builder builder;
-		// wf string => set of wf objects
-		private Multimap<String, Wordform> wordforms;
+		private LemmaRecord record;
 
 		LemmaHandler() {
 			super(ELEM_LEMMA);
@@ -391,8 +398,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 
 		@Override
 		protected void startSelf(Attributes attrs) {
-			builder = Lemma.builder(dict.getGramModel(), requiredInt(attrs, ATTR_LEMMA_ID));
-			wordforms = LinkedHashMultimap.create();
+			record = new LemmaRecord(requiredInt(attrs, ATTR_LEMMA_ID));
 		}
 
 		@Override
@@ -402,33 +408,13 @@ class DictionaryXmlHandler extends DefaultHandler {
 
 		@Override
 		protected void endSelf() {
-			if (postProcessLemma(builder, wordforms)) {
-				Lemma lemma = builder.build();
-				dict.addLemma(lemma);
-				for (String wfStr : wordforms.keySet()) {
-					for (Wordform wf : wordforms.get(wfStr)) {
-						dict.addWordform(wfStr, wf);
-					}
-				}
-				acceptedLemmaCounter++;
-			} else {
-				rejectedLemmaCounter++;
-			}
-			builder = null;
-			wordforms = null;
+			lemmaParsed(record);
+			record = null;
 			lemmasParsed++;
 			if (lemmasParsed % 10000 == 0) {
 				log.info("Lemmas have been parsed: {}", lemmasParsed);
 			}
 		}
-
-		void addWordform(String text, Wordform wf) {
-			if (!wordforms.put(text, wf)) {
-				log.warn("Duplicate pair <{}, {}> at line {}", new Object[] {
-						text, wf, docLocator.getLineNumber()
-				});
-			}
-		}
 	}
 
 	private class LemmaNormHandler extends ElementHandlerBase {
@@ -439,7 +425,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 		@Override
 		protected void startSelf(Attributes attrs) {
 			String t = requiredAttr(attrs, ATTR_TEXT);
-			getParent(LemmaHandler.class).builder.setString(t);
+			getParent(LemmaHandler.class).record.setString(t);
 		}
 
 		@Override
@@ -453,24 +439,18 @@ class DictionaryXmlHandler extends DefaultHandler {
 	}
 
 	private class WordformHandler extends ElementHandlerBase {
-		private Wordform.Builder builder;
-		private String text;
-
 		WordformHandler() {
 			super(ELEM_WORDFORM);
 		}
 
 		@Override
 		protected void startSelf(Attributes attrs) {
-			int lemmaId = getParent(LemmaHandler.class).builder.getLemmaId();
-			builder = Wordform.builder(dict.getGramModel(), lemmaId);
-			text = requiredAttr(attrs, ATTR_TEXT);
+			String text = requiredAttr(attrs, ATTR_TEXT);
+			getParent(LemmaHandler.class).record.addWordform(text, docLocator.getLineNumber());
 		}
 
 		@Override
 		protected void endSelf() {
-			getParent(LemmaHandler.class).addWordform(text, builder.build());
-			builder = null;
 		}
 
 		@Override
@@ -504,7 +484,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 
 		@Override
 		protected void endSelf() {
-			getParent(LemmaNormHandler.class).getParent(LemmaHandler.class).builder
+			getParent(LemmaNormHandler.class).getParent(LemmaHandler.class).record
 					.addGrammeme(gramId);
 			gramId = null;
 		}
@@ -517,7 +497,8 @@ class DictionaryXmlHandler extends DefaultHandler {
 
 		@Override
 		protected void endSelf() {
-			getParent(WordformHandler.class).builder.addGrammeme(gramId);
+			getParent(WordformHandler.class).getParent(LemmaHandler.class).record
+					.addWordformGrammeme(gramId);
 			gramId = null;
 		}
 	}
@@ -718,6 +699,48 @@ class DictionaryXmlHandler extends DefaultHandler {
 		return dict;
 	}
 
+	/**
+	 * Invoked for each parsed lemma element. This implementation
+	 * post-processes the lemma and adds it into the dictionary immediately.
+	 * 
+	 * @param record
+	 */
+	protected void lemmaParsed(LemmaRecord record) {
+		GramModel gm = dict.getGramModel();
+		Lemma.Builder builder = record.toLemmaBuilder(gm);
+		Multimap<String, Wordform> wordforms = record.toWordforms(gm);
+		if (postProcessLemma(builder, wordforms)) {
+			addLemma(builder, wordforms);
+		} else {
+			lemmaRejected();
+		}
+	}
+
+	/**
+	 * Invoked at the end of the 'lemmata' element, i.e., before lemma links
+	 * are parsed.
+	 */
+	protected void lemmataParsed() {
+	}
+
+	/**
+	 * Add the lemma and its wordforms into the dictionary.
+	 */
+	final void addLemma(Lemma.Builder builder, Multimap<String, Wordform> wordforms) {
+		Lemma lemma = builder.build();
+		dict.addLemma(lemma);
+		for (String wfStr : wordforms.keySet()) {
+			for (Wordform wf : wordforms.get(wfStr)) {
+				dict.addWordform(wfStr, wf);
+			}
+		}
+		acceptedLemmaCounter++;
+	}
+
+	final void lemmaRejected() {
+		rejectedLemmaCounter++;
+	}
+
 	/**
 	 * Invoke lemma post-processors
 	 * 
@@ -726,7 +749,7 @@ class DictionaryXmlHandler extends DefaultHandler {
 	 *            mutable map of wordform_string => set_of_wordform_objects
 	 * @return true if given lemma must be accepted, false - otherwise.
 	 */
-	private boolean postProcessLemma(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap) {
+	final boolean postProcessLemma(Lemma.Builder lemmaBuilder, Multimap<String, Wordform> wfMap) {
 		for (LemmaPostProcessor filter : lemmaPostProcessors) {
 			if (!filter.process(dict, lemmaBuilder, wfMap)) {
 				return false;
@@ -15,7 +15,7 @@ import java.util.SortedMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -179,8 +179,9 @@ public class ImmutableGramModel implements GramModel, Serializable {
 			instance.numToGram = ImmutableSortedMap.copyOf(instance.numToGram);
 			log.info("Grammeme set has been locked");
 			// build indices
-			instance.gramByParent = HashMultimap.create();
-			for (Grammeme gr : instance.gramMap.values()) {
+			// iterate in num id order to make the serialized form reproducible
+			instance.gramByParent = LinkedHashMultimap.create();
+			for (Grammeme gr : instance.numToGram.values()) {
 				instance.gramByParent.put(gr.getParentId(), gr);
 			}
 			//
@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+
+/**
+ * Raw content of a lemma element as it is read from a dictionary xml. Grammeme
+ * bits are computed in {@link #toLemmaBuilder(GramModel)} and
+ * {@link #toWordforms(GramModel)} so these can be invoked outside of a
+ * parsing thread.
+ * 
+ * @author Rinat Gareev (Kazan Federal University)
+ * 
+ */
+class LemmaRecord {
+
+	private static final Logger log = LoggerFactory.getLogger(LemmaRecord.class);
+
+	private static class WordformRecord {
+		private final String text;
+		private final int lineNumber;
+		private final List<String> grammemes = Lists.newArrayListWithCapacity(4);
+
+		WordformRecord(String text, int lineNumber) {
+			this.text = text;
+			this.lineNumber = lineNumber;
+		}
+	}
+
+	private final int id;
+	private String string;
+	private final List<String> grammemes = Lists.newArrayListWithCapacity(4);
+	private final List<WordformRecord> wordforms = Lists.newArrayList();
+
+	LemmaRecord(int id) {
+		this.id = id;
+	}
+
+	int getId() {
+		return id;
+	}
+
+	void setString(String string) {
+		this.string = string;
+	}
+
+	void addGrammeme(String gramId) {
+		grammemes.add(gramId);
+	}
+
+	void addWordform(String text, int lineNumber) {
+		wordforms.add(new WordformRecord(text, lineNumber));
+	}
+
+	/**
+	 * @param gramId
+	 *            grammeme of the last added wordform
+	 */
+	void addWordformGrammeme(String gramId) {
+		wordforms.get(wordforms.size() - 1).grammemes.add(gramId);
+	}
+
+	Lemma.Builder toLemmaBuilder(GramModel gm) {
+		Lemma.Builder builder = Lemma.builder(gm, id);
+		builder.setString(string);
+		for (String gramId : grammemes) {
+			builder.addGrammeme(gramId);
+		}
+		return builder;
+	}
+
+	/**
+	 * @param gm
+	 * @return mutable map of wordform string => set of wordform objects
+	 */
+	Multimap<String, Wordform> toWordforms(GramModel gm) {
+		Multimap<String, Wordform> result = LinkedHashMultimap.create();
+		for (WordformRecord wfRec : wordforms) {
+			Wordform.Builder builder = Wordform.builder(gm, id);
+			for (String gramId : wfRec.grammemes) {
+				builder.addGrammeme(gramId);
+			}
+			Wordform wf = builder.build();
+			if (!result.put(wfRec.text, wf)) {
+				log.warn("Duplicate pair <{}, {}> at line {}", new Object[] {
+						wfRec.text, wf, wfRec.lineNumber
+				});
+			}
+		}
+		return result;
+	}
+}
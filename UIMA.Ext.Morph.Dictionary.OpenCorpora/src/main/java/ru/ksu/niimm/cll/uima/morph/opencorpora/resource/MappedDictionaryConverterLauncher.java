@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import ru.kfu.itis.issst.util.cli.ClassConverter;
+import ru.kfu.itis.issst.util.cli.FileValueValidator;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+/**
+ * Converts either a serialized dictionary (as produced by
+ * {@link XmlDictionaryParserLauncher}) or an OpenCorpora XML dictionary into
+ * the format of {@link MappedMorphDictionary}. Input files with 'xml'
+ * extension are parsed by {@link XmlDictionaryParser}, others are
+ * deserialized.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class MappedDictionaryConverterLauncher {
+
+	@Parameter(names = { "-i", "--input-file" }, required = true, validateValueWith = FileValueValidator.class)
+	private File inputFile;
+	@Parameter(names = { "--dict-extension-class" }, required = false, converter = ClassConverter.class)
+	private Class<? extends DictionaryExtension> dictExtensionClass = DefaultDictionaryExtension.class;
+	@Parameter(names = { "-o", "--output-file" }, required = true)
+	private File outputFile;
+
+	private MappedDictionaryConverterLauncher() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		MappedDictionaryConverterLauncher cfg = new MappedDictionaryConverterLauncher();
+		new JCommander(cfg, args);
+
+		MorphDictionaryImpl dict;
+		if (cfg.inputFile.getName().toLowerCase().endsWith(".xml")) {
+			dict = new MorphDictionaryImpl();
+			DictionaryExtension ext = cfg.dictExtensionClass.newInstance();
+			FileInputStream fis = FileUtils.openInputStream(cfg.inputFile);
+			try {
+				new XmlDictionaryParser(dict, ext, fis).run();
+			} finally {
+				IOUtils.closeQuietly(fis);
+			}
+		} else {
+			dict = DictionaryDeserializer.from(cfg.inputFile);
+		}
+		new MappedDictionaryWriter(dict).write(cfg.outputFile);
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+/**
+ * Layout constants of the binary dictionary format that is read by
+ * {@link MappedMorphDictionary} and written by {@link MappedDictionaryWriter}.
+ * <p>
+ * The file consists of:
+ * <ul>
+ * <li>magic number, format version and length of a header;</li>
+ * <li>the header, i.e. Java-serialized meta fields, gram model, lemma
+ * link types and the set of complete tags;</li>
+ * <li>the number of longs per grammeme set;</li>
+ * <li>the section table: the number of sections and int (byte offset, element
+ * count) pair for each of them;</li>
+ * <li>sections themselves, each one is a primitive array aligned to 8 bytes.</li>
+ * </ul>
+ * Wordforms are stored in a suffix trie, i.e., the trie of reversed wordform
+ * strings. Trie nodes are laid out in breadth-first order, so children of a
+ * node occupy a contiguous range of node indexes. The root has index 0.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class MappedDictionaryFormat {
+
+	static final int MAGIC = 0x4F43444D; // 'OCDM'
+	static final int FORMAT_VERSION = 2;
+
+	// long[gramSetsNum * wordsPerGramSet]
+	static final int SECTION_GRAM_SETS = 0;
+	// int[lemmasNum], sorted
+	static final int SECTION_LEMMA_IDS = 1;
+	// int[lemmasNum], indexes in SECTION_GRAM_SETS
+	static final int SECTION_LEMMA_GRAM_SETS = 2;
+	// int[lemmasNum + 1], offsets in SECTION_LEMMA_CHARS
+	static final int SECTION_LEMMA_STRING_OFFSETS = 3;
+	// char[]
+	static final int SECTION_LEMMA_CHARS = 4;
+	// int[linksNum], links are sorted by (from, to)
+	static final int SECTION_LINK_FROM = 5;
+	// int[linksNum]
+	static final int SECTION_LINK_TO = 6;
+	// int[linksNum]
+	static final int SECTION_LINK_TYPES = 7;
+	// int[linksNum], link indexes sorted by (to, from)
+	static final int SECTION_LINKS_BY_TARGET = 8;
+	// char[nodesNum]
+	static final int SECTION_NODE_CHARS = 9;
+	// int[nodesNum + 1]
+	static final int SECTION_NODE_CHILD_STARTS = 10;
+	// int[nodesNum + 1]
+	static final int SECTION_NODE_PAYLOAD_STARTS = 11;
+	// int[wordformsNum]
+	static final int SECTION_PAYLOAD_LEMMA_IDS = 12;
+	// int[wordformsNum], indexes in SECTION_GRAM_SETS
+	static final int SECTION_PAYLOAD_GRAM_SETS = 13;
+	// int[wordformsNum], complete (lexeme + wordform) tags as indexes in SECTION_GRAM_SETS
+	static final int SECTION_PAYLOAD_TAGS = 14;
+
+	static final int SECTIONS_NUM = 15;
+
+	static int align(int pos) {
+		return (pos + 7) & ~7;
+	}
+
+	private MappedDictionaryFormat() {
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import java.io.File;
+import java.net.URI;
+
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.CachingMorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModelHolder;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryHolder;
+
+/**
+ * {@link MorphDictionaryHolder} that maps a dictionary file produced by
+ * {@link MappedDictionaryConverterLauncher}. The data resource must be a local
+ * file.
+ *
+ * @author Rinat Gareev
+ *
+ */
+public class MappedDictionaryResource implements MorphDictionaryHolder,
+		GramModelHolder, SharedResourceObject {
+
+	public static final String PARAM_PREDICTOR_CLASS_NAME = "predictorClassName";
+	/**
+	 * Maximum number of tokens in the analysis cache, see
+	 * {@link CachingMorphDictionary}. The cache is disabled if the value is
+	 * not positive.
+	 */
+	public static final String PARAM_ANALYSIS_CACHE_SIZE = "analysisCacheSize";
+	private static final Logger log = LoggerFactory.getLogger(MappedDictionaryResource.class);
+
+	// config fields
+	@ConfigurationParameter(name = PARAM_PREDICTOR_CLASS_NAME, mandatory = false)
+	private String wfPredictorClassName;
+	@ConfigurationParameter(name = PARAM_ANALYSIS_CACHE_SIZE, mandatory = false, defaultValue = "0")
+	private int analysisCacheSize;
+	// state fields
+	private MorphDictionary dict;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void load(DataResource dr) throws ResourceInitializationException {
+		ConfigurationParameterInitializer.initialize(this, dr);
+		try {
+			URI dictUri = dr.getUri();
+			if (dictUri == null || !"file".equals(dictUri.getScheme())) {
+				throw new IllegalStateException(String.format(
+						"Mapped dictionary must be a local file but was: %s", dr.getUrl()));
+			}
+			MappedMorphDictionary mappedDict = MappedMorphDictionary.from(new File(dictUri));
+			dict = mappedDict;
+			if (wfPredictorClassName != null) {
+				@SuppressWarnings("unchecked")
+				Class<? extends WordformPredictor> wfPredictorClass = (Class<? extends WordformPredictor>)
+						Class.forName(wfPredictorClassName);
+				WordformPredictor wfPredictor = ConfigurableSerializedDictionaryResource
+						.makePredictor(wfPredictorClass, mappedDict);
+				mappedDict.setWfPredictor(wfPredictor);
+				log.info("{} was set in mapped MorphDictionary",
+						wfPredictor.getClass().getSimpleName());
+			} else {
+				log.info("A wordform predictor has not been set in mapped MorphDictionary");
+			}
+			if (analysisCacheSize > 0) {
+				dict = new CachingMorphDictionary(dict, analysisCacheSize);
+				log.info("Token analysis cache of size {} is enabled", analysisCacheSize);
+			}
+		} catch (Exception e) {
+			throw new ResourceInitializationException(e);
+		}
+	}
+
+	@Override
+	public MorphDictionary getDictionary() {
+		return dict;
+	}
+
+	@Override
+	public GramModel getGramModel() {
+		return dict.getGramModel();
+	}
+}
@@ -0,0 +1,341 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static java.lang.System.currentTimeMillis;
+import static ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MappedDictionaryFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
+import ru.kfu.itis.issst.uima.morph.model.LemmaLinkType;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+
+/**
+ * Converts a complete {@link MorphDictionaryImpl} into the binary format that
+ * can be memory-mapped by {@link MappedMorphDictionary}.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class MappedDictionaryWriter {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	// config fields
+	private final MorphDictionaryImpl dict;
+	private final int wordsPerGramSet;
+	// state fields
+	private final List<BitSet> gramSets = Lists.newArrayList();
+	private final Map<BitSet, Integer> gramSetIndex = Maps.newHashMap();
+	private final Object[] sections = new Object[SECTIONS_NUM];
+
+	public MappedDictionaryWriter(MorphDictionaryImpl dict) {
+		this.dict = dict;
+		this.wordsPerGramSet = dict.getGramModel().getGrammemMaxNumId() / 64 + 1;
+	}
+
+	public void write(File outFile) throws IOException {
+		log.info("About to convert MorphDictionary into the mapped format...");
+		long timeBefore = currentTimeMillis();
+		fillLemmaSections();
+		fillLinkSections();
+		fillTrieSections();
+		// must be the last as other sections populate the gram set table
+		fillGramSetSection();
+		byte[] header = makeHeader();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				FileUtils.openOutputStream(outFile), 8192 * 8));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(header.length);
+			out.write(header);
+			out.writeInt(wordsPerGramSet);
+			out.writeInt(SECTIONS_NUM);
+			// section table
+			int pos = align(out.size() + SECTIONS_NUM * 8);
+			for (Object section : sections) {
+				out.writeInt(pos);
+				int length = sectionLength(section);
+				out.writeInt(length);
+				pos = align(pos + length * sectionElementSize(section));
+			}
+			// section contents
+			for (Object section : sections) {
+				pad(out);
+				writeSection(out, section);
+			}
+		} finally {
+			out.close();
+		}
+		log.info("Conversion finished in {} ms.\nOutput size: {} bytes",
+				currentTimeMillis() - timeBefore, outFile.length());
+	}
+
+	private void fillLemmaSections() {
+		Lemma[] lemmas = dict.getLemmas().toArray(new Lemma[0]);
+		Arrays.sort(lemmas, new Comparator<Lemma>() {
+			@Override
+			public int compare(Lemma first, Lemma second) {
+				return Integer.compare(first.getId(), second.getId());
+			}
+		});
+		int[] ids = new int[lemmas.length];
+		int[] lemmaGramSets = new int[lemmas.length];
+		int[] stringOffsets = new int[lemmas.length + 1];
+		StringBuilder chars = new StringBuilder();
+		for (int i = 0; i < lemmas.length; i++) {
+			ids[i] = lemmas[i].getId();
+			lemmaGramSets[i] = internGramSet(lemmas[i].getGrammems());
+			stringOffsets[i] = chars.length();
+			chars.append(lemmas[i].getString());
+		}
+		stringOffsets[lemmas.length] = chars.length();
+		sections[SECTION_LEMMA_IDS] = ids;
+		sections[SECTION_LEMMA_GRAM_SETS] = lemmaGramSets;
+		sections[SECTION_LEMMA_STRING_OFFSETS] = stringOffsets;
+		sections[SECTION_LEMMA_CHARS] = chars.toString().toCharArray();
+		log.info("Lemmas written: {}", lemmas.length);
+	}
+
+	private void fillLinkSections() {
+		// a TreeBasedTable is iterated in (row, column) order
+		Table<Integer, Integer, LemmaLinkType> linkTable = dict.getLemmaLinkTable();
+		int linksNum = linkTable.size();
+		final int[] from = new int[linksNum];
+		final int[] to = new int[linksNum];
+		int[] types = new int[linksNum];
+		int i = 0;
+		for (Table.Cell<Integer, Integer, LemmaLinkType> cell : linkTable.cellSet()) {
+			from[i] = cell.getRowKey();
+			to[i] = cell.getColumnKey();
+			types[i] = cell.getValue().getId();
+			i++;
+		}
+		Integer[] byTarget = new Integer[linksNum];
+		for (i = 0; i < linksNum; i++) {
+			byTarget[i] = i;
+		}
+		Arrays.sort(byTarget, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				int result = Integer.compare(to[first], to[second]);
+				if (result == 0) {
+					result = Integer.compare(from[first], from[second]);
+				}
+				return result;
+			}
+		});
+		int[] byTargetArr = new int[linksNum];
+		for (i = 0; i < linksNum; i++) {
+			byTargetArr[i] = byTarget[i];
+		}
+		sections[SECTION_LINK_FROM] = from;
+		sections[SECTION_LINK_TO] = to;
+		sections[SECTION_LINK_TYPES] = types;
+		sections[SECTION_LINKS_BY_TARGET] = byTargetArr;
+		log.info("Lemma links written: {}", linksNum);
+	}
+
+	private void fillTrieSections() {
+		WordformTST tst = dict.getWordformTST();
+		// each TST node corresponds to exactly one node of the suffix trie
+		int nodesNum = countNodes(tst.getRootNode()) + 1;
+		WordformTST.Node[] nodes = new WordformTST.Node[nodesNum];
+		char[] nodeChars = new char[nodesNum];
+		int[] childStarts = new int[nodesNum + 1];
+		int tail = 1;
+		for (int i = 0; i < nodesNum; i++) {
+			childStarts[i] = tail;
+			WordformTST.Node childTreeRoot = i == 0 ? tst.getRootNode() : nodes[i].getEqKid();
+			tail = appendChildren(childTreeRoot, nodes, nodeChars, tail);
+		}
+		if (tail != nodesNum) {
+			throw new IllegalStateException("Trie node counting mismatch");
+		}
+		childStarts[nodesNum] = tail;
+		// payload
+		int[] payloadStarts = new int[nodesNum + 1];
+		int wordformsNum = 0;
+		for (int i = 1; i < nodesNum; i++) {
+			wordformsNum += nodes[i].getDataSize();
+		}
+		int[] payloadLemmaIds = new int[wordformsNum];
+		int[] payloadGramSets = new int[wordformsNum];
+		int[] payloadTags = new int[wordformsNum];
+		int p = 0;
+		for (int i = 0; i < nodesNum; i++) {
+			payloadStarts[i] = p;
+			if (nodes[i] == null) {
+				continue;
+			}
+			for (Wordform wf : nodes[i]) {
+				payloadLemmaIds[p] = wf.getLemmaId();
+				payloadGramSets[p] = internGramSet(wf.getGrammems());
+				payloadTags[p] = internGramSet(Wordform.getAllGramBits(wf, dict));
+				p++;
+			}
+		}
+		payloadStarts[nodesNum] = p;
+		sections[SECTION_NODE_CHARS] = nodeChars;
+		sections[SECTION_NODE_CHILD_STARTS] = childStarts;
+		sections[SECTION_NODE_PAYLOAD_STARTS] = payloadStarts;
+		sections[SECTION_PAYLOAD_LEMMA_IDS] = payloadLemmaIds;
+		sections[SECTION_PAYLOAD_GRAM_SETS] = payloadGramSets;
+		sections[SECTION_PAYLOAD_TAGS] = payloadTags;
+		log.info("Trie nodes written: {}\nWordforms written: {}", nodesNum, wordformsNum);
+	}
+
+	private void fillGramSetSection() {
+		long[] words = new long[gramSets.size() * wordsPerGramSet];
+		for (int i = 0; i < gramSets.size(); i++) {
+			long[] setWords = gramSets.get(i).toLongArray();
+			if (setWords.length > wordsPerGramSet) {
+				throw new IllegalStateException("Grammeme bit is out of GramModel range");
+			}
+			System.arraycopy(setWords, 0, words, i * wordsPerGramSet, setWords.length);
+		}
+		sections[SECTION_GRAM_SETS] = words;
+		log.info("Unique grammeme sets written: {}", gramSets.size());
+	}
+
+	private byte[] makeHeader() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		try {
+			out.writeObject(dict.getVersion());
+			out.writeObject(dict.getRevision());
+			out.writeObject(dict.getGramModel());
+			HashMap<Short, LemmaLinkType> linkTypes = Maps.newHashMap();
+			for (LemmaLinkType llt : dict.getLemmaLinkTypes()) {
+				linkTypes.put(llt.getId(), llt);
+			}
+			out.writeObject(linkTypes);
+			out.writeObject(new HashSet<BitSet>(dict.getTagset()));
+		} finally {
+			out.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	private int internGramSet(BitSet gramSet) {
+		Integer result = gramSetIndex.get(gramSet);
+		if (result == null) {
+			result = gramSets.size();
+			gramSets.add(gramSet);
+			gramSetIndex.put(gramSet, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Append trie children represented by the binary tree of lo- and
+	 * hi-kids with the given root, in ascending order of their chars.
+	 *
+	 * @return new tail position
+	 */
+	private static int appendChildren(WordformTST.Node treeRoot,
+			WordformTST.Node[] nodes, char[] nodeChars, int tail) {
+		Deque<WordformTST.Node> stack = new ArrayDeque<WordformTST.Node>();
+		WordformTST.Node cur = treeRoot;
+		while (cur != null || !stack.isEmpty()) {
+			while (cur != null) {
+				stack.addFirst(cur);
+				cur = cur.getLoKid();
+			}
+			cur = stack.removeFirst();
+			nodes[tail] = cur;
+			nodeChars[tail] = cur.getSplitchar();
+			tail++;
+			cur = cur.getHiKid();
+		}
+		return tail;
+	}
+
+	private static int countNodes(WordformTST.Node root) {
+		if (root == null) {
+			return 0;
+		}
+		int result = 0;
+		Deque<WordformTST.Node> stack = new ArrayDeque<WordformTST.Node>();
+		stack.addFirst(root);
+		while (!stack.isEmpty()) {
+			WordformTST.Node n = stack.removeFirst();
+			result++;
+			if (n.getLoKid() != null)
+				stack.addFirst(n.getLoKid());
+			if (n.getEqKid() != null)
+				stack.addFirst(n.getEqKid());
+			if (n.getHiKid() != null)
+				stack.addFirst(n.getHiKid());
+		}
+		return result;
+	}
+
+	private static int sectionLength(Object section) {
+		if (section instanceof long[]) {
+			return ((long[]) section).length;
+		} else if (section instanceof int[]) {
+			return ((int[]) section).length;
+		} else {
+			return ((char[]) section).length;
+		}
+	}
+
+	private static int sectionElementSize(Object section) {
+		if (section instanceof long[]) {
+			return 8;
+		} else if (section instanceof int[]) {
+			return 4;
+		} else {
+			return 2;
+		}
+	}
+
+	private static void writeSection(DataOutputStream out, Object section) throws IOException {
+		if (section instanceof long[]) {
+			for (long l : (long[]) section) {
+				out.writeLong(l);
+			}
+		} else if (section instanceof int[]) {
+			for (int i : (int[]) section) {
+				out.writeInt(i);
+			}
+		} else {
+			for (char ch : (char[]) section) {
+				out.writeChar(ch);
+			}
+		}
+	}
+
+	private static void pad(DataOutputStream out) throws IOException {
+		int padding = align(out.size()) - out.size();
+		for (int i = 0; i < padding; i++) {
+			out.writeByte(0);
+		}
+	}
+}
@@ -0,0 +1,474 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static java.lang.System.currentTimeMillis;
+import static ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MappedDictionaryFormat.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
+import ru.kfu.itis.issst.uima.morph.model.LemmaLinkType;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Read-only {@link MorphDictionary} implementation over a memory-mapped file
+ * written by {@link MappedDictionaryWriter}. Opening such dictionary does not
+ * require deserialization of the whole object graph, and JVMs on the same
+ * host share the dictionary pages through the OS page cache.
+ * <p>
+ * Lemmas added through {@link #addLemma(Lemma)} (e.g., pseudo-lemmas created by
+ * a {@link WordformPredictor}) are kept on the heap.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class MappedMorphDictionary implements MorphDictionary {
+
+	private static final Logger log = LoggerFactory.getLogger(MappedMorphDictionary.class);
+
+	public static MappedMorphDictionary from(File file) throws IOException {
+		if (!file.isFile()) {
+			throw new IllegalArgumentException(String.format(
+					"%s is not existing file", file));
+		}
+		log.info("About to map MorphDictionary from {}...", file);
+		long timeBefore = currentTimeMillis();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buf;
+		try {
+			buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			IOUtils.closeQuietly(raf);
+		}
+		MappedMorphDictionary result = new MappedMorphDictionary(buf);
+		log.info("Mapping of MorphDictionary finished in {} ms", currentTimeMillis() - timeBefore);
+		return result;
+	}
+
+	// meta fields
+	private String version;
+	private String revision;
+	private GramModel gramModel;
+	private Map<Short, LemmaLinkType> lemmaLinkTypeMap;
+	private Set<BitSet> tagset;
+	// shared instances of grammeme sets
+	private BitSet[] gramSets;
+	// mapped sections
+	private IntBuffer lemmaIds;
+	private IntBuffer lemmaGramSets;
+	private IntBuffer lemmaStringOffsets;
+	private CharBuffer lemmaChars;
+	private IntBuffer linkFrom;
+	private IntBuffer linkTo;
+	private IntBuffer linkTypes;
+	private IntBuffer linksByTarget;
+	private CharBuffer nodeChars;
+	private IntBuffer nodeChildStarts;
+	private IntBuffer nodePayloadStarts;
+	private IntBuffer payloadLemmaIds;
+	private IntBuffer payloadGramSets;
+	private IntBuffer payloadTags;
+	// tag ids are indexes of the gram set table
+	private TagTable tagTable;
+	// lemmas that are not stored in the file
+	private final ConcurrentMap<Integer, Lemma> addedLemmas = Maps.newConcurrentMap();
+
+	private WordformPredictor wfPredictor;
+
+	private MappedMorphDictionary(ByteBuffer buf) throws IOException {
+		if (buf.getInt() != MAGIC) {
+			throw new IllegalStateException("Not a mapped dictionary file");
+		}
+		int formatVersion = buf.getInt();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IllegalStateException(String.format(
+					"Unsupported format version: %s", formatVersion));
+		}
+		byte[] header = new byte[buf.getInt()];
+		buf.get(header);
+		readHeader(header);
+		int wordsPerGramSet = buf.getInt();
+		int sectionsNum = buf.getInt();
+		if (sectionsNum != SECTIONS_NUM) {
+			throw new IllegalStateException(String.format(
+					"Unexpected number of sections: %s", sectionsNum));
+		}
+		int[] offsets = new int[sectionsNum];
+		int[] lengths = new int[sectionsNum];
+		for (int i = 0; i < sectionsNum; i++) {
+			offsets[i] = buf.getInt();
+			lengths[i] = buf.getInt();
+		}
+		// gram sets are materialized as they are shared by Wordform instances
+		LongBuffer gramSetWords = section(buf, offsets, lengths, SECTION_GRAM_SETS, 8)
+				.asLongBuffer();
+		gramSets = new BitSet[lengths[SECTION_GRAM_SETS] / wordsPerGramSet];
+		for (int i = 0; i < gramSets.length; i++) {
+			gramSetWords.limit((i + 1) * wordsPerGramSet).position(i * wordsPerGramSet);
+			gramSets[i] = BitSet.valueOf(gramSetWords);
+		}
+		lemmaIds = intSection(buf, offsets, lengths, SECTION_LEMMA_IDS);
+		lemmaGramSets = intSection(buf, offsets, lengths, SECTION_LEMMA_GRAM_SETS);
+		lemmaStringOffsets = intSection(buf, offsets, lengths, SECTION_LEMMA_STRING_OFFSETS);
+		lemmaChars = section(buf, offsets, lengths, SECTION_LEMMA_CHARS, 2).asCharBuffer();
+		linkFrom = intSection(buf, offsets, lengths, SECTION_LINK_FROM);
+		linkTo = intSection(buf, offsets, lengths, SECTION_LINK_TO);
+		linkTypes = intSection(buf, offsets, lengths, SECTION_LINK_TYPES);
+		linksByTarget = intSection(buf, offsets, lengths, SECTION_LINKS_BY_TARGET);
+		nodeChars = section(buf, offsets, lengths, SECTION_NODE_CHARS, 2).asCharBuffer();
+		nodeChildStarts = intSection(buf, offsets, lengths, SECTION_NODE_CHILD_STARTS);
+		nodePayloadStarts = intSection(buf, offsets, lengths, SECTION_NODE_PAYLOAD_STARTS);
+		payloadLemmaIds = intSection(buf, offsets, lengths, SECTION_PAYLOAD_LEMMA_IDS);
+		payloadGramSets = intSection(buf, offsets, lengths, SECTION_PAYLOAD_GRAM_SETS);
+		payloadTags = intSection(buf, offsets, lengths, SECTION_PAYLOAD_TAGS);
+		tagTable = new TagTable(gramSets);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readHeader(byte[] header) throws IOException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(header));
+		try {
+			version = (String) ois.readObject();
+			revision = (String) ois.readObject();
+			gramModel = (GramModel) ois.readObject();
+			lemmaLinkTypeMap = ImmutableMap.copyOf((Map<Short, LemmaLinkType>) ois.readObject());
+			tagset = (Set<BitSet>) ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			IOUtils.closeQuietly(ois);
+		}
+	}
+
+	public void setWfPredictor(WordformPredictor wfPredictor) {
+		this.wfPredictor = wfPredictor;
+	}
+
+	@Override
+	public String getVersion() {
+		return version;
+	}
+
+	@Override
+	public String getRevision() {
+		return revision;
+	}
+
+	@Override
+	public GramModel getGramModel() {
+		return gramModel;
+	}
+
+	@Override
+	public List<Wordform> getEntries(String str) {
+		if (str == null || str.isEmpty()) {
+			return ImmutableList.of();
+		}
+		// find the node of the longest matching suffix
+		int node = 0;
+		int charIndex = str.length() - 1;
+		while (charIndex >= 0) {
+			int child = findChild(node, str.charAt(charIndex));
+			if (child < 0) {
+				break;
+			}
+			node = child;
+			charIndex--;
+		}
+		if (charIndex < 0 && hasPayload(node)) {
+			List<Wordform> result = Lists.newArrayListWithCapacity(
+					nodePayloadStarts.get(node + 1) - nodePayloadStarts.get(node));
+			for (int p = nodePayloadStarts.get(node); p < nodePayloadStarts.get(node + 1); p++) {
+				result.add(toWordform(p));
+			}
+			return result;
+		} else if (wfPredictor != null) {
+			Iterable<Wordform> subtreeWordforms;
+			if (node == 0) {
+				// no matching suffix
+				subtreeWordforms = ImmutableList.of();
+			} else {
+				subtreeWordforms = new SubtreeIterable(node);
+			}
+			return ImmutableList.copyOf(wfPredictor.predict(str,
+					new WordformTSTSearchResult(false, subtreeWordforms)));
+		} else {
+			// wfPredictor is not set
+			return ImmutableList.of();
+		}
+	}
+
+	@Override
+	public boolean getEntries(String str, WordformBuffer buffer) {
+		buffer.clear();
+		int node = 0;
+		for (int i = str.length() - 1; i >= 0 && node >= 0; i--) {
+			node = findChild(node, str.charAt(i));
+		}
+		if (node > 0 && hasPayload(node)) {
+			int payloadEnd = nodePayloadStarts.get(node + 1);
+			for (int p = nodePayloadStarts.get(node); p < payloadEnd; p++) {
+				buffer.add(payloadLemmaIds.get(p), payloadTags.get(p));
+			}
+		} else {
+			// predicted entries
+			for (Wordform wf : getEntries(str)) {
+				buffer.add(wf.getLemmaId(), tagTable.intern(Wordform.getAllGramBits(wf, this)));
+			}
+		}
+		return !buffer.isEmpty();
+	}
+
+	@Override
+	public BitSet getTag(int tagId) {
+		return tagTable.get(tagId);
+	}
+
+	@Override
+	public LemmaLinkType getLemmaLinkType(short id) {
+		return lemmaLinkTypeMap.get(id);
+	}
+
+	@Override
+	public Lemma getLemma(int lemmaId) {
+		int idx = binarySearch(lemmaIds, 0, lemmaIds.limit(), lemmaId);
+		if (idx < 0) {
+			Lemma result = addedLemmas.get(lemmaId);
+			if (result == null) {
+				throw new IllegalStateException(String.format(
+						"No lemma with id = %s", lemmaId));
+			}
+			return result;
+		}
+		int strBegin = lemmaStringOffsets.get(idx);
+		int strEnd = lemmaStringOffsets.get(idx + 1);
+		char[] strChars = new char[strEnd - strBegin];
+		for (int i = 0; i < strChars.length; i++) {
+			strChars[i] = lemmaChars.get(strBegin + i);
+		}
+		Lemma result = new Lemma(new String(strChars), gramSets[lemmaGramSets.get(idx)]);
+		result.setId(lemmaId);
+		return result;
+	}
+
+	@Override
+	public void addLemma(Lemma lemma) {
+		if (binarySearch(lemmaIds, 0, lemmaIds.limit(), lemma.getId()) >= 0
+				|| addedLemmas.putIfAbsent(lemma.getId(), lemma) != null) {
+			throw new IllegalStateException(String.format(
+					"Duplicate lemma id - %s", lemma.getId()));
+		}
+	}
+
+	@Override
+	public int getLemmaMaxId() {
+		int max = lemmaIds.limit() > 0 ? lemmaIds.get(lemmaIds.limit() - 1) : Integer.MIN_VALUE;
+		for (Integer curId : addedLemmas.keySet()) {
+			if (curId > max) {
+				max = curId;
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public Map<Integer, LemmaLinkType> getLemmaOutlinks(int lemmaId) {
+		ImmutableMap.Builder<Integer, LemmaLinkType> rb = ImmutableMap.builder();
+		for (int i = lowerBound(linkFrom, lemmaId); i < linkFrom.limit()
+				&& linkFrom.get(i) == lemmaId; i++) {
+			rb.put(linkTo.get(i), getLemmaLinkType((short) linkTypes.get(i)));
+		}
+		return rb.build();
+	}
+
+	@Override
+	public Map<Integer, LemmaLinkType> getLemmaInlinks(int lemmaId) {
+		ImmutableMap.Builder<Integer, LemmaLinkType> rb = ImmutableMap.builder();
+		// lower bound over the permutation
+		int low = 0;
+		int high = linksByTarget.limit();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (linkTo.get(linksByTarget.get(mid)) < lemmaId) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < linksByTarget.limit(); i++) {
+			int link = linksByTarget.get(i);
+			if (linkTo.get(link) != lemmaId) {
+				break;
+			}
+			rb.put(linkFrom.get(link), getLemmaLinkType((short) linkTypes.get(link)));
+		}
+		return rb.build();
+	}
+
+	@Override
+	public boolean containsGramSet(BitSet tag) {
+		return tagset.contains(tag);
+	}
+
+	private boolean hasPayload(int node) {
+		return nodePayloadStarts.get(node) < nodePayloadStarts.get(node + 1);
+	}
+
+	private Wordform toWordform(int payloadIdx) {
+		return new Wordform(payloadLemmaIds.get(payloadIdx),
+				gramSets[payloadGramSets.get(payloadIdx)]);
+	}
+
+	/**
+	 * @return index of the child of the given node that is labeled by ch, or
+	 *         -1 if there is no such child.
+	 */
+	private int findChild(int node, char ch) {
+		int low = nodeChildStarts.get(node);
+		int high = nodeChildStarts.get(node + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char midCh = nodeChars.get(mid);
+			if (midCh < ch) {
+				low = mid + 1;
+			} else if (midCh > ch) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Iterates over wordforms of the given node and all its descendants.
+	 */
+	private class SubtreeIterable implements Iterable<Wordform> {
+		private final int rootNode;
+
+		SubtreeIterable(int rootNode) {
+			this.rootNode = rootNode;
+		}
+
+		@Override
+		public Iterator<Wordform> iterator() {
+			return new AbstractIterator<Wordform>() {
+				// stack of nodes to visit
+				private int[] stack = new int[16];
+				private int stackSize;
+				private int payloadIdx;
+				private int payloadEnd;
+
+				{
+					push(rootNode);
+				}
+
+				@Override
+				protected Wordform computeNext() {
+					while (payloadIdx >= payloadEnd) {
+						if (stackSize == 0) {
+							return endOfData();
+						}
+						int node = stack[--stackSize];
+						payloadIdx = nodePayloadStarts.get(node);
+						payloadEnd = nodePayloadStarts.get(node + 1);
+						for (int child = nodeChildStarts.get(node + 1) - 1; child >= nodeChildStarts
+								.get(node); child--) {
+							push(child);
+						}
+					}
+					return toWordform(payloadIdx++);
+				}
+
+				private void push(int node) {
+					if (stackSize == stack.length) {
+						int[] newStack = new int[stack.length * 2];
+						System.arraycopy(stack, 0, newStack, 0, stackSize);
+						stack = newStack;
+					}
+					stack[stackSize++] = node;
+				}
+			};
+		}
+	}
+
+	private static ByteBuffer section(ByteBuffer buf, int[] offsets, int[] lengths,
+			int sectionIdx, int elemSize) {
+		ByteBuffer dup = buf.duplicate();
+		dup.position(offsets[sectionIdx]);
+		dup.limit(offsets[sectionIdx] + lengths[sectionIdx] * elemSize);
+		return dup.slice();
+	}
+
+	private static IntBuffer intSection(ByteBuffer buf, int[] offsets, int[] lengths,
+			int sectionIdx) {
+		return section(buf, offsets, lengths, sectionIdx, 4).asIntBuffer();
+	}
+
+	private static int binarySearch(IntBuffer arr, int fromIdx, int toIdx, int key) {
+		int low = fromIdx;
+		int high = toIdx - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midVal = arr.get(mid);
+			if (midVal < key) {
+				low = mid + 1;
+			} else if (midVal > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return the first index i such that arr[i] >= key
+	 */
+	private static int lowerBound(IntBuffer arr, int key) {
+		int low = 0;
+		int high = arr.limit();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (arr.get(mid) < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
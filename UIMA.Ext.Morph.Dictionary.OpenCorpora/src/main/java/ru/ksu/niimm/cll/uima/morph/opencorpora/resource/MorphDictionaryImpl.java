@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
 import ru.kfu.itis.issst.uima.morph.model.Lemma;
 import ru.kfu.itis.issst.uima.morph.model.LemmaLinkType;
 import ru.kfu.itis.issst.uima.morph.model.Wordform;
@@ -50,7 +51,15 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 	private Map<BitSet, BitSet> uniqWordformGrammemsMap = Maps.newHashMap();
 	private Map<BitSet, BitSet> uniqLemmaGrammemsMap = Maps.newHashMap();
 
+	// it is released after the dictionary is completed, see wfAutomaton.
+	// It is non-null in a deserialized dictionary only if it has been serialized
+	// before wfAutomaton was introduced
 	private WordformTST wfByString = new WordformTST();
+	// compact immutable replacement of wfByString in a complete dictionary
+	private WordformDAWG wfAutomaton;
+	// complete tags of wordforms of wfAutomaton, indexed as its payload table
+	private transient int[] wfTagIds;
+	private transient TagTable tagTable = new TagTable();
 	// set of complete tags (lex + wordform) seen in stored wordforms
 	private Set<BitSet> tagset = Sets.newHashSet();
 
@@ -90,7 +99,12 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 
 	@Override
 	public List<Wordform> getEntries(String str) {
-		WordformTSTSearchResult result = wfByString.getLongestPrefixMatch(str);
+		WordformTSTSearchResult result;
+		if (wfAutomaton != null) {
+			result = wfAutomaton.getLongestSuffixMatch(str);
+		} else {
+			result = wfByString.getLongestPrefixMatch(str);
+		}
 		if (result.isMatchExact())
 			return Lists.newArrayList(result);
 		else if (wfPredictor != null) {
@@ -101,6 +115,29 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 		}
 	}
 
+	@Override
+	public boolean getEntries(String str, WordformBuffer buffer) {
+		buffer.clear();
+		int payload = wfAutomaton == null ? 0 : wfAutomaton.findPayload(str);
+		if (payload != 0) {
+			int payloadEnd = wfAutomaton.getPayloadEnd(payload);
+			for (int i = wfAutomaton.getPayloadBegin(payload); i < payloadEnd; i++) {
+				buffer.add(wfAutomaton.getWordform(i).getLemmaId(), wfTagIds[i]);
+			}
+		} else {
+			// predicted entries or the dictionary is not complete yet
+			for (Wordform wf : getEntries(str)) {
+				buffer.add(wf.getLemmaId(), tagTable.intern(Wordform.getAllGramBits(wf, this)));
+			}
+		}
+		return !buffer.isEmpty();
+	}
+
+	@Override
+	public BitSet getTag(int tagId) {
+		return tagTable.get(tagId);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -199,6 +236,9 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 	}
 
 	public void addWordform(String text, Wordform wf) {
+		if (complete) {
+			throw new IllegalStateException("Can't add a wordform into the complete dictionary");
+		}
 		wf = wf.cloneWithGrammems(internWordformGrammems(wf.getGrammems()));
 		wfByString.put(text, wf);
 		// add complete tag
@@ -209,6 +249,31 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 		listeners.fire().onWordformAdded(this, text, wf);
 	}
 
+	// package-level accessors for alternative dictionary formats
+
+	Collection<Lemma> getLemmas() {
+		return Collections.unmodifiableCollection(lemmaMap.values());
+	}
+
+	Collection<LemmaLinkType> getLemmaLinkTypes() {
+		return Collections.unmodifiableCollection(lemmaLinkTypeMap.values());
+	}
+
+	Table<Integer, Integer, LemmaLinkType> getLemmaLinkTable() {
+		return unmodifiableTable(lemmaLinkTable);
+	}
+
+	Set<BitSet> getTagset() {
+		return Collections.unmodifiableSet(tagset);
+	}
+
+	WordformTST getWordformTST() {
+		if (wfByString == null) {
+			return wfAutomaton.toTST();
+		}
+		return wfByString;
+	}
+
 	@Override
 	protected void finalize() throws Throwable {
 		// TODO remove
@@ -226,6 +291,7 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 		log.info("Unique tag bitset count: {}", tagset.size());
 		makeUnmodifiable();
 		//		uniqGrammemsMap = null;
+		freezeWordforms();
 		complete = true;
 	}
 
@@ -255,9 +321,31 @@ public class MorphDictionaryImpl implements Serializable, MorphDictionary {
 		lemmaLinkTable = unmodifiableTable(lemmaLinkTable);
 	}
 
+	private void freezeWordforms() {
+		wfAutomaton = WordformDAWG.build(wfByString);
+		wfByString = null;
+		computeTagIds();
+	}
+
+	// precompute complete tags
+	private void computeTagIds() {
+		wfTagIds = new int[wfAutomaton.getWordformsNum()];
+		for (int i = 0; i < wfTagIds.length; i++) {
+			wfTagIds[i] = tagTable.intern(
+					Wordform.getAllGramBits(wfAutomaton.getWordform(i), this));
+		}
+	}
+
 	private void readObject(java.io.ObjectInputStream in)
 			throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
+		tagTable = new TagTable();
+		if (wfAutomaton == null) {
+			// the TST-based serialized form
+			freezeWordforms();
+		} else {
+			computeTagIds();
+		}
 		complete = true;
 	}
 
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Table of interned complete tags (lexeme + wordform grammeme bits) that
+ * assigns them int ids. The table is filled while a dictionary is being
+ * completed, later only tags of predicted wordforms can be added that are
+ * not seen in the dictionary.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class TagTable {
+
+	private volatile BitSet[] tags;
+	private int size;
+	private final ConcurrentMap<BitSet, Integer> tagIds = Maps.newConcurrentMap();
+
+	TagTable() {
+		tags = new BitSet[256];
+	}
+
+	/**
+	 * @param initialTags
+	 *            tags that receive ids equal to their indexes in the given
+	 *            array
+	 */
+	TagTable(BitSet[] initialTags) {
+		tags = Arrays.copyOf(initialTags, Math.max(initialTags.length, 16));
+		size = initialTags.length;
+		for (int i = 0; i < initialTags.length; i++) {
+			tagIds.putIfAbsent(initialTags[i], i);
+		}
+	}
+
+	/**
+	 * @param tag
+	 *            tag bits. The table takes ownership of the given instance, it
+	 *            must not be modified afterwards.
+	 * @return id of the given tag
+	 */
+	int intern(BitSet tag) {
+		Integer result = tagIds.get(tag);
+		if (result != null) {
+			return result;
+		}
+		synchronized (this) {
+			result = tagIds.get(tag);
+			if (result != null) {
+				return result;
+			}
+			BitSet[] curTags = tags;
+			if (size == curTags.length) {
+				curTags = Arrays.copyOf(curTags, size * 2);
+			}
+			curTags[size] = tag;
+			// publish the array before the id
+			tags = curTags;
+			result = size++;
+			tagIds.put(tag, result);
+			return result;
+		}
+	}
+
+	BitSet get(int tagId) {
+		return tags[tagId];
+	}
+}
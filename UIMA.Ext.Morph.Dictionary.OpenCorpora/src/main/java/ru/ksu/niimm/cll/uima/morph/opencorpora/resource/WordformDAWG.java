@@ -0,0 +1,400 @@
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Immutable minimized automaton over reversed wordform strings, i.e., a
+ * directed acyclic word graph where identical subtrees of a
+ * {@link WordformTST} (including their wordforms) are merged into a single
+ * state. Lists of wordforms attached to states are interned in a shared
+ * payload table.
+ * <p>
+ * States, their outgoing edges and payload references are kept in primitive
+ * arrays. Edges of a state are sorted by char, so a transition is a binary
+ * search within a small contiguous range.
+ * </p>
+ * <p>
+ * The serialized form consists of these arrays, so a deserialized automaton
+ * does not need to be rebuilt. It is versioned by {@link #SERIAL_FORM_VERSION}.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class WordformDAWG implements Serializable {
+
+	private static final long serialVersionUID = 4426402870616839281L;
+	// increment on any change of the array layout
+	private static final int SERIAL_FORM_VERSION = 1;
+	private static final Logger log = LoggerFactory.getLogger(WordformDAWG.class);
+
+	public static WordformDAWG build(WordformTST tst) {
+		long timeBefore = System.currentTimeMillis();
+		WordformDAWG result = new Builder(tst).build();
+		log.info("WordformDAWG has been built in {} ms. States: {}, edges: {}, payloads: {}",
+				new Object[] {
+						System.currentTimeMillis() - timeBefore,
+						result.edgeStarts.length - 1, result.edgeChars.length,
+						result.payloadStarts.length - 1 });
+		return result;
+	}
+
+	private int serialFormVersion = SERIAL_FORM_VERSION;
+	private int rootState;
+	// edges of state s are in [edgeStarts[s], edgeStarts[s+1])
+	private int[] edgeStarts;
+	private char[] edgeChars;
+	private int[] edgeTargets;
+	// payload id of each state, 0 means no wordforms
+	private int[] statePayloads;
+	// wordforms of payload p are in [payloadStarts[p], payloadStarts[p+1])
+	private int[] payloadStarts;
+	private Wordform[] payloadWordforms;
+
+	private WordformDAWG() {
+	}
+
+	/**
+	 * @param key
+	 * @return if there are wordforms for the whole key then the result is
+	 *         exact match over them, otherwise it is iterable over all
+	 *         wordforms ending with the longest matched suffix of the key.
+	 */
+	public WordformTSTSearchResult getLongestSuffixMatch(String key) {
+		int state = rootState;
+		int charIndex = key.length() - 1;
+		while (charIndex >= 0) {
+			int next = transition(state, key.charAt(charIndex));
+			if (next < 0) {
+				break;
+			}
+			state = next;
+			charIndex--;
+		}
+		if (charIndex < 0 && statePayloads[state] != 0) {
+			return new WordformTSTSearchResult(true, payloadList(statePayloads[state]));
+		} else if (state == rootState) {
+			// nothing has been matched
+			return new WordformTSTSearchResult(false, ImmutableList.<Wordform> of());
+		} else {
+			return new WordformTSTSearchResult(false, new SubtreeIterable(state));
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return list of wordforms for the exact key. It is empty if the key is
+	 *         not in the dictionary.
+	 */
+	public List<Wordform> getExact(String key) {
+		int payload = findPayload(key);
+		if (payload == 0) {
+			return ImmutableList.of();
+		}
+		return payloadList(payload);
+	}
+
+	/**
+	 * @param key
+	 * @return id of the payload for the exact key, or 0 if the key is not in
+	 *         the dictionary. Wordforms of the payload have indexes from
+	 *         {@link #getPayloadBegin(int)} (inclusive) to
+	 *         {@link #getPayloadEnd(int)} (exclusive).
+	 */
+	public int findPayload(String key) {
+		int state = rootState;
+		for (int i = key.length() - 1; i >= 0 && state >= 0; i--) {
+			state = transition(state, key.charAt(i));
+		}
+		return state < 0 ? 0 : statePayloads[state];
+	}
+
+	public int getPayloadBegin(int payload) {
+		return payloadStarts[payload];
+	}
+
+	public int getPayloadEnd(int payload) {
+		return payloadStarts[payload + 1];
+	}
+
+	/**
+	 * @return total number of wordforms in the payload table
+	 */
+	public int getWordformsNum() {
+		return payloadWordforms.length;
+	}
+
+	public Wordform getWordform(int wfIdx) {
+		return payloadWordforms[wfIdx];
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (serialFormVersion != SERIAL_FORM_VERSION) {
+			throw new InvalidObjectException(String.format(
+					"Unsupported serial form version of WordformDAWG: %s", serialFormVersion));
+		}
+	}
+
+	private List<Wordform> payloadList(int payload) {
+		return Collections.unmodifiableList(Arrays.asList(payloadWordforms).subList(
+				payloadStarts[payload], payloadStarts[payload + 1]));
+	}
+
+	/**
+	 * @return mutable ternary search tree with the same content as this
+	 *         automaton.
+	 */
+	public WordformTST toTST() {
+		WordformTST result = new WordformTST();
+		StringBuilder reversedKey = new StringBuilder();
+		fillTST(result, rootState, reversedKey);
+		return result;
+	}
+
+	private void fillTST(WordformTST target, int state, StringBuilder reversedKey) {
+		int payload = statePayloads[state];
+		if (payload != 0) {
+			String key = new StringBuilder(reversedKey).reverse().toString();
+			for (int i = payloadStarts[payload]; i < payloadStarts[payload + 1]; i++) {
+				target.put(key, payloadWordforms[i]);
+			}
+		}
+		for (int e = edgeStarts[state]; e < edgeStarts[state + 1]; e++) {
+			reversedKey.append(edgeChars[e]);
+			fillTST(target, edgeTargets[e], reversedKey);
+			reversedKey.setLength(reversedKey.length() - 1);
+		}
+	}
+
+	/**
+	 * @return target state or -1 if there is no such transition
+	 */
+	private int transition(int state, char ch) {
+		int low = edgeStarts[state];
+		int high = edgeStarts[state + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char midCh = edgeChars[mid];
+			if (midCh < ch) {
+				low = mid + 1;
+			} else if (midCh > ch) {
+				high = mid - 1;
+			} else {
+				return edgeTargets[mid];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Iterates over wordforms of the given state and all states reachable
+	 * from it.
+	 */
+	private class SubtreeIterable implements Iterable<Wordform> {
+		private final int subtreeRoot;
+
+		SubtreeIterable(int subtreeRoot) {
+			this.subtreeRoot = subtreeRoot;
+		}
+
+		@Override
+		public Iterator<Wordform> iterator() {
+			return new AbstractIterator<Wordform>() {
+				private final Deque<Integer> stack = new ArrayDeque<Integer>();
+				private int wfIdx;
+				private int wfEnd;
+
+				{
+					stack.addFirst(subtreeRoot);
+				}
+
+				@Override
+				protected Wordform computeNext() {
+					while (wfIdx >= wfEnd) {
+						if (stack.isEmpty()) {
+							return endOfData();
+						}
+						int state = stack.removeFirst();
+						int payload = statePayloads[state];
+						wfIdx = payloadStarts[payload];
+						wfEnd = payloadStarts[payload + 1];
+						for (int e = edgeStarts[state + 1] - 1; e >= edgeStarts[state]; e--) {
+							stack.addFirst(edgeTargets[e]);
+						}
+					}
+					return payloadWordforms[wfIdx++];
+				}
+			};
+		}
+	}
+
+	private static class Builder {
+		private final WordformTST tst;
+		private final Map<StateSignature, Integer> stateRegistry = Maps.newHashMap();
+		private final Map<List<Wordform>, Integer> payloadRegistry = Maps.newHashMap();
+		// growing arrays
+		private int statesNum;
+		private int[] edgeStarts = new int[1024];
+		private int[] statePayloads = new int[1024];
+		private int edgesNum;
+		private char[] edgeChars = new char[1024];
+		private int[] edgeTargets = new int[1024];
+		private int payloadsNum;
+		private int[] payloadStarts = new int[1024];
+		private List<Wordform> payloadWordforms = Lists.newArrayList();
+
+		Builder(WordformTST tst) {
+			this.tst = tst;
+			// payload 0 is empty
+			payloadRegistry.put(ImmutableList.<Wordform> of(), 0);
+			payloadStarts[0] = 0;
+			payloadsNum = 1;
+		}
+
+		WordformDAWG build() {
+			WordformDAWG result = new WordformDAWG();
+			result.rootState = register(null);
+			result.edgeStarts = Arrays.copyOf(edgeStarts, statesNum + 1);
+			result.edgeStarts[statesNum] = edgesNum;
+			result.statePayloads = Arrays.copyOf(statePayloads, statesNum);
+			result.edgeChars = Arrays.copyOf(edgeChars, edgesNum);
+			result.edgeTargets = Arrays.copyOf(edgeTargets, edgesNum);
+			result.payloadStarts = Arrays.copyOf(payloadStarts, payloadsNum + 1);
+			result.payloadStarts[payloadsNum] = payloadWordforms.size();
+			result.payloadWordforms = payloadWordforms.toArray(new Wordform[payloadWordforms.size()]);
+			return result;
+		}
+
+		/**
+		 * @param tstNode
+		 *            TST node that corresponds to a trie node, null for the
+		 *            root
+		 * @return id of an equivalent state
+		 */
+		private int register(WordformTST.Node tstNode) {
+			WordformTST.Node childTreeRoot = tstNode == null ? tst.getRootNode() : tstNode
+					.getEqKid();
+			List<WordformTST.Node> children = collectChildren(childTreeRoot);
+			char[] chars = new char[children.size()];
+			int[] targets = new int[children.size()];
+			for (int i = 0; i < chars.length; i++) {
+				WordformTST.Node child = children.get(i);
+				chars[i] = child.getSplitchar();
+				targets[i] = register(child);
+			}
+			int payload = tstNode == null ? 0 : internPayload(tstNode);
+			StateSignature sig = new StateSignature(payload, chars, targets);
+			Integer state = stateRegistry.get(sig);
+			if (state == null) {
+				state = addState(payload, chars, targets);
+				stateRegistry.put(sig, state);
+			}
+			return state;
+		}
+
+		private int addState(int payload, char[] chars, int[] targets) {
+			if (statesNum + 1 >= edgeStarts.length) {
+				edgeStarts = Arrays.copyOf(edgeStarts, edgeStarts.length * 2);
+				statePayloads = Arrays.copyOf(statePayloads, statePayloads.length * 2);
+			}
+			if (edgesNum + chars.length >= edgeChars.length) {
+				int newLength = Math.max(edgeChars.length * 2, edgesNum + chars.length);
+				edgeChars = Arrays.copyOf(edgeChars, newLength);
+				edgeTargets = Arrays.copyOf(edgeTargets, newLength);
+			}
+			int state = statesNum++;
+			edgeStarts[state] = edgesNum;
+			statePayloads[state] = payload;
+			System.arraycopy(chars, 0, edgeChars, edgesNum, chars.length);
+			System.arraycopy(targets, 0, edgeTargets, edgesNum, targets.length);
+			edgesNum += chars.length;
+			return state;
+		}
+
+		private int internPayload(WordformTST.Node tstNode) {
+			List<Wordform> wfs = ImmutableList.copyOf(tstNode);
+			Integer payload = payloadRegistry.get(wfs);
+			if (payload == null) {
+				if (payloadsNum + 1 >= payloadStarts.length) {
+					payloadStarts = Arrays.copyOf(payloadStarts, payloadStarts.length * 2);
+				}
+				payload = payloadsNum++;
+				payloadStarts[payload] = payloadWordforms.size();
+				payloadWordforms.addAll(wfs);
+				payloadRegistry.put(wfs, payload);
+			}
+			return payload;
+		}
+
+		/**
+		 * @return nodes of the binary tree of lo- and hi-kids with the given
+		 *         root, in ascending order of their chars
+		 */
+		private static List<WordformTST.Node> collectChildren(WordformTST.Node treeRoot) {
+			List<WordformTST.Node> result = Lists.newArrayList();
+			Deque<WordformTST.Node> stack = new ArrayDeque<WordformTST.Node>();
+			WordformTST.Node cur = treeRoot;
+			while (cur != null || !stack.isEmpty()) {
+				while (cur != null) {
+					stack.addFirst(cur);
+					cur = cur.getLoKid();
+				}
+				cur = stack.removeFirst();
+				result.add(cur);
+				cur = cur.getHiKid();
+			}
+			return result;
+		}
+	}
+
+	private static class StateSignature {
+		private final int payload;
+		private final char[] chars;
+		private final int[] targets;
+		private final int hashCode;
+
+		StateSignature(int payload, char[] chars, int[] targets) {
+			this.payload = payload;
+			this.chars = chars;
+			this.targets = targets;
+			this.hashCode = 31 * (31 * payload + Arrays.hashCode(chars)) + Arrays.hashCode(targets);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StateSignature)) {
+				return false;
+			}
+			StateSignature that = (StateSignature) obj;
+			return this.payload == that.payload
+					&& Arrays.equals(this.chars, that.chars)
+					&& Arrays.equals(this.targets, that.targets);
+		}
+	}
+}
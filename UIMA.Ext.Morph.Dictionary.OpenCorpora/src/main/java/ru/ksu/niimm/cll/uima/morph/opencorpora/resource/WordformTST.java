@@ -86,6 +86,10 @@ public class WordformTST implements Serializable {
         }
     }
 
+    Node getRootNode() {
+        return rootNode;
+    }
+
     public WordformTSTSearchResult getLongestPrefixMatch(String key) {
         getNodeLongestPrefixMatchResult nodeLongestPrefixMatchResult = getNodeLongestPrefixMatch(key);
         if (nodeLongestPrefixMatchResult == null)
@@ -115,6 +119,17 @@ public class WordformTST implements Serializable {
             this.splitchar = splitchar;
         }
 
+        char getSplitchar() {
+            return splitchar;
+        }
+
+        /**
+         * @return number of wordforms stored in this node
+         */
+        int getDataSize() {
+            return data == null ? 0 : data.length;
+        }
+
         void addData(Wordform wf) {
             if (data == null) {
                 data = new Wordform[1];
@@ -10,18 +10,33 @@ import java.util.Iterator;
 public class WordformTSTSearchResult implements Iterable<Wordform>{
     private boolean isMatchExact;
     private WordformTST.Node resultNode;
+    private Iterable<Wordform> wordforms;
 
     public WordformTSTSearchResult(boolean matchExact, WordformTST.Node resultNode) {
         isMatchExact = matchExact;
         this.resultNode = resultNode;
     }
 
+    /**
+     * @param matchExact
+     * @param wordforms
+     *            wordforms of the matched node (if matchExact is true) or of
+     *            the whole subtree of the longest matched suffix
+     */
+    public WordformTSTSearchResult(boolean matchExact, Iterable<Wordform> wordforms) {
+        isMatchExact = matchExact;
+        this.wordforms = wordforms;
+    }
+
     public boolean isMatchExact() {
         return isMatchExact;
     }
 
     @Override
     public Iterator<Wordform> iterator() {
+	    if (wordforms != null) {
+		    return wordforms.iterator();
+	    }
 	    if (isMatchExact) {
 		    return resultNode.iterator();
 	    } else {
@@ -0,0 +1,334 @@
+/**
+ *
+ */
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Pipelined alternative of {@link XmlDictionaryParser}:
+ * <ol>
+ * <li>the calling thread parses the xml into raw lemma records;</li>
+ * <li>a pool of workers computes grammeme bits of lemmas and wordforms and
+ * invokes {@link LemmaPostProcessor}s;</li>
+ * <li>a merging thread adds accepted lemmas into the dictionary in the
+ * document order.</li>
+ * </ol>
+ * Dictionary content (and its serialized form) is the same as the one
+ * produced by {@link XmlDictionaryParser} given that
+ * {@link LemmaPostProcessor#process(ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary, Lemma.Builder, Multimap)}
+ * implementations of the dictionary extension are thread-safe and do not
+ * depend on the order of invocations. This holds for post-processors of this
+ * module.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class XmlDictionaryCompiler {
+
+	/**
+	 * Parse the given xml dictionary and serialize the result into the given
+	 * file in the format of {@link XmlDictionaryParserLauncher}.
+	 */
+	public static void compile(File dictXmlFile, DictionaryExtension ext, int workersNum,
+			File outputFile) throws IOException, SAXException {
+		MorphDictionaryImpl dict = new MorphDictionaryImpl();
+		InputStream in = FileUtils.openInputStream(dictXmlFile);
+		try {
+			new XmlDictionaryCompiler(dict, ext, in, workersNum).run();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		writeSerialized(dict, outputFile);
+	}
+
+	static void writeSerialized(MorphDictionaryImpl dict, File outputFile) throws IOException {
+		log.info("Preparing to serialization...");
+		long timeBefore = currentTimeMillis();
+		OutputStream fout = new BufferedOutputStream(FileUtils.openOutputStream(outputFile),
+				8192 * 8);
+		ObjectOutputStream out = new ObjectOutputStream(fout);
+		try {
+			out.writeObject(dict.getGramModel());
+			out.writeObject(dict);
+		} finally {
+			out.close();
+		}
+		log.info("Serialization finished in {} ms.\nOutput size: {} bytes",
+				currentTimeMillis() - timeBefore, outputFile.length());
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(XmlDictionaryCompiler.class);
+	private static final int REPORT_INTERVAL = 10000;
+
+	// config fields
+	private MorphDictionaryImpl dict;
+	private DictionaryExtension ext;
+	private InputStream in;
+	private int workersNum;
+	private int queueCapacity;
+	// state fields
+	private ExecutorService workers;
+	private ExecutorService merger;
+	private BlockingQueue<Future<ProcessedLemma>> mergeQueue;
+	private Future<?> mergeResult;
+	// metrics
+	private final AtomicLong workersTime = new AtomicLong();
+	private final AtomicInteger lemmasMerged = new AtomicInteger();
+	private long mergeTime;
+	private long parserWaitTime;
+
+	public XmlDictionaryCompiler(MorphDictionaryImpl dict, DictionaryExtension ext,
+			InputStream in, int workersNum) {
+		if (workersNum <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Illegal number of workers: %s", workersNum));
+		}
+		this.dict = dict;
+		this.ext = ext;
+		this.in = in;
+		this.workersNum = workersNum;
+		this.queueCapacity = 256 * workersNum;
+	}
+
+	public void run() throws SAXException, IOException {
+		SAXParser xmlParser;
+		try {
+			xmlParser = SAXParserFactory.newInstance().newSAXParser();
+		} catch (ParserConfigurationException e) {
+			// should never happen
+			throw new IllegalStateException(e);
+		}
+		XMLReader xmlReader = xmlParser.getXMLReader();
+
+		PipelinedHandler dictHandler = new PipelinedHandler();
+		if (ext.getLexemePostprocessors() != null) {
+			for (LemmaPostProcessor lpp : ext.getLexemePostprocessors()) {
+				dictHandler.addLemmaPostProcessor(lpp);
+			}
+		}
+		if (ext.getGramModelPostProcessors() != null) {
+			for (GramModelPostProcessor gmpp : ext.getGramModelPostProcessors()) {
+				dictHandler.addGramModelPostProcessor(gmpp);
+			}
+		}
+
+		xmlReader.setContentHandler(dictHandler);
+		InputSource xmlSource = new InputSource(in);
+		log.info("About to compile xml dictionary file using {} workers", workersNum);
+		long timeBefore = currentTimeMillis();
+		workers = Executors.newFixedThreadPool(workersNum, new DaemonThreadFactory("dict-worker"));
+		merger = Executors.newSingleThreadExecutor(new DaemonThreadFactory("dict-merger"));
+		mergeQueue = new ArrayBlockingQueue<Future<ProcessedLemma>>(queueCapacity);
+		try {
+			xmlReader.parse(xmlSource);
+		} finally {
+			workers.shutdownNow();
+			merger.shutdownNow();
+		}
+		log.info("Compilation finished in {} ms.\n" +
+				"Lemmas merged: {}\n" +
+				"Workers busy time: {} ms\n" +
+				"Merger busy time: {} ms\n" +
+				"Parser waited for the merger: {} ms",
+				new Object[] { currentTimeMillis() - timeBefore, lemmasMerged.get(),
+						NANOSECONDS.toMillis(workersTime.get()),
+						NANOSECONDS.toMillis(mergeTime),
+						NANOSECONDS.toMillis(parserWaitTime) });
+	}
+
+	private class PipelinedHandler extends DictionaryXmlHandler {
+
+		PipelinedHandler() {
+			super(dict);
+		}
+
+		@Override
+		protected void lemmaParsed(LemmaRecord record) {
+			if (mergeResult == null) {
+				mergeResult = merger.submit(new MergeTask(this));
+			}
+			Future<ProcessedLemma> processed = workers.submit(new PostProcessTask(this, record));
+			long waitStart = nanoTime();
+			enqueue(processed);
+			parserWaitTime += nanoTime() - waitStart;
+		}
+
+		@Override
+		protected void lemmataParsed() {
+			if (mergeResult == null) {
+				// there were no lemmas
+				return;
+			}
+			enqueue(END_OF_LEMMATA);
+			// links refer to lemmas so the dictionary must be filled before
+			checkMergeResult();
+		}
+	}
+
+	private void enqueue(Future<ProcessedLemma> item) {
+		try {
+			while (!mergeQueue.offer(item, 100, MILLISECONDS)) {
+				if (mergeResult.isDone()) {
+					// the merger has failed
+					checkMergeResult();
+					throw new IllegalStateException("Merger has finished unexpectedly");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void checkMergeResult() {
+		try {
+			mergeResult.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Merger has failed", e.getCause());
+		}
+	}
+
+	private static class ProcessedLemma {
+		private final Lemma.Builder builder;
+		private final Multimap<String, Wordform> wordforms;
+
+		ProcessedLemma(Lemma.Builder builder, Multimap<String, Wordform> wordforms) {
+			this.builder = builder;
+			this.wordforms = wordforms;
+		}
+
+		boolean isAccepted() {
+			return builder != null;
+		}
+	}
+
+	private static final ProcessedLemma REJECTED = new ProcessedLemma(null, null);
+
+	private static final Future<ProcessedLemma> END_OF_LEMMATA =
+			new FutureTask<ProcessedLemma>(new Callable<ProcessedLemma>() {
+				@Override
+				public ProcessedLemma call() {
+					throw new UnsupportedOperationException();
+				}
+			});
+
+	private class PostProcessTask implements Callable<ProcessedLemma> {
+		private final DictionaryXmlHandler handler;
+		private final LemmaRecord record;
+
+		PostProcessTask(DictionaryXmlHandler handler, LemmaRecord record) {
+			this.handler = handler;
+			this.record = record;
+		}
+
+		@Override
+		public ProcessedLemma call() throws Exception {
+			long timeBefore = nanoTime();
+			// the gram model is set before lemmata are parsed
+			GramModel gm = dict.getGramModel();
+			Lemma.Builder builder = record.toLemmaBuilder(gm);
+			Multimap<String, Wordform> wordforms = record.toWordforms(gm);
+			ProcessedLemma result;
+			if (handler.postProcessLemma(builder, wordforms)) {
+				result = new ProcessedLemma(builder, wordforms);
+			} else {
+				result = REJECTED;
+			}
+			workersTime.addAndGet(nanoTime() - timeBefore);
+			return result;
+		}
+	}
+
+	private class MergeTask implements Callable<Void> {
+		private final DictionaryXmlHandler handler;
+
+		MergeTask(DictionaryXmlHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			Future<ProcessedLemma> next;
+			while ((next = mergeQueue.take()) != END_OF_LEMMATA) {
+				ProcessedLemma pl;
+				try {
+					pl = next.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Lemma post-processing has failed",
+							e.getCause());
+				}
+				long timeBefore = nanoTime();
+				if (pl.isAccepted()) {
+					handler.addLemma(pl.builder, pl.wordforms);
+				} else {
+					handler.lemmaRejected();
+				}
+				mergeTime += nanoTime() - timeBefore;
+				int merged = lemmasMerged.incrementAndGet();
+				if (merged % REPORT_INTERVAL == 0) {
+					log.info("Lemmas have been merged: {}, pending: {}", merged, mergeQueue.size());
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String namePrefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		DaemonThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread result = new Thread(r, namePrefix + "-" + counter.incrementAndGet());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
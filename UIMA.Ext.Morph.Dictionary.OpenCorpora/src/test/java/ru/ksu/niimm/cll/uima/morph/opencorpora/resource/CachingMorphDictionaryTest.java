@@ -0,0 +1,90 @@
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryUtils.lookupToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.CachingMorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
+
+import com.google.common.collect.ImmutableList;
+
+public class CachingMorphDictionaryTest {
+
+	private static final File TEST_XML = new File("test-data/dict.opcorpora.test.xml");
+
+	MorphDictionaryImpl dict;
+
+	@Before
+	public void setUp() throws Exception {
+		FileInputStream fis = FileUtils.openInputStream(TEST_XML);
+		try {
+			dict = XmlDictionaryParser.parse(fis);
+		} finally {
+			IOUtils.closeQuietly(fis);
+		}
+	}
+
+	@Test
+	public void testSameAnalysis() throws Exception {
+		List<String> tokens = ImmutableList.<String> builder()
+				.addAll(readWordformStrings())
+				.add("Ёлка", "qwerty", "123", "хмыркающий", ",")
+				.build();
+		CachingMorphDictionary cachingDict = new CachingMorphDictionary(dict, 100);
+		WordformBuffer expectedBuf = new WordformBuffer(1);
+		WordformBuffer actualBuf = new WordformBuffer(1);
+		// two passes to read both loaded and cached analyses
+		for (int pass = 0; pass < 2; pass++) {
+			for (String token : tokens) {
+				String expectedForm = lookupToken(dict, token, expectedBuf);
+				assertEquals(token, expectedForm, lookupToken(cachingDict, token, actualBuf));
+				assertEquals(token, expectedBuf.size(), actualBuf.size());
+				for (int i = 0; i < expectedBuf.size(); i++) {
+					assertEquals(expectedBuf.getLemmaId(i), actualBuf.getLemmaId(i));
+					assertEquals(dict.getTag(expectedBuf.getTagId(i)),
+							cachingDict.getTag(actualBuf.getTagId(i)));
+				}
+			}
+		}
+		assertTrue(cachingDict.getCacheSize() <= 100);
+		assertTrue(cachingDict.getCacheStats().hitCount() > 0);
+	}
+
+	@Test
+	public void testHits() {
+		CachingMorphDictionary cachingDict = new CachingMorphDictionary(dict, 10);
+		WordformBuffer buf = new WordformBuffer(1);
+		assertNull(cachingDict.lookupToken("qwerty", buf));
+		assertTrue(buf.isEmpty());
+		for (int i = 0; i < 5; i++) {
+			cachingDict.lookupToken("ёлка", buf);
+			cachingDict.lookupToken("qwerty", buf);
+		}
+		assertEquals(2, cachingDict.getCacheStats().loadCount());
+		assertEquals(2, cachingDict.getCacheSize());
+		assertEquals(9, cachingDict.getCacheStats().hitCount());
+	}
+
+	private static List<String> readWordformStrings() throws Exception {
+		String xml = FileUtils.readFileToString(TEST_XML, "utf-8");
+		Matcher m = Pattern.compile("<f t=\"([^\"]+)\"").matcher(xml);
+		ImmutableList.Builder<String> rb = ImmutableList.builder();
+		while (m.find()) {
+			rb.add(m.group(1));
+		}
+		return rb.build();
+	}
+}
@@ -0,0 +1,123 @@
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class MappedMorphDictionaryTest {
+
+	private static final File TEST_XML = new File("test-data/dict.opcorpora.test.xml");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	MorphDictionaryImpl dict;
+	MappedMorphDictionary mappedDict;
+
+	@Before
+	public void setUp() throws Exception {
+		FileInputStream fis = FileUtils.openInputStream(TEST_XML);
+		try {
+			dict = XmlDictionaryParser.parse(fis);
+		} finally {
+			IOUtils.closeQuietly(fis);
+		}
+		File mappedFile = tempFolder.newFile("dict.opcorpora.mapped");
+		new MappedDictionaryWriter(dict).write(mappedFile);
+		mappedDict = MappedMorphDictionary.from(mappedFile);
+	}
+
+	@Test
+	public void testMetaAndGramModel() {
+		assertEquals(dict.getVersion(), mappedDict.getVersion());
+		assertEquals(dict.getRevision(), mappedDict.getRevision());
+		assertEquals(dict.getGramModel().getTopGrammems(),
+				mappedDict.getGramModel().getTopGrammems());
+		assertEquals(dict.getLemmaMaxId(), mappedDict.getLemmaMaxId());
+	}
+
+	@Test
+	public void testExactEntries() throws Exception {
+		Set<String> wfStrings = readWordformStrings();
+		assertTrue(wfStrings.size() > 100);
+		for (String wfStr : wfStrings) {
+			List<Wordform> expected = dict.getEntries(wfStr);
+			assertEquals(wfStr, expected, mappedDict.getEntries(wfStr));
+			for (Wordform wf : expected) {
+				assertEquals(dict.getLemma(wf.getLemmaId()).getString(),
+						mappedDict.getLemma(wf.getLemmaId()).getString());
+				assertEquals(Wordform.getAllGramBits(wf, dict),
+						Wordform.getAllGramBits(wf, mappedDict));
+				assertTrue(mappedDict.containsGramSet(Wordform.getAllGramBits(wf, dict)));
+			}
+		}
+	}
+
+	@Test
+	public void testBufferEntries() throws Exception {
+		WordformBuffer buf = new WordformBuffer(1);
+		for (MorphDictionary d : new MorphDictionary[] { dict, mappedDict }) {
+			for (String wfStr : readWordformStrings()) {
+				List<Wordform> expected = dict.getEntries(wfStr);
+				assertTrue(wfStr, d.getEntries(wfStr, buf));
+				assertEquals(wfStr, expected.size(), buf.size());
+				for (int i = 0; i < buf.size(); i++) {
+					assertEquals(expected.get(i).getLemmaId(), buf.getLemmaId(i));
+					assertEquals(Wordform.getAllGramBits(expected.get(i), dict),
+							d.getTag(buf.getTagId(i)));
+				}
+			}
+			assertFalse(d.getEntries("qwerty", buf));
+			assertTrue(buf.isEmpty());
+		}
+	}
+
+	@Test
+	public void testPredictedEntries() {
+		dict.setWfPredictor(new DummyWordformPredictor(dict));
+		mappedDict.setWfPredictor(new DummyWordformPredictor(mappedDict));
+		for (String str : new String[] { "хмыркающий", "мыркающийся", "сёла", "гаджи", "qwerty" }) {
+			assertEquals(str, toLemmaFreeSet(dict.getEntries(str), dict),
+					toLemmaFreeSet(mappedDict.getEntries(str), mappedDict));
+		}
+	}
+
+	private static Set<?> toLemmaFreeSet(List<Wordform> wfs, MorphDictionary dict) {
+		Set<Object> result = Sets.newHashSet();
+		for (Wordform wf : wfs) {
+			result.add(Wordform.getAllGramBits(wf, dict));
+		}
+		return result;
+	}
+
+	private static Set<String> readWordformStrings() throws Exception {
+		String xml = FileUtils.readFileToString(TEST_XML, "utf-8");
+		Matcher m = Pattern.compile("<f t=\"([^\"]+)\"").matcher(xml);
+		ImmutableSet.Builder<String> rb = ImmutableSet.builder();
+		while (m.find()) {
+			rb.add(m.group(1));
+		}
+		return rb.build();
+	}
+}
@@ -9,14 +9,19 @@ import java.io.FileInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
 import ru.kfu.itis.issst.uima.morph.model.Wordform;
 
 public class MorphDictionaryImplTest {
 
+	// words of the dictionary, i.e., not predicted
+	private static final String[] WORDS = { "гаджимуратович", "село", "а" };
+
 	MorphDictionaryImpl dict;
 	GramModel gm;
 
@@ -59,4 +64,32 @@ public class MorphDictionaryImplTest {
 				.get(plurGramIdx));
 	}
 
+	@Test
+	public void testSerialization() {
+		MorphDictionaryImpl restored = SerializationUtils.clone(dict);
+		assertSameEntries(dict, restored);
+	}
+
+	@Test
+	public void testTSTBasedSerialForm() {
+		// an incomplete dictionary is serialized with a TST like before the automaton
+		MorphDictionaryImpl tstDict = new MorphDictionaryImpl();
+		tstDict.setGramModel(gm);
+		for (Lemma l : dict.getLemmas()) {
+			tstDict.addLemma(l);
+		}
+		for (String w : WORDS) {
+			for (Wordform wf : dict.getEntries(w)) {
+				tstDict.addWordform(w, wf);
+			}
+		}
+		MorphDictionaryImpl restored = SerializationUtils.clone(tstDict);
+		assertSameEntries(dict, restored);
+	}
+
+	private static void assertSameEntries(MorphDictionaryImpl expected, MorphDictionaryImpl actual) {
+		for (String w : WORDS) {
+			assertEquals(w, expected.getEntries(w), actual.getEntries(w));
+		}
+	}
 }
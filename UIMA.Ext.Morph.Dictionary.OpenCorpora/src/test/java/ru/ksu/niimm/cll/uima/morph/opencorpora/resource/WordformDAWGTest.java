@@ -0,0 +1,91 @@
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+public class WordformDAWGTest {
+
+	private static final String ALPHABET = "абвгдеёжз";
+
+	private WordformTST tst;
+	private WordformDAWG dawg;
+	private List<String> keys = Lists.newArrayList();
+
+	@Before
+	public void setUp() {
+		Random rnd = new Random(42);
+		tst = new WordformTST();
+		for (int i = 0; i < 2000; i++) {
+			String key = randomString(rnd, 1 + rnd.nextInt(7));
+			keys.add(key);
+			int wfNum = 1 + rnd.nextInt(3);
+			for (int j = 0; j < wfNum; j++) {
+				BitSet grammems = new BitSet();
+				grammems.set(rnd.nextInt(4));
+				tst.put(key, new Wordform(rnd.nextInt(50), grammems));
+			}
+		}
+		dawg = WordformDAWG.build(tst);
+	}
+
+	@Test
+	public void testExactMatch() {
+		for (String key : keys) {
+			WordformTSTSearchResult expected = tst.getLongestPrefixMatch(key);
+			WordformTSTSearchResult actual = dawg.getLongestSuffixMatch(key);
+			assertTrue(expected.isMatchExact());
+			assertTrue(actual.isMatchExact());
+			assertEquals(ImmutableList.copyOf(expected), ImmutableList.copyOf(actual));
+			assertEquals(ImmutableList.copyOf(expected), dawg.getExact(key));
+		}
+	}
+
+	@Test
+	public void testLongestSuffixMatch() {
+		Random rnd = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			String key = randomString(rnd, 1 + rnd.nextInt(9));
+			WordformTSTSearchResult expected = tst.getLongestPrefixMatch(key);
+			WordformTSTSearchResult actual = dawg.getLongestSuffixMatch(key);
+			assertEquals(key, expected.isMatchExact(), actual.isMatchExact());
+			assertEquals(key, toMultiset(expected), toMultiset(actual));
+		}
+		// no suffix is matched
+		assertTrue(ImmutableList.copyOf(dawg.getLongestSuffixMatch("xyz")).isEmpty());
+	}
+
+	@Test
+	public void testToTST() {
+		WordformTST restored = dawg.toTST();
+		for (String key : keys) {
+			assertEquals(ImmutableList.copyOf(tst.getLongestPrefixMatch(key)),
+					ImmutableList.copyOf(restored.getLongestPrefixMatch(key)));
+		}
+	}
+
+	private static Multiset<Wordform> toMultiset(Iterable<Wordform> wfs) {
+		return HashMultiset.create(wfs);
+	}
+
+	private static String randomString(Random rnd, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append(ALPHABET.charAt(rnd.nextInt(ALPHABET.length())));
+		}
+		return sb.toString();
+	}
+}
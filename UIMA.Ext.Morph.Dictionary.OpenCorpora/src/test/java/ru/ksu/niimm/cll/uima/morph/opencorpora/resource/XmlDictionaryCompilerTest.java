@@ -0,0 +1,89 @@
+package ru.ksu.niimm.cll.uima.morph.opencorpora.resource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+
+public class XmlDictionaryCompilerTest {
+
+	private static final File TEST_XML = new File("test-data/dict.opcorpora.test.xml");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testSameOutputAsSequentialParser() throws Exception {
+		DictionaryExtension ext = new DictionaryExtensionBase() {
+			@Override
+			public List<LemmaPostProcessor> getLexemePostprocessors() {
+				return Arrays.<LemmaPostProcessor> asList(YoLemmaPostProcessor.INSTANCE);
+			}
+		};
+		MorphDictionaryImpl seqDict = new MorphDictionaryImpl();
+		InputStream in = FileUtils.openInputStream(TEST_XML);
+		try {
+			new XmlDictionaryParser(seqDict, ext, in).run();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		File seqFile = tempFolder.newFile("seq.ser");
+		XmlDictionaryCompiler.writeSerialized(seqDict, seqFile);
+
+		File seqFile2 = tempFolder.newFile("seq2.ser");
+		MorphDictionaryImpl seqDict2 = new MorphDictionaryImpl();
+		in = FileUtils.openInputStream(TEST_XML);
+		try {
+			new XmlDictionaryParser(seqDict2, ext, in).run();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		XmlDictionaryCompiler.writeSerialized(seqDict2, seqFile2);
+		assertArrayEquals(FileUtils.readFileToByteArray(seqFile),
+				FileUtils.readFileToByteArray(seqFile2));
+		for (int workersNum : new int[] { 1, 4 }) {
+			File parFile = tempFolder.newFile("par" + workersNum + ".ser");
+			XmlDictionaryCompiler.compile(TEST_XML, ext, workersNum, parFile);
+			assertArrayEquals(FileUtils.readFileToByteArray(seqFile),
+					FileUtils.readFileToByteArray(parFile));
+		}
+	}
+
+	@Test
+	public void testLemmaFilter() throws Exception {
+		DictionaryExtension ext = new DictionaryExtensionBase() {
+			@Override
+			public List<LemmaPostProcessor> getLexemePostprocessors() {
+				return Arrays.<LemmaPostProcessor> asList(new OddLemmaFilter());
+			}
+		};
+		MorphDictionaryImpl dict = new MorphDictionaryImpl();
+		InputStream in = FileUtils.openInputStream(TEST_XML);
+		try {
+			new XmlDictionaryCompiler(dict, ext, in, 3).run();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		MorphDictionaryImpl expected;
+		in = FileUtils.openInputStream(TEST_XML);
+		try {
+			expected = XmlDictionaryParser.parse(in, new OddLemmaFilter());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		assertEquals(expected.getLemmaMaxId(), dict.getLemmaMaxId());
+		assertEquals(ImmutableList.copyOf(expected.getLemmas()),
+				ImmutableList.copyOf(dict.getLemmas()));
+	}
+}
@@ -13,6 +13,7 @@ import org.opencorpora.cas.Word;
 
 import ru.kfu.itis.cll.uima.cas.FSUtils;
 import ru.kfu.itis.issst.uima.morph.dictionary.AnnotationAdapterBase;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
 import ru.kfu.itis.issst.uima.morph.model.Lemma;
 import ru.kfu.itis.issst.uima.morph.model.Wordform;
 
@@ -33,31 +34,28 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
 
 	@Override
 	public void apply(JCas jcas, Annotation token, Collection<Wordform> dictWfs) {
-		Word word = new Word(jcas);
-		word.setBegin(token.getBegin());
-		word.setEnd(token.getEnd());
-		word.setToken(token);
-		List<org.opencorpora.cas.Wordform> casWfList = Lists.newLinkedList();
+		Word word = newWord(jcas, token);
+		List<org.opencorpora.cas.Wordform> casWfList =
+				Lists.newArrayListWithExpectedSize(dictWfs.size());
 		for (Wordform wf : dictWfs) {
-			org.opencorpora.cas.Wordform casWf = new org.opencorpora.cas.Wordform(jcas);
-
-			BitSet grammems = wf.getGrammems();
-			Lemma lemma = dict.getLemma(wf.getLemmaId());
-			// set lemma id
-			casWf.setLemmaId(lemma.getId());
-			// set lemma norm
-			casWf.setLemma(lemma.getString());
-			// set pos
-			casWf.setPos(dict.getGramModel().getPos(lemma.getGrammems()));
-			// set grammems
-			grammems.or(lemma.getGrammems());
-			List<String> gramSet = dict.getGramModel().toGramSet(grammems);
-			casWf.setGrammems(FSUtils.toStringArray(jcas, gramSet));
-
-			// set hosting word
-			casWf.setWord(word);
-
-			casWfList.add(casWf);
+			casWfList.add(newCasWordform(jcas, word, wf.getLemmaId(),
+					Wordform.getAllGramBits(wf, dict)));
+		}
+		// set wordforms
+		word.setWordforms(FSUtils.toFSArray(jcas, casWfList));
+
+		word.addToIndexes();
+	}
+
+	@Override
+	public void apply(JCas jcas, Annotation token, WordformBuffer wfBuffer) {
+		Word word = newWord(jcas, token);
+		List<org.opencorpora.cas.Wordform> casWfList =
+				Lists.newArrayListWithExpectedSize(wfBuffer.size());
+		for (int i = 0; i < wfBuffer.size(); i++) {
+			// the tag already includes lexeme grammems
+			casWfList.add(newCasWordform(jcas, word, wfBuffer.getLemmaId(i),
+					dict.getTag(wfBuffer.getTagId(i))));
 		}
 		// set wordforms
 		word.setWordforms(FSUtils.toFSArray(jcas, casWfList));
@@ -68,10 +66,7 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
 	@Override
 	public void apply(JCas jcas, Annotation token,
 			Integer lexemeId, final String _lemma, BitSet posBits) {
-		Word word = new Word(jcas);
-		word.setBegin(token.getBegin());
-		word.setEnd(token.getEnd());
-		word.setToken(token);
+		Word word = newWord(jcas, token);
 
 		org.opencorpora.cas.Wordform casWf = new org.opencorpora.cas.Wordform(jcas);
 		String lemma = null;
@@ -99,4 +94,36 @@ public class DefaultAnnotationAdapter extends AnnotationAdapterBase {
 
 		word.addToIndexes();
 	}
-}
\ No newline at end of file
+
+	private static Word newWord(JCas jcas, Annotation token) {
+		Word word = new Word(jcas);
+		word.setBegin(token.getBegin());
+		word.setEnd(token.getEnd());
+		word.setToken(token);
+		return word;
+	}
+
+	/**
+	 * @param tag
+	 *            complete tag, i.e., including lexeme grammems
+	 */
+	private org.opencorpora.cas.Wordform newCasWordform(JCas jcas, Word word,
+			int lemmaId, BitSet tag) {
+		org.opencorpora.cas.Wordform casWf = new org.opencorpora.cas.Wordform(jcas);
+
+		Lemma lemma = dict.getLemma(lemmaId);
+		// set lemma id
+		casWf.setLemmaId(lemma.getId());
+		// set lemma norm
+		casWf.setLemma(lemma.getString());
+		// set pos
+		casWf.setPos(dict.getGramModel().getPos(lemma.getGrammems()));
+		// set grammems
+		List<String> gramSet = dict.getGramModel().toGramSet(tag);
+		casWf.setGrammems(FSUtils.toStringArray(jcas, gramSet));
+
+		// set hosting word
+		casWf.setWord(word);
+		return casWf;
+	}
+}
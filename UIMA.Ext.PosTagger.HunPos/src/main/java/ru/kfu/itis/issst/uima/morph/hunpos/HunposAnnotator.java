@@ -6,10 +6,10 @@ package ru.kfu.itis.issst.uima.morph.hunpos;
 import static ru.kfu.itis.issst.uima.morph.commons.TagUtils.postProcessExternalTag;
 
 import java.io.File;
-import java.util.Collection;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
 
-import org.annolab.tt4j.TokenHandler;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
@@ -26,7 +26,12 @@ import ru.kfu.cll.uima.tokenizer.fstype.NUM;
 import ru.kfu.cll.uima.tokenizer.fstype.Token;
 import ru.kfu.cll.uima.tokenizer.fstype.W;
 
+import com.google.common.collect.Lists;
+
 /**
+ * Sentences of a CAS are submitted to a pool of hunpos-tag processes at once
+ * and then their tags are collected in the order of sentences.
+ * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
@@ -34,13 +39,14 @@ public class HunposAnnotator extends JCasAnnotator_ImplBase {
 
 	public static final String PARAM_HUNPOS_MODEL_NAME = "hunposModelName";
 	public static final String PARAM_LEXICON_FILE = "lexiconFile";
+	public static final String PARAM_PROCESSES = "hunposProcesses";
 	// config
 	@ConfigurationParameter(name = PARAM_HUNPOS_MODEL_NAME, mandatory = true)
 	private String hpModelName;
 	@ConfigurationParameter(name = PARAM_LEXICON_FILE, mandatory = false)
 	private File lexiconFile;
-	// monitors
-	private final Object casMon = new Object();
+	@ConfigurationParameter(name = PARAM_PROCESSES, defaultValue = "1")
+	private int processesNum;
 	// state fields
 	private HunposWrapper<Token> hunposTagger;
 
@@ -53,69 +59,59 @@ public class HunposAnnotator extends JCasAnnotator_ImplBase {
 		if (lexiconFile != null) {
 			hunposTagger.setLexiconFile(lexiconFile);
 		}
-		hunposTagger.setTokenAdapter(new TokenAdapter());
+		hunposTagger.setPoolSize(processesNum);
+		try {
+			hunposTagger.start();
+		} catch (Exception e) {
+			hunposTagger.destroy();
+			throw new ResourceInitializationException(e);
+		}
 	}
 
 	@Override
 	public void process(final JCas jCas) throws AnalysisEngineProcessException {
-		for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
-			process(jCas, sent);
-		}
-	}
-
-	private void process(final JCas jCas, Sentence sent) throws AnalysisEngineProcessException {
-		Collection<Token> tokens = JCasUtil.selectCovered(Token.class, sent);
-		final Word[] words = new Word[tokens.size()];
-
-		final AtomicInteger count = new AtomicInteger(0);
-		hunposTagger.setTokenHandler(new TokenHandler<Token>() {
-			@Override
-			public void token(Token token, String pos, String lemma) {
-				// should be synchronized on the same object with TokenAdapter#getText (see below)
-				synchronized (casMon) {
-					// do not create Wordform on punctuation and special tokens
-					if (pos != null && (token instanceof W || token instanceof NUM)) {
-						pos = pos.intern();
-						Word w = new Word(jCas, token.getBegin(), token.getEnd());
-						w.setToken(token);
-
-						Wordform wf = new Wordform(jCas);
-						wf.setWord(w);
-						if (lemma != null) {
-							wf.setLemma(lemma);
-						}
-						// null tags comes as a 'null' string instances
-						wf.setPos(postProcessExternalTag(pos));
-
-						FSArray wfArr = new FSArray(jCas, 1);
-						wfArr.set(0, wf);
-						w.setWordforms(wfArr);
-
-						if (words[count.get()] != null) {
-							throw new IllegalStateException();
-						}
-						words[count.get()] = w;
-					}
-					//
-					count.getAndIncrement();
-				}
-			}
-		});
-		// 
+		List<List<Token>> sentTokens = Lists.newArrayList();
+		List<Future<List<String>>> sentTags = Lists.newArrayList();
 		try {
-			hunposTagger.process(tokens);
-
-			// save annotations
-			for (Word w : words) {
-				if (w != null) {
-					w.addToIndexes();
+			for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+				List<Token> tokens = JCasUtil.selectCovered(Token.class, sent);
+				List<String> tokenStrings = Lists.newArrayListWithExpectedSize(tokens.size());
+				for (Token t : tokens) {
+					tokenStrings.add(t.getCoveredText());
 				}
+				sentTokens.add(tokens);
+				sentTags.add(hunposTagger.tag(tokenStrings));
+			}
+			for (int i = 0; i < sentTokens.size(); i++) {
+				List<String> tags = HunposWrapper.getResult(sentTags.get(i));
+				process(jCas, sentTokens.get(i), tags);
 			}
 		} catch (Exception e) {
 			throw new AnalysisEngineProcessException(e);
-		} finally {
-			// just to clear reference to current CAS
-			hunposTagger.setTokenHandler(null);
+		}
+	}
+
+	private void process(JCas jCas, List<Token> tokens, List<String> tags) {
+		Iterator<String> tagIter = tags.iterator();
+		for (Token token : tokens) {
+			String pos = tagIter.next();
+			// do not create Wordform on punctuation and special tokens
+			if (pos != null && (token instanceof W || token instanceof NUM)) {
+				pos = pos.intern();
+				Word w = new Word(jCas, token.getBegin(), token.getEnd());
+				w.setToken(token);
+
+				Wordform wf = new Wordform(jCas);
+				wf.setWord(w);
+				// null tags comes as a 'null' string instances
+				wf.setPos(postProcessExternalTag(pos));
+
+				FSArray wfArr = new FSArray(jCas, 1);
+				wfArr.set(0, wf);
+				w.setWordforms(wfArr);
+
+				w.addToIndexes();
+			}
 		}
 	}
 
@@ -135,13 +131,4 @@ public class HunposAnnotator extends JCasAnnotator_ImplBase {
 		destroy();
 		super.finalize();
 	}
-
-	private class TokenAdapter implements org.annolab.tt4j.TokenAdapter<Token> {
-		@Override
-		public String getText(Token t) {
-			synchronized (casMon) {
-				return t.getCoveredText();
-			}
-		}
-	}
-}
\ No newline at end of file
+}
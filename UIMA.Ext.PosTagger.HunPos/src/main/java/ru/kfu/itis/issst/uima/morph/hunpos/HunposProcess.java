@@ -0,0 +1,297 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.hunpos;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A long-lived hunpos-tag process. A request is a sentence, i.e., a list of
+ * tokens. Requests are written to the process input by a dedicated writer
+ * thread: a token per line followed by an empty line. A dedicated reader
+ * thread parses the process output and completes futures of requests in the
+ * order they were written. The third thread logs the error stream of the
+ * process.
+ * <p>
+ * If any of the threads fails or the process exits, the instance is marked
+ * as dead and all pending requests fail with {@link HunposException}. A dead
+ * instance can not be reused.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+class HunposProcess {
+
+	private static final String TAGGER_IS_READY_MESSAGE = "tagger compiled";
+	private static final Splitter taggerOutputFieldsSplitter = Splitter.on('\t');
+	private static final Request STOP_REQUEST = new Request(null);
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	// config fields
+	private final List<String> cmd;
+	private final String processIOEncoding;
+	private final String name;
+	// state fields
+	private Process process;
+	private Thread writerThread;
+	private Thread readerThread;
+	private Thread errReaderThread;
+	private final CountDownLatch readyLatch = new CountDownLatch(1);
+	private final BlockingQueue<Request> writeQueue = new LinkedBlockingQueue<Request>();
+	// requests that have been written but not answered yet
+	private final BlockingQueue<Request> responseQueue = new LinkedBlockingQueue<Request>();
+	private final AtomicInteger pendingRequests = new AtomicInteger();
+	private volatile Throwable failure;
+
+	HunposProcess(List<String> cmd, String processIOEncoding, String name) {
+		this.cmd = cmd;
+		this.processIOEncoding = processIOEncoding;
+		this.name = name;
+	}
+
+	/**
+	 * Start the process and wait until it reports that it is ready.
+	 */
+	void start(long readyTimeoutMillis) throws IOException, HunposException {
+		if (process != null) {
+			throw new IllegalStateException(name + " has been started already");
+		}
+		log.trace("Invoking hunpos-tagger:\n{}", Joiner.on(' ').join(cmd));
+		process = new ProcessBuilder(cmd).start();
+		writerThread = newThread(new TokenWriter(), "Input Writer");
+		readerThread = newThread(new ResponseReader(), "Output Reader");
+		errReaderThread = newThread(new ErrorStreamReader(), "Error Stream Reader");
+		errReaderThread.start();
+		try {
+			if (!readyLatch.await(readyTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				stop();
+				throw new HunposException(String.format(
+						"Can't initialize %s - %s ms timeout has passed",
+						name, readyTimeoutMillis));
+			}
+		} catch (InterruptedException e) {
+			stop();
+			Thread.currentThread().interrupt();
+			throw new HunposException(e);
+		}
+		if (failure != null) {
+			throw new HunposException(name + " was not initialized properly", failure);
+		}
+		writerThread.start();
+		readerThread.start();
+	}
+
+	/**
+	 * @return a future of tags that has the same size as the given token list
+	 */
+	ListenableFuture<List<String>> tag(List<String> tokens) {
+		for (String token : tokens) {
+			if (token.isEmpty() || token.indexOf('\t') >= 0 || token.indexOf('\n') >= 0) {
+				throw new IllegalArgumentException(String.format(
+						"Token '%s' contains illegal characters", token));
+			}
+		}
+		if (tokens.isEmpty()) {
+			return Futures.immediateFuture(Collections.<String> emptyList());
+		}
+		Request req = new Request(tokens);
+		synchronized (this) {
+			if (failure != null) {
+				return Futures.immediateFailedFuture(new HunposException(
+						name + " is dead", failure));
+			}
+			pendingRequests.incrementAndGet();
+			writeQueue.add(req);
+		}
+		return req.result;
+	}
+
+	boolean isAlive() {
+		return failure == null;
+	}
+
+	/**
+	 * @return the number of requests that have not been answered yet
+	 */
+	int getPendingRequests() {
+		return pendingRequests.get();
+	}
+
+	void stop() {
+		fail(new IllegalStateException(name + " has been stopped"));
+		writeQueue.add(STOP_REQUEST);
+	}
+
+	private void fail(Throwable cause) {
+		List<Request> pending = newArrayList();
+		synchronized (this) {
+			if (failure == null) {
+				failure = cause;
+			}
+			responseQueue.drainTo(pending);
+			writeQueue.drainTo(pending);
+		}
+		if (process != null) {
+			process.destroy();
+		}
+		readyLatch.countDown();
+		for (Request req : pending) {
+			if (req != STOP_REQUEST) {
+				req.fail(failure);
+			}
+		}
+		if (writerThread != null && Thread.currentThread() != writerThread) {
+			writerThread.interrupt();
+		}
+	}
+
+	private Thread newThread(Runnable r, String purpose) {
+		Thread result = new Thread(r, name + " " + purpose);
+		result.setDaemon(true);
+		return result;
+	}
+
+	private class TokenWriter implements Runnable {
+		@Override
+		public void run() {
+			try {
+				Writer outWriter = new BufferedWriter(new OutputStreamWriter(
+						process.getOutputStream(), processIOEncoding));
+				while (true) {
+					Request req = writeQueue.take();
+					if (req == STOP_REQUEST) {
+						break;
+					}
+					synchronized (HunposProcess.this) {
+						if (failure != null) {
+							req.fail(failure);
+							continue;
+						}
+						responseQueue.add(req);
+					}
+					for (String token : req.tokens) {
+						// \r\n (CRLF) does not work for Windows build of Hunpos
+						outWriter.write(token);
+						outWriter.write('\n');
+					}
+					// print empty line to make sentence end
+					outWriter.write('\n');
+					// do not delay a request if there are no more
+					if (writeQueue.isEmpty()) {
+						outWriter.flush();
+					}
+				}
+			} catch (InterruptedException e) {
+				// stopped
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
+
+	private class ResponseReader implements Runnable {
+		@Override
+		public void run() {
+			try {
+				BufferedReader inReader = new BufferedReader(new InputStreamReader(
+						process.getInputStream(), processIOEncoding));
+				List<String> tags = newArrayList();
+				while (true) {
+					String line = inReader.readLine();
+					if (line == null) {
+						throw new IllegalStateException(
+								"Unexpected death of hunpos-tagger process");
+					}
+					if (!line.isEmpty()) {
+						List<String> outFields = newArrayList(taggerOutputFieldsSplitter.split(line));
+						if (outFields.size() != 3) {
+							throw new IllegalStateException(String.format(
+									"Illegal output format in line:\n%s", line));
+						}
+						tags.add(outFields.get(1));
+						continue;
+					}
+					// means we are done with current sentence
+					Request req = responseQueue.poll();
+					if (req == null) {
+						throw new IllegalStateException("Unexpected output of hunpos-tagger");
+					}
+					if (req.tokens.size() != tags.size()) {
+						req.fail(new IllegalStateException(String.format(
+								"Expected %s tags but got %s", req.tokens.size(), tags.size())));
+						throw new IllegalStateException("Hunpos-tagger output is out of sync");
+					}
+					pendingRequests.decrementAndGet();
+					req.result.set(tags);
+					tags = newArrayList();
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
+
+	private class ErrorStreamReader implements Runnable {
+		@Override
+		public void run() {
+			try {
+				BufferedReader errReader = new BufferedReader(new InputStreamReader(
+						process.getErrorStream(), processIOEncoding));
+				String line;
+				while ((line = errReader.readLine()) != null) {
+					if (readyLatch.getCount() > 0) {
+						log.info("{}: {}", name, line);
+						if (line.equalsIgnoreCase(TAGGER_IS_READY_MESSAGE)) {
+							readyLatch.countDown();
+						}
+					} else {
+						log.warn("{}: {}", name, line);
+					}
+				}
+				if (readyLatch.getCount() > 0) {
+					fail(new IllegalStateException(
+							"hunpos-tagger exited before it was initialized"));
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
+
+	private static class Request {
+		private final List<String> tokens;
+		private final SettableFuture<List<String>> result = SettableFuture.create();
+
+		private Request(List<String> tokens) {
+			this.tokens = tokens;
+		}
+
+		private void fail(Throwable cause) {
+			result.setException(new HunposException(cause));
+		}
+	}
+}
@@ -3,21 +3,13 @@
  */
 package ru.kfu.itis.issst.uima.morph.hunpos;
 
-import static com.google.common.collect.Lists.newArrayList;
-
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.Reader;
-import java.io.UnsupportedEncodingException;
-import java.lang.Thread.State;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.annolab.tt4j.ExecutableResolver;
 import org.annolab.tt4j.PlatformDetector;
@@ -26,14 +18,17 @@ import org.annolab.tt4j.TokenHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import ru.kfu.itis.cll.uima.io.StreamGobblerBase;
-
-import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
-import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
+ * Pool of long-lived hunpos-tag processes. Processes are started by
+ * {@link #start()} or on the first request. A sentence is sent to the process
+ * with the least number of pending sentences, so sentences submitted by
+ * {@link #tag(List)} are tagged concurrently. A crashed process is replaced by
+ * a new one on the next request, while the requests that were pending in the
+ * crashed process fail.
  * 
  * @param <TT>
  *            token type
@@ -42,6 +37,8 @@ import com.google.common.collect.Lists;
  */
 public class HunposWrapper<TT> {
 
+	private static final long TAGGER_READY_MAX_TIMEOUT = 60000;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	// config fields
@@ -52,10 +49,12 @@ public class HunposWrapper<TT> {
 	private ExecutableResolver exeResolver;
 	private String processIOEncoding = "utf-8";
 	private File lexiconFile;
+	private int poolSize = 1;
 	// state fields
 	private File modelFile;
-	private String processCmd;
-	private Process process;
+	private List<String> processCmd;
+	private HunposProcess[] processes;
+	private int processesStarted;
 
 	{
 		// default configuration
@@ -69,9 +68,7 @@ public class HunposWrapper<TT> {
 	}
 
 	public void setModelName(String modelName) {
-		if (process != null) {
-			throw new IllegalStateException();
-		}
+		checkNotStarted();
 		if (!Objects.equal(this.modelName, modelName)) {
 			modelFile = null;
 		}
@@ -83,12 +80,28 @@ public class HunposWrapper<TT> {
 	}
 
 	public void setLexiconFile(File lexiconFile) {
-		if (process != null) {
-			throw new IllegalStateException();
-		}
+		checkNotStarted();
 		this.lexiconFile = lexiconFile;
 	}
 
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public void setPoolSize(int poolSize) {
+		checkNotStarted();
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+		}
+		this.poolSize = poolSize;
+	}
+
+	public void setExecutableResolver(ExecutableResolver exeResolver) {
+		checkNotStarted();
+		exeResolver.setPlatformDetector(platformDetector);
+		this.exeResolver = exeResolver;
+	}
+
 	public void setTokenAdapter(TokenAdapter<TT> tokenAdapter) {
 		this.tokenAdapter = tokenAdapter;
 	}
@@ -97,6 +110,36 @@ public class HunposWrapper<TT> {
 		this.tokenHandler = tokenHandler;
 	}
 
+	/**
+	 * Start all processes of the pool.
+	 */
+	public synchronized void start() throws IOException, HunposException {
+		initProcesses();
+		for (int i = 0; i < processes.length; i++) {
+			if (processes[i] == null) {
+				processes[i] = startProcess();
+			}
+		}
+	}
+
+	/**
+	 * Tag the given sentence asynchronously.
+	 * 
+	 * @param tokens
+	 *            token strings of a sentence
+	 * @return a future of tags. It has the same size as the given token list.
+	 *         It fails with {@link HunposException} if the process that
+	 *         tagged the sentence has crashed.
+	 */
+	public ListenableFuture<List<String>> tag(List<String> tokens)
+			throws IOException, HunposException {
+		return getProcess().tag(tokens);
+	}
+
+	/**
+	 * Tag the given sentence and pass the results to the token handler.
+	 * Blocks until the sentence is tagged.
+	 */
 	public void process(Collection<TT> tokens) throws IOException, HunposException {
 		if (tokenAdapter == null) {
 			throw new IllegalStateException("tokenAdapter is not set");
@@ -104,44 +147,37 @@ public class HunposWrapper<TT> {
 		if (tokenHandler == null) {
 			throw new IllegalStateException("tokenHandler is not set");
 		}
-		Process process = getTaggerProcess();
-		//
-		ResponseReader reader = new ResponseReader(tokens.iterator());
-		Thread readerThread = new Thread(reader);
-		readerThread.setName("Hunpos-tagger Output Reader");
-		readerThread.start();
-		// 
-		StreamGobblerBase errorStreamGobbler = StreamGobblerBase.toSystemOut(
-				process.getErrorStream());
-		Thread esgThread = new Thread(errorStreamGobbler);
-		esgThread.setName("Hunpos-tagger Error Stream Gobbler");
-		esgThread.start();
-		//
-		TokenWriter writer = new TokenWriter(tokens.iterator());
-		Thread writerThread = new Thread(writer);
-		writerThread.setName("Hunpos-tagger Input Writer");
-		writerThread.start();
-		//
-		try {
-			synchronized (reader) {
-				while (State.TERMINATED != readerThread.getState()) {
-					checkThreads(writer, reader, errorStreamGobbler);
+		List<String> tokenStrings = Lists.newArrayListWithExpectedSize(tokens.size());
+		for (TT token : tokens) {
+			tokenStrings.add(tokenAdapter.getText(token));
+		}
+		List<String> tags = getResult(tag(tokenStrings));
+		Iterator<String> tagIter = tags.iterator();
+		for (TT token : tokens) {
+			tokenHandler.token(token, tagIter.next(), null);
+		}
+	}
 
-					try {
-						reader.wait(30);
-					} catch (InterruptedException e) {
-						//
-					}
-				}
+	/**
+	 * Wait for the result of {@link #tag(List)}.
+	 */
+	public static List<String> getResult(Future<List<String>> future) throws HunposException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HunposException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof HunposException) {
+				throw (HunposException) e.getCause();
 			}
-		} finally {
-			errorStreamGobbler.done();
+			throw new HunposException(e.getCause());
 		}
 	}
 
 	public void destroy() {
-		log.info("Cleaning up hunpos-tagger process");
-		stopTaggerProcess();
+		log.info("Cleaning up hunpos-tagger processes");
+		stopTaggerProcesses();
 		setModelName(null);
 		if (exeResolver != null) {
 			exeResolver.destroy();
@@ -154,193 +190,50 @@ public class HunposWrapper<TT> {
 		super.finalize();
 	}
 
-	private void checkThreads(
-			TokenWriter writer, ResponseReader reader, StreamGobblerBase errGobbler)
-			throws HunposException {
-		if (writer.getException() != null) {
-			destroy();
-			throw new HunposException(writer.getException());
-		}
-		if (reader.getException() != null) {
-			destroy();
-			throw new HunposException(reader.getException());
-		}
-		if (errGobbler.getException() != null) {
-			destroy();
-			throw new HunposException(errGobbler.getException());
-		}
-	}
-
-	private class ResponseReader implements Runnable {
-		private Iterator<TT> tokenIter;
-		// state
-		private BufferedReader inReader;
-		private Throwable exception;
-
-		private ResponseReader(Iterator<TT> tokenIter) throws UnsupportedEncodingException {
-			this.tokenIter = tokenIter;
-			inReader = new BufferedReader(new InputStreamReader(
-					process.getInputStream(), processIOEncoding));
-		}
-
-		public Throwable getException() {
-			return exception;
-		}
-
-		@Override
-		public void run() {
-			try {
-				while (true) {
-					String line = inReader.readLine();
-					if (line == null) {
-						throw new IllegalStateException("Unexpected death of hunpos-tagger process");
-					}
-					if (line.isEmpty()) {
-						// means we are done with current sentence
-						break;
-					}
-					List<String> outFields = newArrayList(taggerOutputFieldsSplitter.split(line));
-					if (outFields.size() != 3) {
-						throw new IllegalStateException(String.format(
-								"Illegal output format in line:\n%s", line));
-					}
-					// String respTokenStr = outFields.get(0);
-					String tag = outFields.get(1);
-					if (tokenIter.hasNext()) {
-						TT token = tokenIter.next();
-						tokenHandler.token(token, tag, null);
-					} else {
-						throw new IllegalStateException();
-					}
-				}
-				if (tokenIter.hasNext()) {
-					throw new IllegalStateException();
-				}
-				synchronized (this) {
-					notifyAll();
-				}
-			} catch (IOException e) {
-				exception = e;
+	private synchronized HunposProcess getProcess() throws IOException, HunposException {
+		initProcesses();
+		HunposProcess result = null;
+		for (int i = 0; i < processes.length; i++) {
+			HunposProcess p = processes[i];
+			if (p != null && !p.isAlive()) {
+				log.warn("hunpos-tagger process #{} has died. Going to restart it...", i);
+				p.stop();
+				p = processes[i] = null;
 			}
-		}
-	}
-
-	private static Splitter taggerOutputFieldsSplitter = Splitter.on('\t');
-
-	private class TokenWriter implements Runnable {
-		private Iterator<TT> tokenIter;
-		// state
-		private PrintWriter outWriter;
-		private Throwable exception;
-
-		private TokenWriter(Iterator<TT> tokenIter) throws UnsupportedEncodingException {
-			this.tokenIter = tokenIter;
-			OutputStreamWriter osw = new OutputStreamWriter(
-					process.getOutputStream(), processIOEncoding);
-			outWriter = new PrintWriter(new BufferedWriter(osw), true);
-		}
-
-		@Override
-		public void run() {
-			try {
-				while (tokenIter.hasNext()) {
-					TT token = tokenIter.next();
-					String tokenStr = tokenAdapter.getText(token);
-					if (tokenStr.indexOf('\t') >= 0) {
-						throw new IllegalStateException(String.format(
-								"Token '%s' contains illegal characters"));
-					}
-					outWriter.print(tokenStr);
-					// \r\n (CRLF) does not work for Windows build of Hunpos
-					outWriter.print('\n');
-					outWriter.flush();
-				}
-				// print empty line to make sentence end
-				// \r\n (CRLF) does not work for Windows build of Hunpos
-				outWriter.print('\n');
-				outWriter.flush();
-			} catch (Throwable e) {
-				exception = e;
+			if (p == null) {
+				p = processes[i] = startProcess();
 			}
-		}
-
-		public Throwable getException() {
-			return exception;
-		}
-	}
-
-	private Process getTaggerProcess() throws IOException {
-		if (process == null) {
-			List<String> cmd = Lists.newArrayList();
-			cmd.add(exeResolver.getExecutable());
-
-			// TODO
-			// add hunpos-tag options from config fields
-			if (lexiconFile != null) {
-				cmd.add("-m");
-				cmd.add(lexiconFile.getPath());
-			}
-
-			cmd.add(getModelFile().getAbsolutePath());
-			processCmd = Joiner.on(' ').join(cmd);
-
-			log.trace("Invoking hunpos-tagger:\n{}", processCmd);
-			ProcessBuilder pb = new ProcessBuilder();
-			pb.command(cmd);
-			process = pb.start();
-			InitMessageReader imr = new InitMessageReader();
-			Thread imrThread = new Thread(imr);
-			imrThread.start();
-			try {
-				imrThread.join(TAGGER_READY_MAX_TIMEOUT);
-			} catch (InterruptedException e) {
-				log.error("Got interrupt.", e);
-				stopTaggerProcess();
-			}
-			if (imrThread.isAlive()) {
-				log.error("Can't initialize tagger - max timeout is passed. Going to kill process...");
-				stopTaggerProcess();
-				throw new IllegalStateException();
-			}
-			if (!imr.isReady()) {
-				throw new IllegalStateException("hunpos-tagger was not initialized properly. " +
-						"Check log messages");
+			if (result == null || p.getPendingRequests() < result.getPendingRequests()) {
+				result = p;
 			}
 		}
-		return process;
+		return result;
 	}
 
-	private static final String TAGGER_IS_READY_MESSAGE = "tagger compiled";
-	private static final long TAGGER_READY_MAX_TIMEOUT = 60000;
-
-	private class InitMessageReader implements Runnable {
-		private BufferedReader procOutputReader;
-		private boolean ready;
-
-		private InitMessageReader() throws IOException {
-			Reader r = new InputStreamReader(process.getErrorStream(), processIOEncoding);
-			procOutputReader = new BufferedReader(r);
+	private void initProcesses() throws IOException {
+		if (processes != null) {
+			return;
 		}
-
-		@Override
-		public void run() {
-			String line;
-			try {
-				while ((line = procOutputReader.readLine()) != null) {
-					log.info("hunpos-tagger: {}", line);
-					if (line.equalsIgnoreCase(TAGGER_IS_READY_MESSAGE)) {
-						ready = true;
-						break;
-					}
-				}
-			} catch (IOException e) {
-				throw new IllegalStateException(e);
-			}
+		List<String> cmd = Lists.newArrayList();
+		cmd.add(exeResolver.getExecutable());
+
+		// TODO
+		// add hunpos-tag options from config fields
+		if (lexiconFile != null) {
+			cmd.add("-m");
+			cmd.add(lexiconFile.getPath());
 		}
 
-		public boolean isReady() {
-			return ready;
-		}
+		cmd.add(getModelFile().getAbsolutePath());
+		processCmd = cmd;
+		processes = new HunposProcess[poolSize];
+	}
+
+	private HunposProcess startProcess() throws IOException, HunposException {
+		HunposProcess p = new HunposProcess(processCmd, processIOEncoding,
+				"hunpos-tagger-" + processesStarted++);
+		p.start(TAGGER_READY_MAX_TIMEOUT);
+		return p;
 	}
 
 	private File getModelFile() {
@@ -358,12 +251,22 @@ public class HunposWrapper<TT> {
 		return modelFile;
 	}
 
-	private void stopTaggerProcess() {
-		if (process != null) {
-			process.destroy();
-			process = null;
+	private void checkNotStarted() {
+		if (processes != null) {
+			throw new IllegalStateException();
+		}
+	}
+
+	private synchronized void stopTaggerProcesses() {
+		if (processes != null) {
+			for (HunposProcess p : processes) {
+				if (p != null) {
+					p.stop();
+				}
+			}
+			processes = null;
 			processCmd = null;
-			log.debug("Stopped tagger process.");
+			log.debug("Stopped tagger processes.");
 		}
 	}
 }
@@ -11,11 +11,18 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
+import org.annolab.tt4j.ExecutableResolver;
+import org.annolab.tt4j.PlatformDetector;
 import org.annolab.tt4j.TokenAdapter;
 import org.annolab.tt4j.TokenHandler;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
@@ -27,6 +34,9 @@ import com.google.common.collect.Lists;
  */
 public class HunposWrapperTest {
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	@Test
 	public void test() throws IOException, HunposException {
 		if (System.getProperty("hunpos.home") == null) {
@@ -54,6 +64,88 @@ public class HunposWrapperTest {
 		hunpos.destroy();
 	}
 
+	@Test
+	public void testPoolWithStub() throws Exception {
+		HunposWrapper<Token> hunpos = createStubWrapper(3);
+		hunpos.start();
+		List<List<String>> sentences = Lists.newArrayList();
+		List<Future<List<String>>> results = Lists.newArrayList();
+		for (int i = 0; i < 300; i++) {
+			List<String> sent = Lists.newArrayList();
+			for (int t = 0; t <= i % 17; t++) {
+				sent.add("s" + i + "t" + t);
+			}
+			sentences.add(sent);
+			results.add(hunpos.tag(sent));
+		}
+		for (int i = 0; i < sentences.size(); i++) {
+			Assert.assertEquals(expectedTags(sentences.get(i)),
+					HunposWrapper.getResult(results.get(i)));
+		}
+		// synchronous API
+		ListTokenHandler tokenHandler = new ListTokenHandler();
+		hunpos.setTokenHandler(tokenHandler);
+		hunpos.process(toTokens("one two three"));
+		Assert.assertEquals(newArrayList("one_T", "two_T", "three_T"), tokenHandler.getTags());
+		hunpos.destroy();
+	}
+
+	@Test
+	public void testRestartAfterCrash() throws Exception {
+		HunposWrapper<Token> hunpos = createStubWrapper(1);
+		List<String> sent = newArrayList("a", "b");
+		Assert.assertEquals(expectedTags(sent), HunposWrapper.getResult(hunpos.tag(sent)));
+		Future<List<String>> crashed = hunpos.tag(newArrayList("a", "__crash__"));
+		try {
+			HunposWrapper.getResult(crashed);
+			Assert.fail();
+		} catch (HunposException e) {
+			// expected
+		}
+		// the dead process is replaced by a new one
+		Assert.assertEquals(expectedTags(sent), HunposWrapper.getResult(hunpos.tag(sent)));
+		hunpos.destroy();
+	}
+
+	private HunposWrapper<Token> createStubWrapper(int poolSize) throws IOException {
+		Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+		final File stubFile = tempFolder.newFile("hunpos-tag");
+		FileUtils.copyURLToFile(getClass().getResource("/hunpos-tag-stub.sh"), stubFile);
+		Assert.assertTrue(stubFile.setExecutable(true));
+		HunposWrapper<Token> hunpos = new HunposWrapper<Token>();
+		hunpos.setExecutableResolver(new ExecutableResolver() {
+			@Override
+			public void setPlatformDetector(PlatformDetector platformDetector) {
+			}
+
+			@Override
+			public String getExecutable() {
+				return stubFile.getPath();
+			}
+
+			@Override
+			public void destroy() {
+			}
+		});
+		hunpos.setModelName(tempFolder.newFile("stub.model").getPath());
+		hunpos.setPoolSize(poolSize);
+		hunpos.setTokenAdapter(new TokenAdapter<Token>() {
+			@Override
+			public String getText(Token token) {
+				return token.string;
+			}
+		});
+		return hunpos;
+	}
+
+	private static List<String> expectedTags(List<String> tokens) {
+		List<String> result = Lists.newArrayList();
+		for (String t : tokens) {
+			result.add(t + "_T");
+		}
+		return result;
+	}
+
 	private void testTagging(HunposWrapper<Token> hunpos, String text)
 			throws IOException, HunposException {
 		ListTokenHandler tokenHandler = new ListTokenHandler();
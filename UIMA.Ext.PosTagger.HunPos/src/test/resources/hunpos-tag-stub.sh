@@ -0,0 +1,13 @@
+#!/bin/sh
+# Imitates hunpos-tag: the tag of a token is the token with '_T' suffix.
+# The token '__crash__' makes the process exit.
+echo "tagger compiled" >&2
+while IFS= read -r line; do
+	if [ -z "$line" ]; then
+		echo
+	elif [ "$line" = "__crash__" ]; then
+		exit 3
+	else
+		printf '%s\t%s_T\t\n' "$line" "$line"
+	fi
+done
@@ -3,6 +3,7 @@
  */
 package ru.kfu.itis.issst.uima.postagger.opennlp;
 
+import static ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryUtils.lookupToken;
 import static ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
 
 import java.util.BitSet;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
 
 import ru.kfu.cll.uima.tokenizer.fstype.Token;
 import ru.kfu.cll.uima.tokenizer.fstype.W;
@@ -18,11 +20,10 @@ import ru.kfu.itis.issst.uima.morph.commons.GramModelBasedTagMapper;
 import ru.kfu.itis.issst.uima.morph.commons.PunctuationUtils;
 import ru.kfu.itis.issst.uima.morph.commons.TagMapper;
 import ru.kfu.itis.issst.uima.morph.commons.TwoTagPredicate;
-import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
 import ru.kfu.itis.issst.uima.morph.model.Grammeme;
-import ru.kfu.itis.issst.uima.morph.model.Wordform;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
@@ -46,6 +47,14 @@ public class DictionaryBasedContextGenerator {
 	private final BitSet targetCategoriesMask;
 	// named predicates as feature extractors
 	private Map<String, TwoTagPredicate> namedPredicates;
+	// tag string -> grammeme bits, the number of distinct tags is bounded by the model outcomes
+	private final ConcurrentMap<String, BitSet> tagBitsCache = Maps.newConcurrentMap();
+	private final ThreadLocal<WordformBuffer> wfBuffer = new ThreadLocal<WordformBuffer>() {
+		@Override
+		protected WordformBuffer initialValue() {
+			return new WordformBuffer();
+		}
+	};
 
 	public DictionaryBasedContextGenerator(Iterable<String> targetGramCategories,
 			MorphDictionary morphDict) {
@@ -74,28 +83,40 @@ public class DictionaryBasedContextGenerator {
 	}
 
 	public List<String> extract(Token focusToken, String prevTag) {
+		return extract(lookup(focusToken), prevTag);
+	}
+
+	/**
+	 * @param focusToken
+	 *            a token
+	 * @return the part of the context that does not depend on previous tags.
+	 *         It can be passed to {@link #extract(TokenEntry, String)} for any
+	 *         previous tag.
+	 */
+	public TokenEntry lookup(Token focusToken) {
 		if (!(focusToken instanceof W)) {
-			return ImmutableList.of();
+			return NOT_WORD_ENTRY;
 		}
 		String form = focusToken.getCoveredText();
-		if (!WordUtils.isRussianWord(form)) {
-			return ImmutableList.of("DL=NotRussian");
+		WordformBuffer dictWfs = wfBuffer.get();
+		if (lookupToken(morphDict, form, dictWfs) == null) {
+			return NOT_RUSSIAN_ENTRY;
 		}
-		form = WordUtils.normalizeToDictionaryForm(form);
-		List<Wordform> dictWfs = morphDict.getEntries(form);
-		if (dictWfs == null || dictWfs.isEmpty()) {
-			return ImmutableList.of("DL=Unknown");
+		if (dictWfs.isEmpty()) {
+			return UNKNOWN_ENTRY;
 		}
-		List<BitSet> dictWfBitSets = Lists.transform(dictWfs,
-				Wordform.allGramBitsFunction(morphDict));
 		//
-		Set<BitSet> tokenPossibleTags = Sets.newHashSetWithExpectedSize(dictWfBitSets.size());
-		for (BitSet dictWfBits : dictWfBitSets) {
-			BitSet tokenPossibleBits = (BitSet) dictWfBits.clone();
+		Set<BitSet> tokenPossibleTags = Sets.newHashSetWithExpectedSize(dictWfs.size());
+		for (int i = 0; i < dictWfs.size(); i++) {
+			int tagId = dictWfs.getTagId(i);
+			if (isSeenBefore(dictWfs, i, tagId)) {
+				continue;
+			}
+			BitSet tokenPossibleBits = (BitSet) morphDict.getTag(tagId).clone();
 			tokenPossibleBits.and(targetCategoriesMask);
 			tokenPossibleTags.add(tokenPossibleBits);
 		}
-		List<String> resultList = Lists.newArrayListWithExpectedSize(tokenPossibleTags.size());
+		List<String> dictFeatures = Lists.newArrayListWithExpectedSize(tokenPossibleTags.size());
 		for (BitSet tokenPossibleBits : tokenPossibleTags) {
 			String featValue;
 			if (tokenPossibleBits.isEmpty()) {
@@ -103,24 +124,82 @@ public class DictionaryBasedContextGenerator {
 			} else {
 				featValue = gramJoiner.join(gramModel.toGramSet(tokenPossibleBits));
 			}
-			resultList.add("DL=" + featValue);
+			dictFeatures.add("DL=" + featValue);
+		}
+		return new TokenEntry(ImmutableList.copyOf(dictFeatures),
+				ImmutableList.copyOf(tokenPossibleTags));
+	}
+
+	/**
+	 * @param entry
+	 *            a result of {@link #lookup(Token)}
+	 * @param prevTag
+	 *            a tag of the previous token, may be null
+	 * @return the same features as {@link #extract(Token, String)} does
+	 */
+	public List<String> extract(TokenEntry entry, String prevTag) {
+		if (entry.possibleTags.isEmpty()
+				|| prevTag == null || PunctuationUtils.isPunctuationTag(prevTag)) {
+			return entry.dictFeatures;
 		}
-		if (prevTag != null && !PunctuationUtils.isPunctuationTag(prevTag)) {
-			// add the name of a predicate if it yields true for any pair <prevTag, dictTag>, dictTag in tokenPossibleTags
-			BitSet prevTagBits = toGramBits(gramModel,
-					tagMapper.parseTag(prevTag, focusToken.getCoveredText()));
-			for (Map.Entry<String, TwoTagPredicate> predEntry : namedPredicates.entrySet()) {
-				for (BitSet dictTag : tokenPossibleTags) {
-					if (predEntry.getValue().apply(prevTagBits, dictTag)) {
-						resultList.add(predEntry.getKey());
-						break;
-					}
+		List<String> resultList = Lists.newArrayListWithExpectedSize(
+				entry.dictFeatures.size() + namedPredicates.size());
+		resultList.addAll(entry.dictFeatures);
+		// add the name of a predicate if it yields true for any pair <prevTag, dictTag>, dictTag in tokenPossibleTags
+		BitSet prevTagBits = getTagBits(prevTag);
+		for (Map.Entry<String, TwoTagPredicate> predEntry : namedPredicates.entrySet()) {
+			for (BitSet dictTag : entry.possibleTags) {
+				if (predEntry.getValue().apply(prevTagBits, dictTag)) {
+					resultList.add(predEntry.getKey());
+					break;
 				}
 			}
 		}
 		return resultList;
 	}
 
+	// the result MUST NOT be modified
+	private BitSet getTagBits(String tag) {
+		BitSet result = tagBitsCache.get(tag);
+		if (result == null) {
+			// the tag mapper does not use a token text
+			result = toGramBits(gramModel, tagMapper.parseTag(tag, null));
+			tagBitsCache.putIfAbsent(tag, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Dictionary features of a token that do not depend on previous tags.
+	 * Instances are immutable.
+	 */
+	public static class TokenEntry {
+		private final List<String> dictFeatures;
+		// in the iteration order of the set they were collected into
+		private final List<BitSet> possibleTags;
+
+		private TokenEntry(List<String> dictFeatures, List<BitSet> possibleTags) {
+			this.dictFeatures = dictFeatures;
+			this.possibleTags = possibleTags;
+		}
+	}
+
+	private static final TokenEntry NOT_WORD_ENTRY = new TokenEntry(
+			ImmutableList.<String> of(), ImmutableList.<BitSet> of());
+	private static final TokenEntry NOT_RUSSIAN_ENTRY = new TokenEntry(
+			ImmutableList.of("DL=NotRussian"), ImmutableList.<BitSet> of());
+	private static final TokenEntry UNKNOWN_ENTRY = new TokenEntry(
+			ImmutableList.of("DL=Unknown"), ImmutableList.<BitSet> of());
+
+	private static boolean isSeenBefore(WordformBuffer wfs, int index, int tagId) {
+		for (int i = 0; i < index; i++) {
+			if (wfs.getTagId(i) == tagId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private static final Joiner gramJoiner = Joiner.on('_');
 
 }
@@ -9,8 +9,6 @@ import static ru.kfu.itis.issst.uima.morph.model.Wordform.allGramBitsFunction;
 import java.util.BitSet;
 import java.util.List;
 
-import opennlp.tools.util.SequenceValidator;
-
 import org.apache.uima.UimaContext;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.fit.component.initialize.ExternalResourceInitializer;
@@ -40,7 +38,7 @@ import com.google.common.collect.Lists;
  * 
  */
 public class DictionaryGrammemeLevelTokenSequenceValidator
-		implements SequenceValidator<Token>, Initializable {
+		implements PositionalSequenceValidator<Token>, Initializable {
 
 	public static final String RESOURCE_MORPH_DICT = "morphDict";
 
@@ -63,9 +63,33 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
 		return morphDict;
 	}
 
+	/**
+	 * @return the generator of dictionary features, or null if the model does
+	 *         not use a dictionary
+	 */
+	public DictionaryBasedContextGenerator getDictContextGenerator() {
+		return dictContextGen;
+	}
+
 	@Override
 	public String[] getContext(int index, Token[] sequence, String[] priorDecisions,
 			Object[] additionalContext) {
+		Set<String> contexts = getTokenContext(index, sequence, additionalContext);
+		ContextGeneratorUtils.addPreviousTags(index, priorDecisions, prevTagsInHistory, contexts);
+		if (dictContextGen != null) {
+			String prevTag = ContextGeneratorUtils.getPreviousTag(index, priorDecisions);
+			contexts.addAll(dictContextGen.extract(sequence[index], prevTag));
+		}
+		return contexts.toArray(new String[contexts.size()]);
+	}
+
+	/**
+	 * @return encoded features of the feature extractors, i.e., the part of
+	 *         the context that depends neither on previous tags nor on the
+	 *         dictionary. The result is a modifiable set with the iteration
+	 *         order of {@link #getContext(int, Token[], String[], Object[])}.
+	 */
+	public Set<String> getTokenContext(int index, Token[] sequence, Object[] additionalContext) {
 		if (additionalContext == null || additionalContext.length < 1) {
 			throw sentenceExpected();
 		}
@@ -73,7 +97,6 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
 			throw sentenceExpected();
 		}
 		Annotation sent = (Annotation) additionalContext[0];
-		// TODO cache features that does not dependent on prev tags 
 		Token curToken = sequence[index];
 		List<Feature> features = Lists.newLinkedList();
 		try {
@@ -99,12 +122,7 @@ public class FeatureExtractorsBasedContextGenerator implements BeamSearchContext
 				throw new RuntimeException(e);
 			}
 		}
-		ContextGeneratorUtils.addPreviousTags(index, priorDecisions, prevTagsInHistory, contexts);
-		if (dictContextGen != null) {
-			String prevTag = ContextGeneratorUtils.getPreviousTag(index, priorDecisions);
-			contexts.addAll(dictContextGen.extract(curToken, prevTag));
-		}
-		return contexts.toArray(new String[contexts.size()]);
+		return contexts;
 	}
 
 	private RuntimeException sentenceExpected() {
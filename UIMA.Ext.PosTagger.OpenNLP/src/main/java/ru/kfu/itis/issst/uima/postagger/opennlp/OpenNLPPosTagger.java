@@ -29,6 +29,7 @@ import ru.kfu.cll.uima.tokenizer.fstype.W;
 import ru.kfu.itis.cll.uima.cas.FSUtils;
 import ru.kfu.itis.issst.uima.postagger.PosTaggerAPI;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -81,7 +82,9 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
     // state
     private POSModel modelAggregate;
     private SequenceValidator<Token> sequenceValidator;
+    // one of the following is used
     private BeamSearch<Token> beam;
+    private PosBeamSearch posBeam;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -98,7 +101,12 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
         POSTaggerFactory factory = modelAggregate.getFactory();
         AbstractModel posModel = modelAggregate.getPosModel();
         BeamSearchContextGenerator<Token> contextGen = factory.getContextGenerator();
-        beam = new BeamSearch<Token>(beamSize, contextGen, posModel, sequenceValidator, 0);
+        if (contextGen instanceof FeatureExtractorsBasedContextGenerator) {
+            posBeam = new PosBeamSearch(beamSize, (FeatureExtractorsBasedContextGenerator) contextGen,
+                    posModel, sequenceValidator);
+        } else {
+            beam = new BeamSearch<Token>(beamSize, contextGen, posModel, sequenceValidator, 0);
+        }
     }
 
     @Override
@@ -111,13 +119,12 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
     private void process(JCas jCas, Sentence sent) throws AnalysisEngineProcessException {
         Collection<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
         Token[] tokenArr = tokens.toArray(new Token[tokens.size()]);
-        Sequence bestOutSeq = beam.bestSequence(tokenArr, new Object[]{sent});
-        if (bestOutSeq == null) {
+        List<String> out = bestSequence(tokenArr, sent);
+        if (out == null) {
             getLogger().warn(String.format("Can't infer best sequence for sentence in %s:\n%s",
                     getDocumentUri(jCas), toPrettyString(sent)));
             return;
         }
-        List<String> out = bestOutSeq.getOutcomes();
         if (out.size() != tokens.size()) {
             throw new IllegalStateException(String.format("InputSeq.size != OutputSeq.size"));
         }
@@ -144,6 +151,15 @@ public class OpenNLPPosTagger extends JCasAnnotator_ImplBase {
         }
     }
 
+    private List<String> bestSequence(Token[] tokenArr, Sentence sent) {
+        if (posBeam != null) {
+            String[] outArr = posBeam.bestSequence(tokenArr, new Object[]{sent});
+            return outArr == null ? null : Arrays.asList(outArr);
+        }
+        Sequence bestOutSeq = beam.bestSequence(tokenArr, new Object[]{sent});
+        return bestOutSeq == null ? null : bestOutSeq.getOutcomes();
+    }
+
     private boolean isWordTag(Token token, String tag) {
         // TODO check whether tag is a punctuation tag
         return token instanceof NUM || token instanceof W;
@@ -0,0 +1,287 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.postagger.opennlp;
+
+import com.google.common.collect.Lists;
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.BeamSearch;
+import opennlp.tools.util.ListHeap;
+import opennlp.tools.util.SequenceValidator;
+import ru.kfu.cll.uima.tokenizer.fstype.Token;
+import ru.kfu.itis.issst.uima.postagger.opennlp.DictionaryBasedContextGenerator.TokenEntry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A beam decoder for {@link FeatureExtractorsBasedContextGenerator} that yields
+ * the same best sequence as {@link BeamSearch#bestSequence(Object[], Object[])}
+ * with the same beam size, context generator, model and validator, but avoids
+ * its redundant work:
+ * <ul>
+ * <li>features that do not depend on previous tags (the feature extractors
+ * output and the dictionary look-up) are computed once per position instead of
+ * once per hypothesis;</li>
+ * <li>verdicts of a {@link PositionalSequenceValidator} are computed once per
+ * (position, outcome) pair;</li>
+ * <li>score arrays are reused across positions and sentences.</li>
+ * </ul>
+ * The search itself mirrors {@link BeamSearch} step by step, including the
+ * order of context predicates passed to the model, so scores are equal
+ * bit-by-bit.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public class PosBeamSearch {
+
+	// the same as in BeamSearch#bestSequence
+	private static final double MIN_SEQUENCE_SCORE = -100000;
+	private static final byte VERDICT_UNKNOWN = 0;
+	private static final byte VERDICT_VALID = 1;
+	private static final byte VERDICT_INVALID = 2;
+
+	// config fields
+	private final int size;
+	private final FeatureExtractorsBasedContextGenerator cg;
+	private final DictionaryBasedContextGenerator dictCg;
+	private final int prevTagsInHistory;
+	private final MaxentModel model;
+	private final SequenceValidator<Token> validator;
+	private final boolean positionalValidator;
+	// derived
+	private final int numOutcomes;
+	private final String[] outcomes;
+	// 'ptN=<outcome>' strings, [N-1][outcome index], filled lazily
+	private final String[][] prevTagFeatures;
+	// state fields
+	private final ListHeap<Hypothesis> prev;
+	private final ListHeap<Hypothesis> next;
+	private final double[] probs;
+	private final double[] sortedScores;
+	private final List<String> contextBuf = Lists.newArrayList();
+	// [position * numOutcomes + outcome index]
+	private byte[] verdicts = new byte[0];
+
+	public PosBeamSearch(int size, FeatureExtractorsBasedContextGenerator cg,
+			MaxentModel model, SequenceValidator<Token> validator) {
+		this.size = size;
+		this.cg = cg;
+		this.dictCg = cg.getDictContextGenerator();
+		this.prevTagsInHistory = cg.getPrevTagsInHistory();
+		this.model = model;
+		this.validator = validator;
+		this.positionalValidator = validator instanceof PositionalSequenceValidator;
+		this.numOutcomes = model.getNumOutcomes();
+		this.outcomes = new String[numOutcomes];
+		for (int o = 0; o < numOutcomes; o++) {
+			outcomes[o] = model.getOutcome(o);
+		}
+		this.prevTagFeatures = new String[prevTagsInHistory][numOutcomes];
+		this.prev = new ListHeap<Hypothesis>(size);
+		this.next = new ListHeap<Hypothesis>(size);
+		this.probs = new double[numOutcomes];
+		this.sortedScores = new double[numOutcomes];
+	}
+
+	/**
+	 * @param sequence
+	 *            tokens of a sentence
+	 * @param additionalContext
+	 *            the same as for
+	 *            {@link FeatureExtractorsBasedContextGenerator#getContext(int, Token[], String[], Object[])}
+	 * @return the best outcome sequence, or null if there is no valid one
+	 */
+	public String[] bestSequence(Token[] sequence, Object[] additionalContext) {
+		prepareVerdicts(sequence.length);
+		ListHeap<Hypothesis> prev = this.prev;
+		ListHeap<Hypothesis> next = this.next;
+		prev.clear();
+		next.clear();
+		prev.add(Hypothesis.ROOT);
+		for (int i = 0; i < sequence.length; i++) {
+			// token-local part of the context
+			Set<String> tokenContextSet = cg.getTokenContext(i, sequence, additionalContext);
+			String[] tokenContext = tokenContextSet.toArray(new String[tokenContextSet.size()]);
+			TokenEntry dictEntry = dictCg == null ? null : dictCg.lookup(sequence[i]);
+			int sz = Math.min(size, prev.size());
+			for (int sc = 0; prev.size() > 0 && sc < sz; sc++) {
+				Hypothesis top = prev.extract();
+				String[] contexts = getContext(top, tokenContext, tokenContextSet, dictEntry);
+				double[] scores = model.eval(contexts, probs);
+				System.arraycopy(scores, 0, sortedScores, 0, numOutcomes);
+				Arrays.sort(sortedScores);
+				double min = sortedScores[Math.max(0, numOutcomes - size)];
+				String[] topOutcomes = null;
+				for (int p = 0; p < numOutcomes; p++) {
+					if (scores[p] < min) {
+						continue;
+					}
+					if (!positionalValidator && topOutcomes == null) {
+						topOutcomes = toOutcomes(top, top.length);
+					}
+					if (isValid(i, p, sequence, topOutcomes)) {
+						Hypothesis h = new Hypothesis(top, p, scores[p]);
+						if (h.score > MIN_SEQUENCE_SCORE) {
+							next.add(h);
+						}
+					}
+				}
+				if (next.size() == 0) {
+					// if no advanced sequences, advance all valid
+					for (int p = 0; p < numOutcomes; p++) {
+						if (!positionalValidator && topOutcomes == null) {
+							topOutcomes = toOutcomes(top, top.length);
+						}
+						if (isValid(i, p, sequence, topOutcomes)) {
+							Hypothesis h = new Hypothesis(top, p, scores[p]);
+							if (h.score > MIN_SEQUENCE_SCORE) {
+								next.add(h);
+							}
+						}
+					}
+				}
+			}
+			// make prev = next; and re-init next (we reuse existing prev set once we clear it)
+			prev.clear();
+			ListHeap<Hypothesis> tmp = prev;
+			prev = next;
+			next = tmp;
+		}
+		if (prev.size() == 0) {
+			return null;
+		}
+		Hypothesis best = prev.extract();
+		return toOutcomes(best, sequence.length);
+	}
+
+	private String[] getContext(Hypothesis top, String[] tokenContext,
+								Set<String> tokenContextSet, TokenEntry dictEntry) {
+		// the same order as in FeatureExtractorsBasedContextGenerator#getContext
+		List<String> buf = contextBuf;
+		buf.clear();
+		Collections.addAll(buf, tokenContext);
+		Hypothesis h = top;
+		for (int pt = 1; pt <= prevTagsInHistory && h.length > 0; pt++) {
+			addIfAbsent(buf, tokenContext.length, tokenContextSet, getPrevTagFeature(pt, h.outcome));
+			h = h.parent;
+		}
+		if (dictEntry != null) {
+			String prevTag = top.length > 0 ? outcomes[top.outcome] : null;
+			for (String f : dictCg.extract(dictEntry, prevTag)) {
+				addIfAbsent(buf, tokenContext.length, tokenContextSet, f);
+			}
+		}
+		return buf.toArray(new String[buf.size()]);
+	}
+
+	private static void addIfAbsent(List<String> buf, int tokenContextLength,
+									Set<String> tokenContextSet, String f) {
+		if (tokenContextSet.contains(f)) {
+			return;
+		}
+		// the number of features after the token context is small
+		for (int j = tokenContextLength; j < buf.size(); j++) {
+			if (buf.get(j).equals(f)) {
+				return;
+			}
+		}
+		buf.add(f);
+	}
+
+	private String getPrevTagFeature(int pt, int outcome) {
+		String result = prevTagFeatures[pt - 1][outcome];
+		if (result == null) {
+			result = new StringBuilder("pt").append(pt)
+					.append('=')
+					.append(outcomes[outcome])
+					.toString();
+			prevTagFeatures[pt - 1][outcome] = result;
+		}
+		return result;
+	}
+
+	private void prepareVerdicts(int seqLength) {
+		if (!positionalValidator) {
+			return;
+		}
+		int required = seqLength * numOutcomes;
+		if (verdicts.length < required) {
+			verdicts = new byte[required];
+		} else {
+			Arrays.fill(verdicts, 0, required, VERDICT_UNKNOWN);
+		}
+	}
+
+	private boolean isValid(int i, int outcome, Token[] sequence, String[] topOutcomes) {
+		if (validator == null) {
+			return true;
+		}
+		if (!positionalValidator) {
+			return validator.validSequence(i, sequence, topOutcomes, outcomes[outcome]);
+		}
+		int vIndex = i * numOutcomes + outcome;
+		byte v = verdicts[vIndex];
+		if (v == VERDICT_UNKNOWN) {
+			// a positional validator ignores previous outcomes
+			v = validator.validSequence(i, sequence, null, outcomes[outcome])
+					? VERDICT_VALID : VERDICT_INVALID;
+			verdicts[vIndex] = v;
+		}
+		return v == VERDICT_VALID;
+	}
+
+	private String[] toOutcomes(Hypothesis h, int length) {
+		String[] result = new String[length];
+		for (; h.length > 0; h = h.parent) {
+			result[h.length - 1] = outcomes[h.outcome];
+		}
+		return result;
+	}
+
+	/**
+	 * A counterpart of {@link opennlp.tools.util.Sequence} that shares the
+	 * prefix with its parent.
+	 */
+	private static final class Hypothesis implements Comparable<Hypothesis> {
+
+		private static final Hypothesis ROOT = new Hypothesis();
+
+		private final Hypothesis parent;
+		private final int outcome;
+		private final int length;
+		private final double score;
+
+		private Hypothesis() {
+			this.parent = null;
+			this.outcome = -1;
+			this.length = 0;
+			this.score = 0;
+		}
+
+		private Hypothesis(Hypothesis parent, int outcome, double p) {
+			this.parent = parent;
+			this.outcome = outcome;
+			this.length = parent.length + 1;
+			// the same as in Sequence(Sequence, String, double)
+			this.score = parent.score + Math.log(p);
+		}
+
+		// the same as Sequence#compareTo
+		@Override
+		public int compareTo(Hypothesis o) {
+			if (score < o.score) {
+				return 1;
+			}
+			if (score > o.score) {
+				return -1;
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.postagger.opennlp;
+
+import opennlp.tools.util.SequenceValidator;
+
+/**
+ * A {@link SequenceValidator} whose verdict depends only on a position in the
+ * input sequence and a candidate outcome, i.e., it ignores outcomes of the
+ * previous positions. This allows {@link PosBeamSearch} to compute the verdict
+ * once per (position, outcome) pair.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ */
+public interface PositionalSequenceValidator<T> extends SequenceValidator<T> {
+}
@@ -3,7 +3,6 @@
  */
 package ru.kfu.itis.issst.uima.postagger.opennlp;
 
-import opennlp.tools.util.SequenceValidator;
 import ru.kfu.cll.uima.tokenizer.fstype.NUM;
 import ru.kfu.cll.uima.tokenizer.fstype.PM;
 import ru.kfu.cll.uima.tokenizer.fstype.SPECIAL;
@@ -15,7 +14,7 @@ import ru.kfu.itis.issst.uima.morph.commons.PunctuationUtils;
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
-public class PunctuationTokenSequenceValidator implements SequenceValidator<Token> {
+public class PunctuationTokenSequenceValidator implements PositionalSequenceValidator<Token> {
 
 	@Override
 	public boolean validSequence(int i, Token[] inputSequence, String[] outcomesSequence,
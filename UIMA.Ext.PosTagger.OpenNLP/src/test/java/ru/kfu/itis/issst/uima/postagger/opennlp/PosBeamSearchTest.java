@@ -0,0 +1,204 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.postagger.opennlp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import opennlp.maxent.GIS;
+import opennlp.model.Event;
+import opennlp.model.ListEventStream;
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.BeamSearch;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.SequenceValidator;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.cll.uima.tokenizer.fstype.NUM;
+import ru.kfu.cll.uima.tokenizer.fstype.PM;
+import ru.kfu.cll.uima.tokenizer.fstype.Token;
+import ru.kfu.cll.uima.tokenizer.fstype.W;
+import ru.kfu.itis.issst.uima.postagger.PosTaggerAPI;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MorphDictionaryImpl;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.XmlDictionaryParser;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Checks that {@link PosBeamSearch} yields the same sequences as
+ * {@link BeamSearch}. The model is trained on a tiny generated corpus with
+ * ambiguous and unknown words.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class PosBeamSearchTest {
+
+	// from the test-jar of UIMA.Ext.Morph.Dictionary.OpenCorpora
+	private static final String DICT_XML_RESOURCE = "/dict.opcorpora.test.xml";
+
+	// {form, tags...}, a tag is chosen randomly
+	private static final String[][] LEXICON = {
+			{ "село", "NOUN&neut&sing&nomn", "NOUN&neut&sing&accs", "VERB&neut&sing" },
+			{ "села", "VERB&femn&sing", "NOUN&neut&sing&gent" },
+			{ "сел", "VERB&masc&sing" },
+			{ "а", "CONJ", "PRCL" },
+			{ "водохранилищный", "ADJF&masc&sing&nomn" },
+			{ "естествоиспытатель", "NOUN&masc&sing&nomn" },
+			{ "котсуолд", "NOUN&masc&sing&nomn" },
+			{ "внятно", "ADVB" },
+			{ "отсортировать", "INFN" },
+			{ "медален", "ADJS&masc&sing" },
+			{ "телотроха", "NOUN&femn&sing&nomn" },
+			{ "глокая", "ADJF&femn&sing&nomn", "NOUN&femn&sing&nomn" },
+			{ "куздра", "NOUN&femn&sing&nomn" },
+			{ "Legendia", "NOUN&femn&sing", "null" },
+			{ "42", "NUMR" },
+			{ ",", "," },
+			{ "—", "--" } };
+
+	private static TypeSystemDescription tsd;
+	private static MorphDictionaryImpl dict;
+	private static FeatureExtractorsBasedContextGenerator cg;
+	private static MaxentModel model;
+
+	@BeforeClass
+	public static void trainModel() throws Exception {
+		InputStream in = new BufferedInputStream(
+				PosBeamSearchTest.class.getResourceAsStream(DICT_XML_RESOURCE));
+		try {
+			dict = XmlDictionaryParser.parse(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		tsd = TypeSystemDescriptionFactory.createTypeSystemDescription(
+				TokenizerAPI.TYPESYSTEM_TOKENIZER,
+				SentenceSplitterAPI.TYPESYSTEM_SENTENCES,
+				PosTaggerAPI.TYPESYSTEM_POSTAGGER);
+		cg = new DefaultFeatureExtractors(2, 2, 2,
+				Arrays.asList("POST", "NMbr", "GNdr", "CAse"), dict);
+		List<Event> events = Lists.newArrayList();
+		JCas jCas = createDocument(new Random(5), 150);
+		Random tagRnd = new Random(7);
+		for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+			Token[] tokens = toArray(JCasUtil.selectCovered(jCas, Token.class, sent));
+			String[] tags = new String[tokens.length];
+			for (int i = 0; i < tokens.length; i++) {
+				tags[i] = randomTag(tokens[i].getCoveredText(), tagRnd);
+			}
+			events.addAll(Arrays.asList(POSTokenEventStream.generateEvents(sent, tokens, tags, cg)));
+		}
+		model = GIS.trainModel(new ListEventStream(events), 30, 1);
+		assertTrue(model.getNumOutcomes() > 10);
+	}
+
+	@Test
+	public void testWithoutValidator() throws Exception {
+		checkEquivalence(null);
+	}
+
+	@Test
+	public void testWithPositionalValidator() throws Exception {
+		checkEquivalence(new PunctuationTokenSequenceValidator());
+	}
+
+	@Test
+	public void testWithHistoryDependentValidator() throws Exception {
+		checkEquivalence(new SequenceValidator<Token>() {
+			@Override
+			public boolean validSequence(int i, Token[] inputSequence,
+					String[] outcomesSequence, String outcome) {
+				// forbid the same tag twice in a row
+				return i == 0 || !outcome.equals(outcomesSequence[i - 1]);
+			}
+		});
+	}
+
+	private void checkEquivalence(SequenceValidator<Token> validator) throws Exception {
+		JCas jCas = createDocument(new Random(11), 50);
+		for (int beamSize : new int[] { 1, 3, 5 }) {
+			BeamSearch<Token> beam = new BeamSearch<Token>(beamSize, cg, model, validator, 0);
+			PosBeamSearch posBeam = new PosBeamSearch(beamSize, cg, model, validator);
+			// the decoder instance is reused across sentences
+			for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+				Token[] tokens = toArray(JCasUtil.selectCovered(jCas, Token.class, sent));
+				Object[] additionalContext = new Object[] { sent };
+				Sequence expectedSeq = beam.bestSequence(tokens, additionalContext);
+				String[] expected = expectedSeq == null ? null
+						: expectedSeq.getOutcomes().toArray(new String[0]);
+				String[] actual = posBeam.bestSequence(tokens, additionalContext);
+				assertArrayEquals("beam size: " + beamSize + ", sentence: " + sent.getCoveredText(),
+						expected, actual);
+			}
+		}
+	}
+
+	private static String randomTag(String form, Random rnd) {
+		for (String[] entry : LEXICON) {
+			if (entry[0].equals(form)) {
+				return entry[1 + rnd.nextInt(entry.length - 1)];
+			}
+		}
+		return ".";
+	}
+
+	private static Token[] toArray(List<Token> tokens) {
+		return tokens.toArray(new Token[tokens.size()]);
+	}
+
+	private static JCas createDocument(Random rnd, int sentNum) throws Exception {
+		JCas jCas = JCasFactory.createJCas(tsd);
+		StringBuilder text = new StringBuilder();
+		List<int[]> sentSpans = Lists.newArrayList();
+		List<int[]> tokenSpans = Lists.newArrayList();
+		for (int s = 0; s < sentNum; s++) {
+			int sentBegin = text.length();
+			int length = 1 + rnd.nextInt(10);
+			for (int t = 0; t <= length; t++) {
+				String form = t == length ? "." : LEXICON[rnd.nextInt(LEXICON.length)][0];
+				if (text.length() > sentBegin) {
+					text.append(' ');
+				}
+				tokenSpans.add(new int[] { text.length(), text.length() + form.length() });
+				text.append(form);
+			}
+			sentSpans.add(new int[] { sentBegin, text.length() });
+			text.append(' ');
+		}
+		jCas.setDocumentText(text.toString());
+		for (int[] span : sentSpans) {
+			new Sentence(jCas, span[0], span[1]).addToIndexes();
+		}
+		for (int[] span : tokenSpans) {
+			char firstChar = text.charAt(span[0]);
+			Token t;
+			if (Character.isLetter(firstChar)) {
+				t = new W(jCas, span[0], span[1]);
+			} else if (Character.isDigit(firstChar)) {
+				t = new NUM(jCas, span[0], span[1]);
+			} else {
+				t = new PM(jCas, span[0], span[1]);
+			}
+			t.addToIndexes();
+		}
+		return jCas;
+	}
+}
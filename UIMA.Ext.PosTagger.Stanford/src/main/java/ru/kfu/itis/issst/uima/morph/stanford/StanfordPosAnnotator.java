@@ -9,6 +9,11 @@ import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -25,64 +30,170 @@ import ru.kfu.cll.uima.tokenizer.fstype.NUM;
 import ru.kfu.cll.uima.tokenizer.fstype.Token;
 import ru.kfu.cll.uima.tokenizer.fstype.W;
 import ru.kfu.itis.cll.uima.cas.FSUtils;
+import ru.kfu.itis.cll.uima.util.AnnotatorUtils;
 import ru.kfu.itis.cll.uima.util.DocumentUtils;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import edu.stanford.nlp.ling.TaggedWord;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 
 /**
+ * Tags tokens of each sentence by the Stanford MaxentTagger. Token texts of
+ * all sentences are collected in one pass over the token index. If
+ * {@value #PARAM_THREADS} is greater than 1, sentences of a CAS are tagged
+ * concurrently by threads that share the loaded model. Word annotations are
+ * added on the calling thread in document order in any case.
+ * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
 public class StanfordPosAnnotator extends JCasAnnotator_ImplBase {
 
 	public static final String PARAM_MODEL_FILE = "modelFile";
+	public static final String PARAM_THREADS = "threads";
 
 	@ConfigurationParameter(name = PARAM_MODEL_FILE, mandatory = true)
 	private File modelFile;
+	@ConfigurationParameter(name = PARAM_THREADS, defaultValue = "1")
+	private int threads;
 	// state fields
 	private MaxentTagger tagger;
+	private ExecutorService taggingExecutor;
 
 	@Override
 	public void initialize(UimaContext ctx) throws ResourceInitializationException {
 		super.initialize(ctx);
+		AnnotatorUtils.requireParam(threads > 0, PARAM_THREADS, threads);
 		if (!modelFile.isFile()) {
 			throw new IllegalStateException(String.format(
 					"%s is not an existing file", modelFile));
 		}
 		tagger = new MaxentTagger(modelFile.getPath());
+		if (threads > 1) {
+			taggingExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+					.setDaemon(true).setNameFormat("stanford-tagger-%d").build());
+		}
 	}
 
 	@Override
 	public void process(JCas jCas) throws AnalysisEngineProcessException {
 		String docUri = DocumentUtils.getDocumentUri(jCas);
-		Collection<Sentence> sents = JCasUtil.select(jCas, Sentence.class);
-		int sentsAnnotated = 0;
-		for (Sentence sent : sents) {
-			process(jCas, sent);
-			sentsAnnotated++;
-			if (getLogger().isDebugEnabled()) {
-				getLogger().debug(String.format(
-						"Annotated %s (of %s) sentences in %s",
-						sentsAnnotated, sents.size(), docUri));
+		List<Token[]> sentTokens = collectSentenceTokens(jCas);
+		List<List<TaggedWord>> sentTags;
+		try {
+			sentTags = tag(sentTokens);
+		} catch (ExecutionException e) {
+			throw new AnalysisEngineProcessException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AnalysisEngineProcessException(e);
+		}
+		for (int i = 0; i < sentTokens.size(); i++) {
+			addWords(jCas, sentTokens.get(i), sentTags.get(i));
+		}
+		if (getLogger().isDebugEnabled()) {
+			getLogger().debug(String.format(
+					"Annotated %s sentences in %s", sentTokens.size(), docUri));
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (taggingExecutor != null) {
+			taggingExecutor.shutdownNow();
+			taggingExecutor = null;
+		}
+		super.destroy();
+	}
+
+	/**
+	 * @return tokens of each non-empty sentence in the order of the sentence
+	 *         index, the same as JCasUtil#selectCovered would return
+	 */
+	private static List<Token[]> collectSentenceTokens(JCas jCas) {
+		Collection<Token> allTokensCol = JCasUtil.select(jCas, Token.class);
+		Token[] allTokens = allTokensCol.toArray(new Token[allTokensCol.size()]);
+		List<Token[]> result = Lists.newArrayList();
+		for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+			int sentBegin = sent.getBegin();
+			int sentEnd = sent.getEnd();
+			List<Token> tokens = Lists.newArrayList();
+			for (int i = lowerBound(allTokens, sentBegin); i < allTokens.length; i++) {
+				Token t = allTokens[i];
+				if (t.getBegin() > sentEnd) {
+					break;
+				}
+				if (t.getEnd() <= sentEnd) {
+					tokens.add(t);
+				}
+			}
+			if (!tokens.isEmpty()) {
+				result.add(tokens.toArray(new Token[tokens.size()]));
 			}
 		}
+		return result;
 	}
 
-	private void process(JCas jCas, Sentence sent) throws AnalysisEngineProcessException {
-		List<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
-		if (tokens.isEmpty()) {
-			return;
+	// the index of the first token that begins at or after the given offset
+	private static int lowerBound(Token[] tokens, int offset) {
+		int low = 0;
+		int high = tokens.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (tokens[mid].getBegin() < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
 		}
-		// s~Stanford
-		List<TaggedWord> sWords = Lists.newArrayListWithExpectedSize(tokens.size());
-		for (Token t : tokens) {
-			sWords.add(new TaggedWord(t.getCoveredText()));
+		return low;
+	}
+
+	private List<List<TaggedWord>> tag(List<Token[]> sentTokens)
+			throws InterruptedException, ExecutionException {
+		List<List<TaggedWord>> result = Lists.newArrayListWithExpectedSize(sentTokens.size());
+		// token texts are read on the CAS thread
+		List<List<TaggedWord>> sentWords = Lists.newArrayListWithExpectedSize(sentTokens.size());
+		for (Token[] tokens : sentTokens) {
+			// s~Stanford
+			List<TaggedWord> sWords = Lists.newArrayListWithExpectedSize(tokens.length);
+			for (Token t : tokens) {
+				sWords.add(new TaggedWord(t.getCoveredText()));
+			}
+			sentWords.add(sWords);
+		}
+		if (taggingExecutor == null || sentWords.size() < 2) {
+			for (List<TaggedWord> sWords : sentWords) {
+				result.add(tagger.tagSentence(sWords));
+			}
+			return result;
 		}
-		sWords = tagger.tagSentence(sWords);
-		if (sWords.size() != tokens.size()) {
+		List<Future<List<TaggedWord>>> futures = Lists.newArrayListWithExpectedSize(sentWords
+				.size());
+		for (final List<TaggedWord> sWords : sentWords) {
+			futures.add(taggingExecutor.submit(new Callable<List<TaggedWord>>() {
+				@Override
+				public List<TaggedWord> call() throws Exception {
+					return tagger.tagSentence(sWords);
+				}
+			}));
+		}
+		try {
+			for (Future<List<TaggedWord>> f : futures) {
+				result.add(f.get());
+			}
+		} finally {
+			for (Future<List<TaggedWord>> f : futures) {
+				f.cancel(true);
+			}
+		}
+		return result;
+	}
+
+	private static void addWords(JCas jCas, Token[] tokens, List<TaggedWord> sWords) {
+		if (sWords.size() != tokens.length) {
 			throw new IllegalStateException();
 		}
 		Iterator<TaggedWord> swIter = sWords.iterator();
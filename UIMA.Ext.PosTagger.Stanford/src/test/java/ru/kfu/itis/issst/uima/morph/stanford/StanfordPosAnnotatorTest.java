@@ -0,0 +1,207 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.stanford;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencorpora.cas.Word;
+import org.opencorpora.cas.Wordform;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.cll.uima.tokenizer.fstype.NUM;
+import ru.kfu.cll.uima.tokenizer.fstype.PM;
+import ru.kfu.cll.uima.tokenizer.fstype.Token;
+import ru.kfu.cll.uima.tokenizer.fstype.W;
+import ru.kfu.itis.issst.uima.postagger.PosTaggerAPI;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+
+/**
+ * Checks that {@link StanfordPosAnnotator} with several threads produces the
+ * same words as the sequential per-sentence tagging. The model is trained on
+ * a tiny generated corpus.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class StanfordPosAnnotatorTest {
+
+	private static final String[][] LEXICON = {
+			{ "мама", "NOUN" }, { "рама", "NOUN" }, { "кот", "NOUN" }, { "дом", "NOUN" },
+			{ "мыла", "VERB" }, { "видит", "VERB" }, { "строит", "VERB" },
+			{ "большой", "ADJF" }, { "красная", "ADJF" }, { "и", "CONJ" }, { "в", "PREP" } };
+
+	@ClassRule
+	public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private static File modelFile;
+	private static TypeSystemDescription tsd;
+
+	@BeforeClass
+	public static void trainModel() throws Exception {
+		Random rnd = new Random(3);
+		List<String> trainLines = Lists.newArrayList();
+		for (int s = 0; s < 200; s++) {
+			List<String> tokens = Lists.newArrayList();
+			for (String[] entry : randomSentence(rnd)) {
+				tokens.add(entry[0] + "_" + entry[1]);
+			}
+			trainLines.add(Joiner.on(' ').join(tokens));
+		}
+		File trainFile = tempFolder.newFile("train.txt");
+		FileUtils.writeLines(trainFile, "UTF-8", trainLines);
+		modelFile = new File(tempFolder.getRoot(), "test.tagger");
+		MaxentTagger.main(new String[] {
+				"-model", modelFile.getPath(),
+				"-trainFile", trainFile.getPath(),
+				"-arch", "words(-1,1),order(1)",
+				"-tagSeparator", "_",
+				"-encoding", "UTF-8",
+				"-iterations", "20" });
+		assertTrue(modelFile.isFile());
+		tsd = TypeSystemDescriptionFactory.createTypeSystemDescription(
+				TokenizerAPI.TYPESYSTEM_TOKENIZER,
+				SentenceSplitterAPI.TYPESYSTEM_SENTENCES,
+				PosTaggerAPI.TYPESYSTEM_POSTAGGER);
+	}
+
+	@Test
+	public void testDeterminism() throws Exception {
+		List<String> expected = tagSequentially(createDocument(11));
+		for (int threads : new int[] { 1, 4 }) {
+			AnalysisEngine ae = createEngine(StanfordPosAnnotator.class, tsd,
+					StanfordPosAnnotator.PARAM_MODEL_FILE, modelFile.getPath(),
+					StanfordPosAnnotator.PARAM_THREADS, threads);
+			try {
+				// several documents to reuse the engine and its threads
+				for (int run = 0; run < 3; run++) {
+					JCas jCas = createDocument(11);
+					ae.process(jCas);
+					assertEquals("threads: " + threads, expected, toStrings(jCas));
+				}
+			} finally {
+				ae.destroy();
+			}
+		}
+	}
+
+	// the former implementation of StanfordPosAnnotator#process
+	private static List<String> tagSequentially(JCas jCas) {
+		MaxentTagger tagger = new MaxentTagger(modelFile.getPath());
+		List<String> result = Lists.newArrayList();
+		for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+			List<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
+			if (tokens.isEmpty()) {
+				continue;
+			}
+			List<TaggedWord> sWords = Lists.newArrayList();
+			for (Token t : tokens) {
+				sWords.add(new TaggedWord(t.getCoveredText()));
+			}
+			sWords = tagger.tagSentence(sWords);
+			for (int i = 0; i < tokens.size(); i++) {
+				Token t = tokens.get(i);
+				if (t instanceof W || t instanceof NUM) {
+					result.add(toString(t.getBegin(), t.getEnd(), sWords.get(i).tag()));
+				}
+			}
+		}
+		assertTrue(result.size() > 100);
+		return result;
+	}
+
+	private static List<String> toStrings(JCas jCas) {
+		List<String> result = Lists.newArrayList();
+		for (Word w : JCasUtil.select(jCas, Word.class)) {
+			Wordform wf = (Wordform) w.getWordforms().get(0);
+			result.add(toString(w.getBegin(), w.getEnd(), wf.getPos()));
+		}
+		return result;
+	}
+
+	private static String toString(int begin, int end, String pos) {
+		return begin + ":" + end + ":" + pos;
+	}
+
+	private static JCas createDocument(long seed) throws Exception {
+		Random rnd = new Random(seed);
+		JCas jCas = JCasFactory.createJCas(tsd);
+		StringBuilder text = new StringBuilder();
+		List<int[]> sentSpans = Lists.newArrayList();
+		List<int[]> tokenSpans = Lists.newArrayList();
+		List<String> tokenTypes = Lists.newArrayList();
+		for (int s = 0; s < 60; s++) {
+			int sentBegin = text.length();
+			for (String[] entry : randomSentence(rnd)) {
+				if (text.length() > sentBegin && !entry[1].equals("PNCT")) {
+					text.append(' ');
+				}
+				tokenSpans.add(new int[] { text.length(), text.length() + entry[0].length() });
+				tokenTypes.add(entry[1]);
+				text.append(entry[0]);
+			}
+			sentSpans.add(new int[] { sentBegin, text.length() });
+			text.append(' ');
+			if (s % 10 == 0) {
+				// a sentence without tokens
+				sentSpans.add(new int[] { text.length(), text.length() });
+			}
+		}
+		jCas.setDocumentText(text.toString());
+		for (int[] span : sentSpans) {
+			new Sentence(jCas, span[0], span[1]).addToIndexes();
+		}
+		for (int i = 0; i < tokenSpans.size(); i++) {
+			int[] span = tokenSpans.get(i);
+			String type = tokenTypes.get(i);
+			Token t;
+			if (type.equals("PNCT")) {
+				t = new PM(jCas, span[0], span[1]);
+			} else if (type.equals("NUMB")) {
+				t = new NUM(jCas, span[0], span[1]);
+			} else {
+				t = new W(jCas, span[0], span[1]);
+			}
+			t.addToIndexes();
+		}
+		return jCas;
+	}
+
+	private static List<String[]> randomSentence(Random rnd) {
+		List<String[]> result = Lists.newArrayList();
+		int length = 1 + rnd.nextInt(12);
+		for (int i = 0; i < length; i++) {
+			if (rnd.nextInt(10) == 0) {
+				result.add(new String[] { String.valueOf(rnd.nextInt(100)), "NUMB" });
+			} else {
+				result.add(LEXICON[rnd.nextInt(LEXICON.length)]);
+			}
+		}
+		result.add(new String[] { ".", "PNCT" });
+		return result;
+	}
+}
@@ -4,10 +4,9 @@
 package ru.kfu.itis.issst.uima.ml;
 
 import static com.google.common.collect.Lists.newArrayListWithExpectedSize;
-import static com.google.common.collect.Sets.newHashSetWithExpectedSize;
 import static ru.kfu.itis.cll.uima.util.BitUtils.contains;
+import static ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryUtils.lookupToken;
 import static ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionaryUtils.toGramBits;
-import static ru.kfu.itis.issst.uima.morph.model.Wordform.allGramBitsFunction;
 
 import java.util.*;
 
@@ -19,15 +18,12 @@ import org.cleartk.ml.feature.extractor.NamedFeatureExtractor1;
 import org.opencorpora.cas.Word;
 
 import ru.kfu.itis.cll.uima.cas.FSUtils;
-import ru.kfu.itis.issst.uima.morph.dictionary.WordUtils;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
 import ru.kfu.itis.issst.uima.morph.model.Grammeme;
-import ru.kfu.itis.issst.uima.morph.model.Wordform;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -52,6 +48,14 @@ public class DictionaryPossibleTagFeatureExtractor implements NamedFeatureExtrac
 	private final BitSet targetCategoriesMask;
 	private final BitSet availableCategoriesMask;
 	private final String baseFeatureName;
+	private final PossibleTagFeatureTable featureTable;
+	// an extractor instance can be shared by several annotator instances
+	private final ThreadLocal<WordformBuffer> wfBuffer = new ThreadLocal<WordformBuffer>() {
+		@Override
+		protected WordformBuffer initialValue() {
+			return new WordformBuffer();
+		}
+	};
 
 	public DictionaryPossibleTagFeatureExtractor(Iterable<String> targetTagCategories,
 			Iterable<String> availableTagCategories,
@@ -78,6 +82,8 @@ public class DictionaryPossibleTagFeatureExtractor implements NamedFeatureExtrac
 			baseFeatureNameBuilder.append('_').append(tcg.getId());
 		}
 		this.baseFeatureName = baseFeatureNameBuilder.toString();
+		this.featureTable = PossibleTagFeatureTable.getShared(morphDict, baseFeatureName,
+				targetCategoriesMask);
 		//
 		if (availableTagCategories == null) {
 			availableTagCategories = ImmutableList.of();
@@ -101,81 +107,71 @@ public class DictionaryPossibleTagFeatureExtractor implements NamedFeatureExtrac
 			return ImmutableList.of();
 		}
 		String form = focusWord.getCoveredText();
-		if (!WordUtils.isRussianWord(form)) {
+		WordformBuffer dictWfs = wfBuffer.get();
+		if (lookupToken(morphDict, form, dictWfs) == null) {
 			return ImmutableList.of(new Feature(FEATURE_NAME, "NotRussian"));
 		}
-		form = WordUtils.normalizeToDictionaryForm(form);
-		List<Wordform> dictWfs = morphDict.getEntries(form);
-		if (dictWfs == null || dictWfs.isEmpty()) {
+		if (dictWfs.isEmpty()) {
 			return ImmutableList.of(new Feature(FEATURE_NAME, "Unknown"));
 		}
-		List<BitSet> dictWfBitSets = Lists.transform(dictWfs,
-				allGramBitsFunction(morphDict));
 		//
 		org.opencorpora.cas.Wordform focusWf = focusWord.getWordforms(0);
 		BitSet focusWfBits = toGramBits(gramModel, FSUtils.toList(focusWf.getGrammems()));
 		focusWfBits.and(availableCategoriesMask);
 		//
-		Set<BitSet> tokenPossibleTags = newHashSetWithExpectedSize(dictWfBitSets.size());
-		for (BitSet dictWfBits : dictWfBitSets) {
-			if (!contains(dictWfBits, focusWfBits)) {
-				continue;
-			}
-			BitSet tokenPossibleBits = (BitSet) dictWfBits.clone();
-			tokenPossibleBits.and(targetCategoriesMask);
-			tokenPossibleTags.add(tokenPossibleBits);
-		}
-		List<Feature> resultList = newArrayListWithExpectedSize(tokenPossibleTags.size());
-		for (BitSet tokenPossibleBits : tokenPossibleTags) {
-			String featValue;
-			if (tokenPossibleBits.isEmpty()) {
-				featValue = "NULL";
-			} else {
-				featValue = gramJoiner.join(gramModel.toGramSet(tokenPossibleBits));
-			}
-			resultList.add(new Feature(baseFeatureName, featValue));
-		}
-		return resultList;
+		return toFeatures(dictWfs, focusWfBits);
 	}
 
     public List<Feature> extract(String form, Collection<String> availableTokenGrams)
             throws CleartkExtractorException {
-        if (!WordUtils.isRussianWord(form)) {
+        WordformBuffer dictWfs = wfBuffer.get();
+        if (lookupToken(morphDict, form, dictWfs) == null) {
             return ImmutableList.of(new Feature(FEATURE_NAME, "NotRussian"));
         }
-        form = WordUtils.normalizeToDictionaryForm(form);
-        List<Wordform> dictWfs = morphDict.getEntries(form);
-        if (dictWfs == null || dictWfs.isEmpty()) {
+        if (dictWfs.isEmpty()) {
             return ImmutableList.of(new Feature(FEATURE_NAME, "Unknown"));
         }
-        List<BitSet> dictWfBitSets = Lists.transform(dictWfs, allGramBitsFunction(morphDict));
         //
         BitSet focusWfBits = toGramBits(gramModel, availableTokenGrams);
         //
-        Set<BitSet> tokenPossibleTags = newHashSetWithExpectedSize(dictWfBitSets.size());
-        for (BitSet dictWfBits : dictWfBitSets) {
-            if (!contains(dictWfBits, focusWfBits)) {
-                // this dictionary entry is not compatible with token current grams
-                continue;
-            }
-            BitSet tokenPossibleBits = (BitSet) dictWfBits.clone();
-            tokenPossibleBits.and(targetCategoriesMask);
-            tokenPossibleTags.add(tokenPossibleBits);
-        }
-        List<Feature> resultList = newArrayListWithExpectedSize(tokenPossibleTags.size());
-        for (BitSet tokenPossibleBits : tokenPossibleTags) {
-            String featValue;
-            if (tokenPossibleBits.isEmpty()) {
-                featValue = "NULL";
-            } else {
-                featValue = gramJoiner.join(gramModel.toGramSet(tokenPossibleBits));
-            }
-            resultList.add(new Feature(baseFeatureName, featValue));
-        }
-        return resultList;
+        return toFeatures(dictWfs, focusWfBits);
     }
 
-	private static final Joiner gramJoiner = Joiner.on('_');
+	private List<Feature> toFeatures(WordformBuffer dictWfs, BitSet focusWfBits) {
+		List<Feature> resultList = newArrayListWithExpectedSize(dictWfs.size());
+		for (int i = 0; i < dictWfs.size(); i++) {
+			int tagId = dictWfs.getTagId(i);
+			// shared instance, must not be modified
+			BitSet dictWfBits = morphDict.getTag(tagId);
+			if (!contains(dictWfBits, focusWfBits)) {
+				// this dictionary entry is not compatible with token current grams
+				continue;
+			}
+			// tags with the same target grammemes are mapped to the same instance
+			Feature feature = featureTable.getFeature(tagId, dictWfBits);
+			if (!containsSame(resultList, feature)) {
+				resultList.add(feature);
+			}
+		}
+		return resultList;
+	}
+
+	private static boolean containsSame(List<Feature> list, Feature feature) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == feature) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the table of feature values shared by extractors of the same
+	 *         dictionary and target tag categories
+	 */
+	public PossibleTagFeatureTable getFeatureTable() {
+		return featureTable;
+	}
 
 	@Override
 	public String getFeatureName() {
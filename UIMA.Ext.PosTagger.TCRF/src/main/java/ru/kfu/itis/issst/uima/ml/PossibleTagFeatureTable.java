@@ -0,0 +1,282 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.ml;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.cleartk.ml.Feature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Maps dictionary tag ids into {@link DictionaryPossibleTagFeatureExtractor}
+ * features of a tier, i.e., into tags restricted to the tier categories. A
+ * feature value depends only on a tag id, so each value is computed once per
+ * dictionary and tier, and the same {@link Feature} instance is returned for
+ * tags with the same restricted value. Entries are computed lazily as the
+ * dictionary API does not enumerate tags.
+ * <p>
+ * Instances are thread-safe. Use {@link #getShared(MorphDictionary, String, BitSet)}
+ * to share a table by all extractors of the same dictionary and tier.
+ * </p>
+ * <p>
+ * A table can be written into a file and read back to skip the computation in
+ * the next run. Tag ids are not stable across runs and dictionary
+ * implementations, e.g., tags of predicted wordforms are interned in the order
+ * they are met, so the file keeps entries by tag grammemes, and tag ids are
+ * resolved into read entries lazily. The file header keeps the dictionary
+ * version and revision as grammemes of a tag may differ between them.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class PossibleTagFeatureTable {
+
+	public static final String NULL_VALUE = "NULL";
+	// increment when the file layout changes, files of another format are skipped
+	private static final String FILE_FORMAT_VERSION = "2";
+
+	private static final Logger log = LoggerFactory.getLogger(PossibleTagFeatureTable.class);
+
+	// tables must not keep their dictionary from being collected
+	private static final LoadingCache<MorphDictionary, ConcurrentMap<String, PossibleTagFeatureTable>> sharedTables = CacheBuilder
+			.newBuilder().weakKeys()
+			.build(new CacheLoader<MorphDictionary, ConcurrentMap<String, PossibleTagFeatureTable>>() {
+				@Override
+				public ConcurrentMap<String, PossibleTagFeatureTable> load(MorphDictionary key) {
+					return Maps.newConcurrentMap();
+				}
+			});
+
+	/**
+	 * @param morphDict
+	 *            a dictionary that resolves tag ids
+	 * @param featureName
+	 *            name of features, it must identify the target categories
+	 * @param targetCategoriesMask
+	 *            grammemes of the target categories
+	 * @return the table that is shared by all callers with the same
+	 *         dictionary instance and feature name
+	 */
+	public static PossibleTagFeatureTable getShared(MorphDictionary morphDict,
+			String featureName, BitSet targetCategoriesMask) {
+		ConcurrentMap<String, PossibleTagFeatureTable> dictTables = sharedTables
+				.getUnchecked(morphDict);
+		PossibleTagFeatureTable result = dictTables.get(featureName);
+		if (result == null) {
+			PossibleTagFeatureTable newTable = new PossibleTagFeatureTable(
+					morphDict, featureName, targetCategoriesMask);
+			result = dictTables.putIfAbsent(featureName, newTable);
+			if (result == null) {
+				result = newTable;
+			}
+		}
+		return result;
+	}
+
+	// config fields
+	private final GramModel gramModel;
+	private final String featureName;
+	private final BitSet targetCategoriesMask;
+	private final String dictVersion;
+	private final String dictRevision;
+	// state fields
+	// a cache by tag ids of the dictionary instance, it is never persisted
+	private volatile AtomicReferenceArray<Feature> features;
+	// guarded by this
+	private final Map<String, Feature> featureByValue = Maps.newHashMap();
+	// tag grammemes (see tagKey) -> feature, guarded by this
+	private final Map<String, Feature> featureByTag = Maps.newHashMap();
+
+	public PossibleTagFeatureTable(MorphDictionary morphDict, String featureName,
+			BitSet targetCategoriesMask) {
+		this.gramModel = morphDict.getGramModel();
+		this.featureName = featureName;
+		this.targetCategoriesMask = (BitSet) targetCategoriesMask.clone();
+		this.dictVersion = String.valueOf(morphDict.getVersion());
+		this.dictRevision = String.valueOf(morphDict.getRevision());
+		this.features = new AtomicReferenceArray<Feature>(256);
+	}
+
+	public String getFeatureName() {
+		return featureName;
+	}
+
+	/**
+	 * @param tagId
+	 *            tag id from a dictionary lookup
+	 * @param tag
+	 *            grammeme bits of the tag, i.e., a result of
+	 *            {@link MorphDictionary#getTag(int)}. It is used only if the
+	 *            table does not have the entry yet.
+	 * @return a feature with the tag grammemes of target categories. The
+	 *         returned instance is shared, it MUST NOT be modified.
+	 */
+	public Feature getFeature(int tagId, BitSet tag) {
+		AtomicReferenceArray<Feature> curFeatures = features;
+		if (tagId < curFeatures.length()) {
+			Feature result = curFeatures.get(tagId);
+			if (result != null) {
+				return result;
+			}
+		}
+		return computeFeature(tagId, tag);
+	}
+
+	private synchronized Feature computeFeature(int tagId, BitSet tag) {
+		String tagKey = tagKey(tag);
+		Feature feature = featureByTag.get(tagKey);
+		if (feature == null) {
+			BitSet tokenPossibleBits = (BitSet) tag.clone();
+			tokenPossibleBits.and(targetCategoriesMask);
+			String featValue;
+			if (tokenPossibleBits.isEmpty()) {
+				featValue = NULL_VALUE;
+			} else {
+				featValue = gramJoiner.join(gramModel.toGramSet(tokenPossibleBits));
+			}
+			feature = put(tagKey, featValue);
+		}
+		cache(tagId, feature);
+		return feature;
+	}
+
+	private String tagKey(BitSet tag) {
+		List<String> grams = Lists.newArrayList(gramModel.toGramSet(tag));
+		// do not depend on numeric ids of grammemes
+		Collections.sort(grams);
+		return tagGramJoiner.join(grams);
+	}
+
+	// must be called under the lock
+	private Feature put(String tagKey, String featValue) {
+		Feature feature = featureByValue.get(featValue);
+		if (feature == null) {
+			feature = new Feature(featureName, featValue);
+			featureByValue.put(featValue, feature);
+		}
+		featureByTag.put(tagKey, feature);
+		return feature;
+	}
+
+	// must be called under the lock
+	private void cache(int tagId, Feature feature) {
+		AtomicReferenceArray<Feature> curFeatures = features;
+		if (tagId >= curFeatures.length()) {
+			AtomicReferenceArray<Feature> newFeatures = new AtomicReferenceArray<Feature>(
+					Math.max(tagId + 1, curFeatures.length() * 2));
+			for (int i = 0; i < curFeatures.length(); i++) {
+				newFeatures.set(i, curFeatures.get(i));
+			}
+			newFeatures.set(tagId, feature);
+			features = newFeatures;
+		} else {
+			curFeatures.set(tagId, feature);
+		}
+	}
+
+	/**
+	 * Write computed entries into the given file. The file is replaced
+	 * atomically, so concurrent writers of the same table do not corrupt it.
+	 */
+	public void write(File file) throws IOException {
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile()
+				.getParentFile());
+		try {
+			BufferedWriter out = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8);
+			try {
+				out.write(getHeader());
+				out.newLine();
+				synchronized (this) {
+					for (Map.Entry<String, Feature> e : new TreeMap<String, Feature>(
+							featureByTag).entrySet()) {
+						out.write(fieldJoiner.join(e.getKey(), e.getValue().getValue()));
+						out.newLine();
+					}
+				}
+			} finally {
+				out.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	/**
+	 * Add entries from a file written by {@link #write(File)}.
+	 *
+	 * @return false if the file has been written for another dictionary
+	 *         version, another feature name or in another format, in this case
+	 *         nothing is added
+	 * @throws IOException
+	 *             if the file content is malformed
+	 */
+	public boolean read(File file) throws IOException {
+		BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+		try {
+			String header = in.readLine();
+			String expectedHeader = getHeader();
+			if (!Objects.equal(expectedHeader, header)) {
+				log.warn("{} is skipped: its header '{}' differs from the expected '{}'",
+						file, header, expectedHeader);
+				return false;
+			}
+			synchronized (this) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.isEmpty()) {
+						continue;
+					}
+					String[] fields = Iterables.toArray(fieldSplitter.split(line), String.class);
+					if (fields.length != 2) {
+						throw new IOException(String.format(
+								"Malformed line in %s:\n%s", file, line));
+					}
+					put(fields[0], fields[1]);
+				}
+			}
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	private String getHeader() {
+		return fieldJoiner.join(FILE_FORMAT_VERSION, featureName, dictVersion, dictRevision);
+	}
+
+	private static final Joiner gramJoiner = Joiner.on('_');
+	private static final Joiner tagGramJoiner = Joiner.on(',');
+	private static final Joiner fieldJoiner = Joiner.on('\t');
+	private static final Splitter fieldSplitter = Splitter.on('\t');
+}
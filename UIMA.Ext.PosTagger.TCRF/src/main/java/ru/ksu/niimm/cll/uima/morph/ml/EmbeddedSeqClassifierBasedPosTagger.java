@@ -68,7 +68,8 @@ public class EmbeddedSeqClassifierBasedPosTagger extends SeqClassifierBasedPosTa
         }
         //
         //noinspection unchecked
-        classifier = TieredSequenceClassifiers.fromModelBaseDir(modelBaseDir);
+        classifier = TieredSequenceClassifiers.fromModelBaseDir(modelBaseDir, pipelinedTiers);
+        checkPipelinedTiers();
     }
 
     @Override
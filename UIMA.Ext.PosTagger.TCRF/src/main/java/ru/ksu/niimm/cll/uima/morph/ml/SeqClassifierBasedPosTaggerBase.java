@@ -4,6 +4,7 @@ import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.CleartkProcessingException;
 import org.opencorpora.cas.Word;
 import org.opencorpora.cas.Wordform;
@@ -14,6 +15,7 @@ import ru.kfu.cll.uima.segmentation.fstype.Sentence;
 import ru.kfu.cll.uima.tokenizer.fstype.Token;
 import ru.kfu.itis.cll.uima.cas.FSUtils;
 import ru.kfu.itis.issst.uima.ml.SequenceClassifier;
+import ru.kfu.itis.issst.uima.ml.TieredSequenceClassifier;
 import ru.kfu.itis.issst.uima.ml.WordAnnotator;
 import ru.kfu.itis.issst.uima.postagger.MorphCasUtils;
 
@@ -33,16 +35,55 @@ import static ru.kfu.itis.issst.uima.postagger.PosTaggerAPI.PARAM_REUSE_EXISTING
  */
 abstract class SeqClassifierBasedPosTaggerBase extends JCasAnnotator_ImplBase {
 
+    /**
+     * If true then all sentences of a document are passed to the classifier at once, so a
+     * {@link TieredSequenceClassifier} with pipelined tiers can process them concurrently.
+     * The classifier must be a {@link TieredSequenceClassifier}, and its
+     * {@link TieredSequenceClassifier#isPipelined() mode} must be the same as this parameter,
+     * e.g., for {@link SeqClassifierResourceBasedPosTagger} the parameter
+     * {@link ru.kfu.itis.issst.uima.ml.TieredSequenceClassifierResource#PARAM_PIPELINED_TIERS}
+     * of the bound resource must have the same value. Otherwise the annotator fails to initialize.
+     * <p>
+     * Tier threads belong to the classifier. If it is a resource shared by annotator copies of a
+     * multi-threaded CPE, all CAS threads go through the same single thread of each tier, so the
+     * throughput may be lower than with the sequential mode.
+     * </p>
+     */
+    public static final String PARAM_PIPELINED_TIERS = "pipelinedTiers";
+
     @ConfigurationParameter(name = PARAM_REUSE_EXISTING_WORD_ANNOTATIONS,
             defaultValue = DEFAULT_REUSE_EXISTING_WORD_ANNOTATIONS,
             mandatory = false)
     private boolean reuseExistingWordAnnotations;
+    @ConfigurationParameter(name = PARAM_PIPELINED_TIERS, defaultValue = "false", mandatory = false)
+    protected boolean pipelinedTiers;
 
     // per-CAS state fields
     private Map<Token, Word> token2WordIndex;
 
     protected abstract SequenceClassifier<Token, String[]> getClassifier();
 
+    /**
+     * Subclasses must invoke this after their classifier is initialized.
+     *
+     * @throws ResourceInitializationException if the classifier mode differs from
+     *                                         {@link #PARAM_PIPELINED_TIERS}
+     */
+    protected void checkPipelinedTiers() throws ResourceInitializationException {
+        SequenceClassifier<Token, String[]> classifier = getClassifier();
+        boolean classifierPipelined = classifier instanceof TieredSequenceClassifier
+                && ((TieredSequenceClassifier<?, ?>) classifier).isPipelined();
+        if (pipelinedTiers && !(classifier instanceof TieredSequenceClassifier)) {
+            throw new ResourceInitializationException(new IllegalStateException(format(
+                    "%s requires a TieredSequenceClassifier", PARAM_PIPELINED_TIERS)));
+        }
+        if (pipelinedTiers != classifierPipelined) {
+            throw new ResourceInitializationException(new IllegalStateException(format(
+                    "%s of the annotator is %s but the classifier has pipelined tiers: %s",
+                    PARAM_PIPELINED_TIERS, pipelinedTiers, classifierPipelined)));
+        }
+    }
+
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
         if (reuseExistingWordAnnotations) {
@@ -62,8 +103,12 @@ abstract class SeqClassifierBasedPosTaggerBase extends JCasAnnotator_ImplBase {
         token2WordIndex = MorphCasUtils.getToken2WordIndex(jCas);
         getClassifier().onCASChange(jCas);
         try {
-            for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
-                process(jCas, sent);
+            if (pipelinedTiers) {
+                processAll(jCas);
+            } else {
+                for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+                    process(jCas, sent);
+                }
             }
         } finally {
             token2WordIndex.clear();
@@ -78,6 +123,32 @@ abstract class SeqClassifierBasedPosTaggerBase extends JCasAnnotator_ImplBase {
         // invoke the classifier
         List<String[]> labelSeq = getClassifier().classify(jCas, sent, tokens);
         //
+        assignLabels(jCas, tokens, labelSeq);
+    }
+
+    private void processAll(JCas jCas) throws CleartkProcessingException {
+        // checked by checkPipelinedTiers
+        @SuppressWarnings("unchecked")
+        TieredSequenceClassifier<Token, String> classifier =
+                (TieredSequenceClassifier<Token, String>) getClassifier();
+        List<Sentence> sents = new ArrayList<>();
+        List<List<Token>> sentTokens = new ArrayList<>();
+        for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+            List<Token> tokens = JCasUtil.selectCovered(jCas, Token.class, sent);
+            if (tokens.isEmpty()) continue;
+            sents.add(sent);
+            sentTokens.add(tokens);
+        }
+        List<List<String[]>> labelSeqs = classifier.classifyAll(jCas, sents, sentTokens);
+        if (labelSeqs.size() != sentTokens.size()) {
+            throw new IllegalStateException();
+        }
+        for (int i = 0; i < labelSeqs.size(); i++) {
+            assignLabels(jCas, sentTokens.get(i), labelSeqs.get(i));
+        }
+    }
+
+    private void assignLabels(JCas jCas, List<Token> tokens, List<String[]> labelSeq) {
         if (labelSeq.size() != tokens.size()) {
             throw new IllegalStateException();
         }
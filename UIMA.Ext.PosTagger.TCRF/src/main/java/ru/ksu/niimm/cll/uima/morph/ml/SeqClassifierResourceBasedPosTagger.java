@@ -3,6 +3,7 @@
  */
 package ru.ksu.niimm.cll.uima.morph.ml;
 
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.resource.ExternalResourceDescription;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -41,6 +42,12 @@ public class SeqClassifierResourceBasedPosTagger extends SeqClassifierBasedPosTa
     @ExternalResource(key = RESOURCE_CLASSIFIER, mandatory = true)
     private SequenceClassifier<Token, String[]> classifier;
 
+    @Override
+    public void initialize(UimaContext ctx) throws ResourceInitializationException {
+        super.initialize(ctx);
+        checkPipelinedTiers();
+    }
+
     @Override
     protected SequenceClassifier<Token, String[]> getClassifier() {
         return classifier;
@@ -22,13 +22,18 @@ import ru.kfu.itis.issst.uima.ml.*;
 import ru.kfu.itis.issst.uima.morph.commons.PunctuationUtils;
 import ru.kfu.itis.issst.uima.morph.dictionary.resource.MorphDictionary;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
 import static com.google.common.collect.Lists.newArrayListWithExpectedSize;
 import static com.google.common.collect.Lists.transform;
+import static ru.kfu.itis.cll.uima.util.ConfigPropertiesUtils.getFileProperty;
 import static ru.kfu.itis.cll.uima.util.ConfigPropertiesUtils.getIntProperty;
+import static ru.kfu.itis.cll.uima.util.ConfigPropertiesUtils.getStringProperty;
 import static ru.kfu.itis.issst.uima.ml.DefaultFeatureExtractors.contextTokenExtractors;
 import static ru.kfu.itis.issst.uima.ml.DefaultFeatureExtractors.currentTokenExtractors;
 import static ru.kfu.itis.issst.uima.morph.dictionary.MorphDictionaryAPIFactory.getMorphDictionaryAPI;
@@ -36,11 +41,19 @@ import static ru.kfu.itis.issst.uima.morph.dictionary.MorphDictionaryAPIFactory.
 /**
  * @author Rinat Gareev
  */
-public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Token, String> {
+public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Token, String>, Closeable {
 
     // constants
     public static final String CFG_LEFT_CONTEXT_SIZE = "leftContextSize";
     public static final String CFG_RIGHT_CONTEXT_SIZE = "rightContextSize";
+    /**
+     * If true then dictionary feature tables of each tier are read from and
+     * written into {@value #FILENAME_DICT_FEATURE_TABLE} files in tier
+     * directories under {@link TieredFeatureExtractors#CFG_BASE_DIR}, i.e.,
+     * next to the tier model jars. Tables are written on {@link #close()}.
+     */
+    public static final String CFG_PERSIST_DICT_FEATURE_TABLES = "persistDictFeatureTables";
+    public static final String FILENAME_DICT_FEATURE_TABLE = "dict-features.txt";
 
     private Integer leftContextSize;
     private Integer rightContextSize;
@@ -54,6 +67,8 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
     private FeatureExtractor1 tokenCFE;
     private CleartkExtractor contextCFE;
     private List<DictionaryPossibleTagFeatureExtractor> dictFeatureExtractors;
+    // null if dictionary feature tables are not persisted
+    private File dictFeatureTablesBaseDir;
 
     public SimpleTieredFeatureExtractor() {
     }
@@ -63,6 +78,9 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
         leftContextSize = getIntProperty(props, CFG_LEFT_CONTEXT_SIZE);
         rightContextSize = getIntProperty(props, CFG_RIGHT_CONTEXT_SIZE);
         gramTierDefs = TieredFeatureExtractors.getTiers(props);
+        if (Boolean.parseBoolean(getStringProperty(props, CFG_PERSIST_DICT_FEATURE_TABLES, false))) {
+            dictFeatureTablesBaseDir = getFileProperty(props, TieredFeatureExtractors.CFG_BASE_DIR, true);
+        }
         // TODO use a dependency injection
         try {
             CachedResourceTuple<MorphDictionary> t = getMorphDictionaryAPI().getCachedInstance();
@@ -74,7 +92,7 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
         initialize();
     }
 
-    private void initialize() {
+    private void initialize() throws ResourceInitializationException {
         gramTiers = GramTiersFactory.parseGramTiers(morphDictionary.getGramModel(), gramTierDefs);
         // TODO:LOW here should be a single feature extraction config like in the Stanford tagger
         if (leftContextSize < 0 || rightContextSize < 0) {
@@ -104,6 +122,39 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
                     curTierCats, null, morphDictionary);
             dictFeatureExtractors.add(dfe);
         }
+        if (dictFeatureTablesBaseDir != null) {
+            readDictFeatureTables();
+        }
+    }
+
+    private File getDictFeatureTableFile(int tier) {
+        return new File(new File(dictFeatureTablesBaseDir, gramTierDefs.get(tier)), FILENAME_DICT_FEATURE_TABLE);
+    }
+
+    private void readDictFeatureTables() throws ResourceInitializationException {
+        for (int tier = 0; tier < dictFeatureExtractors.size(); tier++) {
+            File tableFile = getDictFeatureTableFile(tier);
+            if (tableFile.isFile()) {
+                try {
+                    dictFeatureExtractors.get(tier).getFeatureTable().read(tableFile);
+                } catch (IOException e) {
+                    throw new ResourceInitializationException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dictFeatureTablesBaseDir == null) {
+            return;
+        }
+        for (int tier = 0; tier < dictFeatureExtractors.size(); tier++) {
+            File tableFile = getDictFeatureTableFile(tier);
+            if (tableFile.getParentFile().isDirectory()) {
+                dictFeatureExtractors.get(tier).getFeatureTable().write(tableFile);
+            }
+        }
     }
 
     @Override
@@ -111,25 +162,35 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
         // currently there is no a FeatureExtractor that IndexesJCas
     }
 
+    @Override
+    public List<String> getTokenTexts(JCas jCas, Annotation spanAnno, List<? extends Token> tokens) {
+        List<String> result = newArrayListWithExpectedSize(tokens.size());
+        for (Token tok : tokens) {
+            // TODO:LOW depends on logic somewhere before (in a containing annotator)
+            // dictionary features are extracted for word tokens only
+            result.add(WordAnnotator.canCarryWord(tok) ? tok.getCoveredText() : null);
+        }
+        return result;
+    }
+
     @Override
     public void onBeforeTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
-                             JCas jCas, Annotation spanAnno, List<? extends Token> tokens)
+                             List<String> tokenTexts)
             throws CleartkExtractorException {
         Preconditions.checkArgument(featSets.size() == labels.size());
-        Preconditions.checkArgument(featSets.size() == tokens.size());
+        Preconditions.checkArgument(featSets.size() == tokenTexts.size());
         //
         DictionaryPossibleTagFeatureExtractor dfe = dictFeatureExtractors.get(tier);
         for (int i = 0; i < featSets.size(); i++) {
-            Token tok = tokens.get(i);
+            String tokText = tokenTexts.get(i);
             List<String> tokLabel = labels.get(i);
             FeatureSet tokFeatSet = featSets.get(i);
-            // TODO:LOW depends on logic somewhere before (in a containing annotator)
-            if (WordAnnotator.canCarryWord(tok)) {
+            if (tokText != null) {
                 List<Set<String>> tokGramsTiered = parseLabelIntoGrams(tokLabel);
                 Set<String> tokGrams = mergeTieredGrams(tokGramsTiered);
                 // TODO:HOTFIX
                 tokGrams.remove(PunctuationUtils.OTHER_PUNCTUATION_TAG);
-                tokFeatSet.add(dfe.extract(tok.getCoveredText(), tokGrams), dfe);
+                tokFeatSet.add(dfe.extract(tokText, tokGrams), dfe);
             }
         }
     }
@@ -168,9 +229,9 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
 
     @Override
     public void onAfterTier(List<FeatureSet> featSets, List<List<String>> labels, final int tier,
-                            JCas jCas, Annotation spanAnno, List<? extends Token> tokens) {
+                            List<String> tokenTexts) {
         Preconditions.checkArgument(featSets.size() == labels.size());
-        Preconditions.checkArgument(featSets.size() == tokens.size());
+        Preconditions.checkArgument(featSets.size() == tokenTexts.size());
         // parse tier output labels into feature values
         List<List<Set<String>>> parsedLabels = parseLabelsIntoGrams(labels);
         List<Set<String>> curTierParsedLabels = transform(parsedLabels, new Function<List<Set<String>>, Set<String>>() {
@@ -190,7 +251,7 @@ public class SimpleTieredFeatureExtractor implements TieredFeatureExtractor<Toke
             // extract feature from a new data - the new label of this tier
             List<Feature> gramFeatures = newArrayListWithExpectedSize(leftContextSize + rightContextSize + 1);
             int left = Math.max(0, tokPos - leftContextSize);
-            int right = Math.min(tokens.size() - 1, tokPos + rightContextSize);
+            int right = Math.min(featSets.size() - 1, tokPos + rightContextSize);
             for (int contextTokPos = left; contextTokPos <= right; contextTokPos++) {
                 // a context token relative position
                 final int contextTokRelPos = tokPos - contextTokPos;
@@ -280,7 +280,7 @@ public class TieredPosSequenceAnnotator extends CleartkSequenceAnnotator<String>
 
 	private List<Feature> extractFeatures(JCas jCas, Token token, Sentence sent)
 			throws CleartkExtractorException {
-		List<Feature> tokFeatures = Lists.newLinkedList();
+		List<Feature> tokFeatures = Lists.newArrayListWithExpectedSize(64);
 		tokFeatures.addAll(tokenFeatureExtractor.extract(jCas, token));
 		tokFeatures.addAll(posExtractor.extract(jCas, token));
 		if (dictFeatureExtractor != null) {
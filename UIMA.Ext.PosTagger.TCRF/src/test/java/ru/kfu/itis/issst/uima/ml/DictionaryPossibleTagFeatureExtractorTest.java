@@ -0,0 +1,195 @@
+package ru.kfu.itis.issst.uima.ml;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.cleartk.ml.Feature;
+import org.junit.Before;
+import org.junit.Test;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.GramModel;
+import ru.kfu.itis.issst.uima.morph.dictionary.resource.WordformBuffer;
+import ru.kfu.itis.issst.uima.morph.model.Lemma;
+import ru.kfu.itis.issst.uima.morph.model.Wordform;
+import ru.ksu.niimm.cll.uima.morph.ml.TestGramModel;
+import ru.ksu.niimm.cll.uima.morph.opencorpora.resource.MorphDictionaryImpl;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Rinat Gareev
+ */
+public class DictionaryPossibleTagFeatureExtractorTest {
+
+    private GramModel gm;
+    private MorphDictionaryImpl dict;
+
+    @Before
+    public void initDictionary() {
+        gm = new TestGramModel().getGramModel();
+        dict = new MorphDictionaryImpl();
+        dict.setGramModel(gm);
+        addLemma(1, "стол", "N");
+        addWordform(1, "стол", "sing", "nomn");
+        addWordform(1, "стол", "sing", "accs");
+        addWordform(1, "столы", "plur", "nomn");
+        addLemma(2, "сталь", "N");
+        addWordform(2, "стали", "sing", "gent");
+        addWordform(2, "стали", "plur", "nomn");
+        addLemma(3, "стать", "V");
+        addWordform(3, "стали", "plur");
+        addLemma(4, "по", "PREP");
+        addWordform(4, "по");
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        DictionaryPossibleTagFeatureExtractor posFE = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("POST"), null, dict);
+        assertEquals(ImmutableSet.of("N", "V"), values(posFE.extract("Стали", noGrams())));
+        assertEquals(ImmutableSet.of("N"), values(posFE.extract("стол", noGrams())));
+        assertEquals(ImmutableSet.of("PREP"), values(posFE.extract("по", noGrams())));
+        assertEquals("DictTags_POST", posFE.extract("стол", noGrams()).get(0).getName());
+        //
+        DictionaryPossibleTagFeatureExtractor gramFE = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("NUMBER", "CASE"), null, dict);
+        assertEquals(ImmutableSet.of("sing_gent", "plur_nomn", "plur"),
+                values(gramFE.extract("стали", noGrams())));
+        assertEquals(ImmutableSet.of("sing_gent", "plur_nomn"),
+                values(gramFE.extract("стали", ImmutableSet.of("N"))));
+        assertEquals(ImmutableSet.of("plur"),
+                values(gramFE.extract("стали", ImmutableSet.of("V"))));
+        assertEquals(ImmutableSet.of("NULL"), values(gramFE.extract("по", noGrams())));
+        assertEquals(ImmutableSet.of(), values(gramFE.extract("по", ImmutableSet.of("N"))));
+        // lookup failures
+        assertEquals(ImmutableSet.of("NotRussian"), values(gramFE.extract("hello", noGrams())));
+        assertEquals(ImmutableSet.of("Unknown"), values(gramFE.extract("кот", noGrams())));
+    }
+
+    @Test
+    public void testNoDuplicates() throws Exception {
+        DictionaryPossibleTagFeatureExtractor fe = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("POST"), null, dict);
+        // both wordforms of 'стол' are nouns
+        assertEquals(1, fe.extract("стол", noGrams()).size());
+    }
+
+    @Test
+    public void testSharedTable() throws Exception {
+        DictionaryPossibleTagFeatureExtractor fe1 = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("NUMBER", "CASE"), null, dict);
+        DictionaryPossibleTagFeatureExtractor fe2 = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("CASE", "NUMBER"), null, dict);
+        DictionaryPossibleTagFeatureExtractor posFE = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("POST"), null, dict);
+        assertSame(fe1.getFeatureTable(), fe2.getFeatureTable());
+        assertNotSame(fe1.getFeatureTable(), posFE.getFeatureTable());
+        List<Feature> feats1 = fe1.extract("стали", noGrams());
+        List<Feature> feats2 = fe2.extract("стали", noGrams());
+        assertEquals(feats1.size(), feats2.size());
+        for (int i = 0; i < feats1.size(); i++) {
+            assertSame(feats1.get(i), feats2.get(i));
+        }
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        DictionaryPossibleTagFeatureExtractor fe = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("NUMBER", "CASE"), null, dict);
+        fe.extract("стали", noGrams());
+        fe.extract("по", noGrams());
+        PossibleTagFeatureTable table = fe.getFeatureTable();
+        File tableFile = File.createTempFile("dict-features", ".txt");
+        try {
+            table.write(tableFile);
+            // the mask is irrelevant as entries are read from the file
+            PossibleTagFeatureTable readTable = new PossibleTagFeatureTable(
+                    dict, table.getFeatureName(), new BitSet());
+            assertTrue(readTable.read(tableFile));
+            WordformBuffer wfs = new WordformBuffer();
+            for (String form : ImmutableList.of("стали", "по")) {
+                dict.getEntries(form, wfs);
+                for (int i = 0; i < wfs.size(); i++) {
+                    int tagId = wfs.getTagId(i);
+                    Feature expected = table.getFeature(tagId, dict.getTag(tagId));
+                    Feature actual = readTable.getFeature(tagId, dict.getTag(tagId));
+                    assertEquals(expected.getName(), actual.getName());
+                    assertEquals(expected.getValue(), actual.getValue());
+                }
+            }
+            // a table of another tier
+            PossibleTagFeatureTable anotherTable = new PossibleTagFeatureTable(
+                    dict, "DictTags_POST", new BitSet());
+            assertFalse(anotherTable.read(tableFile));
+        } finally {
+            FileUtils.deleteQuietly(tableFile);
+        }
+    }
+
+    @Test
+    public void testReadWithOtherTagIds() throws Exception {
+        DictionaryPossibleTagFeatureExtractor fe = new DictionaryPossibleTagFeatureExtractor(
+                ImmutableList.of("NUMBER", "CASE"), null, dict);
+        PossibleTagFeatureTable table = fe.getFeatureTable();
+        WordformBuffer wfs = new WordformBuffer();
+        dict.getEntries("стали", wfs);
+        List<BitSet> tags = Lists.newArrayList();
+        List<Object> expectedValues = Lists.newArrayList();
+        for (int i = 0; i < wfs.size(); i++) {
+            BitSet tag = dict.getTag(wfs.getTagId(i));
+            tags.add(tag);
+            expectedValues.add(table.getFeature(wfs.getTagId(i), tag).getValue());
+        }
+        assertTrue(ImmutableSet.copyOf(expectedValues).size() > 1);
+        File tableFile = File.createTempFile("dict-features", ".txt");
+        try {
+            table.write(tableFile);
+            // e.g., another dictionary instance has interned predicted tags in another order
+            PossibleTagFeatureTable readTable = new PossibleTagFeatureTable(
+                    dict, table.getFeatureName(), new BitSet());
+            assertTrue(readTable.read(tableFile));
+            for (int i = 0; i < tags.size(); i++) {
+                int otherTagId = tags.size() - 1 - i;
+                assertEquals(expectedValues.get(i),
+                        readTable.getFeature(otherTagId, tags.get(i)).getValue());
+            }
+        } finally {
+            FileUtils.deleteQuietly(tableFile);
+        }
+    }
+
+    private static Collection<String> noGrams() {
+        return ImmutableSet.of();
+    }
+
+    private static Set<Object> values(List<Feature> features) {
+        Set<Object> result = Sets.newHashSet();
+        for (Feature f : features) {
+            result.add(f.getValue());
+        }
+        return result;
+    }
+
+    private void addLemma(int id, String str, String... grams) {
+        Lemma.Builder builder = Lemma.builder(gm, id).setString(str);
+        for (String gr : grams) {
+            builder.addGrammeme(gr);
+        }
+        dict.addLemma(builder.build());
+    }
+
+    private void addWordform(int lemmaId, String str, String... grams) {
+        Wordform.Builder builder = Wordform.builder(gm, lemmaId);
+        for (String gr : grams) {
+            builder.addGrammeme(gr);
+        }
+        dict.addWordform(str, builder.build());
+    }
+}
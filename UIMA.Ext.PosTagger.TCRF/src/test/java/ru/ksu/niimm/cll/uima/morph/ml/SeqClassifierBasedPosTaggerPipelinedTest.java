@@ -0,0 +1,327 @@
+package ru.ksu.niimm.cll.uima.morph.ml;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.ExternalResourceFactory;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
+import org.junit.After;
+import org.junit.Test;
+import org.opencorpora.cas.Word;
+import ru.kfu.cll.uima.tokenizer.fstype.Token;
+import ru.kfu.itis.issst.uima.ml.AbstractTieredSequenceClassifier;
+import ru.kfu.itis.issst.uima.ml.FeatureSet;
+import ru.kfu.itis.issst.uima.ml.FeatureSets;
+import ru.kfu.itis.issst.uima.ml.TieredFeatureExtractor;
+import ru.kfu.itis.issst.uima.ml.TieredSequenceClassifier;
+import ru.kfu.itis.issst.uima.ml.WordAnnotator;
+import ru.kfu.itis.issst.uima.postagger.MorphCasUtils;
+import ru.kfu.itis.issst.uima.postagger.PosTaggerAPI;
+import ru.kfu.itis.issst.uima.segmentation.SentenceSplitterAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.kfu.itis.issst.uima.morph.commons.PunctuationUtils.OTHER_PUNCTUATION_TAG;
+
+/**
+ * Checks that {@link SeqClassifierBasedPosTaggerBase} assigns the same tags with pipelined tiers,
+ * where all sentences of a CAS are classified at once, as in the sequential mode.
+ *
+ * @author Rinat Gareev
+ */
+public class SeqClassifierBasedPosTaggerPipelinedTest {
+
+    private static final List<TestTieredClassifier> createdClassifiers =
+            Collections.synchronizedList(Lists.<TestTieredClassifier>newArrayList());
+
+    private final TypeSystemDescription tsd = TypeSystemDescriptionFactory.createTypeSystemDescription(
+            "ru.kfu.itis.cll.uima.commons.Commons-TypeSystem",
+            TokenizerAPI.TYPESYSTEM_TOKENIZER,
+            SentenceSplitterAPI.TYPESYSTEM_SENTENCES,
+            PosTaggerAPI.TYPESYSTEM_POSTAGGER
+    );
+
+    @After
+    public void closeClassifiers() {
+        for (TestTieredClassifier cl : createdClassifiers) {
+            cl.close();
+        }
+        createdClassifiers.clear();
+    }
+
+    @Test
+    public void testSameTags() throws Exception {
+        List<Set<String>> expected = tag(createTagger(SequentialClassifierWrapper.class, false));
+        AnalysisEngine pipelinedTagger = createTagger(PipelinedClassifierWrapper.class, true);
+        for (int run = 0; run < 3; run++) {
+            assertEquals(expected, tag(pipelinedTagger));
+        }
+        assertTrue(expected.size() > 10);
+        // the feature extractor has got the CAS on the annotator thread only
+        for (TestTieredClassifier cl : createdClassifiers) {
+            assertEquals(Collections.singleton(Thread.currentThread()),
+                    ((TestFeatureExtractor) cl.featureExtractor()).casThreads);
+        }
+    }
+
+    @Test
+    public void testModeMismatch() throws Exception {
+        try {
+            createTagger(SequentialClassifierWrapper.class, true);
+            fail("The classifier is not pipelined");
+        } catch (ResourceInitializationException e) {
+            // expected
+        }
+        try {
+            createTagger(PipelinedClassifierWrapper.class, false);
+            fail("The classifier is pipelined");
+        } catch (ResourceInitializationException e) {
+            // expected
+        }
+    }
+
+    private AnalysisEngine createTagger(Class<? extends SharedResourceObject> classifierWrapperClass,
+                                        boolean pipelinedTiers)
+            throws ResourceInitializationException {
+        AnalysisEngineDescription taggerDesc = AnalysisEngineFactory.createEngineDescription(
+                SeqClassifierResourceBasedPosTagger.class, tsd,
+                SeqClassifierBasedPosTaggerBase.PARAM_PIPELINED_TIERS, pipelinedTiers);
+        ExternalResourceDescription classifierDesc = ExternalResourceFactory.createExternalResourceDescription(
+                classifierWrapperClass, "file:pom.xml");
+        ExternalResourceFactory.bindExternalResource(
+                taggerDesc, SeqClassifierResourceBasedPosTagger.RESOURCE_CLASSIFIER, classifierDesc);
+        return UIMAFramework.produceAnalysisEngine(taggerDesc);
+    }
+
+    private static List<Set<String>> tag(AnalysisEngine tagger) throws Exception {
+        CAS cas = tagger.newCAS();
+        FileInputStream fin = FileUtils.openInputStream(new File("test-data/test1.txt.xmi"));
+        try {
+            XmiCasDeserializer.deserialize(fin, cas);
+        } finally {
+            IOUtils.closeQuietly(fin);
+        }
+        tagger.process(cas);
+        List<Word> words = ImmutableList.copyOf(JCasUtil.select(cas.getJCas(), Word.class));
+        return ImmutableList.copyOf(Lists.transform(words, MorphCasUtils.GRAMMEMES_FUNCTION));
+    }
+
+    public static class SequentialClassifierWrapper extends ClassifierWrapper {
+        public SequentialClassifierWrapper() {
+            super(false);
+        }
+    }
+
+    public static class PipelinedClassifierWrapper extends ClassifierWrapper {
+        public PipelinedClassifierWrapper() {
+            super(true);
+        }
+    }
+
+    private static abstract class ClassifierWrapper
+            implements TieredSequenceClassifier<Token, String>, SharedResourceObject {
+        private final TestTieredClassifier delegate;
+
+        ClassifierWrapper(boolean pipelined) {
+            delegate = new TestTieredClassifier(pipelined);
+            createdClassifiers.add(delegate);
+        }
+
+        @Override
+        public void load(DataResource data) throws ResourceInitializationException {
+        }
+
+        @Override
+        public List<String> getTierIds() {
+            return delegate.getTierIds();
+        }
+
+        @Override
+        public boolean isPipelined() {
+            return delegate.isPipelined();
+        }
+
+        @Override
+        public List<List<String[]>> classifyAll(JCas jCas, List<? extends Annotation> spanAnnos,
+                                                List<? extends List<? extends Token>> seqs)
+                throws CleartkProcessingException {
+            return delegate.classifyAll(jCas, spanAnnos, seqs);
+        }
+
+        @Override
+        public List<String[]> classify(JCas jCas, Annotation spanAnno, List<? extends Token> seq)
+                throws CleartkProcessingException {
+            return delegate.classify(jCas, spanAnno, seq);
+        }
+
+        @Override
+        public void onCASChange(JCas cas) {
+            delegate.onCASChange(cas);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static class TestTieredClassifier extends AbstractTieredSequenceClassifier<Token> {
+        TestTieredClassifier(boolean pipelined) {
+            this.tierIds = ImmutableList.of("POST", "NMbr", "CAse");
+            this.classifiers = ImmutableList.<org.cleartk.ml.SequenceClassifier<String>>of(
+                    new TestTierClassifier("NOUN", "VERB", "ADJF"),
+                    new TestTierClassifier("sing", "plur", null),
+                    new TestTierClassifier("nomn", "gent", "datv"));
+            this.featureExtractor = new TestFeatureExtractor();
+            this.pipelined = pipelined;
+        }
+
+        TieredFeatureExtractor<Token, String> featureExtractor() {
+            return featureExtractor;
+        }
+    }
+
+    /**
+     * Labels a word token by a hash of its features, so a label depends on the token text and
+     * the labels of the previous tier.
+     */
+    private static class TestTierClassifier implements org.cleartk.ml.SequenceClassifier<String> {
+        private final String[] labels;
+
+        TestTierClassifier(String... labels) {
+            this.labels = labels;
+        }
+
+        @Override
+        public List<String> classify(List<List<Feature>> features) {
+            List<String> result = Lists.newArrayList();
+            for (List<Feature> tokFeatures : features) {
+                List<String> vals = Lists.newArrayList();
+                boolean word = false;
+                for (Feature f : tokFeatures) {
+                    vals.add(f.getName() + ":" + f.getValue());
+                    word |= "word".equals(f.getName());
+                }
+                if (!word) {
+                    result.add(labels[0].equals("NOUN") ? OTHER_PUNCTUATION_TAG : "null");
+                    continue;
+                }
+                Collections.sort(vals);
+                String label = labels[(Joiner.on(',').join(vals).hashCode() & 0xff) % labels.length];
+                result.add(label == null ? "null" : label);
+            }
+            return result;
+        }
+
+        @Override
+        public List<Map<String, Double>> score(List<List<Feature>> features) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class TestFeatureExtractor implements TieredFeatureExtractor<Token, String> {
+        private final FeatureExtractor1 commonSrc = new DummyExtractor();
+        private final FeatureExtractor1 textSrc = new DummyExtractor();
+        private final FeatureExtractor1 labelSrc = new DummyExtractor();
+        // threads that have passed a CAS to this extractor
+        private final Set<Thread> casThreads = Collections.synchronizedSet(Sets.<Thread>newHashSet());
+
+        @Override
+        public void initialize(Properties cfg) {
+        }
+
+        @Override
+        public void onCASChange(JCas cas) {
+        }
+
+        @Override
+        public List<String> getTokenTexts(JCas jCas, Annotation spanAnno, List<? extends Token> tokens) {
+            casThreads.add(Thread.currentThread());
+            List<String> result = Lists.newArrayList();
+            for (Token tok : tokens) {
+                result.add(WordAnnotator.canCarryWord(tok) ? tok.getCoveredText() : null);
+            }
+            return result;
+        }
+
+        @Override
+        public List<FeatureSet> extractCommonFeatures(JCas jCas, Annotation spanAnno,
+                                                      List<? extends Token> tokens) {
+            casThreads.add(Thread.currentThread());
+            List<FeatureSet> result = Lists.newArrayList();
+            for (Token tok : tokens) {
+                FeatureSet fs = FeatureSets.empty();
+                if (WordAnnotator.canCarryWord(tok)) {
+                    fs.add(ImmutableList.of(new Feature("word", tok.getCoveredText())), commonSrc);
+                }
+                result.add(fs);
+            }
+            return result;
+        }
+
+        @Override
+        public void onBeforeTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
+                                 List<String> tokenTexts) {
+            for (int pos = 0; pos < featSets.size(); pos++) {
+                String text = tokenTexts.get(pos);
+                if (text != null) {
+                    String prevLabel = tier == 0 ? "" : String.valueOf(labels.get(pos).get(tier - 1));
+                    featSets.get(pos).add(
+                            ImmutableList.of(new Feature("wl", text.toLowerCase() + prevLabel)), textSrc);
+                }
+            }
+        }
+
+        @Override
+        public void onAfterTier(List<FeatureSet> featSets, List<List<String>> labels, int tier,
+                                List<String> tokenTexts) {
+            for (int pos = 0; pos < featSets.size(); pos++) {
+                FeatureSet fs = featSets.get(pos);
+                fs.removeFeaturesBySource(textSrc);
+                fs.removeFeaturesBySource(labelSrc);
+                List<Feature> labelFeatures = Lists.newArrayList();
+                for (int ctxPos = Math.max(0, pos - 1); ctxPos <= Math.min(featSets.size() - 1, pos + 1); ctxPos++) {
+                    labelFeatures.add(new Feature("Label_at_" + (pos - ctxPos), labels.get(ctxPos).get(tier)));
+                }
+                fs.add(labelFeatures, labelSrc);
+            }
+        }
+    }
+
+    private static class DummyExtractor implements FeatureExtractor1 {
+        @Override
+        public List<Feature> extract(JCas view, Annotation focusAnnotation) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -99,25 +99,26 @@ public class SimpleTieredFeatureExtractorTest {
         ArrayList<Token> sentTokens = newArrayList(
                 selectCovered(jCas, Token.class, sent));
         List<FeatureSet> sentFeatSets = fe.extractCommonFeatures(jCas, sent, sentTokens);
+        List<String> sentTokenTexts = fe.getTokenTexts(jCas, sent, sentTokens);
         log.debug("<<<Common feature>>>:\n{}", sentFeatSets);
         //
         int tier = 0;
-        fe.onBeforeTier(sentFeatSets, compose(sentTokens.size()), tier, jCas, sent, sentTokens);
+        fe.onBeforeTier(sentFeatSets, compose(sentTokens.size()), tier, sentTokenTexts);
         log.debug("<<<Before tier {}>>>:\n{}", tier, sentFeatSets);
         fe.onAfterTier(sentFeatSets,
                 compose(sentTokens.size(), tierLabels[0]),
-                tier, jCas, sent, sentTokens);
+                tier, sentTokenTexts);
         log.debug("<<<After tier {}>>>:\n{}", tier, sentFeatSets);
         //
         tier = 1;
-        fe.onBeforeTier(sentFeatSets, compose(sentTokens.size(), tierLabels[0]), tier, jCas, sent, sentTokens);
+        fe.onBeforeTier(sentFeatSets, compose(sentTokens.size(), tierLabels[0]), tier, sentTokenTexts);
         log.debug("<<<Before tier {}>>>:\n{}", tier, sentFeatSets);
         fe.onAfterTier(sentFeatSets,
                 compose(sentTokens.size(), tierLabels[0], tierLabels[1]),
-                tier, jCas, sent, sentTokens);
+                tier, sentTokenTexts);
         log.debug("<<<After tier {}>>>:\n{}", tier, sentFeatSets);
         //
-        fe.onBeforeTier(sentFeatSets, compose(sentTokens.size(), tierLabels[0], tierLabels[1]), tier, jCas, sent, sentTokens);
+        fe.onBeforeTier(sentFeatSets, compose(sentTokens.size(), tierLabels[0], tierLabels[1]), tier, sentTokenTexts);
         log.debug("<<<Before tier {}>>>:\n{}", tier, sentFeatSets);
     }
 
@@ -7,10 +7,9 @@ import static ru.kfu.itis.issst.uima.morph.commons.TagUtils.postProcessExternalT
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 
 import org.annolab.tt4j.TokenHandler;
-import org.annolab.tt4j.TreeTaggerWrapper;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
@@ -20,102 +19,82 @@ import org.opencorpora.cas.Word;
 import org.opencorpora.cas.Wordform;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.util.JCasUtil;
 
 import ru.kfu.cll.uima.tokenizer.fstype.NUM;
 import ru.kfu.cll.uima.tokenizer.fstype.Token;
 import ru.kfu.cll.uima.tokenizer.fstype.W;
 
+import com.google.common.collect.Lists;
+
 /**
+ * Tags tokens of a CAS by a TreeTagger process borrowed from a
+ * {@link TreeTaggerPool}. The pool is either the shared resource bound to
+ * {@link #RESOURCE_TREETAGGER_POOL} or, if the resource is not bound, a private
+ * pool of a single process that is started with the model
+ * {@link #PARAM_TREETAGGER_MODEL_NAME}.
+ * 
  * @author Rinat Gareev (Kazan Federal University)
  * 
  */
 public class MorphTagger extends JCasAnnotator_ImplBase {
 
 	public static final String PARAM_TREETAGGER_MODEL_NAME = "treeTaggerModelName";
+	public static final String RESOURCE_TREETAGGER_POOL = "treeTaggerPool";
 	// config
-	@ConfigurationParameter(name = PARAM_TREETAGGER_MODEL_NAME, mandatory = true)
+	@ConfigurationParameter(name = PARAM_TREETAGGER_MODEL_NAME, mandatory = false)
 	private String ttModelName;
-	// monitors
-	private final Object casMon = new Object();
+	@ExternalResource(key = RESOURCE_TREETAGGER_POOL, mandatory = false)
+	private TreeTaggerPoolResource ttPoolResource;
 	// state fields
-	private TreeTaggerWrapper<Token> treeTagger;
+	private TreeTaggerPool ttPool;
+	// true if ttPool is created by this instance
+	private boolean ownPool;
 
 	@Override
 	public void initialize(UimaContext ctx) throws ResourceInitializationException {
 		super.initialize(ctx);
 
-		treeTagger = new TreeTaggerWrapper<Token>();
-		treeTagger.setAdapter(new TokenAdapter());
-		try {
-			treeTagger.setModel(ttModelName);
-		} catch (IOException e) {
-			throw new ResourceInitializationException(e);
+		if (ttPoolResource != null) {
+			ttPool = ttPoolResource.getPool();
+		} else if (ttModelName != null) {
+			try {
+				ttPool = new TreeTaggerPool(ttModelName, 1);
+			} catch (IOException e) {
+				throw new ResourceInitializationException(e);
+			}
+			ownPool = true;
+		} else {
+			throw new ResourceInitializationException(
+					new IllegalStateException(String.format(
+							"Neither %s nor %s is specified",
+							PARAM_TREETAGGER_MODEL_NAME, RESOURCE_TREETAGGER_POOL)));
 		}
 	}
 
 	@Override
 	public void process(final JCas jCas) throws AnalysisEngineProcessException {
 		Collection<Token> tokens = JCasUtil.select(jCas, Token.class);
-		final Word[] words = new Word[tokens.size()];
-
-		final AtomicInteger count = new AtomicInteger(0);
-		treeTagger.setHandler(new TokenHandler<Token>() {
-			@Override
-			public void token(Token token, String pos, String lemma) {
-				// should be synchronized on the same object with TokenAdapter#getText (see below)
-				synchronized (casMon) {
-					// do not create Wordform on punctuation and special tokens
-					// TODO MTE Rus TreeTagger also outputs tag 'SENT' for sentence end?
-					if (pos != null && (token instanceof W || token instanceof NUM)) {
-						pos = pos.intern();
-						Word w = new Word(jCas, token.getBegin(), token.getEnd());
-						w.setToken(token);
-
-						Wordform wf = new Wordform(jCas);
-						if (lemma != null) {
-							wf.setLemma(lemma);
-						}
-						wf.setPos(postProcessExternalTag(pos));
-
-						wf.setWord(w);
-						FSArray wfArr = new FSArray(jCas, 1);
-						wfArr.set(0, wf);
-						w.setWordforms(wfArr);
-
-						if (words[count.get()] != null) {
-							throw new IllegalStateException();
-						}
-						words[count.get()] = w;
-					}
-					//
-					count.getAndIncrement();
-				}
-			}
-		});
-		// 
+		CasRequestHandler handler = new CasRequestHandler(jCas, tokens.size());
 		try {
-			treeTagger.process(tokens);
-
-			// save annotations
-			for (Word w : words) {
-				if (w != null) {
-					w.addToIndexes();
-				}
-			}
-			// just to clear reference to current CAS
-			treeTagger.setHandler(null);
+			ttPool.process(tokens, handler, handler);
 		} catch (Exception e) {
 			throw new AnalysisEngineProcessException(e);
 		}
+		// save annotations
+		for (Word w : handler.getWords()) {
+			w.addToIndexes();
+		}
 	}
 
 	@Override
 	public void destroy() {
 		super.destroy();
-		if (treeTagger != null) {
+		if (ownPool && ttPool != null) {
 			getLogger().info("Cleaning up TreeTagger process");
-			treeTagger.destroy();
+			ttPool.destroy();
+			ttPool = null;
 		}
 	}
 
@@ -127,12 +106,53 @@ public class MorphTagger extends JCasAnnotator_ImplBase {
 		super.finalize();
 	}
 
-	private class TokenAdapter implements org.annolab.tt4j.TokenAdapter<Token> {
+	/**
+	 * Callbacks of a single {@link #process(JCas)} invocation. TT4J invokes
+	 * the adapter and the handler from different threads, so access to the CAS
+	 * is synchronized on this object.
+	 */
+	private static class CasRequestHandler implements TokenHandler<Token>,
+			org.annolab.tt4j.TokenAdapter<Token> {
+		private final JCas jCas;
+		// guarded by this
+		private final List<Word> words;
+
+		CasRequestHandler(JCas jCas, int tokenCount) {
+			this.jCas = jCas;
+			this.words = Lists.newArrayListWithCapacity(tokenCount);
+		}
+
+		synchronized List<Word> getWords() {
+			return words;
+		}
+
+		@Override
+		public synchronized String getText(Token t) {
+			return t.getCoveredText();
+		}
+
 		@Override
-		public String getText(Token t) {
-			synchronized (casMon) {
-				return t.getCoveredText();
+		public synchronized void token(Token token, String pos, String lemma) {
+			// do not create Wordform on punctuation and special tokens
+			// TODO MTE Rus TreeTagger also outputs tag 'SENT' for sentence end?
+			if (pos != null && (token instanceof W || token instanceof NUM)) {
+				pos = pos.intern();
+				Word w = new Word(jCas, token.getBegin(), token.getEnd());
+				w.setToken(token);
+
+				Wordform wf = new Wordform(jCas);
+				if (lemma != null) {
+					wf.setLemma(lemma);
+				}
+				wf.setPos(postProcessExternalTag(pos));
+
+				wf.setWord(w);
+				FSArray wfArr = new FSArray(jCas, 1);
+				wfArr.set(0, wf);
+				w.setWordforms(wfArr);
+
+				words.add(w);
 			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,239 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.treetagger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.annolab.tt4j.TokenAdapter;
+import org.annolab.tt4j.TokenHandler;
+import org.annolab.tt4j.TreeTaggerException;
+import org.annolab.tt4j.TreeTaggerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded pool of TreeTagger processes that are started with the same
+ * model. A caller borrows a process for a single {@link #process} invocation,
+ * so up to {@code poolSize} token sequences are tagged concurrently and other
+ * callers wait for a free process. Processes are started lazily, but the first
+ * wrapper is created and the model is resolved in the constructor, so an
+ * invalid model name is reported at once.
+ * <p>
+ * A {@link TreeTaggerWrapper} keeps its adapter and handler in fields. To avoid
+ * rebinding them per request, each wrapper of the pool has the fixed ones that
+ * dispatch to the adapter and handler of a request through the tokens
+ * themselves, i.e., the wrapper is fed by {@link RequestToken}s.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class TreeTaggerPool {
+
+	private static final Logger log = LoggerFactory.getLogger(TreeTaggerPool.class);
+	// is put into the idle queue on destroy to wake up waiting callers
+	private static final TreeTaggerWrapper<RequestToken<?>> DESTROYED_MARKER =
+			new TreeTaggerWrapper<RequestToken<?>>();
+
+	// config fields
+	private final String modelName;
+	private final int poolSize;
+	// state fields
+	private final BlockingQueue<TreeTaggerWrapper<RequestToken<?>>> idleTaggers;
+	// guarded by this
+	private final List<TreeTaggerWrapper<RequestToken<?>>> allTaggers;
+	// guarded by this
+	private boolean closed;
+
+	/**
+	 * @param modelName
+	 *            a model name in the format of
+	 *            {@link TreeTaggerWrapper#setModel(String)}, e.g.,
+	 *            'russian.par:UTF-8'
+	 * @param poolSize
+	 *            the maximal number of TreeTagger processes
+	 * @throws IOException
+	 *             if the model can not be resolved
+	 */
+	public TreeTaggerPool(String modelName, int poolSize) throws IOException {
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+		}
+		this.modelName = modelName;
+		this.poolSize = poolSize;
+		this.idleTaggers = new LinkedBlockingQueue<TreeTaggerWrapper<RequestToken<?>>>();
+		this.allTaggers = new ArrayList<TreeTaggerWrapper<RequestToken<?>>>(poolSize);
+		// validate the model eagerly
+		TreeTaggerWrapper<RequestToken<?>> first = createTagger();
+		allTaggers.add(first);
+		idleTaggers.add(first);
+	}
+
+	public String getModelName() {
+		return modelName;
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * @return the number of TreeTagger wrappers created so far
+	 */
+	public synchronized int getTaggerCount() {
+		return allTaggers.size();
+	}
+
+	/**
+	 * Tag the given tokens by one of the pool processes. The method blocks
+	 * until a process is available and the tagging is finished.
+	 * <p>
+	 * Note that TT4J invokes the adapter and the handler from its own threads,
+	 * possibly concurrently with each other.
+	 * </p>
+	 *
+	 * @param tokens
+	 *            tokens to tag
+	 * @param adapter
+	 *            provides the text of a token
+	 * @param handler
+	 *            receives a tag and a lemma of a token
+	 */
+	public <T> void process(Collection<T> tokens, TokenAdapter<T> adapter,
+			TokenHandler<T> handler) throws IOException, TreeTaggerException,
+			InterruptedException {
+		Request<T> request = new Request<T>(adapter, handler);
+		List<RequestToken<?>> reqTokens = new ArrayList<RequestToken<?>>(tokens.size());
+		for (T t : tokens) {
+			reqTokens.add(new RequestToken<T>(request, t));
+		}
+		TreeTaggerWrapper<RequestToken<?>> tagger = borrow();
+		try {
+			tagger.process(reqTokens);
+		} finally {
+			release(tagger);
+		}
+	}
+
+	/**
+	 * Destroy the processes of this pool. The processes that are in use are
+	 * destroyed when they are released. Callers that wait for a process get
+	 * {@link IllegalStateException}.
+	 */
+	public void destroy() {
+		List<TreeTaggerWrapper<RequestToken<?>>> taggers = new ArrayList<TreeTaggerWrapper<RequestToken<?>>>();
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			idleTaggers.drainTo(taggers);
+			idleTaggers.add(DESTROYED_MARKER);
+		}
+		log.info("Cleaning up {} TreeTagger processes", taggers.size());
+		for (TreeTaggerWrapper<RequestToken<?>> tt : taggers) {
+			tt.destroy();
+		}
+	}
+
+	private TreeTaggerWrapper<RequestToken<?>> borrow() throws IOException,
+			InterruptedException {
+		TreeTaggerWrapper<RequestToken<?>> result;
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("The pool is destroyed");
+			}
+			result = idleTaggers.poll();
+			if (result == null && allTaggers.size() < poolSize) {
+				result = createTagger();
+				allTaggers.add(result);
+			}
+		}
+		if (result == null) {
+			result = idleTaggers.take();
+			if (result == DESTROYED_MARKER) {
+				// wake up the next waiting caller
+				idleTaggers.add(DESTROYED_MARKER);
+				throw new IllegalStateException("The pool is destroyed");
+			}
+		}
+		return result;
+	}
+
+	private void release(TreeTaggerWrapper<RequestToken<?>> tagger) {
+		boolean destroyTagger;
+		synchronized (this) {
+			destroyTagger = closed;
+			if (!destroyTagger) {
+				idleTaggers.add(tagger);
+			}
+		}
+		if (destroyTagger) {
+			tagger.destroy();
+		}
+	}
+
+	// TT4J starts a process lazily, on the first invocation of process(...)
+	private TreeTaggerWrapper<RequestToken<?>> createTagger() throws IOException {
+		TreeTaggerWrapper<RequestToken<?>> tt = new TreeTaggerWrapper<RequestToken<?>>();
+		tt.setAdapter(new RequestTokenAdapter());
+		tt.setHandler(new RequestTokenHandler());
+		tt.setModel(modelName);
+		log.info("Created TreeTagger wrapper #{} with model {}", allTaggers.size() + 1, modelName);
+		return tt;
+	}
+
+	private static class Request<T> {
+		private final TokenAdapter<T> adapter;
+		private final TokenHandler<T> handler;
+
+		Request(TokenAdapter<T> adapter, TokenHandler<T> handler) {
+			this.adapter = adapter;
+			this.handler = handler;
+		}
+	}
+
+	/**
+	 * A token bound to the request context it belongs to.
+	 */
+	private static class RequestToken<T> {
+		private final Request<T> request;
+		private final T token;
+
+		RequestToken(Request<T> request, T token) {
+			this.request = request;
+			this.token = token;
+		}
+
+		String getText() {
+			return request.adapter.getText(token);
+		}
+
+		void handle(String pos, String lemma) {
+			request.handler.token(token, pos, lemma);
+		}
+	}
+
+	private static class RequestTokenAdapter implements TokenAdapter<RequestToken<?>> {
+		@Override
+		public String getText(RequestToken<?> rt) {
+			return rt.getText();
+		}
+	}
+
+	private static class RequestTokenHandler implements TokenHandler<RequestToken<?>> {
+		@Override
+		public void token(RequestToken<?> rt, String pos, String lemma) {
+			rt.handle(pos, lemma);
+		}
+	}
+}
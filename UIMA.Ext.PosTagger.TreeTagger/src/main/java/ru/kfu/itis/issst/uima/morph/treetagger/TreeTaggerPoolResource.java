@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.treetagger;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.uima.fit.component.Resource_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.ExternalResourceFactory;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+
+/**
+ * UIMA shared resource that holds a {@link TreeTaggerPool}. Bind it to
+ * {@link MorphTagger#RESOURCE_TREETAGGER_POOL} to let all instances of the
+ * annotator (e.g., in a multi-threaded CPE) share the same bounded set of
+ * TreeTagger processes.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class TreeTaggerPoolResource extends Resource_ImplBase {
+
+	public static ExternalResourceDescription createDescription(String modelName, int poolSize) {
+		return ExternalResourceFactory.createExternalResourceDescription(
+				TreeTaggerPoolResource.class,
+				PARAM_MODEL_NAME, modelName,
+				PARAM_POOL_SIZE, String.valueOf(poolSize));
+	}
+
+	public static final String PARAM_MODEL_NAME = "modelName";
+	public static final String PARAM_POOL_SIZE = "poolSize";
+	// config
+	@ConfigurationParameter(name = PARAM_MODEL_NAME, mandatory = true)
+	private String modelName;
+	@ConfigurationParameter(name = PARAM_POOL_SIZE, defaultValue = "1")
+	private int poolSize;
+	// state fields
+	private TreeTaggerPool pool;
+
+	@Override
+	public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
+			throws ResourceInitializationException {
+		if (!super.initialize(aSpecifier, aAdditionalParams))
+			return false;
+		try {
+			pool = new TreeTaggerPool(modelName, poolSize);
+		} catch (IllegalArgumentException e) {
+			throw new ResourceInitializationException(e);
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+		return true;
+	}
+
+	public TreeTaggerPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public void destroy() {
+		if (pool != null) {
+			pool.destroy();
+		}
+		super.destroy();
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.morph.treetagger;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.bindResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.annolab.tt4j.TokenAdapter;
+import org.annolab.tt4j.TokenHandler;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.ExternalResourceFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.metadata.ResourceManagerConfiguration;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.ResourceManagerConfiguration_impl;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencorpora.cas.Word;
+import org.opencorpora.cas.Wordform;
+
+import ru.kfu.cll.uima.tokenizer.fstype.PM;
+import ru.kfu.cll.uima.tokenizer.fstype.W;
+import ru.kfu.itis.issst.uima.postagger.PosTaggerAPI;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Runs {@link TreeTaggerPool} and {@link MorphTagger} against a shell stub of
+ * tree-tagger, so the test does not need a TreeTagger installation.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class TreeTaggerPoolTest {
+
+	private static final String TT_HOME_PROP = "treetagger.home";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private String oldTTHome;
+	private String modelName;
+
+	@Before
+	public void setUpStub() throws Exception {
+		Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+		// TT4J looks for $treetagger.home/bin/tree-tagger
+		File stubFile = new File(tempFolder.newFolder("bin"), "tree-tagger");
+		FileUtils.copyURLToFile(getClass().getResource("/tree-tagger-stub.sh"), stubFile);
+		assertTrue(stubFile.setExecutable(true));
+		oldTTHome = System.getProperty(TT_HOME_PROP);
+		System.setProperty(TT_HOME_PROP, tempFolder.getRoot().getPath());
+		modelName = tempFolder.newFile("stub.par").getPath() + ":UTF-8";
+	}
+
+	@After
+	public void restoreTTHome() {
+		if (oldTTHome == null) {
+			System.clearProperty(TT_HOME_PROP);
+		} else {
+			System.setProperty(TT_HOME_PROP, oldTTHome);
+		}
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		final TreeTaggerPool pool = new TreeTaggerPool(modelName, 2);
+		ExecutorService exec = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<?>> results = Lists.newArrayList();
+			for (int th = 0; th < 5; th++) {
+				final int threadId = th;
+				results.add(exec.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int doc = 0; doc < 20; doc++) {
+							List<String> tokens = Lists.newArrayList();
+							for (int t = 0; t <= (threadId + doc) % 13; t++) {
+								tokens.add("th" + threadId + "d" + doc + "t" + t);
+							}
+							ListTokenHandler handler = new ListTokenHandler();
+							pool.process(tokens, STRING_ADAPTER, handler);
+							List<String> expectedTags = Lists.newArrayList();
+							List<String> expectedLemmas = Lists.newArrayList();
+							for (String t : tokens) {
+								expectedTags.add(t + "_T");
+								expectedLemmas.add(t + "_L");
+							}
+							assertEquals(tokens, handler.tokens);
+							assertEquals(expectedTags, handler.tags);
+							assertEquals(expectedLemmas, handler.lemmas);
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> r : results) {
+				r.get();
+			}
+		} finally {
+			exec.shutdown();
+		}
+		assertTrue(pool.getTaggerCount() >= 1 && pool.getTaggerCount() <= 2);
+		pool.destroy();
+	}
+
+	@Test
+	public void testMorphTaggerWithSharedPool() throws Exception {
+		ExternalResourceDescription poolDesc = TreeTaggerPoolResource.createDescription(
+				modelName, 1);
+		poolDesc.setName("sharedTreeTaggerPool");
+		ResourceManagerConfiguration resMgrCfg = new ResourceManagerConfiguration_impl();
+		resMgrCfg.addExternalResource(poolDesc);
+		ExternalResourceFactory.bindExternalResource(resMgrCfg,
+				MorphTagger.RESOURCE_TREETAGGER_POOL, "sharedTreeTaggerPool");
+		ResourceManager resMgr = UIMAFramework.newDefaultResourceManager();
+		resMgr.initializeExternalResources(resMgrCfg, "/", Maps.<String, Object> newHashMap());
+		TreeTaggerPoolResource poolResource = (TreeTaggerPoolResource) resMgr.getResource(
+				"/" + MorphTagger.RESOURCE_TREETAGGER_POOL);
+		final TypeSystemDescription tsd = TypeSystemDescriptionFactory.createTypeSystemDescription(
+				TokenizerAPI.TYPESYSTEM_TOKENIZER, PosTaggerAPI.TYPESYSTEM_POSTAGGER);
+		AnalysisEngineDescription aeDesc = createEngineDescription(MorphTagger.class, tsd);
+		// two annotator instances, e.g., of a multi-threaded CPE
+		List<AnalysisEngine> engines = Lists.newArrayList();
+		for (int i = 0; i < 2; i++) {
+			engines.add(UIMAFramework.produceAnalysisEngine(aeDesc, resMgr,
+					Maps.<String, Object> newHashMap()));
+		}
+		ExecutorService exec = Executors.newFixedThreadPool(engines.size());
+		try {
+			List<Future<?>> results = Lists.newArrayList();
+			for (final AnalysisEngine ae : engines) {
+				results.add(exec.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int doc = 0; doc < 10; doc++) {
+							JCas jCas = createDocument(tsd);
+							ae.process(jCas);
+							assertEquals(Lists.newArrayList(
+									"Мама/Мама_T/Мама_L", "мыла/мыла_T/мыла_L",
+									"раму/раму_T/раму_L"),
+									getTaggedWords(jCas));
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> r : results) {
+				r.get();
+			}
+			// both instances borrowed the single process of the shared pool
+			assertEquals(1, poolResource.getPool().getTaggerCount());
+			// and both fail when the shared pool is destroyed
+			poolResource.getPool().destroy();
+			for (AnalysisEngine ae : engines) {
+				try {
+					ae.process(createDocument(tsd));
+					fail("The pool is destroyed");
+				} catch (AnalysisEngineProcessException e) {
+					assertTrue(e.getCause() instanceof IllegalStateException);
+				}
+			}
+		} finally {
+			exec.shutdown();
+			for (AnalysisEngine ae : engines) {
+				ae.destroy();
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidModelName() throws Exception {
+		String invalidModelName = new File(tempFolder.getRoot(), "no-such.par").getPath()
+				+ ":UTF-8";
+		try {
+			new TreeTaggerPool(invalidModelName, 2);
+			fail("The model does not exist");
+		} catch (IOException e) {
+			// expected
+		}
+		TypeSystemDescription tsd = TypeSystemDescriptionFactory.createTypeSystemDescription(
+				TokenizerAPI.TYPESYSTEM_TOKENIZER, PosTaggerAPI.TYPESYSTEM_POSTAGGER);
+		try {
+			createEngine(MorphTagger.class, tsd,
+					MorphTagger.PARAM_TREETAGGER_MODEL_NAME, invalidModelName);
+			fail("The model does not exist");
+		} catch (ResourceInitializationException e) {
+			// expected
+		}
+		AnalysisEngineDescription aeDesc = createEngineDescription(MorphTagger.class, tsd);
+		bindResource(aeDesc, MorphTagger.RESOURCE_TREETAGGER_POOL,
+				TreeTaggerPoolResource.createDescription(invalidModelName, 1));
+		try {
+			createEngine(aeDesc);
+			fail("The model does not exist");
+		} catch (ResourceInitializationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDestroyWakesWaitingCallers() throws Exception {
+		final TreeTaggerPool pool = new TreeTaggerPool(modelName, 1);
+		final CountDownLatch holderStarted = new CountDownLatch(1);
+		final CountDownLatch releaseHolder = new CountDownLatch(1);
+		ExecutorService exec = Executors.newFixedThreadPool(2);
+		try {
+			// holds the only process of the pool until releaseHolder
+			Future<?> holder = exec.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					pool.process(ImmutableList.of("a"), new TokenAdapter<String>() {
+						@Override
+						public String getText(String token) {
+							holderStarted.countDown();
+							try {
+								releaseHolder.await();
+							} catch (InterruptedException e) {
+								throw new IllegalStateException(e);
+							}
+							return token;
+						}
+					}, new ListTokenHandler());
+					return null;
+				}
+			});
+			assertTrue(holderStarted.await(10, TimeUnit.SECONDS));
+			Future<?> waiter = exec.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					pool.process(ImmutableList.of("b"), STRING_ADAPTER, new ListTokenHandler());
+					return null;
+				}
+			});
+			// let the waiter block on the pool
+			Thread.sleep(200);
+			assertFalse(waiter.isDone());
+			pool.destroy();
+			try {
+				waiter.get(10, TimeUnit.SECONDS);
+				fail("The pool is destroyed");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+			releaseHolder.countDown();
+			holder.get(10, TimeUnit.SECONDS);
+			assertEquals(1, pool.getTaggerCount());
+		} finally {
+			releaseHolder.countDown();
+			exec.shutdownNow();
+		}
+	}
+
+	private static JCas createDocument(TypeSystemDescription tsd) throws Exception {
+		JCas jCas = JCasFactory.createJCas(tsd);
+		jCas.setDocumentText("Мама мыла раму.");
+		new W(jCas, 0, 4).addToIndexes();
+		new W(jCas, 5, 9).addToIndexes();
+		new W(jCas, 10, 14).addToIndexes();
+		new PM(jCas, 14, 15).addToIndexes();
+		return jCas;
+	}
+
+	private static List<String> getTaggedWords(JCas jCas) {
+		List<String> result = Lists.newArrayList();
+		for (Word w : JCasUtil.select(jCas, Word.class)) {
+			Wordform wf = (Wordform) w.getWordforms().get(0);
+			result.add(w.getCoveredText() + "/" + wf.getPos() + "/" + wf.getLemma());
+		}
+		return result;
+	}
+
+	private static final TokenAdapter<String> STRING_ADAPTER = new TokenAdapter<String>() {
+		@Override
+		public String getText(String token) {
+			return token;
+		}
+	};
+
+	private static class ListTokenHandler implements TokenHandler<String> {
+		private final List<String> tokens = Lists.newArrayList();
+		private final List<String> tags = Lists.newArrayList();
+		private final List<String> lemmas = Lists.newArrayList();
+
+		@Override
+		public void token(String token, String pos, String lemma) {
+			tokens.add(token);
+			tags.add(pos);
+			lemmas.add(lemma);
+		}
+	}
+}
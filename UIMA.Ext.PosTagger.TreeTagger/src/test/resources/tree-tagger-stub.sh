@@ -0,0 +1,14 @@
+#!/bin/sh
+# Imitates tree-tagger invoked with '-sgml -token -lemma': SGML tags are echoed,
+# a token is output as 'token<TAB>tag<TAB>lemma' where the tag is the token
+# with '_T' suffix and the lemma is the token with '_L' suffix.
+while IFS= read -r line; do
+	case "$line" in
+	\<*\>)
+		printf '%s\n' "$line"
+		;;
+	*)
+		printf '%s\t%s_T\t%s_L\n' "$line" "$line" "$line"
+		;;
+	esac
+done
@@ -0,0 +1,217 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.segmentation;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.cll.uima.tokenizer.fstype.CW;
+import ru.kfu.cll.uima.tokenizer.fstype.EXCLAMATION;
+import ru.kfu.cll.uima.tokenizer.fstype.PERIOD;
+import ru.kfu.cll.uima.tokenizer.fstype.QUESTION;
+import ru.kfu.cll.uima.tokenizer.fstype.SW;
+import ru.kfu.cll.uima.tokenizer.fstype.Token;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Implementation of the {@link SentenceSplitter} heuristic that materializes
+ * the token index into primitive arrays once and decides sentence boundaries
+ * in a single linear pass without moving an index iterator back and forth.
+ * Given the default configuration it produces the same sentences as
+ * {@link SentenceSplitter}.
+ * <p>
+ * Additionally, a period is not considered as a sentence end if the preceding
+ * adjacent token is in the abbreviation lexicon, see
+ * {@link #PARAM_ABBREVIATIONS}.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class ArrayBasedSentenceSplitter extends JCasAnnotator_ImplBase {
+
+	public static AnalysisEngineDescription createDescription(String... abbreviations)
+			throws ResourceInitializationException {
+		TypeSystemDescription tsDesc = SentenceSplitterAPI.getTypeSystemDescription();
+		return createEngineDescription(ArrayBasedSentenceSplitter.class, tsDesc,
+				PARAM_ABBREVIATIONS, abbreviations);
+	}
+
+	/**
+	 * Abbreviations (without the trailing period, e.g., "т", "см") that do not
+	 * end a sentence if they precede a period. Empty by default.
+	 */
+	public static final String PARAM_ABBREVIATIONS = "abbreviations";
+
+	// token codes
+	private static final byte CODE_OTHER = 0;
+	private static final byte CODE_SENTENCE_END = 1;
+	private static final byte CODE_CW = 2;
+	private static final byte CODE_SW = 3;
+
+	@ConfigurationParameter(name = PARAM_ABBREVIATIONS, mandatory = false)
+	private String[] abbreviationsParam;
+	// derived
+	private Set<String> abbreviations;
+	// per-CAS state
+	private Token[] tokens = new Token[1024];
+	private byte[] codes = new byte[1024];
+	private int[] begins = new int[1024];
+	private int[] ends = new int[1024];
+	private int tokensNum;
+	// indexes of first and last tokens of sentences
+	private int[] sentFirsts = new int[64];
+	private int[] sentLasts = new int[64];
+	private int sentencesNum;
+
+	@Override
+	public void initialize(UimaContext ctx) throws ResourceInitializationException {
+		super.initialize(ctx);
+		if (abbreviationsParam == null) {
+			abbreviations = ImmutableSet.of();
+		} else {
+			abbreviations = ImmutableSet.copyOf(abbreviationsParam);
+		}
+	}
+
+	@Override
+	public void process(JCas cas) throws AnalysisEngineProcessException {
+		try {
+			materializeTokens(cas);
+			if (tokensNum == 0) {
+				return;
+			}
+			findSentences(cas.getDocumentText());
+			makeSentences(cas);
+		} finally {
+			Arrays.fill(tokens, 0, tokensNum, null);
+			tokensNum = 0;
+			sentencesNum = 0;
+		}
+	}
+
+	private void materializeTokens(JCas cas) {
+		// consider only non-whitespace tokens
+		for (Annotation anno : cas.getAnnotationIndex(Token.type)) {
+			if (tokensNum == tokens.length) {
+				int newLength = tokensNum * 2;
+				tokens = Arrays.copyOf(tokens, newLength);
+				codes = Arrays.copyOf(codes, newLength);
+				begins = Arrays.copyOf(begins, newLength);
+				ends = Arrays.copyOf(ends, newLength);
+			}
+			int typeId = anno.getTypeIndexID();
+			byte code;
+			if (typeId == PERIOD.type || typeId == EXCLAMATION.type || typeId == QUESTION.type) {
+				code = CODE_SENTENCE_END;
+			} else if (typeId == CW.type) {
+				code = CODE_CW;
+			} else if (typeId == SW.type) {
+				code = CODE_SW;
+			} else {
+				code = CODE_OTHER;
+			}
+			tokens[tokensNum] = (Token) anno;
+			codes[tokensNum] = code;
+			begins[tokensNum] = anno.getBegin();
+			ends[tokensNum] = anno.getEnd();
+			tokensNum++;
+		}
+	}
+
+	private void findSentences(String txt) {
+		int lastSentenceStart = 0;
+		// the first token can't end a sentence
+		for (int i = 1; i < tokensNum; i++) {
+			if (codes[i] == CODE_SENTENCE_END && isSentenceEnd(txt, i)) {
+				addSentence(lastSentenceStart, i);
+				lastSentenceStart = i + 1;
+			}
+		}
+		if (lastSentenceStart < tokensNum) {
+			addSentence(lastSentenceStart, tokensNum - 1);
+		}
+	}
+
+	private boolean isSentenceEnd(String txt, int i) {
+		int next = i + 1;
+		if (next == tokensNum) {
+			return true;
+		}
+		if (isBreakBetween(txt, ends[i], begins[next])) {
+			return true;
+		}
+		return distanceBetween(i, next) > 0
+				&& !isAbbreviationBefore(txt, i)
+				&& codes[next] != CODE_SW;
+	}
+
+	private boolean isAbbreviationBefore(String txt, int i) {
+		int prev = i - 1;
+		if (codes[prev] == CODE_CW && ends[prev] - begins[prev] == 1) {
+			return true;
+		}
+		// the lexicon is applied only to periods
+		return !abbreviations.isEmpty()
+				&& ends[prev] == begins[i] && txt.charAt(begins[i]) == '.'
+				&& abbreviations.contains(txt.substring(begins[prev], ends[prev]));
+	}
+
+	private int distanceBetween(int first, int second) {
+		if (begins[first] == begins[second]) {
+			return 0;
+		}
+		int result = begins[second] - ends[first];
+		return result >= 0 ? result : 0;
+	}
+
+	private static boolean isBreakBetween(String txt, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (txt.charAt(i) == '\n') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addSentence(int first, int last) {
+		if (ends[last] <= begins[first]) {
+			throw new IllegalStateException(String.format(
+					"Illegal start and end token for sentence: %s, %s",
+					tokens[first], tokens[last]));
+		}
+		if (sentencesNum == sentFirsts.length) {
+			sentFirsts = Arrays.copyOf(sentFirsts, sentencesNum * 2);
+			sentLasts = Arrays.copyOf(sentLasts, sentencesNum * 2);
+		}
+		sentFirsts[sentencesNum] = first;
+		sentLasts[sentencesNum] = last;
+		sentencesNum++;
+	}
+
+	private void makeSentences(JCas cas) {
+		for (int s = 0; s < sentencesNum; s++) {
+			Token firstToken = tokens[sentFirsts[s]];
+			Token lastToken = tokens[sentLasts[s]];
+			Sentence sentence = new Sentence(cas, firstToken.getBegin(), lastToken.getEnd());
+			sentence.setFirstToken(firstToken);
+			sentence.setLastToken(lastToken);
+			sentence.addToIndexes();
+		}
+	}
+}
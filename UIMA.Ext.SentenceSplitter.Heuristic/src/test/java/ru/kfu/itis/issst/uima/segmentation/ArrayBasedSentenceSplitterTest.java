@@ -0,0 +1,87 @@
+package ru.kfu.itis.issst.uima.segmentation;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Test;
+
+import ru.kfu.cll.uima.segmentation.fstype.Sentence;
+import ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class ArrayBasedSentenceSplitterTest {
+
+	private static final String[] TEXTS = {
+			"",
+			".",
+			"Привет",
+			"Мама мыла раму. Папа читал газету!А кто? Никто...",
+			"В 1812 г. армия Наполеона вошла в Россию. А. С. Пушкин родился в Москве.",
+			"Первая строка.\nвторая строка\n\nтретья. и четвертая.",
+			"Он сказал: «Нет.» Потом ушёл. См. рис. 5. Т.е. ничего!? Да.",
+			"Цена 2.5 руб. . . Итого: 3 руб.! ? Конец" };
+
+	@Test
+	public void testSameSentences() throws Exception {
+		AnalysisEngine expectedAE = createPipeline(SentenceSplitter.createDescription());
+		AnalysisEngine actualAE = createPipeline(ArrayBasedSentenceSplitter.createDescription());
+		for (String text : TEXTS) {
+			assertEquals(text, split(expectedAE, text), split(actualAE, text));
+		}
+		Random rnd = new Random(42);
+		String alphabet = "абвгАБВabcXYZ0123   \n.....!?,-()";
+		for (int t = 0; t < 300; t++) {
+			StringBuilder sb = new StringBuilder();
+			int len = rnd.nextInt(150);
+			for (int i = 0; i < len; i++) {
+				sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+			}
+			String text = sb.toString();
+			assertEquals(text, split(expectedAE, text), split(actualAE, text));
+		}
+	}
+
+	@Test
+	public void testAbbreviations() throws Exception {
+		AnalysisEngine ae = createPipeline(ArrayBasedSentenceSplitter.createDescription("см", "рис"));
+		assertEquals(ImmutableList.of("Это показано на рис. 5 и см. Выше.", "Всё!"),
+				split(ae, "Это показано на рис. 5 и см. Выше. Всё!"));
+		// the lexicon is not applied to other sentence ends
+		assertEquals(ImmutableList.of("Где рис?", "Там."),
+				split(ae, "Где рис? Там."));
+	}
+
+	private static AnalysisEngine createPipeline(AnalysisEngineDescription splitterDesc)
+			throws Exception {
+		return createEngine(createEngineDescription(
+				TokenizerAPI.getAEDescription(), splitterDesc));
+	}
+
+	private static List<String> split(AnalysisEngine ae, String text) throws Exception {
+		JCas jCas = CasCreationUtils.createCas(ae.getAnalysisEngineMetaData()).getJCas();
+		jCas.setDocumentText(text);
+		ae.process(jCas);
+		List<String> result = Lists.newArrayList();
+		for (Sentence sent : JCasUtil.select(jCas, Sentence.class)) {
+			assertEquals(sent.getBegin(), sent.getFirstToken().getBegin());
+			assertEquals(sent.getEnd(), sent.getLastToken().getEnd());
+			result.add(sent.getCoveredText());
+		}
+		return result;
+	}
+}
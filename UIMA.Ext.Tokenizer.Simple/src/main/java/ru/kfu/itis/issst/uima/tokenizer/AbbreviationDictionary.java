@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Immutable set of abbreviations (with trailing dots, e.g. "г.") that can be
+ * looked up by a region of a char sequence without substring allocation.
+ * <p>
+ * The text format is one abbreviation per line, empty lines and lines starting
+ * with '#' are ignored.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class AbbreviationDictionary {
+
+	/**
+	 * @return the dictionary bundled with this module
+	 */
+	public static AbbreviationDictionary getDefault() {
+		return DefaultHolder.instance;
+	}
+
+	public static AbbreviationDictionary load(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "utf-8"));
+		ImmutableSet.Builder<String> entries = ImmutableSet.builder();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			entries.add(line);
+		}
+		return new AbbreviationDictionary(entries.build());
+	}
+
+	private static final String DEFAULT_RESOURCE = "abbreviations.txt";
+
+	private static class DefaultHolder {
+		private static final AbbreviationDictionary instance;
+
+		static {
+			InputStream in = AbbreviationDictionary.class.getResourceAsStream(DEFAULT_RESOURCE);
+			if (in == null) {
+				throw new IllegalStateException(String.format(
+						"Can't find %s in classpath", DEFAULT_RESOURCE));
+			}
+			try {
+				instance = load(in);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		}
+	}
+
+	private final Set<String> entrySet;
+	// entries sorted by their hash codes
+	private final String[] entries;
+	private final int[] hashes;
+
+	public AbbreviationDictionary(Collection<String> entries) {
+		this.entrySet = ImmutableSet.copyOf(entries);
+		this.entries = entrySet.toArray(new String[entrySet.size()]);
+		Arrays.sort(this.entries, new Comparator<String>() {
+			@Override
+			public int compare(String first, String second) {
+				int h1 = first.hashCode();
+				int h2 = second.hashCode();
+				return h1 < h2 ? -1 : (h1 == h2 ? 0 : 1);
+			}
+		});
+		this.hashes = new int[this.entries.length];
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = this.entries[i].hashCode();
+		}
+	}
+
+	public boolean contains(String str) {
+		return entrySet.contains(str);
+	}
+
+	/**
+	 * @return true if the region [begin, end) of the given text is an
+	 *         abbreviation of this dictionary
+	 */
+	public boolean contains(CharSequence text, int begin, int end) {
+		// the same as String#hashCode
+		int hash = 0;
+		for (int i = begin; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		int idx = Arrays.binarySearch(hashes, hash);
+		if (idx < 0) {
+			return false;
+		}
+		// there may be several entries with the same hash
+		while (idx > 0 && hashes[idx - 1] == hash) {
+			idx--;
+		}
+		for (; idx < hashes.length && hashes[idx] == hash; idx++) {
+			if (regionEquals(entries[idx], text, begin, end)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public Set<String> getEntries() {
+		return entrySet;
+	}
+
+	private static boolean regionEquals(String entry, CharSequence text, int begin, int end) {
+		if (entry.length() != end - begin) {
+			return false;
+		}
+		for (int i = 0; i < entry.length(); i++) {
+			if (entry.charAt(i) != text.charAt(begin + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
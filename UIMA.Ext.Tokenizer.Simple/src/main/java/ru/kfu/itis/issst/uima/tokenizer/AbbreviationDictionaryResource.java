@@ -0,0 +1,41 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+
+/**
+ * Shared resource that loads an {@link AbbreviationDictionary} once for all
+ * post-tokenizer instances of a pipeline.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class AbbreviationDictionaryResource implements SharedResourceObject {
+
+	private AbbreviationDictionary dictionary;
+
+	@Override
+	public void load(DataResource dr) throws ResourceInitializationException {
+		InputStream in = null;
+		try {
+			in = dr.getInputStream();
+			dictionary = AbbreviationDictionary.load(in);
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	public AbbreviationDictionary getDictionary() {
+		return dictionary;
+	}
+}
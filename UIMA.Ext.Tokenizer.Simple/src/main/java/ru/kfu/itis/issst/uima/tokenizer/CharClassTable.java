@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import static ru.kfu.itis.issst.uima.tokenizer.TokenUtils.PUNCTUATION_CHARACTER_CATEGORIES;
+
+/**
+ * Precomputed classes of all BMP characters as they are seen by
+ * {@link InitialTokenizer}. A class of a character is stored in the lower
+ * bits of its table entry, the {@link #UPPER_CASE} flag is set for upper-case
+ * characters.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+final class CharClassTable {
+
+	static final byte WORD = 1;
+	static final byte NUM = 2;
+	static final byte BREAK = 3;
+	static final byte SPACE = 4;
+	static final byte PUNCTUATION = 5;
+	static final byte SPECIAL = 6;
+
+	static final int CLASS_MASK = 0x0F;
+	static final int UPPER_CASE = 0x10;
+
+	private static final byte[] table = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+			// the order of checks must be the same as in InitialTokenizer#states
+			byte chClass;
+			int chType = Character.getType(ch);
+			if (isWordCategory(chType)) {
+				chClass = WORD;
+			} else if (isNumCategory(chType)) {
+				chClass = NUM;
+			} else if (ch == '\n' || ch == '\r') {
+				chClass = BREAK;
+			} else if (Character.isWhitespace(ch) || Character.isSpaceChar(ch)) {
+				chClass = SPACE;
+			} else if (PUNCTUATION_CHARACTER_CATEGORIES.contains((byte) chType)) {
+				chClass = PUNCTUATION;
+			} else {
+				chClass = SPECIAL;
+			}
+			if (Character.isUpperCase((char) ch)) {
+				chClass |= UPPER_CASE;
+			}
+			table[ch] = chClass;
+		}
+	}
+
+	/**
+	 * @return class of the given character with the {@link #UPPER_CASE} flag
+	 */
+	static int entry(char ch) {
+		return table[ch];
+	}
+
+	static int classOf(char ch) {
+		return table[ch] & CLASS_MASK;
+	}
+
+	static boolean isUpperCase(char ch) {
+		return (table[ch] & UPPER_CASE) != 0;
+	}
+
+	private static boolean isWordCategory(int chType) {
+		switch (chType) {
+		case Character.UPPERCASE_LETTER:
+		case Character.LOWERCASE_LETTER:
+		case Character.TITLECASE_LETTER:
+		case Character.MODIFIER_LETTER:
+		case Character.OTHER_LETTER:
+		case Character.NON_SPACING_MARK:
+		case Character.ENCLOSING_MARK:
+		case Character.COMBINING_SPACING_MARK:
+		case Character.PRIVATE_USE:
+		case Character.SURROGATE:
+		case Character.MODIFIER_SYMBOL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isNumCategory(int chType) {
+		switch (chType) {
+		case Character.DECIMAL_DIGIT_NUMBER:
+		case Character.LETTER_NUMBER:
+		case Character.OTHER_NUMBER:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private CharClassTable() {
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import static ru.kfu.itis.issst.uima.tokenizer.PostTokenizer.RESOURCE_ABBREVIATIONS;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import ru.kfu.cll.uima.tokenizer.fstype.NUM;
+import ru.kfu.cll.uima.tokenizer.fstype.PM;
+import ru.kfu.cll.uima.tokenizer.fstype.SPECIAL;
+import ru.kfu.cll.uima.tokenizer.fstype.TokenBase;
+import ru.kfu.cll.uima.tokenizer.fstype.W;
+import ru.kfu.cll.uima.tokenizer.fstype.WhiteSpace;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Drop-in replacement of {@link PostTokenizer} that produces the same
+ * annotations. It walks the token index once keeping offsets and kinds of
+ * tokens of the current whitespace-free sequence in arrays, decides merges by
+ * inspecting characters of the document text in place and applies index
+ * updates in a batch after the walk.
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class OffsetBasedPostTokenizer extends JCasAnnotator_ImplBase {
+
+	public static AnalysisEngineDescription createDescription()
+			throws ResourceInitializationException {
+		return AnalysisEngineFactory.createEngineDescription(OffsetBasedPostTokenizer.class);
+	}
+
+	// token kinds
+	private static final byte KIND_OTHER = 0;
+	private static final byte KIND_WORD = 1;
+	private static final byte KIND_NUM = 2;
+	private static final byte KIND_PM_OR_SPECIAL = 3;
+
+	@ExternalResource(key = RESOURCE_ABBREVIATIONS, mandatory = false)
+	private AbbreviationDictionaryResource abbreviationsResource;
+	// derived
+	private AbbreviationDictionary abbreviations;
+	// per-CAS state
+	private String text;
+	private Type wordType;
+	private Type numType;
+	// tokens of the current whitespace-free sequence
+	private Annotation[] seqTokens = new Annotation[16];
+	private byte[] seqKinds = new byte[16];
+	private int[] seqBegins = new int[16];
+	private int[] seqEnds = new int[16];
+	private int seqLength;
+	// merges
+	private final List<Annotation> mergedTokens = Lists.newArrayList();
+	private final List<Type> mergeTypes = Lists.newArrayList();
+	private int[] mergeBegins = new int[16];
+	private int[] mergeEnds = new int[16];
+	private int mergesNum;
+
+	@Override
+	public void initialize(UimaContext ctx) throws ResourceInitializationException {
+		super.initialize(ctx);
+		abbreviations = abbreviationsResource != null
+				? abbreviationsResource.getDictionary()
+				: AbbreviationDictionary.getDefault();
+	}
+
+	@Override
+	public void process(JCas jCas) throws AnalysisEngineProcessException {
+		text = jCas.getDocumentText();
+		wordType = jCas.getCasType(W.type);
+		numType = jCas.getCasType(NUM.type);
+		try {
+			for (Annotation tokenBase : jCas.getAnnotationIndex(TokenBase.typeIndexID)) {
+				if (tokenBase instanceof WhiteSpace) {
+					handle(0, seqLength);
+					seqLength = 0;
+				} else {
+					addToSequence(tokenBase);
+				}
+			}
+			// handle last seq
+			handle(0, seqLength);
+			seqLength = 0;
+			applyMerges(jCas.getCas());
+		} finally {
+			text = null;
+			Arrays.fill(seqTokens, null);
+			seqLength = 0;
+			mergedTokens.clear();
+			mergeTypes.clear();
+			mergesNum = 0;
+		}
+	}
+
+	private void addToSequence(Annotation token) {
+		if (seqLength == seqTokens.length) {
+			int newLength = seqLength * 2;
+			seqTokens = Arrays.copyOf(seqTokens, newLength);
+			seqKinds = Arrays.copyOf(seqKinds, newLength);
+			seqBegins = Arrays.copyOf(seqBegins, newLength);
+			seqEnds = Arrays.copyOf(seqEnds, newLength);
+		}
+		byte kind;
+		if (token instanceof W) {
+			kind = KIND_WORD;
+		} else if (token instanceof NUM) {
+			kind = KIND_NUM;
+		} else if (token instanceof PM || token instanceof SPECIAL) {
+			kind = KIND_PM_OR_SPECIAL;
+		} else {
+			kind = KIND_OTHER;
+		}
+		seqTokens[seqLength] = token;
+		seqKinds[seqLength] = kind;
+		seqBegins[seqLength] = token.getBegin();
+		seqEnds[seqLength] = token.getEnd();
+		seqLength++;
+	}
+
+	/**
+	 * Mirrors PostTokenizer#handle for the sequence sub-range [from, to).
+	 */
+	private void handle(int from, int to) {
+		int size = to - from;
+		if (size <= 1) {
+			return;
+		} else if (size == 2) {
+			// check abbreviation dictionary
+			if (seqKinds[from] == KIND_WORD && isChar(from + 1, '.') && isAbbreviation(from, to)) {
+				addMerge(from, to, seqTokens[from].getType());
+				return;
+			}
+			if (seqKinds[from] != KIND_PM_OR_SPECIAL && seqKinds[from + 1] != KIND_PM_OR_SPECIAL) {
+				addMerge(from, to, seqKinds[from] == KIND_WORD ? seqTokens[from].getType()
+						: wordType);
+			}
+		} else if (size == 3) {
+			int t0 = from;
+			int t1 = from + 1;
+			int t2 = from + 2;
+			if (isPossibleInnerPM(t1) && (seqKinds[t0] == KIND_WORD || seqKinds[t2] == KIND_WORD)) {
+				addMerge(from, to, seqKinds[t0] == KIND_WORD ? seqTokens[t0].getType() : wordType);
+				return;
+			}
+			if (isNumInternalPM(t1) && seqKinds[t0] == KIND_NUM && seqKinds[t2] == KIND_NUM) {
+				addMerge(from, to, numType);
+			}
+		} else {
+			// size >= 4
+			int cleanedFrom = from;
+			int cleanedTo = to;
+			while (cleanedFrom < cleanedTo && seqKinds[cleanedFrom] == KIND_PM_OR_SPECIAL) {
+				cleanedFrom++;
+			}
+			while (cleanedFrom < cleanedTo && seqKinds[cleanedTo - 1] == KIND_PM_OR_SPECIAL) {
+				cleanedTo--;
+			}
+			// to avoid infinite recursion
+			if (cleanedTo - cleanedFrom != size) {
+				handle(cleanedFrom, cleanedTo);
+			}
+		}
+	}
+
+	private boolean isAbbreviation(int from, int to) {
+		// tokens may be non-adjacent if they are produced for different spans
+		for (int i = from + 1; i < to; i++) {
+			if (seqEnds[i - 1] != seqBegins[i]) {
+				StringBuilder sb = new StringBuilder();
+				for (int j = from; j < to; j++) {
+					sb.append(text, seqBegins[j], seqEnds[j]);
+				}
+				return abbreviations.contains(sb.toString());
+			}
+		}
+		return abbreviations.contains(text, seqBegins[from], seqEnds[to - 1]);
+	}
+
+	private boolean isChar(int tokenIdx, char ch) {
+		return seqEnds[tokenIdx] - seqBegins[tokenIdx] == 1
+				&& text.charAt(seqBegins[tokenIdx]) == ch;
+	}
+
+	private boolean isPossibleInnerPM(int tokenIdx) {
+		return isChar(tokenIdx, '\'') || isChar(tokenIdx, '-') || isChar(tokenIdx, '`');
+	}
+
+	private boolean isNumInternalPM(int tokenIdx) {
+		return isChar(tokenIdx, ',') || isChar(tokenIdx, '.') || isChar(tokenIdx, '-');
+	}
+
+	private void addMerge(int from, int to, Type targetType) {
+		if (mergesNum == mergeBegins.length) {
+			mergeBegins = Arrays.copyOf(mergeBegins, mergesNum * 2);
+			mergeEnds = Arrays.copyOf(mergeEnds, mergesNum * 2);
+		}
+		mergeTypes.add(targetType);
+		mergeBegins[mergesNum] = seqBegins[from];
+		mergeEnds[mergesNum] = seqEnds[to - 1];
+		mergesNum++;
+		for (int i = from; i < to; i++) {
+			mergedTokens.add(seqTokens[i]);
+		}
+	}
+
+	private void applyMerges(CAS cas) {
+		for (Annotation token : mergedTokens) {
+			token.removeFromIndexes();
+		}
+		for (int m = 0; m < mergesNum; m++) {
+			AnnotationFS merged = cas.createAnnotation(mergeTypes.get(m),
+					mergeBegins[m], mergeEnds[m]);
+			cas.addFsToIndexes(merged);
+		}
+		getLogger().debug("Merged tokens: " + mergesNum);
+	}
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
@@ -19,6 +20,7 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 
 import ru.kfu.cll.uima.tokenizer.fstype.NUM;
@@ -46,11 +48,29 @@ public class PostTokenizer extends JCasAnnotator_ImplBase {
 		return AnalysisEngineFactory.createEngineDescription(PostTokenizer.class);
 	}
 
+	/**
+	 * Key of an optional {@link AbbreviationDictionaryResource}. If it is not
+	 * bound then {@link AbbreviationDictionary#getDefault()} is used.
+	 */
+	public static final String RESOURCE_ABBREVIATIONS = "abbreviations";
+
+	@ExternalResource(key = RESOURCE_ABBREVIATIONS, mandatory = false)
+	private AbbreviationDictionaryResource abbreviationsResource;
+	// derived
+	private AbbreviationDictionary abbreviations;
 	// per-CAS state
 	private Map<AnnotationFS, Collection<? extends AnnotationFS>> mergedMap;
 	private Type wordType;
 	private Type numType;
 
+	@Override
+	public void initialize(UimaContext ctx) throws ResourceInitializationException {
+		super.initialize(ctx);
+		abbreviations = abbreviationsResource != null
+				? abbreviationsResource.getDictionary()
+				: AbbreviationDictionary.getDefault();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -136,9 +156,6 @@ public class PostTokenizer extends JCasAnnotator_ImplBase {
 		return false;
 	}
 
-	private static final Set<String> abbreviations = ImmutableSet.of("г.");
-
-	// TODO use external dictionary
 	private boolean isAbbreviation(String str) {
 		return abbreviations.contains(str);
 	}
@@ -0,0 +1,275 @@
+/**
+ *
+ */
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static ru.kfu.itis.cll.uima.util.AnnotatorUtils.annotationTypeExist;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.BREAK;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.CLASS_MASK;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.NUM;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.PUNCTUATION;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.SPACE;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.UPPER_CASE;
+import static ru.kfu.itis.issst.uima.tokenizer.CharClassTable.WORD;
+import static ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI.DEFAULT_SPAN_TYPE;
+import static ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI.PARAM_SPAN_TYPE;
+import static ru.kfu.itis.issst.uima.tokenizer.TokenizerAPI.TYPESYSTEM_TOKENIZER;
+
+import java.util.Arrays;
+
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.fit.component.CasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+
+import ru.kfu.cll.uima.tokenizer.fstype.BREAK;
+import ru.kfu.cll.uima.tokenizer.fstype.CAP;
+import ru.kfu.cll.uima.tokenizer.fstype.COLON;
+import ru.kfu.cll.uima.tokenizer.fstype.COMMA;
+import ru.kfu.cll.uima.tokenizer.fstype.CW;
+import ru.kfu.cll.uima.tokenizer.fstype.EXCLAMATION;
+import ru.kfu.cll.uima.tokenizer.fstype.NUM;
+import ru.kfu.cll.uima.tokenizer.fstype.PERIOD;
+import ru.kfu.cll.uima.tokenizer.fstype.PM;
+import ru.kfu.cll.uima.tokenizer.fstype.QUESTION;
+import ru.kfu.cll.uima.tokenizer.fstype.SEMICOLON;
+import ru.kfu.cll.uima.tokenizer.fstype.SPACE;
+import ru.kfu.cll.uima.tokenizer.fstype.SPECIAL;
+import ru.kfu.cll.uima.tokenizer.fstype.SW;
+
+/**
+ * Drop-in replacement of {@link InitialTokenizer} that produces the same
+ * annotations. Characters are classified through {@link CharClassTable}, token
+ * boundaries are found in a single pass over the document text by a
+ * switch-based state machine, then token annotations of a span are created in
+ * bulk.
+ * <p>
+ * To use this implementation through {@link TokenizerAPI#AE_TOKENIZER} import
+ * the descriptor 'ru.kfu.itis.issst.uima.tokenizer.TableDrivenInitialTokenizer'
+ * as the 'initialTokenizer' delegate.
+ * </p>
+ *
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class TableDrivenInitialTokenizer extends CasAnnotator_ImplBase {
+
+	public static AnalysisEngineDescription createDescription()
+			throws ResourceInitializationException {
+		TypeSystemDescription tsDesc = createTypeSystemDescription(TYPESYSTEM_TOKENIZER);
+		return createEngineDescription(TableDrivenInitialTokenizer.class, tsDesc);
+	}
+
+	// token kinds
+	private static final byte SW_TOKEN = 0;
+	private static final byte CW_TOKEN = 1;
+	private static final byte CAP_TOKEN = 2;
+	private static final byte NUM_TOKEN = 3;
+	private static final byte BREAK_TOKEN = 4;
+	private static final byte SPACE_TOKEN = 5;
+	private static final byte COMMA_TOKEN = 6;
+	private static final byte PERIOD_TOKEN = 7;
+	private static final byte COLON_TOKEN = 8;
+	private static final byte SEMICOLON_TOKEN = 9;
+	private static final byte QUESTION_TOKEN = 10;
+	private static final byte EXCLAMATION_TOKEN = 11;
+	private static final byte PM_TOKEN = 12;
+	private static final byte SPECIAL_TOKEN = 13;
+
+	@ConfigurationParameter(name = PARAM_SPAN_TYPE, mandatory = false)
+	private String spanTypeName = DEFAULT_SPAN_TYPE;
+
+	// derived
+	private Type spanType;
+	// state fields, reused between spans
+	private byte[] tokenKinds = new byte[1024];
+	private int[] tokenBegins = new int[1024];
+	private int[] tokenEnds = new int[1024];
+	private int tokensNum;
+
+	@Override
+	public void typeSystemInit(TypeSystem typeSystem) throws AnalysisEngineProcessException {
+		super.typeSystemInit(typeSystem);
+		spanType = typeSystem.getType(spanTypeName);
+		annotationTypeExist(spanTypeName, spanType);
+	}
+
+	@Override
+	public void process(CAS _cas) throws AnalysisEngineProcessException {
+		JCas cas;
+		try {
+			cas = _cas.getJCas();
+		} catch (CASException e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+		String text = cas.getDocumentText();
+		FSIterator<Annotation> spanIterator = cas.getAnnotationIndex(spanType).iterator();
+		while (spanIterator.hasNext()) {
+			Annotation span = spanIterator.next();
+			tokenizeSpan(text, span.getBegin(), span.getEnd());
+			createAnnotations(cas);
+		}
+	}
+
+	private void tokenizeSpan(String text, int begin, int end) {
+		tokensNum = 0;
+		if (begin >= end) {
+			return;
+		}
+		int tokenBegin = begin;
+		int tokenEntry = CharClassTable.entry(text.charAt(begin));
+		int tokenClass = tokenEntry & CLASS_MASK;
+		// the length of the upper-case prefix of the current word
+		int upperPrefix = (tokenEntry & UPPER_CASE) != 0 ? 1 : 0;
+		for (int i = begin + 1; i < end; i++) {
+			char ch = text.charAt(i);
+			int chEntry = CharClassTable.entry(ch);
+			int chClass = chEntry & CLASS_MASK;
+			boolean sticks;
+			switch (tokenClass) {
+			case WORD:
+			case NUM:
+			case BREAK:
+				sticks = chClass == tokenClass;
+				break;
+			case SPACE:
+				// line breaks are white spaces too
+				sticks = chClass == SPACE || chClass == BREAK;
+				break;
+			default:
+				sticks = false;
+			}
+			if (sticks) {
+				if (upperPrefix == i - tokenBegin && (chEntry & UPPER_CASE) != 0) {
+					upperPrefix++;
+				}
+			} else {
+				addToken(tokenKind(text, tokenClass, tokenBegin, i, upperPrefix), tokenBegin, i);
+				tokenBegin = i;
+				tokenClass = chClass;
+				upperPrefix = (chEntry & UPPER_CASE) != 0 ? 1 : 0;
+			}
+		}
+		addToken(tokenKind(text, tokenClass, tokenBegin, end, upperPrefix), tokenBegin, end);
+	}
+
+	private static byte tokenKind(String text, int tokenClass, int begin, int end,
+			int upperPrefix) {
+		switch (tokenClass) {
+		case WORD:
+			if (upperPrefix == 0) {
+				return SW_TOKEN;
+			} else if (upperPrefix == end - begin && upperPrefix > 1) {
+				return CAP_TOKEN;
+			} else {
+				return CW_TOKEN;
+			}
+		case NUM:
+			return NUM_TOKEN;
+		case BREAK:
+			return BREAK_TOKEN;
+		case SPACE:
+			return SPACE_TOKEN;
+		case PUNCTUATION:
+			switch (text.charAt(begin)) {
+			case ',':
+				return COMMA_TOKEN;
+			case '.':
+				return PERIOD_TOKEN;
+			case ':':
+				return COLON_TOKEN;
+			case ';':
+				return SEMICOLON_TOKEN;
+			case '?':
+				return QUESTION_TOKEN;
+			case '!':
+				return EXCLAMATION_TOKEN;
+			default:
+				return PM_TOKEN;
+			}
+		default:
+			return SPECIAL_TOKEN;
+		}
+	}
+
+	private void addToken(byte kind, int begin, int end) {
+		if (tokensNum == tokenKinds.length) {
+			int newLength = tokensNum * 2;
+			tokenKinds = Arrays.copyOf(tokenKinds, newLength);
+			tokenBegins = Arrays.copyOf(tokenBegins, newLength);
+			tokenEnds = Arrays.copyOf(tokenEnds, newLength);
+		}
+		tokenKinds[tokensNum] = kind;
+		tokenBegins[tokensNum] = begin;
+		tokenEnds[tokensNum] = end;
+		tokensNum++;
+	}
+
+	private void createAnnotations(JCas cas) {
+		for (int t = 0; t < tokensNum; t++) {
+			int begin = tokenBegins[t];
+			int end = tokenEnds[t];
+			Annotation anno;
+			switch (tokenKinds[t]) {
+			case SW_TOKEN:
+				anno = new SW(cas, begin, end);
+				break;
+			case CW_TOKEN:
+				anno = new CW(cas, begin, end);
+				break;
+			case CAP_TOKEN:
+				anno = new CAP(cas, begin, end);
+				break;
+			case NUM_TOKEN:
+				anno = new NUM(cas, begin, end);
+				break;
+			case BREAK_TOKEN:
+				anno = new BREAK(cas, begin, end);
+				break;
+			case SPACE_TOKEN:
+				anno = new SPACE(cas, begin, end);
+				break;
+			case COMMA_TOKEN:
+				anno = new COMMA(cas, begin, end);
+				break;
+			case PERIOD_TOKEN:
+				anno = new PERIOD(cas, begin, end);
+				break;
+			case COLON_TOKEN:
+				anno = new COLON(cas, begin, end);
+				break;
+			case SEMICOLON_TOKEN:
+				anno = new SEMICOLON(cas, begin, end);
+				break;
+			case QUESTION_TOKEN:
+				anno = new QUESTION(cas, begin, end);
+				break;
+			case EXCLAMATION_TOKEN:
+				anno = new EXCLAMATION(cas, begin, end);
+				break;
+			case PM_TOKEN:
+				anno = new PM(cas, begin, end);
+				break;
+			case SPECIAL_TOKEN:
+				anno = new SPECIAL(cas, begin, end);
+				break;
+			default:
+				throw new IllegalStateException(String.format(
+						"Unknown token kind: %s", tokenKinds[t]));
+			}
+			anno.addToIndexes();
+		}
+		tokensNum = 0;
+	}
+}
@@ -0,0 +1,127 @@
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.bindResource;
+import static org.apache.uima.fit.factory.ExternalResourceFactory.createExternalResourceDescription;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.kfu.itis.issst.uima.tokenizer.PostTokenizer.RESOURCE_ABBREVIATIONS;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.util.CasUtil;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.kfu.cll.uima.tokenizer.fstype.TokenBase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class OffsetBasedPostTokenizerTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private static final String[] TEXTS = {
+			"",
+			"г.",
+			"В 1812 г. армия Наполеона вошла в Россию.",
+			"Цена 12-14 руб., т.е. 1,5 или 2.5 тыс. (см. рис.) ...",
+			"Жан-Поль, rock'n'roll, -слово, слово-, `a`, a-1, 1-a, 1a, a1, A1b2",
+			"(Санкт-Петербург) \"кто-то\", ((a-b)), --a--, a-b-c, x--y 1-2-3",
+			"см. т. д. Г. г.. .г. 2г. г.г." };
+
+	@Test
+	public void testSameTokens() throws Exception {
+		AnalysisEngine expectedAE = createEngine(createEngineDescription(
+				InitialTokenizer.createDescription(), PostTokenizer.createDescription()));
+		AnalysisEngine actualAE = createEngine(createEngineDescription(
+				InitialTokenizer.createDescription(), OffsetBasedPostTokenizer.createDescription()));
+		for (String text : TEXTS) {
+			assertEquals(text, tokenize(expectedAE, text), tokenize(actualAE, text));
+		}
+		Random rnd = new Random(42);
+		String alphabet = "абвгАБВabcXYZ0123 \n.,:;!?-'`()\"$+";
+		for (int t = 0; t < 300; t++) {
+			StringBuilder sb = new StringBuilder();
+			int len = rnd.nextInt(100);
+			for (int i = 0; i < len; i++) {
+				sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+			}
+			String text = sb.toString();
+			assertEquals(text, tokenize(expectedAE, text), tokenize(actualAE, text));
+		}
+	}
+
+	@Test
+	public void testExternalAbbreviations() throws Exception {
+		File abbrFile = tempFolder.newFile("abbreviations.txt");
+		FileUtils.writeLines(abbrFile, "utf-8", ImmutableList.of("# test", "см", "см.", "рис."));
+		String text = "см. рис. г. 5 см.";
+		List<String> expected = null;
+		for (AnalysisEngineDescription postTokenizerDesc : new AnalysisEngineDescription[] {
+				PostTokenizer.createDescription(), OffsetBasedPostTokenizer.createDescription() }) {
+			ExternalResourceDescription abbrDesc = createExternalResourceDescription(
+					AbbreviationDictionaryResource.class, abbrFile);
+			bindResource(postTokenizerDesc, RESOURCE_ABBREVIATIONS, abbrDesc);
+			AnalysisEngine ae = createEngine(createEngineDescription(
+					InitialTokenizer.createDescription(), postTokenizerDesc));
+			List<String> actual = tokenize(ae, text);
+			assertTrue(actual.toString(), actual.contains("SW[0,3]"));
+			assertTrue(actual.toString(), actual.contains("SW[4,8]"));
+			assertTrue(actual.toString(), actual.contains("SW[14,17]"));
+			// the default dictionary is not used
+			assertFalse(actual.toString(), actual.contains("SW[9,11]"));
+			if (expected != null) {
+				assertEquals(expected, actual);
+			}
+			expected = actual;
+		}
+	}
+
+	@Test
+	public void testDictionaryLookup() {
+		AbbreviationDictionary dict = new AbbreviationDictionary(
+				ImmutableList.of("г.", "т.", "Aa", "BB"));
+		// "Aa" and "BB" have the same hash code
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		String text = "xг.Aa BB т.";
+		assertTrue(dict.contains(text, 1, 3));
+		assertTrue(dict.contains(text, 3, 5));
+		assertTrue(dict.contains(text, 6, 8));
+		assertTrue(dict.contains(text, 9, 11));
+		assertFalse(dict.contains(text, 0, 3));
+		assertFalse(dict.contains(text, 2, 4));
+		assertTrue(AbbreviationDictionary.getDefault().contains("г."));
+	}
+
+	private static List<String> tokenize(AnalysisEngine ae, String text) throws Exception {
+		CAS cas = CasCreationUtils.createCas(ae.getAnalysisEngineMetaData());
+		cas.setDocumentText(text);
+		ae.process(cas);
+		List<String> result = Lists.newArrayList();
+		for (AnnotationFS anno : CasUtil.select(cas,
+				CasUtil.getType(cas, TokenBase.class.getName()))) {
+			result.add(String.format("%s[%s,%s]", anno.getType().getShortName(),
+					anno.getBegin(), anno.getEnd()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,83 @@
+package ru.kfu.itis.issst.uima.tokenizer;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.util.CasUtil;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import ru.kfu.cll.uima.tokenizer.fstype.TokenBase;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Rinat Gareev (Kazan Federal University)
+ *
+ */
+public class TableDrivenInitialTokenizerTest {
+
+	private AnalysisEngine initialTokenizer;
+	private AnalysisEngine tableDrivenTokenizer;
+
+	@Before
+	public void setUp() throws Exception {
+		initialTokenizer = createEngine(InitialTokenizer.createDescription());
+		tableDrivenTokenizer = createEngine(TableDrivenInitialTokenizer.createDescription());
+	}
+
+	@Test
+	public void testSameTokens() throws Exception {
+		checkSameTokens("");
+		checkSameTokens(" ");
+		checkSameTokens("Мама мыла раму.");
+		checkSameTokens("В 1812 г. армия Наполеона (около 600 тыс. человек) вошла в Россию!\r\n"
+				+ "\tЧТО? США, ООН; т.е.:  Ⅻ век — «ёлка» и\n\n\"кВт\"ы,п.8 $5+3=8 ۳ x²");
+		checkSameTokens("ABC abc Abc aBC AB-CD A 1a a1 ǅa ǅǄ é 😀 ˆ");
+		checkSameTokens(" \n \r\n\n   \u000B\u001C.,..!?");
+	}
+
+	@Test
+	public void testRandomTexts() throws Exception {
+		Random rnd = new Random(42);
+		String alphabet = "абвгдеёжзийклмнопрстуфхцчшщъыьэюяАБВГДЁЯabcXYZ0123456789"
+				+ " \t\n\r  .,:;!?-()\"«»—$%+<=>@#&*́ˆⅫ𐀀";
+		for (int t = 0; t < 200; t++) {
+			StringBuilder sb = new StringBuilder();
+			int len = rnd.nextInt(200);
+			for (int i = 0; i < len; i++) {
+				if (rnd.nextInt(20) == 0) {
+					// any BMP character
+					sb.append((char) rnd.nextInt(Character.MAX_VALUE + 1));
+				} else {
+					sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+				}
+			}
+			checkSameTokens(sb.toString());
+		}
+	}
+
+	private void checkSameTokens(String text) throws Exception {
+		assertEquals(text, tokenize(initialTokenizer, text), tokenize(tableDrivenTokenizer, text));
+	}
+
+	private static List<String> tokenize(AnalysisEngine ae, String text) throws Exception {
+		CAS cas = CasCreationUtils.createCas(ae.getAnalysisEngineMetaData());
+		cas.setDocumentText(text);
+		ae.process(cas);
+		List<String> result = Lists.newArrayList();
+		for (AnnotationFS anno : CasUtil.select(cas,
+				CasUtil.getType(cas, TokenBase.class.getName()))) {
+			result.add(String.format("%s[%s,%s]", anno.getType().getShortName(),
+					anno.getBegin(), anno.getEnd()));
+		}
+		return result;
+	}
+}